@@ -12,6 +12,8 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.dellroad.stuff.java.Primitive;
 import org.jsimpledb.core.DatabaseException;
@@ -78,6 +80,10 @@ class ClassGenerator<T> {
     static final Method COPY_TO_METHOD;
     static final Method GET_SNAPSHOT_TRANSACTION_METHOD;
 
+    // JTransaction typed primitive field accessors, keyed by primitive type
+    static final Map<Class<?>, Method> READ_PRIMITIVE_FIELD_METHODS = new HashMap<>();
+    static final Map<Class<?>, Method> WRITE_PRIMITIVE_FIELD_METHODS = new HashMap<>();
+
     static {
         try {
 
@@ -114,6 +120,24 @@ class ClassGenerator<T> {
             COPY_TO_METHOD = JTransaction.class.getMethod("copyTo",
               JTransaction.class, JObject.class, ObjId.class, CopyState.class, String[].class);
             GET_SNAPSHOT_TRANSACTION_METHOD = JTransaction.class.getMethod("getSnapshotTransaction");
+
+            // JTransaction typed primitive field accessors
+            READ_PRIMITIVE_FIELD_METHODS.put(int.class,
+              JTransaction.class.getMethod("readIntField", JObject.class, int.class, boolean.class));
+            READ_PRIMITIVE_FIELD_METHODS.put(long.class,
+              JTransaction.class.getMethod("readLongField", JObject.class, int.class, boolean.class));
+            READ_PRIMITIVE_FIELD_METHODS.put(double.class,
+              JTransaction.class.getMethod("readDoubleField", JObject.class, int.class, boolean.class));
+            READ_PRIMITIVE_FIELD_METHODS.put(boolean.class,
+              JTransaction.class.getMethod("readBooleanField", JObject.class, int.class, boolean.class));
+            WRITE_PRIMITIVE_FIELD_METHODS.put(int.class,
+              JTransaction.class.getMethod("writeIntField", JObject.class, int.class, int.class, boolean.class));
+            WRITE_PRIMITIVE_FIELD_METHODS.put(long.class,
+              JTransaction.class.getMethod("writeLongField", JObject.class, int.class, long.class, boolean.class));
+            WRITE_PRIMITIVE_FIELD_METHODS.put(double.class,
+              JTransaction.class.getMethod("writeDoubleField", JObject.class, int.class, double.class, boolean.class));
+            WRITE_PRIMITIVE_FIELD_METHODS.put(boolean.class,
+              JTransaction.class.getMethod("writeBooleanField", JObject.class, int.class, boolean.class, boolean.class));
         } catch (NoSuchMethodException e) {
             throw new RuntimeException("internal error", e);
         }
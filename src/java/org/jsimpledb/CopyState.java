@@ -60,6 +60,19 @@ public class CopyState implements Cloneable {
         return this.copied.add(id);
     }
 
+    /**
+     * Determine if an object has already been marked as copied.
+     *
+     * @param id object ID of object being copied
+     * @return true if {@code id} has been marked copied, otherwise false
+     * @throws IllegalArgumentException if {@code id} is null
+     */
+    public boolean isCopied(ObjId id) {
+        if (id == null)
+            throw new IllegalArgumentException("null id");
+        return this.copied.contains(id);
+    }
+
     /**
      * Determine if the specified reference path has already been traversed starting at the given object, and if not mark it so.
      *
@@ -0,0 +1,78 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb;
+
+import com.google.common.base.Converter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts the lists of included field values in a composite index, using a separate {@link Converter} for each position.
+ *
+ * @see JTransaction#queryCompositeIndexIncludes JTransaction.queryCompositeIndexIncludes()
+ */
+class IncludedValuesConverter extends Converter<List<Object>, List<Object>> {
+
+    private final List<Converter<?, ?>> converters;
+
+    IncludedValuesConverter(List<Converter<?, ?>> converters) {
+        if (converters == null)
+            throw new IllegalArgumentException("null converters");
+        this.converters = converters;
+    }
+
+    @Override
+    protected List<Object> doForward(List<Object> values) {
+        return this.convert(values, false);
+    }
+
+    @Override
+    protected List<Object> doBackward(List<Object> values) {
+        return this.convert(values, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> convert(List<Object> values, boolean reverse) {
+        if (values == null)
+            return null;
+        if (values.size() != this.converters.size())
+            throw new IllegalArgumentException("expected " + this.converters.size() + " values but got " + values.size());
+        final ArrayList<Object> list = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Converter<Object, Object> converter = (Converter<Object, Object>)this.converters.get(i);
+            if (reverse)
+                converter = converter.reverse();
+            list.add(converter.convert(values.get(i)));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final IncludedValuesConverter that = (IncludedValuesConverter)obj;
+        return this.converters.equals(that.converters);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.converters.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[converters=" + this.converters + "]";
+    }
+}
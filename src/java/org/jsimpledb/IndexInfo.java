@@ -136,6 +136,16 @@ class IndexInfo {
     }
 
     private static JCompositeIndexInfo findCompositeIndex(JSimpleDB jdb, Class<?> startType, String indexName, int numValues) {
+        final JCompositeIndexInfo indexInfo = IndexInfo.findCompositeIndex(jdb, startType, indexName);
+        if (numValues != indexInfo.jfieldInfos.size()) {
+            throw new IllegalArgumentException("composite index `" + indexName
+              + "' on " + startType.getName() + " has " + indexInfo.jfieldInfos.size() + " fields, not " + numValues);
+        }
+        return indexInfo;
+    }
+
+    // Find the composite index with the given name on any sub-type of startType
+    static JCompositeIndexInfo findCompositeIndex(JSimpleDB jdb, Class<?> startType, String indexName) {
         JCompositeIndexInfo indexInfo = null;
         for (JClass<?> jclass : jdb.getJClasses(startType)) {
             final JCompositeIndex index = jclass.jcompositeIndexesByName.get(indexName);
@@ -152,10 +162,6 @@ class IndexInfo {
             throw new IllegalArgumentException("no composite index named `" + indexName
               + "' exists on any sub-type of " + startType.getName());
         }
-        if (numValues != indexInfo.jfieldInfos.size()) {
-            throw new IllegalArgumentException("composite index `" + indexName
-              + "' on " + startType.getName() + " has " + indexInfo.jfieldInfos.size() + " fields, not " + numValues);
-        }
         return indexInfo;
     }
 
@@ -228,7 +228,7 @@ public class JClass<T> extends JSchemaObject {
               "element field of set field `" + fieldName + "' in object type `" + this.name + "'");
 
             // Create set field
-            final JSetField jfield = new JSetField(this.jdb, fieldName, storageId, elementField,
+            final JSetField jfield = new JSetField(this.jdb, fieldName, storageId, elementField, annotation.sizeCounter(),
               "set field `" + fieldName + "' in object type `" + this.name + "'", getter);
             elementField.parent = jfield;
 
@@ -268,8 +268,8 @@ public class JClass<T> extends JSchemaObject {
               "element field of list field `" + fieldName + "' in object type `" + this.name + "'");
 
             // Create list field
-            final JListField jfield = new JListField(this.jdb, fieldName, storageId, elementField,
-              "list field `" + fieldName + "' in object type `" + this.name + "'", getter);
+            final JListField jfield = new JListField(this.jdb, fieldName, storageId, elementField, annotation.sizeCounter(),
+              annotation.gapped(), "list field `" + fieldName + "' in object type `" + this.name + "'", getter);
             elementField.parent = jfield;
 
             // Add field
@@ -315,7 +315,7 @@ public class JClass<T> extends JSchemaObject {
 
             // Create map field
             final JMapField jfield = new JMapField(this.jdb, fieldName, storageId, keyField, valueField,
-              "map field `" + fieldName + "' in object type `" + this.name + "'", getter);
+              annotation.sizeCounter(), "map field `" + fieldName + "' in object type `" + this.name + "'", getter);
             keyField.parent = jfield;
             valueField.parent = jfield;
 
@@ -351,6 +351,21 @@ public class JClass<T> extends JSchemaObject {
             indexFieldStorageIds[i] = jfield.storageId;
         }
 
+        // Resolve included field names
+        final String[] includedFieldNames = annotation.include();
+        final JSimpleField[] includedFields = new JSimpleField[includedFieldNames.length];
+        for (int i = 0; i < includedFieldNames.length; i++) {
+            final String fieldName = includedFieldNames[i];
+            if (!seenFieldNames.add(fieldName))
+                throw this.invalidIndex(annotation, "field `" + fieldName + "' appears more than once");
+            final JField jfield = this.jfieldsByName.get(fieldName);
+            if (!(jfield instanceof JSimpleField)) {
+                throw this.invalidIndex(annotation, "included field `" + fieldName + "' "
+                  + (jfield != null ? "is not a simple field" : "not found"));
+            }
+            includedFields[i] = (JSimpleField)jfield;
+        }
+
         // Get storage ID
         int storageId = annotation.storageId();
         if (storageId == 0) {
@@ -359,7 +374,7 @@ public class JClass<T> extends JSchemaObject {
         }
 
         // Create and add index
-        final JCompositeIndex index = new JCompositeIndex(this.jdb, indexName, storageId, indexFields);
+        final JCompositeIndex index = new JCompositeIndex(this.jdb, indexName, storageId, indexFields, includedFields);
         if (this.jcompositeIndexes.put(index.storageId, index) != null)
             throw this.invalidIndex(annotation, "duplicate use of storage ID " + index.storageId);
         if (this.jcompositeIndexesByName.put(index.name, index) != null)
@@ -17,15 +17,33 @@ import org.jsimpledb.schema.ComplexSchemaField;
  */
 public abstract class JComplexField extends JField {
 
-    JComplexField(JSimpleDB jdb, String name, int storageId, String description, Method getter) {
+    final boolean sizeCounter;
+
+    JComplexField(JSimpleDB jdb, String name, int storageId, boolean sizeCounter, String description, Method getter) {
         super(jdb, name, storageId, description, getter);
         if (name == null)
             throw new IllegalArgumentException("null name");
+        this.sizeCounter = sizeCounter;
+    }
+
+    /**
+     * Determine whether this field maintains a count of its elements, making {@code size()} a constant time operation.
+     *
+     * @return true if this field maintains an element count
+     * @see org.jsimpledb.schema.ComplexSchemaField#isSizeCounter
+     */
+    public boolean hasSizeCounter() {
+        return this.sizeCounter;
     }
 
     @Override
     abstract ComplexSchemaField toSchemaItem(JSimpleDB jdb);
 
+    void initialize(JSimpleDB jdb, ComplexSchemaField schemaField) {
+        super.initialize(jdb, schemaField);
+        schemaField.setSizeCounter(this.sizeCounter);
+    }
+
     /**
      * Get the sub-fields associated with this field.
      *
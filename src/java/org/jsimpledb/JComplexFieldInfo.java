@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jsimpledb.core.ObjId;
+import org.jsimpledb.core.Transaction;
 
 abstract class JComplexFieldInfo extends JFieldInfo {
 
@@ -35,29 +36,13 @@ abstract class JComplexFieldInfo extends JFieldInfo {
     }
 
     /**
-     * Recurse for copying between transactions. Copies all objects referred to by any reference in the given
-     * subfield of the given object from {@code srcTx} to {@code dstTx}.
+     * Get the references contained in the given subfield of the given object. Used when copying objects between
+     * transactions to follow a reference path through this field.
      *
-     * @param copyState copy state
-     * @param srcTx source transaction
-     * @param dstTx destination transaction
-     * @param id ID of the object containing this complex field in {@code srcTx}
-     * @param storageId storage ID of the sub-field of this field containing the references to copy
-     * @param fieldIndex next index into {@code fieldIds}
-     * @param fields fields to follow in the reference path
+     * @param tx transaction
+     * @param id ID of the object containing this complex field in {@code tx}
+     * @param storageId storage ID of the sub-field of this field containing the references
+     * @return references in the sub-field, possibly including nulls
      */
-    public abstract void copyRecurse(CopyState copyState, JTransaction srcTx, JTransaction dstTx,
-      ObjId id, int storageId, int fieldIndex, int[] fields);
-
-    // Recurse on the iteration of references
-    protected void copyRecurse(CopyState copyState, JTransaction srcTx,
-      JTransaction dstTx, Iterable<?> it, int fieldIndex, int[] fields) {
-        for (Object obj : it) {
-            if (obj != null) {
-                final ObjId id = (ObjId)obj;
-                srcTx.copyTo(copyState, dstTx, id, id, false, fieldIndex, fields);
-            }
-        }
-    }
+    public abstract Iterable<?> iterateReferences(Transaction tx, ObjId id, int storageId);
 }
-
@@ -20,6 +20,7 @@ import org.jsimpledb.schema.SchemaCompositeIndex;
 public class JCompositeIndex extends JSchemaObject {
 
     final List<JSimpleField> jfields;
+    final List<JSimpleField> includedJFields;
 
     /**
      * Constructor.
@@ -28,16 +29,21 @@ public class JCompositeIndex extends JSchemaObject {
      * @param name the name of the object type
      * @param storageId object type storage ID
      * @param type object type Java model class
+     * @param jfields indexed fields
+     * @param includedJFields included fields
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
-    JCompositeIndex(JSimpleDB jdb, String name, int storageId, JSimpleField... jfields) {
+    JCompositeIndex(JSimpleDB jdb, String name, int storageId, JSimpleField[] jfields, JSimpleField[] includedJFields) {
         super(jdb, name, storageId, "composite index `" + name + "' on fields " + Arrays.asList(jfields));
         if (name == null)
             throw new IllegalArgumentException("null name");
         if (jfields.length < 2 || jfields.length > Database.MAX_INDEXED_FIELDS)
             throw new IllegalArgumentException("invalid number of fields");
+        if (includedJFields == null)
+            throw new IllegalArgumentException("null includedJFields");
         this.jfields = Collections.unmodifiableList(Arrays.asList(jfields));
+        this.includedJFields = Collections.unmodifiableList(Arrays.asList(includedJFields));
     }
 
 // Public API
@@ -51,6 +57,15 @@ public class JCompositeIndex extends JSchemaObject {
         return this.jfields;
     }
 
+    /**
+     * Get the {@link JSimpleField}s whose values are included in this index's entries.
+     *
+     * @return this index's included fields, possibly empty
+     */
+    public List<JSimpleField> getIncludedJFields() {
+        return this.includedJFields;
+    }
+
 // Package methods
 
     /**
@@ -71,6 +86,8 @@ public class JCompositeIndex extends JSchemaObject {
         super.initialize(jdb, schemaIndex);
         for (JSimpleField jfield : this.jfields)
             schemaIndex.getIndexedFields().add(jfield.getStorageId());
+        for (JSimpleField jfield : this.includedJFields)
+            schemaIndex.getIncludedFields().add(jfield.getStorageId());
     }
 }
 
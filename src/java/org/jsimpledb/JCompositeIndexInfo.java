@@ -14,16 +14,22 @@ class JCompositeIndexInfo {
 
     final int storageId;
     final ArrayList<JSimpleFieldInfo> jfieldInfos;
+    final ArrayList<JSimpleFieldInfo> includedJFieldInfos;
 
     JCompositeIndexInfo(JCompositeIndex index) {
         this.storageId = index.storageId;
         this.jfieldInfos = new ArrayList<>(index.jfields.size());
+        this.includedJFieldInfos = new ArrayList<>(index.includedJFields.size());
     }
 
     public List<JSimpleFieldInfo> getJFieldInfos() {
         return this.jfieldInfos;
     }
 
+    public List<JSimpleFieldInfo> getIncludedJFieldInfos() {
+        return this.includedJFieldInfos;
+    }
+
 // Object
 
     @Override
@@ -38,12 +44,14 @@ class JCompositeIndexInfo {
         if (obj == null || obj.getClass() != this.getClass())
             return false;
         final JCompositeIndexInfo that = (JCompositeIndexInfo)obj;
-        return this.storageId == that.storageId && this.jfieldInfos.equals(that.jfieldInfos);
+        return this.storageId == that.storageId
+          && this.jfieldInfos.equals(that.jfieldInfos)
+          && this.includedJFieldInfos.equals(that.includedJFieldInfos);
     }
 
     @Override
     public int hashCode() {
-        return this.storageId ^ this.jfieldInfos.hashCode();
+        return this.storageId ^ this.jfieldInfos.hashCode() ^ this.includedJFieldInfos.hashCode();
     }
 }
 
@@ -18,8 +18,22 @@ import org.objectweb.asm.ClassWriter;
  */
 public class JListField extends JCollectionField {
 
-    JListField(JSimpleDB jdb, String name, int storageId, JSimpleField elementField, String description, Method getter) {
-        super(jdb, name, storageId, elementField, description, getter);
+    final boolean gapped;
+
+    JListField(JSimpleDB jdb, String name, int storageId,
+      JSimpleField elementField, boolean sizeCounter, boolean gapped, String description, Method getter) {
+        super(jdb, name, storageId, elementField, sizeCounter, description, getter);
+        this.gapped = gapped;
+    }
+
+    /**
+     * Determine whether this field uses the gapped encoding.
+     *
+     * @return true if this field uses the gapped encoding
+     * @see org.jsimpledb.annotation.JListField#gapped
+     */
+    public boolean isGapped() {
+        return this.gapped;
     }
 
     @Override
@@ -38,6 +52,7 @@ public class JListField extends JCollectionField {
     ListSchemaField toSchemaItem(JSimpleDB jdb) {
         final ListSchemaField schemaField = new ListSchemaField();
         super.initialize(jdb, schemaField);
+        schemaField.setGapped(this.gapped);
         return schemaField;
     }
 
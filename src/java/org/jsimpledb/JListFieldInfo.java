@@ -77,10 +77,9 @@ class JListFieldInfo extends JCollectionFieldInfo {
     }
 
     @Override
-    public void copyRecurse(CopyState copyState, JTransaction srcTx, JTransaction dstTx,
-      ObjId id, int storageId, int fieldIndex, int[] fields) {
+    public Iterable<?> iterateReferences(Transaction tx, ObjId id, int storageId) {
         assert storageId == this.getElementFieldInfo().storageId;
-        this.copyRecurse(copyState, srcTx, dstTx, srcTx.tx.readListField(id, this.storageId, false), fieldIndex, fields);
+        return tx.readListField(id, this.storageId, false);
     }
 }
 
@@ -41,6 +41,14 @@ class JListFieldScanner<T> extends AbstractFieldScanner<T, JListField> {
             public JField element() {
                 return JFieldScanner.DEFAULT_JFIELD;
             }
+            @Override
+            public boolean sizeCounter() {
+                return false;
+            }
+            @Override
+            public boolean gapped() {
+                return false;
+            }
         };
     }
 
@@ -25,8 +25,8 @@ public class JMapField extends JComplexField {
     final JSimpleField valueField;
 
     JMapField(JSimpleDB jdb, String name, int storageId,
-      JSimpleField keyField, JSimpleField valueField, String description, Method getter) {
-        super(jdb, name, storageId, description, getter);
+      JSimpleField keyField, JSimpleField valueField, boolean sizeCounter, String description, Method getter) {
+        super(jdb, name, storageId, sizeCounter, description, getter);
         if (keyField == null)
             throw new IllegalArgumentException("null keyField");
         if (valueField == null)
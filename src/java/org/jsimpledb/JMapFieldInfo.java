@@ -116,13 +116,12 @@ class JMapFieldInfo extends JComplexFieldInfo {
     }
 
     @Override
-    public void copyRecurse(CopyState copyState, JTransaction srcTx, JTransaction dstTx,
-      ObjId id, int storageId, int fieldIndex, int[] fields) {
-        final NavigableMap<?, ?> map = srcTx.tx.readMapField(id, this.storageId, false);
+    public Iterable<?> iterateReferences(Transaction tx, ObjId id, int storageId) {
+        final NavigableMap<?, ?> map = tx.readMapField(id, this.storageId, false);
         if (storageId == this.getKeyFieldInfo().getStorageId())
-            this.copyRecurse(copyState, srcTx, dstTx, map.keySet(), fieldIndex, fields);
+            return map.keySet();
         else if (storageId == this.getValueFieldInfo().getStorageId())
-            this.copyRecurse(copyState, srcTx, dstTx, map.values(), fieldIndex, fields);
+            return map.values();
         else
             throw new RuntimeException("internal error");
     }
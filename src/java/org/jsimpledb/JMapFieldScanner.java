@@ -47,6 +47,10 @@ class JMapFieldScanner<T> extends AbstractFieldScanner<T, JMapField> {
             public JField value() {
                 return JFieldScanner.DEFAULT_JFIELD;
             }
+            @Override
+            public boolean sizeCounter() {
+                return false;
+            }
         };
     }
 
@@ -18,8 +18,9 @@ import org.objectweb.asm.ClassWriter;
  */
 public class JSetField extends JCollectionField {
 
-    JSetField(JSimpleDB jdb, String name, int storageId, JSimpleField elementField, String description, Method getter) {
-        super(jdb, name, storageId, elementField, description, getter);
+    JSetField(JSimpleDB jdb, String name, int storageId,
+      JSimpleField elementField, boolean sizeCounter, String description, Method getter) {
+        super(jdb, name, storageId, elementField, sizeCounter, description, getter);
     }
 
     @Override
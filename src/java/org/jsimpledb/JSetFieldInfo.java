@@ -76,10 +76,9 @@ class JSetFieldInfo extends JCollectionFieldInfo {
     }
 
     @Override
-    public void copyRecurse(CopyState copyState, JTransaction srcTx, JTransaction dstTx,
-      ObjId id, int storageId, int fieldIndex, int[] fields) {
+    public Iterable<?> iterateReferences(Transaction tx, ObjId id, int storageId) {
         assert storageId == this.getElementFieldInfo().storageId;
-        this.copyRecurse(copyState, srcTx, dstTx, srcTx.tx.readSetField(id, this.storageId, false), fieldIndex, fields);
+        return tx.readSetField(id, this.storageId, false);
     }
 }
 
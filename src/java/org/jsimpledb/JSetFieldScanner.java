@@ -43,6 +43,10 @@ class JSetFieldScanner<T> extends AbstractFieldScanner<T, JSetField> {
             public JField element() {
                 return JFieldScanner.DEFAULT_JFIELD;
             }
+            @Override
+            public boolean sizeCounter() {
+                return false;
+            }
         };
     }
 
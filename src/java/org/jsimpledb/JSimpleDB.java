@@ -293,6 +293,10 @@ public class JSimpleDB {
                     final JSimpleFieldInfo jfieldInfo = (JSimpleFieldInfo)this.jfieldInfos.get(jfield.storageId);
                     indexInfo.getJFieldInfos().add(jfieldInfo);
                 }
+                for (JSimpleField jfield : index.includedJFields) {
+                    final JSimpleFieldInfo jfieldInfo = (JSimpleFieldInfo)this.jfieldInfos.get(jfield.storageId);
+                    indexInfo.getIncludedJFieldInfos().add(jfieldInfo);
+                }
                 this.addJCompositeIndexInfo(index, indexInfo, indexDescriptionMap);
             }
         }
@@ -443,9 +447,33 @@ public class JSimpleDB {
      * @throws IllegalArgumentException if {@code validationMode} is null
      */
     public JTransaction createTransaction(boolean allowNewSchema, ValidationMode validationMode) {
+        return this.createTransaction(allowNewSchema, validationMode, false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * Same as {@link #createTransaction(boolean, ValidationMode)}, except that if {@code readOnly} is true the
+     * transaction is created read-only all the way down to the key/value store, which may then skip tracking
+     * or locking the keys read, possibly at the cost of weaker isolation; see
+     * {@link Database#createTransaction(SchemaModel, int, boolean, boolean)}.
+     * </p>
+     *
+     * @param allowNewSchema whether creating a new schema version is allowed
+     * @param validationMode the {@link ValidationMode} to use for the new transaction
+     * @param readOnly whether the transaction will only read data
+     * @return the newly created transaction
+     * @throws org.jsimpledb.core.InvalidSchemaException if the schema does not match what's recorded in the database;
+     *  see {@link #createTransaction(boolean, ValidationMode)}
+     * @throws org.jsimpledb.core.InconsistentDatabaseException if inconsistent or invalid schema information is detected
+     *  in the database
+     * @throws IllegalArgumentException if {@code validationMode} is null
+     */
+    public JTransaction createTransaction(boolean allowNewSchema, ValidationMode validationMode, boolean readOnly) {
         if (validationMode == null)
             throw new IllegalArgumentException("null validationMode");
-        final Transaction tx = this.db.createTransaction(this.getSchemaModel(), this.configuredVersion, allowNewSchema);
+        final Transaction tx = this.db.createTransaction(this.getSchemaModel(), this.configuredVersion, allowNewSchema, readOnly);
         tx.addCallback(new CleanupCurrentCallback());
         this.actualVersion = tx.getSchemas().getVersions().lastKey();
         return new JTransaction(this, tx, validationMode);
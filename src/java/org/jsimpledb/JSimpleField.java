@@ -189,6 +189,17 @@ public class JSimpleField extends JField {
     @Override
     void outputMethods(final ClassGenerator<?> generator, ClassWriter cw) {
 
+        // Use typed accessors for primitive fields; these need no boxing or converter lookup
+        final Class<?> type = this.getter.getReturnType();
+        if (type.isPrimitive() && type.getName().equals(this.fieldType.getName())) {
+            final Method readMethod = ClassGenerator.READ_PRIMITIVE_FIELD_METHODS.get(type);
+            final Method writeMethod = ClassGenerator.WRITE_PRIMITIVE_FIELD_METHODS.get(type);
+            if (readMethod != null && writeMethod != null) {
+                this.outputPrimitiveMethods(generator, cw, readMethod, writeMethod);
+                return;
+            }
+        }
+
         // Getter
         this.outputReadMethod(generator, cw, ClassGenerator.READ_SIMPLE_FIELD_METHOD);
 
@@ -215,6 +226,39 @@ public class JSimpleField extends JField {
         });
     }
 
+    private void outputPrimitiveMethods(final ClassGenerator<?> generator, ClassWriter cw,
+      final Method readMethod, final Method writeMethod) {
+
+        // Getter
+        generator.overrideBeanMethod(cw, this.getter, this.storageId, new ClassGenerator.CodeEmitter() {
+            @Override
+            public void emit(MethodVisitor mv) {
+
+                // Push "true"
+                mv.visitInsn(Opcodes.ICONST_1);
+
+                // Invoke JTransaction.readXXXField()
+                generator.emitInvoke(mv, readMethod);
+            }
+        });
+
+        // Setter
+        generator.overrideBeanMethod(cw, this.setter, this.storageId, new ClassGenerator.CodeEmitter() {
+            @Override
+            public void emit(MethodVisitor mv) {
+
+                // Push field value
+                mv.visitVarInsn(Type.getType(JSimpleField.this.getter.getReturnType()).getOpcode(Opcodes.ILOAD), 1);
+
+                // Push "true"
+                mv.visitInsn(Opcodes.ICONST_1);
+
+                // Invoke JTransaction.writeXXXField()
+                generator.emitInvoke(mv, writeMethod);
+            }
+        });
+    }
+
     @Override
     final JSimpleFieldInfo toJFieldInfo() {
         return this.toJFieldInfo(0);
@@ -63,6 +63,7 @@ import org.jsimpledb.index.Index3;
 import org.jsimpledb.index.Index4;
 import org.jsimpledb.kv.KeyRanges;
 import org.jsimpledb.kv.util.AbstractKVNavigableSet;
+import org.jsimpledb.tuple.Tuple;
 import org.jsimpledb.util.ConvertedNavigableMap;
 import org.jsimpledb.util.ConvertedNavigableSet;
 import org.jsimpledb.util.ObjIdSet;
@@ -125,6 +126,8 @@ import org.slf4j.LoggerFactory;
  *  <li>{@link #queryCompositeIndex(Class, String, Class, Class, Class, Class) queryCompositeIndex()}
  *      - Access a composite index defined on four fields</li>
  *  <!-- COMPOSITE-INDEX -->
+ *  <li>{@link #queryCompositeIndexIncludes queryCompositeIndexIncludes()}
+ *      - Access a composite index along with the values of its included fields</li>
  * </ul>
  *
  * <p>
@@ -164,6 +167,8 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *  <li>{@link #readSimpleField readSimpleField()} - Read the value of a simple field</li>
  *  <li>{@link #writeSimpleField writeSimpleField()} - Write the value of a simple field</li>
+ *  <li>{@link #readIntField readIntField()}, {@link #writeIntField writeIntField()}, etc.
+ *      - Read and write the value of a primitive simple field</li>
  *  <li>{@link #readCounterField readCounterField()} - Access a {@link Counter} field</li>
  *  <li>{@link #readSetField readSetField()} - Access a set field</li>
  *  <li>{@link #readListField readListField()} - Access a list field</li>
@@ -171,6 +176,14 @@ import org.slf4j.LoggerFactory;
  * </ul>
  *
  * <p>
+ * Simple fields of primitive type {@code int}, {@code long}, {@code double}, and {@code boolean} are never converted,
+ * so generated getter and setter methods for those fields use the {@code read*Field()} and {@code write*Field()} methods
+ * specific to their type, which skip the converter lookup performed by {@link #readSimpleField readSimpleField()} and
+ * {@link #writeSimpleField writeSimpleField()}, and on reads also avoid boxing the value. These methods otherwise behave
+ * the same as, and throw the same exceptions as, their generic counterparts.
+ * </p>
+ *
+ * <p>
  * <b>{@link JObject} Methods</b>
  * <ul>
  *  <li>{@link #delete delete()} - Delete an object from this transaction</li>
@@ -337,6 +350,30 @@ public class JTransaction {
         return new ConvertedNavigableSet<T, ObjId>(ids, new ReferenceConverter<T>(this, type));
     }
 
+    /**
+     * Count all instances of the given type.
+     *
+     * <p>
+     * This returns the same value as {@code getAll(type).size()}, but if the database
+     * {@linkplain Transaction#hasStatistics maintains statistics}, it takes time proportional
+     * to the number of Java model classes that are sub-types of {@code type}, instead of the number of instances.
+     * </p>
+     *
+     * @param type any Java type; use {@link Object Object.class} to count all database objects
+     * @return number of instances of {@code type}
+     * @throws IllegalArgumentException if {@code type} is null
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @see Transaction#countObjects Transaction.countObjects()
+     */
+    public long countAll(Class<?> type) {
+        if (type == null)
+            throw new IllegalArgumentException("null type");
+        long count = 0;
+        for (JClass<?> jclass : this.jdb.getJClasses(type))
+            count += this.tx.countObjects(jclass.storageId);
+        return count;
+    }
+
     /**
      * Get all instances of the given type, grouped according to schema version.
      *
@@ -543,16 +580,22 @@ public class JTransaction {
             }
         }
 
+        // Queue up objects found along the reference paths
+        final CopyContext context = new CopyContext(copyState, dest);
+
         // Ensure object is copied even when there are zero reference paths
         if (paths.isEmpty())
-            this.copyTo(copyState, dest, srcId, dstId, true, 0, new int[0]);
+            this.copyTo(context, srcId, dstId, true, 0, new int[0]);
 
         // Recurse over each reference path
         for (ReferencePath path : paths) {
-            this.copyTo(copyState, dest, srcId, dstId, false/*doesn't matter*/,
+            this.copyTo(context, srcId, dstId, false/*doesn't matter*/,
               0, Ints.concat(path.getReferenceFields(), new int[] { path.getTargetField() }));
         }
 
+        // Copy queued objects in bulk
+        this.copyPending(context);
+
         // Done
         return dest.getJObject(dstId);
     }
@@ -615,7 +658,8 @@ public class JTransaction {
         if (this.tx == dest.tx)
             return;
 
-        // Copy objects
+        // Queue up objects
+        final CopyContext context = new CopyContext(copyState, dest);
         for (JObject jobj : jobjs) {
 
             // Get next object
@@ -625,22 +669,39 @@ public class JTransaction {
             // Handle possible re-entrant object cache load
             jobj.getTransaction().getJObjectCache().registerJObject(jobj);
 
-            // Copy object
+            // Queue object
             final ObjId id = jobj.getObjId();
-            this.copyTo(copyState, dest, id, id, true, 0, new int[0]);
+            this.copyTo(context, id, id, true, 0, new int[0]);
         }
+
+        // Copy queued objects in bulk
+        this.copyPending(context);
     }
 
-    void copyTo(CopyState copyState, JTransaction dest, ObjId srcId, ObjId dstId, boolean required, int fieldIndex, int[] fields) {
+    // Copy objects queued by copyTo(), then mark them as copied
+    private void copyPending(CopyContext context) {
+        this.tx.copy(context.pending, context.dest.tx, true);
+        for (ObjId id : context.pending)
+            context.copyState.markCopied(id);
+    }
 
-        // Copy current instance unless already copied, upgrading it in the process
-        if (copyState.markCopied(dstId)) {
-            try {
+    private void copyTo(CopyContext context, ObjId srcId, ObjId dstId, boolean required, int fieldIndex, int[] fields) {
+
+        // Copy current instance unless already copied, upgrading it in the process; if possible, queue it for bulk copy
+        final CopyState copyState = context.copyState;
+        final JTransaction dest = context.dest;
+        try {
+            if (srcId.equals(dstId)) {
+                if (!copyState.isCopied(srcId) && !context.pending.contains(srcId)) {
+                    if (this.tx != dest.tx && this.tx.getSchemaVersion(srcId) != this.tx.getSchema().getVersionNumber())
+                        this.tx.updateSchemaVersion(srcId);
+                    context.pending.add(srcId);
+                }
+            } else if (copyState.markCopied(dstId))
                 this.tx.copy(srcId, dstId, dest.tx, true);
-            } catch (DeletedObjectException e) {
-                if (required)
-                    throw e;
-            }
+        } catch (DeletedObjectException e) {
+            if (required)
+                throw e;
         }
 
         // Any more fields to traverse?
@@ -658,12 +719,17 @@ public class JTransaction {
         final int parentStorageId = referenceFieldInfo.getParentStorageId();
         if (parentStorageId != 0) {
             final JComplexFieldInfo parentInfo = this.jdb.getJFieldInfo(parentStorageId, JComplexFieldInfo.class);
-            parentInfo.copyRecurse(copyState, this, dest, srcId, storageId, fieldIndex, fields);
+            for (Object obj : parentInfo.iterateReferences(this.tx, srcId, storageId)) {
+                if (obj != null) {
+                    final ObjId id = (ObjId)obj;
+                    this.copyTo(context, id, id, false, fieldIndex, fields);
+                }
+            }
         } else {
             assert referenceFieldInfo instanceof JReferenceFieldInfo;
             final ObjId referrent = (ObjId)this.tx.readSimpleField(srcId, storageId, false);
             if (referrent != null)
-                this.copyTo(copyState, dest, referrent, referrent, false, fieldIndex, fields);
+                this.copyTo(context, referrent, referrent, false, fieldIndex, fields);
         }
     }
 
@@ -948,6 +1014,62 @@ public class JTransaction {
           this.tx.readSimpleField(jobj.getObjId(), storageId, updateVersion));
     }
 
+    /**
+     * Read a primitive {@code int} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field does not have type {@code int}
+     * @see #readSimpleField readSimpleField()
+     */
+    public int readIntField(JObject jobj, int storageId, boolean updateVersion) {
+        return this.tx.readIntField(jobj.getObjId(), storageId, updateVersion);
+    }
+
+    /**
+     * Read a primitive {@code long} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field does not have type {@code long}
+     * @see #readSimpleField readSimpleField()
+     */
+    public long readLongField(JObject jobj, int storageId, boolean updateVersion) {
+        return this.tx.readLongField(jobj.getObjId(), storageId, updateVersion);
+    }
+
+    /**
+     * Read a primitive {@code double} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field does not have type {@code double}
+     * @see #readSimpleField readSimpleField()
+     */
+    public double readDoubleField(JObject jobj, int storageId, boolean updateVersion) {
+        return this.tx.readDoubleField(jobj.getObjId(), storageId, updateVersion);
+    }
+
+    /**
+     * Read a primitive {@code boolean} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field does not have type {@code boolean}
+     * @see #readSimpleField readSimpleField()
+     */
+    public boolean readBooleanField(JObject jobj, int storageId, boolean updateVersion) {
+        return this.tx.readBooleanField(jobj.getObjId(), storageId, updateVersion);
+    }
+
     /**
      * Write a simple field. This writes the value via {@link Transaction#writeSimpleField Transaction.writeSimpleField()}
      * after converting {@link JObject}s into {@link ObjId}s, etc.
@@ -979,6 +1101,66 @@ public class JTransaction {
         this.tx.writeSimpleField(jobj.getObjId(), storageId, value, updateVersion);
     }
 
+    /**
+     * Write a primitive {@code int} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @throws IllegalArgumentException if the field does not have type {@code int}
+     * @see #writeSimpleField writeSimpleField()
+     */
+    public void writeIntField(JObject jobj, int storageId, int value, boolean updateVersion) {
+        jobj.getTransaction().getJObjectCache().registerJObject(jobj);              // handle possible re-entrant object cache load
+        this.tx.writeSimpleField(jobj.getObjId(), storageId, value, updateVersion);
+    }
+
+    /**
+     * Write a primitive {@code long} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @throws IllegalArgumentException if the field does not have type {@code long}
+     * @see #writeSimpleField writeSimpleField()
+     */
+    public void writeLongField(JObject jobj, int storageId, long value, boolean updateVersion) {
+        jobj.getTransaction().getJObjectCache().registerJObject(jobj);              // handle possible re-entrant object cache load
+        this.tx.writeSimpleField(jobj.getObjId(), storageId, value, updateVersion);
+    }
+
+    /**
+     * Write a primitive {@code double} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @throws IllegalArgumentException if the field does not have type {@code double}
+     * @see #writeSimpleField writeSimpleField()
+     */
+    public void writeDoubleField(JObject jobj, int storageId, double value, boolean updateVersion) {
+        jobj.getTransaction().getJObjectCache().registerJObject(jobj);              // handle possible re-entrant object cache load
+        this.tx.writeSimpleField(jobj.getObjId(), storageId, value, updateVersion);
+    }
+
+    /**
+     * Write a primitive {@code boolean} simple field.
+     *
+     * @param jobj object containing the field
+     * @param storageId storage ID of the {@link JSimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @throws IllegalArgumentException if the field does not have type {@code boolean}
+     * @see #writeSimpleField writeSimpleField()
+     */
+    public void writeBooleanField(JObject jobj, int storageId, boolean value, boolean updateVersion) {
+        jobj.getTransaction().getJObjectCache().registerJObject(jobj);              // handle possible re-entrant object cache load
+        this.tx.writeSimpleField(jobj.getObjId(), storageId, value, updateVersion);
+    }
+
     /**
      * Read a counter field.
      *
@@ -1089,7 +1271,8 @@ public class JTransaction {
      * @param path dot-separated path of one or more reference fields
      * @param targetObjects target objects
      * @param <T> starting Java type
-     * @return set of objects that refer to any of the {@code targetObjects} via the {@code path} from {@code startType}
+     * @return read-only snapshot of the set of objects that refer to any of the {@code targetObjects} via the {@code path}
+     *  from {@code startType}; it does not reflect subsequent changes
      * @throws UnknownFieldException if {@code path} contains an unknown field
      * @throws IllegalArgumentException if {@code path} is invalid, e.g., does not end on a reference field
      * @throws IllegalArgumentException if any parameter is null
@@ -1278,6 +1461,74 @@ public class JTransaction {
 
     // COMPOSITE-INDEX
 
+    /**
+     * Access a composite index along with the values of its {@linkplain JCompositeIndex#getIncludedJFields included fields}.
+     *
+     * <p>
+     * The returned map's keys are the index entries, i.e., tuples consisting of the indexed field values followed by
+     * the object (e.g., a {@link org.jsimpledb.tuple.Tuple3} for an index on two fields), and its values are the
+     * corresponding included field values, in order. The included field values are read from the index itself,
+     * so iterating the map requires a single key range scan; in particular, no objects are loaded.
+     * </p>
+     *
+     * <p>
+     * Unlike {@link #queryCompositeIndex(Class, String, Class, Class) queryCompositeIndex()}, {@code targetType}
+     * is only used to find the index; the returned map contains every object in the index.
+     * </p>
+     *
+     * @param targetType type containing the indexed fields; may also be any super-type (e.g., an interface type)
+     * @param indexName the name of the composite index
+     * @return read-only, real-time view of the index entries and the corresponding included field values
+     * @throws IllegalArgumentException if any parameter is null, or invalid
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @see Transaction#queryCompositeIndexIncludes Transaction.queryCompositeIndexIncludes()
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public NavigableMap<Tuple, List<Object>> queryCompositeIndexIncludes(Class<?> targetType, String indexName) {
+
+        // Sanity check
+        if (targetType == null)
+            throw new IllegalArgumentException("null targetType");
+        if (indexName == null)
+            throw new IllegalArgumentException("null indexName");
+
+        // Find index
+        final JCompositeIndexInfo indexInfo = IndexInfo.findCompositeIndex(this.jdb, targetType, indexName);
+
+        // Build key converter
+        final Converter<JObject, ObjId> targetConverter = new ReferenceConverter<JObject>(this, JObject.class);
+        final Converter<?, ?> keyConverter;
+        switch (indexInfo.jfieldInfos.size()) {
+        case 2:
+            keyConverter = new Tuple3Converter(this.getReverseConverter(indexInfo.jfieldInfos.get(0)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(1)), targetConverter);
+            break;
+        case 3:
+            keyConverter = new Tuple4Converter(this.getReverseConverter(indexInfo.jfieldInfos.get(0)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(1)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(2)), targetConverter);
+            break;
+        case 4:
+            keyConverter = new Tuple5Converter(this.getReverseConverter(indexInfo.jfieldInfos.get(0)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(1)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(2)),
+              this.getReverseConverter(indexInfo.jfieldInfos.get(3)), targetConverter);
+            break;
+        // COMPOSITE-INDEX
+        default:
+            throw new RuntimeException("internal error");
+        }
+
+        // Build included values converter
+        final ArrayList<Converter<?, ?>> includedConverters = new ArrayList<>(indexInfo.includedJFieldInfos.size());
+        for (JSimpleFieldInfo jfieldInfo : indexInfo.includedJFieldInfos)
+            includedConverters.add(this.getReverseConverter(jfieldInfo));
+
+        // Build map
+        return new ConvertedNavigableMap(this.tx.queryCompositeIndexIncludes(indexInfo.storageId),
+          keyConverter, new IncludedValuesConverter(includedConverters));
+    }
+
     /**
      * Query an index by storage ID. For storage ID's corresponding to simple fields, this method returns an
      * {@link Index}, except for list element and map value fields, for which an {@link Index2} is returned.
@@ -1429,6 +1680,21 @@ public class JTransaction {
         }
     }
 
+// CopyContext
+
+    // State of a single copyTo() operation; objects whose ID is not remapped are queued for bulk copying
+    private static final class CopyContext {
+
+        final CopyState copyState;
+        final JTransaction dest;
+        final ObjIdSet pending = new ObjIdSet();
+
+        CopyContext(CopyState copyState, JTransaction dest) {
+            this.copyState = copyState;
+            this.dest = dest;
+        }
+    }
+
 // Transaction Lifecycle
 
     /**
@@ -1460,8 +1726,9 @@ public class JTransaction {
             this.commitInvoked = true;
         }
 
-        // Do validation
+        // Deliver deferred change notifications, which could trigger further changes, then do validation
         try {
+            this.tx.flushNotifications();
             this.validate();
         } catch (ValidationException e) {
             this.tx.rollback();
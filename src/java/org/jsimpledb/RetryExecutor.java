@@ -0,0 +1,437 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsimpledb.kv.RetryTransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repeatedly invokes a transactional operation as long as it fails with a {@link RetryTransactionException},
+ * pausing for a jittered, exponentially increasing delay between attempts.
+ *
+ * <p>
+ * The delay before retry number <i>n</i> (starting at one) is
+ * {@code min(maxDelay, initialDelay * multiplier}<sup><i>n</i> - 1</sup>{@code )}, reduced by a random fraction
+ * of up to {@code jitter} to keep contending clients from retrying in lockstep. After {@code maxAttempts} failed
+ * attempts, the last {@link RetryTransactionException} is thrown to the caller. Exceptions that are not caused
+ * by a {@link RetryTransactionException} are never retried.
+ * </p>
+ *
+ * <p>
+ * Retrying only makes sense at the outermost transaction boundary: the operation must create (and commit)
+ * its own transaction on each attempt, as {@link #transact transact()} does. See also
+ * {@link Session#setRetryExecutor Session.setRetryExecutor()} and
+ * {@link org.jsimpledb.spring.RetryTransactionInterceptor}.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe once configured; per-attempt statistics are accumulated across all threads.
+ * </p>
+ */
+public class RetryExecutor {
+
+    /**
+     * Default maximum number of attempts ({@value #DEFAULT_MAX_ATTEMPTS}).
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * Default delay before the first retry in milliseconds ({@value #DEFAULT_INITIAL_DELAY}).
+     */
+    public static final long DEFAULT_INITIAL_DELAY = 10;
+
+    /**
+     * Default maximum delay between attempts in milliseconds ({@value #DEFAULT_MAX_DELAY}).
+     */
+    public static final long DEFAULT_MAX_DELAY = 1000;
+
+    /**
+     * Default delay multiplier ({@value #DEFAULT_MULTIPLIER}).
+     */
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    /**
+     * Default jitter ({@value #DEFAULT_JITTER}).
+     */
+    public static final double DEFAULT_JITTER = 0.5;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalDelay = new AtomicLong();
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialDelay = DEFAULT_INITIAL_DELAY;
+    private long maxDelay = DEFAULT_MAX_DELAY;
+    private double multiplier = DEFAULT_MULTIPLIER;
+    private double jitter = DEFAULT_JITTER;
+
+// Configuration
+
+    /**
+     * Get the maximum number of attempts, including the first one.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_MAX_ATTEMPTS}.
+     * </p>
+     *
+     * @return maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Set the maximum number of attempts, including the first one.
+     *
+     * @param maxAttempts maximum number of attempts
+     * @throws IllegalArgumentException if {@code maxAttempts} is less than one
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts < 1");
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Get the delay before the first retry in milliseconds, prior to applying jitter.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_INITIAL_DELAY}.
+     * </p>
+     *
+     * @return initial delay in milliseconds
+     */
+    public long getInitialDelay() {
+        return this.initialDelay;
+    }
+
+    /**
+     * Set the delay before the first retry in milliseconds, prior to applying jitter.
+     *
+     * @param initialDelay initial delay in milliseconds
+     * @throws IllegalArgumentException if {@code initialDelay} is negative
+     */
+    public void setInitialDelay(long initialDelay) {
+        if (initialDelay < 0)
+            throw new IllegalArgumentException("initialDelay < 0");
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * Get the maximum delay between attempts in milliseconds, prior to applying jitter.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_MAX_DELAY}.
+     * </p>
+     *
+     * @return maximum delay in milliseconds
+     */
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    /**
+     * Set the maximum delay between attempts in milliseconds, prior to applying jitter.
+     *
+     * @param maxDelay maximum delay in milliseconds
+     * @throws IllegalArgumentException if {@code maxDelay} is negative
+     */
+    public void setMaxDelay(long maxDelay) {
+        if (maxDelay < 0)
+            throw new IllegalArgumentException("maxDelay < 0");
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Get the factor by which the delay increases after each retry.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_MULTIPLIER}.
+     * </p>
+     *
+     * @return delay multiplier
+     */
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    /**
+     * Set the factor by which the delay increases after each retry.
+     *
+     * @param multiplier delay multiplier
+     * @throws IllegalArgumentException if {@code multiplier} is less than 1.0
+     */
+    public void setMultiplier(double multiplier) {
+        if (!(multiplier >= 1.0))
+            throw new IllegalArgumentException("multiplier < 1.0");
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Get the jitter, i.e., the maximum fraction by which each delay is randomly reduced.
+     * A value of zero means no jitter; a value of 1.0 means each delay is chosen uniformly
+     * between zero and its nominal value.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_JITTER}.
+     * </p>
+     *
+     * @return jitter fraction
+     */
+    public double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * Set the jitter, i.e., the maximum fraction by which each delay is randomly reduced.
+     *
+     * @param jitter jitter fraction
+     * @throws IllegalArgumentException if {@code jitter} is not between 0.0 and 1.0
+     */
+    public void setJitter(double jitter) {
+        if (!(jitter >= 0.0 && jitter <= 1.0))
+            throw new IllegalArgumentException("invalid jitter " + jitter);
+        this.jitter = jitter;
+    }
+
+// Statistics
+
+    /**
+     * Get the number of operations invoked via this instance.
+     *
+     * @return number of operations
+     */
+    public long getInvocations() {
+        return this.invocations.get();
+    }
+
+    /**
+     * Get the total number of attempts made, including first attempts.
+     *
+     * @return number of attempts
+     */
+    public long getAttempts() {
+        return this.attempts.get();
+    }
+
+    /**
+     * Get the number of attempts that failed with a {@link RetryTransactionException} and were retried.
+     *
+     * @return number of retries
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * Get the number of operations that failed because {@linkplain #getMaxAttempts all attempts} were used up.
+     *
+     * @return number of retry failures
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Get the total time spent waiting between attempts in milliseconds.
+     *
+     * @return total delay in milliseconds
+     */
+    public long getTotalDelay() {
+        return this.totalDelay.get();
+    }
+
+    /**
+     * Reset all statistics to zero.
+     */
+    public void resetStatistics() {
+        this.invocations.set(0);
+        this.attempts.set(0);
+        this.retries.set(0);
+        this.failures.set(0);
+        this.totalDelay.set(0);
+    }
+
+// Execution
+
+    /**
+     * Invoke the given operation, retrying as long as it fails with a {@link RetryTransactionException}.
+     *
+     * <p>
+     * The operation is responsible for creating and completing its own transaction on each attempt.
+     * </p>
+     *
+     * @param operation operation to invoke
+     * @param <T> operation result type
+     * @return result from the first successful attempt
+     * @throws Exception the exception thrown by the last attempt, if none succeeded
+     * @throws IllegalArgumentException if {@code operation} is null
+     */
+    public <T> T call(Callable<T> operation) throws Exception {
+        if (operation == null)
+            throw new IllegalArgumentException("null operation");
+        this.invocations.incrementAndGet();
+        for (int attempt = 1; true; attempt++) {
+            this.attempts.incrementAndGet();
+            try {
+                return operation.call();
+            } catch (Exception e) {
+                final RetryTransactionException retry = this.getRetryTransactionException(e);
+                if (retry == null)
+                    throw e;
+                if (attempt >= this.maxAttempts) {
+                    this.failures.incrementAndGet();
+                    this.log.debug("giving up after " + attempt + " attempt(s) due to " + retry);
+                    throw e;
+                }
+                final long delay = this.calculateDelay(attempt);
+                this.retries.incrementAndGet();
+                this.retrying(attempt, delay, retry);
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e2) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                    this.totalDelay.addAndGet(delay);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoke the given operation within a new {@link JTransaction}, retrying as long as it fails
+     * with a {@link RetryTransactionException}.
+     *
+     * <p>
+     * On each attempt a new transaction is created via {@link JSimpleDB#createTransaction(boolean, ValidationMode)},
+     * associated with the current thread while {@code operation} runs, and then committed. If {@code operation} throws
+     * an exception, the transaction is rolled back instead.
+     * </p>
+     *
+     * @param jdb database
+     * @param allowNewSchema whether creating a new schema version is allowed
+     * @param validationMode the {@link ValidationMode} to use for each transaction
+     * @param operation operation to invoke
+     * @param <T> operation result type
+     * @return result from the first successful attempt
+     * @throws Exception the exception thrown by the last attempt, if none succeeded
+     * @throws IllegalStateException if there is already a {@link JTransaction} associated with the current thread
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public <T> T transact(final JSimpleDB jdb, final boolean allowNewSchema,
+      final ValidationMode validationMode, final Callable<T> operation) throws Exception {
+
+        // Sanity check
+        if (jdb == null)
+            throw new IllegalArgumentException("null jdb");
+        if (validationMode == null)
+            throw new IllegalArgumentException("null validationMode");
+        if (operation == null)
+            throw new IllegalArgumentException("null operation");
+        boolean haveCurrent = true;
+        try {
+            JTransaction.getCurrent();
+        } catch (IllegalStateException e) {
+            haveCurrent = false;
+        }
+        if (haveCurrent)
+            throw new IllegalStateException("a JSimpleDB transaction is already open in the current thread");
+
+        // Invoke in a new transaction on each attempt
+        return this.call(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final JTransaction jtx = jdb.createTransaction(allowNewSchema, validationMode);
+                JTransaction.setCurrent(jtx);
+                try {
+                    final T result;
+                    try {
+                        result = operation.call();
+                    } catch (Exception e) {
+                        RetryExecutor.rollbackQuietly(jtx);
+                        throw e;
+                    } catch (Error e) {
+                        RetryExecutor.rollbackQuietly(jtx);
+                        throw e;
+                    }
+                    jtx.commit();
+                    return result;
+                } finally {
+                    JTransaction.setCurrent(null);
+                }
+            }
+        });
+    }
+
+// Subclass hooks
+
+    /**
+     * Find the {@link RetryTransactionException}, if any, that caused the given exception.
+     *
+     * <p>
+     * The implementation in {@link RetryExecutor} searches the cause chain of {@code e}, which finds retry
+     * exceptions that have been wrapped, e.g., by {@link org.jsimpledb.spring.JSimpleDBTransactionManager}.
+     * </p>
+     *
+     * @param e exception thrown by an attempt
+     * @return the retry exception that caused {@code e}, or null if {@code e} should not be retried
+     */
+    protected RetryTransactionException getRetryTransactionException(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof RetryTransactionException)
+                return (RetryTransactionException)t;
+        }
+        return null;
+    }
+
+    /**
+     * Calculate the delay before the next attempt.
+     *
+     * @param attempt the number of the attempt that just failed, starting at one
+     * @return delay in milliseconds
+     */
+    protected long calculateDelay(int attempt) {
+        final double nominal = Math.min(this.maxDelay, this.initialDelay * Math.pow(this.multiplier, attempt - 1));
+        return Math.round(nominal * (1.0 - this.jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Invoked after an attempt fails with a {@link RetryTransactionException}, just before pausing for the next attempt.
+     *
+     * <p>
+     * The implementation in {@link RetryExecutor} logs a debug message. Subclasses may override to record metrics.
+     * </p>
+     *
+     * @param attempt the number of the attempt that just failed, starting at one
+     * @param delay delay before the next attempt in milliseconds
+     * @param e the exception that caused the attempt to fail
+     */
+    protected void retrying(int attempt, long delay, RetryTransactionException e) {
+        if (this.log.isDebugEnabled())
+            this.log.debug("retrying after attempt #" + attempt + " failed (delay " + delay + "ms): " + e);
+    }
+
+    private static void rollbackQuietly(JTransaction jtx) {
+        try {
+            jtx.rollback();
+        } catch (RuntimeException e) {
+            // ignore
+        }
+    }
+}
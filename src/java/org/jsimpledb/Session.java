@@ -7,6 +7,8 @@
 
 package org.jsimpledb;
 
+import java.util.concurrent.Callable;
+
 import org.jsimpledb.core.Database;
 import org.jsimpledb.core.Schema;
 import org.jsimpledb.core.Transaction;
@@ -43,6 +45,7 @@ public class Session {
     private int schemaVersion;
     private boolean allowNewSchema;
     private boolean readOnly;
+    private RetryExecutor retryExecutor;
 
 // Constructors
 
@@ -204,6 +207,25 @@ public class Session {
         this.readOnly = readOnly;
     }
 
+    /**
+     * Get the {@link RetryExecutor} used to retry transactions created by {@link #perform perform()}
+     * that fail with a {@link org.jsimpledb.kv.RetryTransactionException}.
+     * Default value is null, meaning such transactions are not retried.
+     *
+     * <p>
+     * Only transactions created by {@link #perform perform()} itself are retried; when the action runs within
+     * an existing transaction, retrying is left to whoever created that transaction.
+     * </p>
+     *
+     * @return retry executor for new transactions, or null for none
+     */
+    public RetryExecutor getRetryExecutor() {
+        return this.retryExecutor;
+    }
+    public void setRetryExecutor(RetryExecutor retryExecutor) {
+        this.retryExecutor = retryExecutor;
+    }
+
 // Errors
 
     /**
@@ -250,6 +272,12 @@ public class Session {
      * and then false returned.
      * </p>
      *
+     * <p>
+     * If a new transaction is created and a {@linkplain #setRetryExecutor retry executor} is configured, then whenever the
+     * transaction fails with a {@link org.jsimpledb.kv.RetryTransactionException}, {@code action} is invoked again within
+     * a new transaction, as permitted by the executor.
+     * </p>
+     *
      * @param tx transaction in which to perform the action, or null to create a new one (if necessary)
      * @param action action to perform
      * @return true if {@code action} completed successfully, false if the transaction could not be created
@@ -282,24 +310,24 @@ public class Session {
                     newTransaction = false;
                 }
             }
-            if (newTransaction) {
-                if (!this.openTransaction())
-                    return false;
-            } else if (this.tx == null)
-                this.tx = tx;
-            boolean success = false;
-            try {
+            if (!newTransaction) {
+                if (this.tx == null)
+                    this.tx = tx;
                 action.run(this);
-                success = true;
-            } finally {
-                if (newTransaction && this.tx != null) {
-                    if (success)
-                        success = this.commitTransaction();
-                    else
-                        this.rollbackTransaction();
-                }
+                return true;
+            }
+            if (this.retryExecutor == null)
+                this.performInNewTransaction(action);
+            else {
+                this.retryExecutor.call(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Session.this.performInNewTransaction(action);
+                        return null;
+                    }
+                });
             }
-            return success;
+            return true;
         } catch (Exception e) {
             this.reportException(e);
             return false;
@@ -308,32 +336,44 @@ public class Session {
         }
     }
 
-    private boolean openTransaction() {
+    private void performInNewTransaction(Action action) throws Exception {
+        this.openTransaction();
+        boolean success = false;
+        try {
+            action.run(this);
+            success = true;
+        } finally {
+            if (!success && this.tx != null)
+                this.rollbackTransaction();
+        }
+        if (this.tx != null)
+            this.commitTransaction();
+    }
+
+    private void openTransaction() {
+        if (this.tx != null)
+            throw new IllegalStateException("a transaction is already open in this session");
+        if (this.jdb != null) {
+            if (this.getCurrentJTransaction() != null)
+                throw new IllegalStateException("a JSimpleDB transaction is already open in the current thread");
+            final JTransaction jtx = this.jdb.createTransaction(this.allowNewSchema,
+              validationMode != null ? validationMode : ValidationMode.AUTOMATIC);
+            JTransaction.setCurrent(jtx);
+            this.tx = jtx.getTransaction();
+        } else
+            this.tx = this.db.createTransaction(this.schemaModel, this.schemaVersion, this.allowNewSchema);
         try {
-            if (this.tx != null)
-                throw new IllegalStateException("a transaction is already open in this session");
-            if (this.jdb != null) {
-                if (this.getCurrentJTransaction() != null)
-                    throw new IllegalStateException("a JSimpleDB transaction is already open in the current thread");
-                final JTransaction jtx = this.jdb.createTransaction(this.allowNewSchema,
-                  validationMode != null ? validationMode : ValidationMode.AUTOMATIC);
-                JTransaction.setCurrent(jtx);
-                this.tx = jtx.getTransaction();
-            } else
-                this.tx = this.db.createTransaction(this.schemaModel, this.schemaVersion, this.allowNewSchema);
             final Schema schema = this.tx.getSchema();
             this.setSchemaModel(schema.getSchemaModel());
             this.setSchemaVersion(schema.getVersionNumber());
             this.tx.setReadOnly(this.readOnly);
-            return true;
-        } catch (Exception e) {
-            this.tx = null;
-            this.reportException(e);
-            return false;
+        } catch (RuntimeException e) {
+            this.rollbackTransaction();
+            throw e;
         }
     }
 
-    private boolean commitTransaction() {
+    private void commitTransaction() {
         try {
             if (this.tx == null)
                 throw new IllegalStateException("no transaction");
@@ -341,10 +381,6 @@ public class Session {
                 JTransaction.getCurrent().commit();
             else
                 this.tx.commit();
-            return true;
-        } catch (Exception e) {
-            this.reportException(e);
-            return false;
         } finally {
             this.tx = null;
             if (this.jdb != null)
@@ -352,7 +388,7 @@ public class Session {
         }
     }
 
-    private boolean rollbackTransaction() {
+    private void rollbackTransaction() {
         try {
             if (this.tx == null)
                 throw new IllegalStateException("no transaction");
@@ -360,10 +396,8 @@ public class Session {
                 JTransaction.getCurrent().rollback();
             else
                 this.tx.rollback();
-            return true;
         } catch (Exception e) {
             this.reportException(e);
-            return false;
         } finally {
             this.tx = null;
             if (this.jdb != null)
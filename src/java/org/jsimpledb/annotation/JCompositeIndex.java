@@ -50,5 +50,19 @@ public @interface JCompositeIndex {
      * @return the names of the indexed fields
      */
     String[] fields();
+
+    /**
+     * The names of additional, non-indexed fields whose values should be stored in the index entries, in the desired order.
+     *
+     * <p>
+     * Queries that need these fields' values can then read them directly from the index, instead of reading them
+     * from each matching object (see {@link org.jsimpledb.JTransaction#queryCompositeIndexIncludes
+     * JTransaction.queryCompositeIndexIncludes()}), at the cost of rewriting the index entry whenever an included
+     * field changes, which requires reading all of the object's indexed and included fields. Included fields must be simple fields and must not also be indexed fields of this index.
+     * </p>
+     *
+     * @return the names of the included fields
+     */
+    String[] include() default {};
 }
 
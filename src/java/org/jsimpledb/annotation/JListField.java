@@ -23,7 +23,8 @@ import java.lang.annotation.Target;
  * <p>
  * List fields have a "random access" performance profile similar to an {@link java.util.ArrayList}. In particular,
  * {@link java.util.List#get List.get()} and {@link java.util.List#size List.size()} are constant time, but an insertion
- * in the middle of the list requires shifting all subsequent values by one.
+ * in the middle of the list requires shifting all subsequent values by one. Lists that are frequently modified
+ * in the middle, or that are mostly iterated rather than indexed, can use the {@linkplain #gapped gapped encoding} instead.
  * </p>
  *
  * <p>
@@ -64,5 +65,45 @@ public @interface JListField {
      * @return the list element field
      */
     JField element() default @JField();
+
+    /**
+     * Whether to maintain a count of the elements in this field.
+     *
+     * <p>
+     * When enabled, {@code size()} and {@code isEmpty()} only need to read a single counter instead of seeking to the last element.
+     * The counter is updated using {@link org.jsimpledb.kv.KVStore#adjustCounter KVStore.adjustCounter()}, so it does
+     * not cause conflicts between concurrent transactions. The cost is one additional write per addition or removal.
+     * </p>
+     *
+     * <p>
+     * This setting is part of the field's storage layout, so changing it requires a new {@link #storageId}.
+     * Lists using the {@linkplain #gapped gapped encoding} always maintain a size counter.
+     * </p>
+     *
+     * @return whether the field maintains a size counter
+     * @see org.jsimpledb.schema.ComplexSchemaField#isSizeCounter
+     */
+    boolean sizeCounter() default false;
+
+    /**
+     * Whether to use the gapped encoding for this field.
+     *
+     * <p>
+     * In the gapped encoding, list elements are stored under sparse, increasing positions and the list size is
+     * maintained in a counter. Insertions and removals anywhere in the list only touch the affected elements
+     * (plus an occasional renumbering of nearby elements), and {@link java.util.List#size List.size()} remains
+     * constant time; however, {@link java.util.List#get List.get()} and {@link java.util.List#set List.set()}
+     * must scan from the nearer end of the list. Iteration is efficient either way.
+     * </p>
+     *
+     * <p>
+     * The encoding is part of the field's storage layout, so changing it requires a new {@link #storageId}.
+     * Also, the list index component of the list element index contains element positions instead of list indexes.
+     * </p>
+     *
+     * @return whether the list field uses the gapped encoding
+     * @see org.jsimpledb.core.ListField#isGapped
+     */
+    boolean gapped() default false;
 }
 
@@ -68,5 +68,23 @@ public @interface JMapField {
      * @return the map value field
      */
     JField value() default @JField();
+
+    /**
+     * Whether to maintain a count of the entries in this field.
+     *
+     * <p>
+     * When enabled, {@code size()} and {@code isEmpty()} only need to read a single counter instead of iterating the entire map.
+     * The counter is updated using {@link org.jsimpledb.kv.KVStore#adjustCounter KVStore.adjustCounter()}, so it does
+     * not cause conflicts between concurrent transactions. The cost is one additional write per addition or removal.
+     * </p>
+     *
+     * <p>
+     * This setting is part of the field's storage layout, so changing it requires a new {@link #storageId}.
+     * </p>
+     *
+     * @return whether the field maintains a size counter
+     * @see org.jsimpledb.schema.ComplexSchemaField#isSizeCounter
+     */
+    boolean sizeCounter() default false;
 }
 
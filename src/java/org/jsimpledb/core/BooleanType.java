@@ -24,12 +24,19 @@ class BooleanType extends PrimitiveType<Boolean> {
 
     @Override
     public Boolean read(ByteReader reader) {
+        return this.readBoolean(reader);
+    }
+
+    /**
+     * Read a value without boxing.
+     */
+    boolean readBoolean(ByteReader reader) {
         final int value = reader.readByte();
         switch (value) {
         case FALSE_VALUE:
-            return Boolean.FALSE;
+            return false;
         case TRUE_VALUE:
-            return Boolean.TRUE;
+            return true;
         default:
             throw new IllegalArgumentException(String.format("invalid encoded boolean value 0x%02x", value));
         }
@@ -35,11 +35,13 @@ public abstract class CollectionField<C extends Collection<E>, E> extends Comple
      * @param typeToken Java type for the field's values
      * @param schema schema version
      * @param elementField this field's element sub-field
+     * @param sizeCounter whether to maintain an element count
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
-    CollectionField(String name, int storageId, Schema schema, TypeToken<C> typeToken, SimpleField<E> elementField) {
-        super(name, storageId, schema, typeToken);
+    CollectionField(String name, int storageId, Schema schema,
+      TypeToken<C> typeToken, SimpleField<E> elementField, boolean sizeCounter) {
+        super(name, storageId, schema, typeToken, sizeCounter);
         if (elementField == null)
             throw new IllegalArgumentException("null elementField");
         this.elementField = elementField;
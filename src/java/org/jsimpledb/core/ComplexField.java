@@ -26,6 +26,8 @@ import org.jsimpledb.util.UnsignedIntEncoder;
  */
 public abstract class ComplexField<T> extends Field<T> {
 
+    final boolean sizeCounter;
+
     private final int storageIdLength;
 
     /**
@@ -35,12 +37,14 @@ public abstract class ComplexField<T> extends Field<T> {
      * @param storageId field content storage ID
      * @param schema schema version
      * @param typeToken Java type for the field's values
+     * @param sizeCounter whether to maintain an element count
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code name} is invalid
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
-    ComplexField(String name, int storageId, Schema schema, TypeToken<T> typeToken) {
+    ComplexField(String name, int storageId, Schema schema, TypeToken<T> typeToken, boolean sizeCounter) {
         super(name, storageId, schema, typeToken);
+        this.sizeCounter = sizeCounter;
         this.storageIdLength = UnsignedIntEncoder.encodeLength(storageId);
     }
 
@@ -53,6 +57,16 @@ public abstract class ComplexField<T> extends Field<T> {
      */
     public abstract List<? extends SimpleField<?>> getSubFields();
 
+    /**
+     * Determine whether this field maintains a count of its elements, making {@code size()} a constant time operation.
+     *
+     * @return true if this field maintains an element count
+     * @see org.jsimpledb.schema.ComplexSchemaField#isSizeCounter
+     */
+    public boolean hasSizeCounter() {
+        return this.sizeCounter;
+    }
+
 // Non-public methods
 
     /**
@@ -100,6 +114,51 @@ public abstract class ComplexField<T> extends Field<T> {
         tx.kvt.removeRange(minKey, maxKey);
     }
 
+    /**
+     * Initialize the element count counter for the given object to zero, if this field maintains one.
+     *
+     * <p>
+     * Content keys always extend the field's content prefix {@link #buildKey buildKey(id)}, so the prefix key itself
+     * is never used for content; fields that maintain an element count store it there as a
+     * {@linkplain org.jsimpledb.kv.KVStore#encodeCounter counter}. The counter is created along with the field
+     * and reset when the field is cleared, so changes in between only need to {@linkplain #adjustSizeCounter adjust} it.
+     * </p>
+     *
+     * @param tx transaction
+     * @param id object id
+     */
+    void initializeSizeCounter(Transaction tx, ObjId id) {
+        if (this.sizeCounter)
+            tx.kvt.put(this.buildKey(id), tx.kvt.encodeCounter(0));
+    }
+
+    /**
+     * Read the element count counter for the given object.
+     *
+     * @param tx transaction
+     * @param id object id
+     * @return element count
+     * @throws IllegalStateException if this field does not maintain an element count
+     */
+    int readSizeCounter(Transaction tx, ObjId id) {
+        if (!this.sizeCounter)
+            throw new IllegalStateException(this + " has no size counter");
+        final byte[] value = tx.kvt.get(this.buildKey(id));
+        return value != null ? (int)tx.kvt.decodeCounter(value) : 0;
+    }
+
+    /**
+     * Adjust the element count counter for the given object, if this field maintains one.
+     *
+     * @param tx transaction
+     * @param id object id
+     * @param delta change in element count
+     */
+    void adjustSizeCounter(Transaction tx, ObjId id, int delta) {
+        if (this.sizeCounter && delta != 0)
+            tx.kvt.adjustCounter(this.buildKey(id), delta);
+    }
+
     /**
      * Add an index entry corresponding to the given sub-field and content key/value pair.
      *
@@ -110,7 +169,10 @@ public abstract class ComplexField<T> extends Field<T> {
      * @param contentValue the value associated with the content key, or null if not needed
      */
     void addIndexEntry(Transaction tx, ObjId id, SimpleField<?> subField, byte[] contentKey, byte[] contentValue) {
-        tx.kvt.put(this.buildIndexEntry(id, subField, contentKey, contentValue), ByteUtil.EMPTY);
+        final byte[] indexEntry = this.buildIndexEntry(id, subField, contentKey, contentValue);
+        tx.kvt.put(indexEntry, ByteUtil.EMPTY);
+        tx.addReferrerIndexEntry(subField, indexEntry);
+        tx.indexEntryChanged(subField, indexEntry, 1);
     }
 
     /**
@@ -123,10 +185,21 @@ public abstract class ComplexField<T> extends Field<T> {
      * @param contentValue the value associated with the content key, or null if not needed
      */
     void removeIndexEntry(Transaction tx, ObjId id, SimpleField<?> subField, byte[] contentKey, byte[] contentValue) {
-        tx.kvt.remove(this.buildIndexEntry(id, subField, contentKey, contentValue));
+        final byte[] indexEntry = this.buildIndexEntry(id, subField, contentKey, contentValue);
+        tx.kvt.remove(indexEntry);
+        tx.indexEntryChanged(subField, indexEntry, -1);
     }
 
-    private byte[] buildIndexEntry(ObjId id, SimpleField<?> subField, byte[] contentKey, byte[] contentValue) {
+    /**
+     * Build an index entry corresponding to the given sub-field and content key/value pair.
+     *
+     * @param id object id
+     * @param subField indexed sub-field
+     * @param contentKey the content key
+     * @param contentValue the value associated with the content key, or null if not needed
+     * @return index entry
+     */
+    byte[] buildIndexEntry(ObjId id, SimpleField<?> subField, byte[] contentKey, byte[] contentValue) {
         final ByteReader contentKeyReader = new ByteReader(contentKey);
         contentKeyReader.skip(ObjId.NUM_BYTES + this.storageIdLength);                  // skip to content
         final ByteWriter writer = new ByteWriter();
@@ -179,7 +252,7 @@ public abstract class ComplexField<T> extends Field<T> {
             throw new IllegalArgumentException(this + " is not indexed");
         final byte[] prefix = this.buildKey(id);
         final byte[] prefixEnd = ByteUtil.getKeyAfterPrefix(prefix);
-        for (Iterator<KVPair> i = tx.kvt.getRange(prefix, prefixEnd, false); i.hasNext(); ) {
+        for (Iterator<KVPair> i = tx.kvt.getRange(ByteUtil.getNextKey(prefix), prefixEnd, false); i.hasNext(); ) {
             final KVPair pair = i.next();
             this.addIndexEntry(tx, id, subField, pair.getKey(), pair.getValue());
         }
@@ -207,7 +280,7 @@ public abstract class ComplexField<T> extends Field<T> {
      */
     void removeIndexEntries(Transaction tx, ObjId id, SimpleField<?> subField) {
         final byte[] prefix = this.buildKey(id);
-        this.removeIndexEntries(tx, id, subField, prefix, ByteUtil.getKeyAfterPrefix(prefix));
+        this.removeIndexEntries(tx, id, subField, ByteUtil.getNextKey(prefix), ByteUtil.getKeyAfterPrefix(prefix));
     }
 
     /**
@@ -15,8 +15,11 @@ import org.jsimpledb.util.UnsignedIntEncoder;
 
 abstract class ComplexFieldStorageInfo<T> extends FieldStorageInfo {
 
+    final boolean sizeCounter;
+
     ComplexFieldStorageInfo(ComplexField<T> field) {
         super(field);
+        this.sizeCounter = field.sizeCounter;
     }
 
     /**
@@ -62,5 +65,22 @@ abstract class ComplexFieldStorageInfo<T> extends FieldStorageInfo {
      * @param prefix (possibly partial) index entry containing {@code target} and {@code referrer}
      */
     abstract void unreference(Transaction tx, int storageId, ObjId target, ObjId referrer, byte[] prefix);
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        final ComplexFieldStorageInfo<?> that = (ComplexFieldStorageInfo<?>)obj;
+        return this.sizeCounter == that.sizeCounter;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() ^ (this.sizeCounter ? 2 : 0);
+    }
 }
 
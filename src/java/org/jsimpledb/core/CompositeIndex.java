@@ -20,6 +20,7 @@ public class CompositeIndex extends SchemaItem {
 
     final ObjType objType;
     final List<SimpleField<?>> fields;
+    final List<SimpleField<?>> includedFields;
 
     /**
      * Constructor.
@@ -29,18 +30,23 @@ public class CompositeIndex extends SchemaItem {
      * @param schema schema version
      * @param objType containing object type
      * @param fields indexed fields
+     * @param includedFields non-indexed fields whose values are stored in index entries
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code name} is invalid
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
-    CompositeIndex(String name, int storageId, Schema schema, ObjType objType, Iterable<? extends SimpleField<?>> fields) {
+    CompositeIndex(String name, int storageId, Schema schema, ObjType objType,
+      Iterable<? extends SimpleField<?>> fields, Iterable<? extends SimpleField<?>> includedFields) {
         super(name, storageId, schema);
         if (objType == null)
             throw new IllegalArgumentException("null objType");
         if (fields == null)
             throw new IllegalArgumentException("null fields");
+        if (includedFields == null)
+            throw new IllegalArgumentException("null includedFields");
         this.objType = objType;
         this.fields = Collections.unmodifiableList(Lists.newArrayList(fields));
+        this.includedFields = Collections.unmodifiableList(Lists.newArrayList(includedFields));
     }
 
 // Public methods
@@ -63,6 +69,16 @@ public class CompositeIndex extends SchemaItem {
         return this.fields;
     }
 
+    /**
+     * Get the included fields, i.e., the non-indexed fields whose values are stored in this index's entries.
+     *
+     * @return list of included fields, possibly empty
+     * @see Transaction#queryCompositeIndexIncludes Transaction.queryCompositeIndexIncludes()
+     */
+    public List<SimpleField<?>> getIncludedFields() {
+        return this.includedFields;
+    }
+
     @Override
     public String toString() {
         return "composite index `" + this.name + "' on fields " + Lists.transform(this.fields,
@@ -13,18 +13,27 @@ import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jsimpledb.tuple.Tuple3;
+import org.jsimpledb.tuple.Tuple4;
+import org.jsimpledb.tuple.Tuple5;
+import org.jsimpledb.util.UnsignedIntEncoder;
+
 class CompositeIndexStorageInfo extends StorageInfo {
 
     final List<SimpleFieldStorageInfo<?>> fields;
+    final List<SimpleFieldStorageInfo<?>> includedFields;
 
     CompositeIndexStorageInfo(CompositeIndex index) {
         super(index.storageId);
-        this.fields = new ArrayList<>(Lists.transform(index.fields, new Function<SimpleField<?>, SimpleFieldStorageInfo<?>>() {
+        final Function<SimpleField<?>, SimpleFieldStorageInfo<?>> toStorageInfo
+          = new Function<SimpleField<?>, SimpleFieldStorageInfo<?>>() {
             @Override
             public SimpleFieldStorageInfo<?> apply(SimpleField<?> field) {
                 return field.toStorageInfo();
             }
-        }));
+        };
+        this.fields = new ArrayList<>(Lists.transform(index.fields, toStorageInfo));
+        this.includedFields = new ArrayList<>(Lists.transform(index.includedFields, toStorageInfo));
     }
 
     Object getIndex(Transaction tx) {
@@ -42,6 +51,62 @@ class CompositeIndexStorageInfo extends StorageInfo {
         }
     }
 
+    IncludesMap<?> getIncludesMap(Transaction tx) {
+        final ArrayList<FieldType<?>> includedTypes = new ArrayList<>(this.includedFields.size());
+        for (SimpleFieldStorageInfo<?> fieldInfo : this.includedFields)
+            includedTypes.add(fieldInfo.fieldType);
+        switch (fields.size()) {
+        case 2:
+            return this.buildIncludesMap(tx, includedTypes, this.fields.get(0).fieldType, this.fields.get(1).fieldType);
+        case 3:
+            return this.buildIncludesMap(tx, includedTypes, this.fields.get(0).fieldType, this.fields.get(1).fieldType,
+              this.fields.get(2).fieldType);
+        case 4:
+            return this.buildIncludesMap(tx, includedTypes, this.fields.get(0).fieldType, this.fields.get(1).fieldType,
+              this.fields.get(2).fieldType, this.fields.get(3).fieldType);
+        // COMPOSITE-INDEX
+        default:
+            throw new RuntimeException("internal error");
+        }
+    }
+
+    // This method exists solely to bind the generic type parameters
+    private <V1, V2> IncludesMap<Tuple3<V1, V2, ObjId>> buildIncludesMap(Transaction tx, List<FieldType<?>> includedTypes,
+      FieldType<V1> value1Type,
+      FieldType<V2> value2Type) {
+        return new IncludesMap<Tuple3<V1, V2, ObjId>>(tx, new Tuple3FieldType<V1, V2, ObjId>(
+          value1Type,
+          value2Type,
+          FieldTypeRegistry.OBJ_ID), UnsignedIntEncoder.encode(this.storageId), includedTypes);
+    }
+
+    // This method exists solely to bind the generic type parameters
+    private <V1, V2, V3> IncludesMap<Tuple4<V1, V2, V3, ObjId>> buildIncludesMap(Transaction tx, List<FieldType<?>> includedTypes,
+      FieldType<V1> value1Type,
+      FieldType<V2> value2Type,
+      FieldType<V3> value3Type) {
+        return new IncludesMap<Tuple4<V1, V2, V3, ObjId>>(tx, new Tuple4FieldType<V1, V2, V3, ObjId>(
+          value1Type,
+          value2Type,
+          value3Type,
+          FieldTypeRegistry.OBJ_ID), UnsignedIntEncoder.encode(this.storageId), includedTypes);
+    }
+
+    // This method exists solely to bind the generic type parameters
+    private <V1, V2, V3, V4> IncludesMap<Tuple5<V1, V2, V3, V4, ObjId>> buildIncludesMap(Transaction tx,
+      List<FieldType<?>> includedTypes,
+      FieldType<V1> value1Type,
+      FieldType<V2> value2Type,
+      FieldType<V3> value3Type,
+      FieldType<V4> value4Type) {
+        return new IncludesMap<Tuple5<V1, V2, V3, V4, ObjId>>(tx, new Tuple5FieldType<V1, V2, V3, V4, ObjId>(
+          value1Type,
+          value2Type,
+          value3Type,
+          value4Type,
+          FieldTypeRegistry.OBJ_ID), UnsignedIntEncoder.encode(this.storageId), includedTypes);
+    }
+
     // This method exists solely to bind the generic type parameters
     private <V1, V2> CoreIndex2<V1, V2, ObjId> buildIndex(Transaction tx,
       FieldType<V1> value1Type,
@@ -87,7 +152,7 @@ class CompositeIndexStorageInfo extends StorageInfo {
             public String apply(SimpleFieldStorageInfo<?> field) {
                 return field.toString();
             }
-        });
+        }) + (!this.includedFields.isEmpty() ? " including " + this.includedFields : "");
     }
 
     @Override
@@ -97,12 +162,12 @@ class CompositeIndexStorageInfo extends StorageInfo {
         if (!super.equals(obj))
             return false;
         final CompositeIndexStorageInfo that = (CompositeIndexStorageInfo)obj;
-        return this.fields.equals(that.fields);
+        return this.fields.equals(that.fields) && this.includedFields.equals(that.includedFields);
     }
 
     @Override
     public int hashCode() {
-        return super.hashCode() ^ this.fields.hashCode();
+        return super.hashCode() ^ this.fields.hashCode() ^ this.includedFields.hashCode();
     }
 }
 
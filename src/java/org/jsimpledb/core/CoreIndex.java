@@ -13,6 +13,7 @@ import java.util.NavigableSet;
 import org.jsimpledb.index.Index;
 import org.jsimpledb.kv.KeyFilter;
 import org.jsimpledb.tuple.Tuple2;
+import org.jsimpledb.util.ByteWriter;
 
 /**
  * Core API {@link Index} implementation representing a index on a single field.
@@ -44,6 +45,45 @@ public class CoreIndex<V, T> extends AbstractCoreIndex implements Index<V, T> {
         return (IndexView<V, T>)this.indexView;
     }
 
+    /**
+     * Count the number of index entries having the specified value.
+     *
+     * <p>
+     * For an unfiltered index on a simple field, a {@link SetField} element, or a {@link MapField} key,
+     * this equals {@code asMap().get(value).size()} (or zero if there is no such value), and if the transaction's
+     * database {@linkplain Transaction#hasStatistics maintains statistics}, it takes constant time.
+     * For other indexes, this method returns {@code asMap().get(value).size()} (or zero).
+     * </p>
+     *
+     * @param value index value
+     * @return number of index entries with {@code value}
+     * @throws IllegalArgumentException if {@code value} is not a valid value for this index
+     * @throws StaleTransactionException if the transaction is no longer usable
+     * @see Transaction#countIndexEntries Transaction.countIndexEntries()
+     */
+    public long count(V value) {
+
+        // Get index view
+        final IndexView<V, T> iv = this.getIndexView();
+
+        // Count by iteration if not a simple index
+        if (iv.prefixMode || iv.hasFilters()) {
+            final NavigableSet<T> targets = this.asMap().get(value);
+            return targets != null ? targets.size() : 0;
+        }
+
+        // Build index prefix and count
+        final FieldType<V> valueType = iv.getValueType();
+        final ByteWriter writer = new ByteWriter();
+        writer.write(iv.prefix);
+        valueType.write(writer, valueType.validate(value));
+        synchronized (this.tx) {
+            if (this.tx.stale)
+                throw new StaleTransactionException(this.tx);
+            return this.tx.countIndexEntries(writer.getBytes());
+        }
+    }
+
 // Index
 
     @Override
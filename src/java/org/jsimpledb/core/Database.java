@@ -16,6 +16,8 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.zip.DataFormatException;
@@ -27,6 +29,7 @@ import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVStore;
 import org.jsimpledb.kv.KVTransaction;
 import org.jsimpledb.kv.KVTransactionException;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 import org.jsimpledb.schema.SchemaModel;
 import org.jsimpledb.util.ByteReader;
 import org.jsimpledb.util.ByteUtil;
@@ -92,14 +95,32 @@ public class Database {
     private static final byte[] SCHEMA_KEY_PREFIX = new byte[] {
       METADATA_PREFIX, (byte)0x01
     };
+    private static final byte[] SCHEMA_GENERATION_KEY = new byte[] {
+      METADATA_PREFIX, (byte)0x02
+    };
+    private static final byte[] STATISTICS_KEY = new byte[] {
+      METADATA_PREFIX, (byte)0x03
+    };
     private static final byte[] VERSION_INDEX_PREFIX = new byte[] {
       METADATA_PREFIX, (byte)0x80
     };
+    private static final byte[] REFERRER_INDEX_PREFIX = new byte[] {
+      METADATA_PREFIX, (byte)0x81
+    };
+    private static final byte[] STATISTICS_PREFIX = new byte[] {
+      METADATA_PREFIX, (byte)0x82
+    };
 
     // JSimpleDB format version numbers
     private static final int FORMAT_VERSION_1 = 1;                                      // original format
     private static final int FORMAT_VERSION_2 = 2;                                      // added compressed schema XML
-    private static final int CURRENT_FORMAT_VERSION = FORMAT_VERSION_2;
+    private static final int FORMAT_VERSION_3 = 3;                                      // added schema generation key
+    private static final int FORMAT_VERSION_4 = 4;                                      // added referrer index
+    private static final int FORMAT_VERSION_5 = 5;                                      // added optional statistics
+    private static final int CURRENT_FORMAT_VERSION = FORMAT_VERSION_5;
+
+    // Number of random bytes in a schema generation
+    private static final int SCHEMA_GENERATION_LENGTH = 8;
 
     /* Note: this string must not ever change */
     private static final byte[] SCHEMA_XML_COMPRESSION_DICTIONARY = (""
@@ -148,8 +169,10 @@ public class Database {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final FieldTypeRegistry fieldTypeRegistry = new FieldTypeRegistry();
     private final KVDatabase kvdb;
+    private final Random random = new Random();
 
-    private volatile Schemas lastSchemas;
+    private volatile CachedSchemas lastSchemas;
+    private volatile boolean maintainStatistics;
 
     /**
      * Constructor.
@@ -181,6 +204,48 @@ public class Database {
         return this.kvdb;
     }
 
+    /**
+     * Determine whether a newly initialized database will maintain statistics.
+     *
+     * @return true if statistics will be maintained in a newly initialized database
+     * @see #setMaintainStatistics setMaintainStatistics()
+     */
+    public boolean isMaintainStatistics() {
+        return this.maintainStatistics;
+    }
+
+    /**
+     * Configure whether a newly initialized database should maintain statistics.
+     *
+     * <p>
+     * When enabled, the database keeps a count of the objects of each object type, and a count of the index entries
+     * for each value of each indexed field and composite index. These counts are updated in the same transaction
+     * as the corresponding objects and index entries, and make {@link Transaction#countObjects Transaction.countObjects()}
+     * and {@link Transaction#countIndexEntries Transaction.countIndexEntries()} constant time operations, which is useful
+     * for query planning.
+     * </p>
+     *
+     * <p>
+     * All counts are updated using {@link org.jsimpledb.kv.KVStore#adjustCounter KVStore.adjustCounter()}, which creates
+     * missing counters starting from zero, so maintaining them does not cause conflicts between concurrent transactions
+     * (to the extent the key/value store supports lock-free counter adjustment). However, every change to an indexed
+     * field adds a counter adjustment for both the old and new values. Applications that update indexed fields very
+     * frequently should weigh this cost.
+     * </p>
+     *
+     * <p>
+     * This setting is only consulted when an uninitialized database is initialized (i.e., by the first transaction),
+     * and is permanently recorded in the database at that time; it is ignored thereafter.
+     * Default is false.
+     * </p>
+     *
+     * @param maintainStatistics true to maintain statistics in a newly initialized database
+     * @see Transaction#hasStatistics
+     */
+    public void setMaintainStatistics(boolean maintainStatistics) {
+        this.maintainStatistics = maintainStatistics;
+    }
+
     /**
      * Create a new {@link Transaction} on this database and use the specified schema version to access objects and fields.
      *
@@ -294,6 +359,40 @@ public class Database {
      * @throws IllegalStateException if no underlying {@link KVDatabase} has been configured for this instance
      */
     public Transaction createTransaction(final SchemaModel schemaModel, int version, final boolean allowNewSchema) {
+        return this.createTransaction(schemaModel, version, allowNewSchema, false);
+    }
+
+    /**
+     * Create a new {@link Transaction}, optionally read-only.
+     *
+     * <p>
+     * This method behaves like {@link #createTransaction(SchemaModel, int, boolean) createTransaction()}, except that when
+     * {@code readOnly} is true, the returned transaction is already {@linkplain Transaction#setReadOnly read-only} and
+     * if the underlying {@link KVDatabase} is a {@link ReadOnlyCapableKVDatabase}, the key/value transaction is created
+     * via {@link ReadOnlyCapableKVDatabase#createTransaction(boolean) createTransaction(true)}, which allows the key/value
+     * store to avoid tracking or locking the keys read. Depending on the key/value store, the transaction may then only
+     * have "read committed" isolation. Such a transaction cannot be made read-write. Other key/value stores get a normal
+     * key/value transaction.
+     * </p>
+     *
+     * <p>
+     * If the database must first be initialized, or schema version {@code version} must first be recorded, that can't be
+     * done in a read-only key/value transaction; in that case, the returned transaction is a normal key/value transaction
+     * (so that those changes are committed) that is merely marked read-only.
+     * </p>
+     *
+     * @param schemaModel schema to use with the new transaction, or null to use the schema already recorded in the database
+     * @param version the schema version number corresponding to {@code schemaModel}, or zero to use the highest recorded version
+     * @param allowNewSchema whether creating a new schema version is allowed
+     * @param readOnly whether the transaction will only read data
+     * @return newly created transaction
+     * @throws IllegalArgumentException if {@code version} is less than zero
+     * @throws InvalidSchemaException if {@code schemaModel} is invalid (i.e., does not pass validation checks)
+     * @throws SchemaMismatchException if the schema is incompatible; see {@link #createTransaction(SchemaModel, int, boolean)}
+     * @throws InconsistentDatabaseException if inconsistent or invalid schema information is detected in the database
+     * @throws IllegalStateException if no underlying {@link KVDatabase} has been configured for this instance
+     */
+    public Transaction createTransaction(SchemaModel schemaModel, int version, boolean allowNewSchema, boolean readOnly) {
 
         // Sanity check
         if (version < 0)
@@ -303,8 +402,30 @@ public class Database {
         if (schemaModel != null)
             schemaModel.validate();
 
+        // Try a read-only key/value transaction first, if appropriate
+        if (readOnly && this.kvdb instanceof ReadOnlyCapableKVDatabase) {
+            final Transaction tx = this.doCreateTransaction(schemaModel, version, allowNewSchema, true);
+            if (tx != null) {
+                tx.readOnly = true;
+                tx.kvReadOnly = true;
+                return tx;
+            }
+            this.log.debug("database requires updates; falling back to a read-write key/value transaction");
+        }
+
+        // Create a normal transaction
+        final Transaction tx = this.doCreateTransaction(schemaModel, version, allowNewSchema, false);
+        tx.readOnly = readOnly;
+        return tx;
+    }
+
+    // Returns null if kvReadOnly and the database needs to be updated
+    private Transaction doCreateTransaction(final SchemaModel schemaModel, int version,
+      final boolean allowNewSchema, final boolean kvReadOnly) {
+
         // Open KV transaction
-        final KVTransaction kvt = this.kvdb.createTransaction();
+        final KVTransaction kvt = kvReadOnly ?
+          ((ReadOnlyCapableKVDatabase)this.kvdb).createTransaction(true) : this.kvdb.createTransaction();
         boolean success = false;
         if (this.log.isTraceEnabled()) {
             this.log.trace("creating transaction using "
@@ -341,6 +462,8 @@ public class Database {
                 if (kvt.getRange(new byte[0], new byte[] { (byte)0xff }, false).hasNext())
                     throw new InconsistentDatabaseException("inconsistent results from getAtLeast() and getRange()");
                 this.checkAddNewSchema(schemaModel, version, allowNewSchema);
+                if (kvReadOnly)
+                    return null;
 
                 // Initialize database
                 formatVersion = CURRENT_FORMAT_VERSION;
@@ -359,6 +482,13 @@ public class Database {
                 final KVPair upper = kvt.getAtMost(new byte[] { (byte)0xff });
                 if (upper == null || !upper.equals(new KVPair(FORMAT_VERSION_KEY, writer.getBytes())))
                     throw new InconsistentDatabaseException("database failed basic read/write test");
+
+                // Initialize schema generation
+                kvt.put(SCHEMA_GENERATION_KEY.clone(), this.newSchemaGeneration());
+
+                // Enable statistics
+                if (this.maintainStatistics)
+                    kvt.put(STATISTICS_KEY.clone(), ByteUtil.EMPTY);
             } else {
                 try {
                     formatVersion = UnsignedIntEncoder.decode(formatVersionBytes);
@@ -368,93 +498,118 @@ public class Database {
                 }
             }
             final boolean compressedSchemaXML;
+            final boolean schemaGenerationKey;
+            final boolean referrerIndex;
+            final boolean statistics;
             switch (formatVersion) {
             case FORMAT_VERSION_1:
             case FORMAT_VERSION_2:
+            case FORMAT_VERSION_3:
+            case FORMAT_VERSION_4:
+            case FORMAT_VERSION_5:
                 compressedSchemaXML = formatVersion >= FORMAT_VERSION_2;
+                schemaGenerationKey = formatVersion >= FORMAT_VERSION_3;
+                referrerIndex = formatVersion >= FORMAT_VERSION_4;
+                statistics = formatVersion >= FORMAT_VERSION_5 && kvt.get(STATISTICS_KEY.clone()) != null;
                 break;
             default:
                 throw new InconsistentDatabaseException("database contains unrecognized format version "
                   + formatVersion + " under key " + ByteUtil.toString(FORMAT_VERSION_KEY));
             }
 
-            // There should not be any other meta data prior to recorded schemas
-            if (metaDataIterator.hasNext()) {
-                final KVPair pair = metaDataIterator.next();
-                if (ByteUtil.compare(pair.getKey(), SCHEMA_KEY_PREFIX) < 0) {
-                    throw new InconsistentDatabaseException("database contains unrecognized garbage at key "
-                      + ByteUtil.toString(pair.getKey()));
-                }
-            }
-
             // Check schema
             Schemas schemas = null;
+            byte[] schemaGeneration = null;
             boolean firstAttempt = true;
             while (true) {
 
-                // Get iterator over schema key/value pairs
-                final Iterator<KVPair> schemaIterator = kvt.getRange(SCHEMA_KEY_PREFIX.clone(),
-                  ByteUtil.getKeyAfterPrefix(SCHEMA_KEY_PREFIX), false);
+                // If the schema generation has not changed, our cached schemas are still current and we can skip reading them
+                final NavigableSet<Integer> recordedVersions;
+                final CachedSchemas cachedSchemas = this.lastSchemas;
+                if (schemaGenerationKey)
+                    schemaGeneration = kvt.get(SCHEMA_GENERATION_KEY.clone());
+                if (schemaGeneration != null && cachedSchemas != null
+                  && Arrays.equals(schemaGeneration, cachedSchemas.getGeneration())) {
+                    schemas = cachedSchemas.getSchemas();
+                    recordedVersions = schemas.versions.navigableKeySet();
+                } else {
 
-                // Read recorded database schema versions - should immediately follow FORMAT_VERSION_KEY
-                final TreeMap<Integer, byte[]> bytesMap = new TreeMap<>();
-                while (schemaIterator.hasNext()) {
-                    final KVPair pair = schemaIterator.next();
+                    // Get iterator over schema key/value pairs
+                    final Iterator<KVPair> schemaIterator = kvt.getRange(SCHEMA_KEY_PREFIX.clone(),
+                      ByteUtil.getKeyAfterPrefix(SCHEMA_KEY_PREFIX), false);
 
-                    // Sanity check
-                    if (ByteUtil.compare(pair.getKey(), SCHEMA_KEY_PREFIX) < 0) {
-                        throw new InconsistentDatabaseException("database contains unrecognized garbage key "
-                          + ByteUtil.toString(pair.getKey()));
-                    }
+                    // Read recorded database schema versions - should immediately follow FORMAT_VERSION_KEY
+                    final TreeMap<Integer, byte[]> bytesMap = new TreeMap<>();
+                    while (schemaIterator.hasNext()) {
+                        final KVPair pair = schemaIterator.next();
 
-                    // Stop at end of recorded schemas
-                    if (!ByteUtil.isPrefixOf(SCHEMA_KEY_PREFIX, pair.getKey()))
-                        break;
+                        // Sanity check
+                        if (ByteUtil.compare(pair.getKey(), SCHEMA_KEY_PREFIX) < 0) {
+                            throw new InconsistentDatabaseException("database contains unrecognized garbage key "
+                              + ByteUtil.toString(pair.getKey()));
+                        }
 
-                    // Decode schema version and get XML
-                    final int vers = UnsignedIntEncoder.read(new ByteReader(pair.getKey(), SCHEMA_KEY_PREFIX.length));
-                    if (vers == 0)
-                        throw new InconsistentDatabaseException("database contains an invalid schema version zero");
-                    bytesMap.put(vers, pair.getValue());
-                }
+                        // Stop at end of recorded schemas
+                        if (!ByteUtil.isPrefixOf(SCHEMA_KEY_PREFIX, pair.getKey()))
+                            break;
 
-                // Read and decode database schemas, avoiding rebuild if possible
-                schemas = this.lastSchemas;
-                if (schemas != null && !schemas.isSameVersions(bytesMap))
-                    schemas = null;
-                if (schemas == null) {
-                    try {
-                        schemas = this.buildSchemas(bytesMap, compressedSchemaXML);
-                    } catch (IllegalArgumentException e) {
-                        if (firstAttempt)
-                            throw new InconsistentDatabaseException("database contains invalid schema information", e);
-                        else
-                            throw new InvalidSchemaException("schema is not valid: " + e.getMessage(), e);
+                        // Decode schema version and get XML
+                        final int vers = UnsignedIntEncoder.read(new ByteReader(pair.getKey(), SCHEMA_KEY_PREFIX.length));
+                        if (vers == 0)
+                            throw new InconsistentDatabaseException("database contains an invalid schema version zero");
+                        bytesMap.put(vers, pair.getValue());
+                    }
+                    recordedVersions = bytesMap.navigableKeySet();
+
+                    // There should not be any other meta data prior to recorded schemas
+                    if (firstAttempt && metaDataIterator.hasNext()) {
+                        final KVPair pair = metaDataIterator.next();
+                        if (ByteUtil.compare(pair.getKey(), SCHEMA_KEY_PREFIX) < 0) {
+                            throw new InconsistentDatabaseException("database contains unrecognized garbage at key "
+                              + ByteUtil.toString(pair.getKey()));
+                        }
+                    }
+
+                    // Read and decode database schemas, avoiding rebuild if possible
+                    schemas = cachedSchemas != null ? cachedSchemas.getSchemas() : null;
+                    if (schemas != null && !schemas.isSameVersions(bytesMap))
+                        schemas = null;
+                    if (schemas == null) {
+                        try {
+                            schemas = this.buildSchemas(bytesMap, compressedSchemaXML);
+                        } catch (IllegalArgumentException e) {
+                            if (firstAttempt)
+                                throw new InconsistentDatabaseException("database contains invalid schema information", e);
+                            else
+                                throw new InvalidSchemaException("schema is not valid: " + e.getMessage(), e);
+                        }
                     }
                 }
 
                 // If no version specified, assume the highest recorded version
-                if (version == 0 && !bytesMap.isEmpty())
-                    version = bytesMap.lastKey();
+                if (version == 0 && !recordedVersions.isEmpty())
+                    version = recordedVersions.last();
 
                 // If transaction schema was not found in the database, add it and retry
-                if (!bytesMap.containsKey(version)) {
+                if (!recordedVersions.contains(version)) {
 
                     // Log it
-                    if (bytesMap.isEmpty()) {
+                    if (recordedVersions.isEmpty()) {
                         if (!uninitialized)
                             throw new InconsistentDatabaseException("database is initialized but contains zero schema versions");
                     } else {
                         this.log.info("schema version " + version
-                          + " not found in database; known versions are " + bytesMap.keySet());
+                          + " not found in database; known versions are " + recordedVersions);
                     }
 
                     // Check whether we can add a new schema version
                     this.checkAddNewSchema(schemaModel, version, allowNewSchema);
+                    if (kvReadOnly)
+                        return null;
 
                     // Record new schema in database
                     this.log.info("recording new schema version " + version + " into database");
-                    this.writeSchema(kvt, version, schemaModel, compressedSchemaXML);
+                    this.writeSchema(kvt, version, schemaModel, compressedSchemaXML, statistics);
 
                     // Try again
                     schemas = null;
@@ -464,7 +619,7 @@ public class Database {
 
                 // Compare transaction schema with the schema of the same version found in the database
                 if (this.log.isTraceEnabled())
-                    this.log.trace("found schema version " + version + " in database; known versions are " + bytesMap.keySet());
+                    this.log.trace("found schema version " + version + " in database; known versions are " + recordedVersions);
                 final SchemaModel dbSchemaModel = schemas.getVersion(version).getSchemaModel();
                 if (schemaModel != null) {
                     if (!schemaModel.isCompatibleWith(dbSchemaModel)) {
@@ -482,10 +637,10 @@ public class Database {
             }
 
             // Save schema for next time
-            this.lastSchemas = schemas;
+            this.lastSchemas = new CachedSchemas(schemas, schemaGeneration);
 
             // Create transaction
-            final Transaction tx = new Transaction(this, kvt, schemas, version);
+            final Transaction tx = new Transaction(this, kvt, schemas, version, referrerIndex, statistics);
             success = true;
             return tx;
         } finally {
@@ -499,6 +654,110 @@ public class Database {
         }
     }
 
+    /**
+     * Upgrade this database to the current format version.
+     *
+     * <p>
+     * New databases are initialized using the current format version. A database initialized by an older version
+     * of this class keeps its original format version, and transactions on it do without the features that require
+     * a newer one: schema generation checking (format version 3), the referrer index (format version 4), and
+     * statistics (format version 5). This method upgrades such a database in a single transaction: it compresses
+     * recorded schemas if necessary, adds the schema generation key, builds the referrer index from the existing
+     * reference field indexes, and records the current format version. The cost is proportional to the number
+     * of reference field index entries. Statistics stay disabled; they can only be enabled when a database is
+     * first initialized (see {@link #setMaintainStatistics setMaintainStatistics()}).
+     * </p>
+     *
+     * <p>
+     * After an upgrade, older versions of this class will refuse to access the database.
+     * </p>
+     *
+     * @return true if the database was upgraded, false if it is uninitialized or already has the current format version
+     * @throws InconsistentDatabaseException if inconsistent or invalid meta-data is detected in the database
+     * @throws org.jsimpledb.kv.RetryTransactionException if the upgrade conflicts with a concurrent transaction
+     * @throws IllegalStateException if no underlying {@link KVDatabase} has been configured for this instance
+     */
+    public boolean upgradeFormatVersion() {
+        final KVTransaction kvt = this.kvdb.createTransaction();
+        boolean success = false;
+        try {
+
+            // Get format version
+            final byte[] formatVersionBytes = kvt.get(FORMAT_VERSION_KEY.clone());
+            if (formatVersionBytes == null)
+                return false;
+            final int formatVersion;
+            try {
+                formatVersion = UnsignedIntEncoder.decode(formatVersionBytes);
+            } catch (IllegalArgumentException e) {
+                throw new InconsistentDatabaseException("database contains invalid encoded format version "
+                  + ByteUtil.toString(formatVersionBytes) + " under key " + ByteUtil.toString(FORMAT_VERSION_KEY));
+            }
+            if (formatVersion == CURRENT_FORMAT_VERSION)
+                return false;
+            if (formatVersion < FORMAT_VERSION_1 || formatVersion > CURRENT_FORMAT_VERSION) {
+                throw new InconsistentDatabaseException("database contains unrecognized format version "
+                  + formatVersion + " under key " + ByteUtil.toString(FORMAT_VERSION_KEY));
+            }
+            this.log.info("upgrading database from format version " + formatVersion + " to " + CURRENT_FORMAT_VERSION);
+
+            // Read recorded schemas
+            final TreeMap<Integer, byte[]> bytesMap = new TreeMap<>();
+            for (Iterator<KVPair> i = kvt.getRange(SCHEMA_KEY_PREFIX.clone(),
+              ByteUtil.getKeyAfterPrefix(SCHEMA_KEY_PREFIX), false); i.hasNext(); ) {
+                final KVPair pair = i.next();
+                bytesMap.put(UnsignedIntEncoder.read(new ByteReader(pair.getKey(), SCHEMA_KEY_PREFIX.length)), pair.getValue());
+            }
+            if (bytesMap.isEmpty())
+                throw new InconsistentDatabaseException("database is initialized but contains zero schema versions");
+            final Schemas schemas;
+            try {
+                schemas = this.buildSchemas(bytesMap, formatVersion >= FORMAT_VERSION_2);
+            } catch (IllegalArgumentException e) {
+                throw new InconsistentDatabaseException("database contains invalid schema information", e);
+            }
+
+            // Format version 2: compress recorded schemas
+            if (formatVersion < FORMAT_VERSION_2) {
+                for (Schema schema : schemas.versions.values())
+                    this.writeSchema(kvt, schema.getVersionNumber(), schema.getSchemaModel(), true, false);
+            }
+
+            // Format version 3: add schema generation key
+            if (formatVersion < FORMAT_VERSION_3)
+                kvt.put(SCHEMA_GENERATION_KEY.clone(), this.newSchemaGeneration());
+
+            // Format version 4: build referrer index, discarding any leftovers
+            if (formatVersion < FORMAT_VERSION_4) {
+                kvt.removeRange(REFERRER_INDEX_PREFIX.clone(), ByteUtil.getKeyAfterPrefix(REFERRER_INDEX_PREFIX));
+                new Transaction(this, kvt, schemas, schemas.versions.lastKey(), true, false).buildReferrerIndex();
+            }
+
+            // Format version 5: discard any leftover statistics; statistics remain disabled
+            if (formatVersion < FORMAT_VERSION_5) {
+                kvt.remove(STATISTICS_KEY.clone());
+                kvt.removeRange(STATISTICS_PREFIX.clone(), ByteUtil.getKeyAfterPrefix(STATISTICS_PREFIX));
+            }
+
+            // Record new format version
+            final ByteWriter writer = new ByteWriter();
+            UnsignedIntEncoder.write(writer, CURRENT_FORMAT_VERSION);
+            kvt.put(FORMAT_VERSION_KEY.clone(), writer.getBytes());
+            kvt.commit();
+            success = true;
+            this.lastSchemas = null;
+            return true;
+        } finally {
+            if (!success) {
+                try {
+                    kvt.rollback();
+                } catch (KVTransactionException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
     /**
      * Validate a {@link SchemaModel}.
      *
@@ -557,6 +816,20 @@ public class Database {
         tx.kvt.removeRange(VERSION_INDEX_PREFIX.clone(), null);
     }
 
+    static byte[] buildObjectCountKey(int storageId) {
+        final ByteWriter writer = new ByteWriter(STATISTICS_PREFIX.length + UnsignedIntEncoder.encodeLength(storageId));
+        writer.write(STATISTICS_PREFIX);
+        UnsignedIntEncoder.write(writer, storageId);
+        return writer.getBytes();
+    }
+
+    static byte[] buildIndexStatisticsKey(byte[] prefix, int length) {
+        final ByteWriter writer = new ByteWriter(STATISTICS_PREFIX.length + length);
+        writer.write(STATISTICS_PREFIX);
+        writer.write(prefix, 0, length);
+        return writer.getBytes();
+    }
+
     static byte[] buildVersionIndexKey(ObjId id, int version) {
         final ByteWriter writer = new ByteWriter(VERSION_INDEX_PREFIX.length + 1 + ObjId.NUM_BYTES);
         writer.write(VERSION_INDEX_PREFIX);
@@ -565,6 +838,21 @@ public class Database {
         return writer.getBytes();
     }
 
+    static byte[] buildReferrerIndexKey(ObjId target, int storageId) {
+        final ByteWriter writer = new ByteWriter(REFERRER_INDEX_PREFIX.length + ObjId.NUM_BYTES + 1);
+        writer.write(REFERRER_INDEX_PREFIX);
+        target.writeTo(writer);
+        UnsignedIntEncoder.write(writer, storageId);
+        return writer.getBytes();
+    }
+
+    static byte[] buildReferrerIndexPrefix(ObjId target) {
+        final ByteWriter writer = new ByteWriter(REFERRER_INDEX_PREFIX.length + ObjId.NUM_BYTES);
+        writer.write(REFERRER_INDEX_PREFIX);
+        target.writeTo(writer);
+        return writer.getBytes();
+    }
+
     CoreIndex<Integer, ObjId> getVersionIndex(Transaction tx) {
         return new CoreIndex<Integer, ObjId>(tx,
           new IndexView<Integer, ObjId>(VERSION_INDEX_PREFIX, false, new UnsignedIntType(), FieldTypeRegistry.OBJ_ID));
@@ -631,7 +919,7 @@ public class Database {
     /**
      * Record the given schema into the database.
      */
-    private void writeSchema(KVTransaction kvt, int version, SchemaModel schemaModel, boolean compress) {
+    private void writeSchema(KVTransaction kvt, int version, SchemaModel schemaModel, boolean compress, boolean statistics) {
 
         // Encode as XML
         final ByteArrayOutputStream buf = new ByteArrayOutputStream();
@@ -661,6 +949,16 @@ public class Database {
 
         // Write schema
         kvt.put(this.getSchemaKey(version), value);
+        this.updateSchemaGeneration(kvt);
+
+        // Create object counts for any new object types, so they can always be adjusted without conflict
+        if (statistics) {
+            for (int storageId : schemaModel.getSchemaObjectTypes().keySet()) {
+                final byte[] key = Database.buildObjectCountKey(storageId);
+                if (kvt.get(key) == null)
+                    kvt.put(key, kvt.encodeCounter(0));
+            }
+        }
     }
 
     /**
@@ -668,6 +966,29 @@ public class Database {
      */
     void deleteSchema(KVTransaction kvt, int version) {
         kvt.remove(this.getSchemaKey(version));
+        this.updateSchemaGeneration(kvt);
+
+        // The caller modifies its Schemas in place, which may be our cached copy
+        this.lastSchemas = null;
+    }
+
+    /**
+     * Record that the set of schema versions has changed, if the database has a schema generation key.
+     *
+     * <p>
+     * Generations are random rather than sequential, so a generation written by a transaction that
+     * never commits can't be confused with a generation written later by some other transaction.
+     * </p>
+     */
+    private void updateSchemaGeneration(KVTransaction kvt) {
+        if (kvt.get(SCHEMA_GENERATION_KEY.clone()) != null)
+            kvt.put(SCHEMA_GENERATION_KEY.clone(), this.newSchemaGeneration());
+    }
+
+    private byte[] newSchemaGeneration() {
+        final byte[] generation = new byte[SCHEMA_GENERATION_LENGTH];
+        this.random.nextBytes(generation);
+        return generation;
     }
 
     private byte[] getSchemaKey(int version) {
@@ -676,5 +997,29 @@ public class Database {
         UnsignedIntEncoder.write(writer, version);
         return writer.getBytes();
     }
+
+// CachedSchemas
+
+    /**
+     * The most recently read {@link Schemas} and the schema generation they were read under, if any.
+     */
+    private static class CachedSchemas {
+
+        private final Schemas schemas;
+        private final byte[] generation;
+
+        CachedSchemas(Schemas schemas, byte[] generation) {
+            this.schemas = schemas;
+            this.generation = generation;
+        }
+
+        public Schemas getSchemas() {
+            return this.schemas;
+        }
+
+        public byte[] getGeneration() {
+            return this.generation;
+        }
+    }
 }
 
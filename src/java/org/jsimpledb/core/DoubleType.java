@@ -32,6 +32,13 @@ class DoubleType extends PrimitiveType<Double> {
 
     @Override
     public Double read(ByteReader reader) {
+        return this.readDouble(reader);
+    }
+
+    /**
+     * Read a value without boxing.
+     */
+    double readDouble(ByteReader reader) {
         long bits = ByteUtil.readLong(reader);
         bits ^= (bits & SIGN_BIT) == 0 ? NEG_XOR : POS_XOR;
         return Double.longBitsToDouble(bits);
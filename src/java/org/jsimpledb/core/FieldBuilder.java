@@ -96,17 +96,19 @@ class FieldBuilder extends SchemaFieldSwitchAdapter<Field<?>> {
 
     // This method exists solely to bind the generic type parameters
     private <E> SetField<E> buildSetField(SetSchemaField field, SimpleField<E> elementField) {
-        return new SetField<E>(field.getName(), field.getStorageId(), this.schema, elementField);
+        return new SetField<E>(field.getName(), field.getStorageId(), this.schema, elementField, field.isSizeCounter());
     }
 
     // This method exists solely to bind the generic type parameters
     private <E> ListField<E> buildListField(ListSchemaField field, SimpleField<E> elementField) {
-        return new ListField<E>(field.getName(), field.getStorageId(), this.schema, elementField);
+        return new ListField<E>(field.getName(), field.getStorageId(),
+          this.schema, elementField, field.isSizeCounter(), field.isGapped());
     }
 
     // This method exists solely to bind the generic type parameters
     private <K, V> MapField<K, V> buildMapField(MapSchemaField field, SimpleField<K> keyField, SimpleField<V> valueField) {
-        return new MapField<K, V>(field.getName(), field.getStorageId(), this.schema, keyField, valueField);
+        return new MapField<K, V>(field.getName(), field.getStorageId(),
+          this.schema, keyField, valueField, field.isSizeCounter());
     }
 }
 
@@ -0,0 +1,79 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.KeyFilter;
+import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.util.Bounds;
+import org.jsimpledb.util.ByteReader;
+import org.jsimpledb.util.ByteUtil;
+
+/**
+ * Read-only {@link NavigableMap} view of a composite index that maps each index entry, i.e., the indexed values
+ * plus the object ID, to the values of the index's included fields, which are decoded from the entry's value.
+ *
+ * @see Transaction#queryCompositeIndexIncludes Transaction.queryCompositeIndexIncludes()
+ */
+class IncludesMap<K> extends FieldTypeMap<K, List<Object>> {
+
+    private final List<FieldType<?>> includedTypes;
+
+    // Primary constructor
+    IncludesMap(Transaction tx, FieldType<K> keyType, byte[] prefix, List<FieldType<?>> includedTypes) {
+        super(tx, keyType, false, prefix);
+        this.includedTypes = includedTypes;
+    }
+
+    // Internal constructor
+    private IncludesMap(Transaction tx, FieldType<K> keyType, boolean reversed,
+      byte[] prefix, KeyRange keyRange, KeyFilter keyFilter, Bounds<K> bounds, List<FieldType<?>> includedTypes) {
+        super(tx, keyType, false, reversed, prefix, keyRange, keyFilter, bounds);
+        this.includedTypes = includedTypes;
+    }
+
+    public String getDescription() {
+        return "IncludesMap"
+          + "[prefix=" + ByteUtil.toString(this.prefix)
+          + ",keyType=" + this.keyFieldType
+          + ",includedTypes=" + this.includedTypes
+          + (this.bounds != null ? ",bounds=" + this.bounds : "")
+          + (this.keyRange != null ? ",keyRange=" + this.keyRange : "")
+          + (this.keyFilter != null ? ",keyFilter=" + this.keyFilter : "")
+          + (this.reversed ? ",reversed" : "")
+          + "]";
+    }
+
+// AbstractKVNavigableMap
+
+    @Override
+    public IncludesMap<K> filterKeys(KeyFilter keyFilter) {
+        return (IncludesMap<K>)super.filterKeys(keyFilter);
+    }
+
+    @Override
+    protected NavigableMap<K, List<Object>> createSubMap(boolean newReversed,
+      KeyRange newKeyRange, KeyFilter newKeyFilter, Bounds<K> newBounds) {
+        return new IncludesMap<K>(this.tx, this.keyFieldType, newReversed,
+          this.prefix, newKeyRange, newKeyFilter, newBounds, this.includedTypes);
+    }
+
+    @Override
+    protected List<Object> decodeValue(KVPair pair) {
+        final ByteReader reader = new ByteReader(pair.getValue());
+        final ArrayList<Object> values = new ArrayList<>(this.includedTypes.size());
+        for (FieldType<?> fieldType : this.includedTypes)
+            values.add(fieldType.read(reader));
+        return Collections.unmodifiableList(values);
+    }
+}
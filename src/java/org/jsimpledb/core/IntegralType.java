@@ -25,7 +25,14 @@ abstract class IntegralType<T extends Number> extends PrimitiveType<T> {
 
     @Override
     public T read(ByteReader reader) {
-        return this.downCast(LongEncoder.read(reader));
+        return this.downCast(this.readLong(reader));
+    }
+
+    /**
+     * Read a value as a {@code long}, without boxing.
+     */
+    long readLong(ByteReader reader) {
+        return LongEncoder.read(reader);
     }
 
     @Override
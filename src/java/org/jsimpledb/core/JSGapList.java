@@ -0,0 +1,631 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.util.ByteReader;
+import org.jsimpledb.util.ByteUtil;
+import org.jsimpledb.util.ByteWriter;
+import org.jsimpledb.util.UnsignedIntEncoder;
+
+/**
+ * {@link List} implementation for {@linkplain ListField#isGapped gapped} {@link ListField}s.
+ *
+ * <p>
+ * Elements are stored under sparse, strictly increasing positions in the range zero to {@link Integer#MAX_VALUE},
+ * so inserting or removing an element only touches the affected elements (plus, occasionally, a rebalancing of
+ * nearby positions when no gap remains at the insertion point). The list size is kept in a counter under the
+ * field's content prefix key.
+ * </p>
+ *
+ * <p>
+ * The trade-off is that positions say nothing about list indexes: {@link #get get()}, {@link #set set()}, and locating
+ * the insertion point of an {@link #add(int, Object) add()} or {@link #remove(int) remove()} all scan from the nearer end
+ * of the list, which is linear in the distance from that end. No index is cached, because the list content can be
+ * changed through other views. Sequential access should use {@link #listIterator}, whose steps are single key lookups.
+ * </p>
+ */
+class JSGapList<E> extends AbstractList<E> {
+
+    /**
+     * Position of the first element added to an empty list.
+     */
+    static final int FIRST_POSITION = 1 << 30;
+
+    /**
+     * Spacing between positions of elements appended or prepended to the list.
+     */
+    static final int GAP = 1 << 10;
+
+    private static final long POSITION_LIMIT = (long)Integer.MAX_VALUE + 1;
+
+    private final Transaction tx;
+    private final ObjId id;
+    private final ListField<E> field;
+    private final FieldType<E> elementType;
+    private final byte[] contentPrefix;
+    private final byte[] minKey;
+    private final byte[] maxKey;
+
+// Constructors
+
+    JSGapList(Transaction tx, ListField<E> field, ObjId id) {
+        if (tx == null)
+            throw new IllegalArgumentException("null tx");
+        if (field == null)
+            throw new IllegalArgumentException("null field");
+        if (id == null)
+            throw new IllegalArgumentException("null id");
+        this.tx = tx;
+        this.field = field;
+        this.id = id;
+        this.elementType = this.field.elementField.fieldType;
+        this.contentPrefix = field.buildKey(id);
+        this.minKey = ByteUtil.getNextKey(this.contentPrefix);
+        this.maxKey = ByteUtil.getKeyAfterPrefix(this.contentPrefix);
+    }
+
+// List API
+
+    @Override
+    public E get(int index) {
+        final int size = this.size();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+        return this.elementType.read(new ByteReader(this.read(index, index + 1, size).get(0).getValue()));
+    }
+
+    @Override
+    public int size() {
+        return this.field.readSizeCounter(this.tx, this.id);
+    }
+
+    @Override
+    public E set(final int index, final E elem) {
+        return this.tx.mutateAndNotify(this.id, new Transaction.Mutation<E>() {
+            @Override
+            public E mutate() {
+                final int size = JSGapList.this.size();
+                if (index < 0 || index >= size)
+                    throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+                final KVPair pair = JSGapList.this.read(index, index + 1, size).get(0);
+                return JSGapList.this.doSet(pair.getKey(), pair.getValue(), index, elem);
+            }
+        });
+    }
+
+    private E doSet(byte[] key, byte[] oldValue, final int index, final E newElem) {
+
+        // Build new value
+        final byte[] newValue = this.buildValue(newElem);
+
+        // Optimize if no change
+        if (Arrays.equals(newValue, oldValue))
+            return newElem;
+
+        // Decode previous entry
+        final E oldElem = this.elementType.read(new ByteReader(oldValue));
+
+        // Update list content and index
+        this.tx.kvt.put(key, newValue);
+        if (this.field.elementField.indexed) {
+            this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, key, oldValue);
+            this.field.addIndexEntry(this.tx, this.id, this.field.elementField, key, newValue);
+        }
+
+        // Notify field monitors
+        this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
+            @Override
+            void notify(Transaction tx, ListFieldChangeListener listener, int[] path, NavigableSet<ObjId> referrers) {
+                listener.onListFieldReplace(tx, this.getId(), JSGapList.this.field, path, referrers, index, oldElem, newElem);
+            }
+        });
+
+        // Return previous entry
+        return oldElem;
+    }
+
+    @Override
+    public void add(final int index, final E elem) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("index = " + index);
+        this.tx.mutateAndNotify(this.id, new Transaction.Mutation<byte[]>() {
+            @Override
+            public byte[] mutate() {
+                return JSGapList.this.doAddAll(index, Collections.singleton(elem));
+            }
+        });
+    }
+
+    @Override
+    public boolean addAll(final int index, final Collection<? extends E> elems) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("index = " + index);
+        return this.tx.mutateAndNotify(this.id, new Transaction.Mutation<byte[]>() {
+            @Override
+            public byte[] mutate() {
+                return JSGapList.this.doAddAll(index, elems);
+            }
+        }) != null;
+    }
+
+    // Returns the key of the last element added, or null if none were added
+    private byte[] doAddAll(int index, Collection<? extends E> elems0) {
+
+        // Encode elements
+        final ArrayList<E> elems = new ArrayList<>(elems0);
+        final int numElems = elems.size();
+        final ArrayList<byte[]> values = new ArrayList<>(numElems);
+        for (E elem : elems)
+            values.add(this.buildValue(elem));
+
+        // Check bounds
+        final int size = this.size();
+        if (index < 0 || index > size || size + numElems < 0)
+            throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+        if (numElems == 0)
+            return null;
+
+        // Find the smallest window of existing elements around the insertion point that we can renumber to make room.
+        // Normally no renumbering is required; otherwise, widen the window until it leaves some slack for future inserts.
+        // If the positions are too crowded for that, the window ends up being the entire list, which always fits because
+        // the positions range over more values than an int list size can reach.
+        int min = index;
+        int max = index;
+        int radius = 0;
+        long lo;
+        long hi;
+        List<KVPair> window;
+        while (true) {
+            final List<KVPair> pairs = this.read(Math.max(min - 1, 0), Math.min(max + 1, size), size);
+            lo = min > 0 ? this.decodePosition(pairs.get(0).getKey()) : -1;
+            hi = max < size ? this.decodePosition(pairs.get(pairs.size() - 1).getKey()) : POSITION_LIMIT;
+            window = pairs.subList(min > 0 ? 1 : 0, pairs.size() - (max < size ? 1 : 0));
+            final long count = window.size() + numElems;
+            if (min == 0 && max == size) {
+                assert hi - lo > count;
+                break;
+            }
+            if (hi - lo > count && (radius == 0 || hi - lo >= 2 * (count + 1)))
+                break;
+            radius = Math.max(radius * 2, 1);
+            min = Math.max(index - radius, 0);
+            max = Math.min(index + radius, size);
+        }
+
+        // Bump modification counter (structural modification)
+        this.modCount++;
+
+        // Remove the elements being renumbered
+        final ArrayList<byte[]> windowValues = new ArrayList<>(window.size() + numElems);
+        for (KVPair pair : window) {
+            if (this.field.elementField.indexed)
+                this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, pair.getKey(), pair.getValue());
+            windowValues.add(pair.getValue());
+        }
+        if (!window.isEmpty())
+            this.tx.kvt.removeRange(window.get(0).getKey(), ByteUtil.getNextKey(window.get(window.size() - 1).getKey()));
+        windowValues.addAll(index - min, values);
+
+        // Write the new elements along with the renumbered elements
+        final int[] positions = JSGapList.allocate(lo, hi, windowValues.size());
+        byte[] lastKey = null;
+        for (int i = 0; i < positions.length; i++) {
+            final byte[] key = this.buildKey(positions[i]);
+            final byte[] value = windowValues.get(i);
+            this.tx.kvt.put(key, value);
+            if (this.field.elementField.indexed)
+                this.field.addIndexEntry(this.tx, this.id, this.field.elementField, key, value);
+            if (i == index - min + numElems - 1)
+                lastKey = key;
+        }
+        this.field.adjustSizeCounter(this.tx, this.id, numElems);
+
+        // Notify field monitors
+        for (int i = 0; i < numElems; i++) {
+            final int index2 = index + i;
+            final E elem = elems.get(i);
+            this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
+                @Override
+                void notify(Transaction tx, ListFieldChangeListener listener, int[] path, NavigableSet<ObjId> referrers) {
+                    listener.onListFieldAdd(tx, this.getId(), JSGapList.this.field, path, referrers, index2, elem);
+                }
+            });
+        }
+
+        // Done
+        return lastKey;
+    }
+
+    /**
+     * Allocate {@code count} strictly increasing positions strictly between {@code lo} and {@code hi}.
+     * Elements appended or prepended are spaced {@link #GAP} apart when possible; otherwise positions are spread evenly.
+     * Requires {@code hi - lo > count}.
+     */
+    static int[] allocate(long lo, long hi, int count) {
+        assert hi - lo > count;
+        final int[] positions = new int[count];
+        long first = -1;
+        if (lo == -1 && hi == POSITION_LIMIT)
+            first = FIRST_POSITION;
+        else if (hi == POSITION_LIMIT)
+            first = lo + GAP;
+        else if (lo == -1)
+            first = hi - (long)count * GAP;
+        if (first > lo && first + (long)(count - 1) * GAP < hi) {
+            for (int i = 0; i < count; i++)
+                positions[i] = (int)(first + (long)i * GAP);
+        } else {
+            for (int i = 0; i < count; i++)
+                positions[i] = (int)(lo + ((i + 1) * (hi - lo)) / (count + 1));
+        }
+        return positions;
+    }
+
+    @Override
+    public void clear() {
+        this.tx.mutateAndNotify(this.id, new Transaction.Mutation<Void>() {
+            @Override
+            public Void mutate() {
+                JSGapList.this.doClear();
+                return null;
+            }
+        });
+    }
+
+    private void doClear() {
+
+        // Check size
+        if (this.isEmpty())
+            return;
+
+        // Bump modification counter (structural modification)
+        this.modCount++;
+
+        // Delete index entries
+        if (this.field.elementField.indexed)
+            this.field.removeIndexEntries(this.tx, this.id, this.field.elementField);
+
+        // Delete content and reset size counter
+        this.field.deleteContent(this.tx, this.id);
+        this.field.initializeSizeCounter(this.tx, this.id);
+
+        // Notify field monitors
+        this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
+            @Override
+            void notify(Transaction tx, ListFieldChangeListener listener, int[] path, NavigableSet<ObjId> referrers) {
+                listener.onListFieldClear(tx, this.getId(), JSGapList.this.field, path, referrers);
+            }
+        });
+    }
+
+    @Override
+    public E remove(int index) {
+        final E elem = this.get(index);
+        this.removeRange(index, index + 1);
+        return elem;
+    }
+
+    @Override
+    protected void removeRange(final int min, final int max) {
+        this.tx.mutateAndNotify(this.id, new Transaction.Mutation<Void>() {
+            @Override
+            public Void mutate() {
+                JSGapList.this.doRemoveRange(min, max);
+                return null;
+            }
+        });
+    }
+
+    private void doRemoveRange(int min, int max) {
+
+        // Optimize for clear()
+        final int size = this.size();
+        if (min == 0 && max == size) {
+            this.doClear();
+            return;
+        }
+
+        // Check bounds
+        if (min < 0 || max < min || max > size)
+            throw new IndexOutOfBoundsException("min = " + min + ", max = " + max + ", size = " + size);
+        if (min == max)
+            return;
+
+        // Bump modification counter (structural modification)
+        this.modCount++;
+
+        // Delete index entries and content; remaining elements keep their positions
+        final List<KVPair> pairs = this.read(min, max, size);
+        if (this.field.elementField.indexed) {
+            for (KVPair pair : pairs)
+                this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, pair.getKey(), pair.getValue());
+        }
+        this.tx.kvt.removeRange(pairs.get(0).getKey(), ByteUtil.getNextKey(pairs.get(pairs.size() - 1).getKey()));
+        this.field.adjustSizeCounter(this.tx, this.id, min - max);
+
+        // Notify field monitors
+        for (int i = min; i < max; i++)
+            this.notifyRemove(i, pairs.get(i - min).getValue());
+    }
+
+    // Remove the element having the given key, which must exist and be at the given index
+    private void doRemove(byte[] key, byte[] value, int index) {
+
+        // Bump modification counter (structural modification)
+        this.modCount++;
+
+        // Delete index entry and content
+        if (this.field.elementField.indexed)
+            this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, key, value);
+        this.tx.kvt.remove(key);
+        this.field.adjustSizeCounter(this.tx, this.id, -1);
+
+        // Notify field monitors
+        this.notifyRemove(index, value);
+    }
+
+    private void notifyRemove(final int index, final byte[] value) {
+        this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
+
+            private boolean decoded;
+            private E elem;
+
+            @Override
+            void notify(Transaction tx, ListFieldChangeListener listener, int[] path, NavigableSet<ObjId> referrers) {
+                if (!this.decoded) {
+                    this.elem = JSGapList.this.elementType.read(new ByteReader(value));
+                    this.decoded = true;
+                }
+                listener.onListFieldRemove(tx, this.getId(), JSGapList.this.field, path, referrers, index, elem);
+            }
+        });
+    }
+
+    /**
+     * Remove the element at the given position, if any. Used when unreferencing via the list element index,
+     * whose entries contain positions rather than list indexes.
+     *
+     * @param position element position
+     */
+    void removePosition(int position) {
+        final byte[] key = this.buildKey(position);
+        this.tx.mutateAndNotify(this.id, new Transaction.Mutation<Void>() {
+            @Override
+            public Void mutate() {
+                final byte[] value = JSGapList.this.tx.kvt.get(key);
+                if (value == null)
+                    return null;
+                int index = 0;
+                for (Iterator<KVPair> i = JSGapList.this.tx.kvt.getRange(JSGapList.this.minKey, key, false); i.hasNext(); i.next())
+                    index++;
+                JSGapList.this.doRemove(key, value, index);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return this.listIterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        final int size = this.size();
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+        return new GapListIterator(index < size ? this.read(index, index + 1, size).get(0).getKey() : this.maxKey, index);
+    }
+
+// Internal methods
+
+    // Read the list entries in the range [min, max), scanning from whichever end of the list is closer
+    private List<KVPair> read(int min, int max, int size) {
+        assert min >= 0 && min <= max && max <= size;
+        final ArrayList<KVPair> pairs = new ArrayList<>(max - min);
+        if (min == max)
+            return pairs;
+        final boolean reverse = size - max < min;
+        final Iterator<KVPair> i = this.tx.kvt.getRange(this.minKey, this.maxKey, reverse);
+        for (int skip = reverse ? size - max : min; skip > 0; skip--) {
+            if (!i.hasNext())
+                throw new InconsistentDatabaseException("list has fewer than " + size + " entries");
+            i.next();
+        }
+        for (int count = max - min; count > 0; count--) {
+            if (!i.hasNext())
+                throw new InconsistentDatabaseException("list has fewer than " + size + " entries");
+            pairs.add(i.next());
+        }
+        if (reverse)
+            Collections.reverse(pairs);
+        return pairs;
+    }
+
+    private int decodePosition(byte[] key) {
+        return UnsignedIntEncoder.read(new ByteReader(key, this.contentPrefix.length));
+    }
+
+    private byte[] buildKey(int position) {
+        assert position >= 0;
+        final ByteWriter writer = new ByteWriter();
+        writer.write(this.contentPrefix);
+        UnsignedIntEncoder.write(writer, position);
+        return writer.getBytes();
+    }
+
+    private byte[] buildValue(E elem) {
+        final ByteWriter writer = new ByteWriter();
+        try {
+            this.elementType.validateAndWrite(writer, elem);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("list containing " + this.elementType
+              + " can't hold values of type " + (elem != null ? elem.getClass().getName() : "null"), e);
+        }
+        return writer.getBytes();
+    }
+
+// GapListIterator
+
+    // Iterates by key, so each step is a single KV lookup
+    private class GapListIterator implements ListIterator<E> {
+
+        private byte[] cursorKey;                       // the next element is the first one having key >= cursorKey
+        private int nextIndex;
+        private byte[] lastKey;                         // key of the element last returned, if any
+        private int lastIndex;
+        private int expectedModCount;
+
+        GapListIterator(byte[] cursorKey, int nextIndex) {
+            this.cursorKey = cursorKey;
+            this.nextIndex = nextIndex;
+            this.expectedModCount = JSGapList.this.modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextIndex < JSGapList.this.size();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return this.nextIndex > 0;
+        }
+
+        @Override
+        public int nextIndex() {
+            return this.nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return this.nextIndex - 1;
+        }
+
+        @Override
+        public E next() {
+            this.checkModCount();
+            final KVPair pair = JSGapList.this.tx.kvt.getAtLeast(this.cursorKey);
+            if (pair == null || ByteUtil.compare(pair.getKey(), JSGapList.this.maxKey) >= 0)
+                throw new NoSuchElementException();
+            this.lastKey = pair.getKey();
+            this.lastIndex = this.nextIndex++;
+            this.cursorKey = ByteUtil.getNextKey(this.lastKey);
+            return JSGapList.this.elementType.read(new ByteReader(pair.getValue()));
+        }
+
+        @Override
+        public E previous() {
+            this.checkModCount();
+            final KVPair pair = JSGapList.this.tx.kvt.getAtMost(this.cursorKey);
+            if (pair == null || ByteUtil.compare(pair.getKey(), JSGapList.this.minKey) < 0)
+                throw new NoSuchElementException();
+            this.lastKey = pair.getKey();
+            this.lastIndex = --this.nextIndex;
+            this.cursorKey = this.lastKey;
+            return JSGapList.this.elementType.read(new ByteReader(pair.getValue()));
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastKey == null)
+                throw new IllegalStateException();
+            this.checkModCount();
+            final byte[] key = this.lastKey;
+            final int index = this.lastIndex;
+            JSGapList.this.tx.mutateAndNotify(JSGapList.this.id, new Transaction.Mutation<Void>() {
+                @Override
+                public Void mutate() {
+                    final byte[] value = JSGapList.this.tx.kvt.get(key);
+                    if (value == null)
+                        throw new ConcurrentModificationException();
+                    JSGapList.this.doRemove(key, value, index);
+                    return null;
+                }
+            });
+            if (index < this.nextIndex)
+                this.nextIndex--;
+            this.lastKey = null;
+            this.expectedModCount = JSGapList.this.modCount;
+        }
+
+        @Override
+        public void set(final E elem) {
+            if (this.lastKey == null)
+                throw new IllegalStateException();
+            this.checkModCount();
+            final byte[] key = this.lastKey;
+            final int index = this.lastIndex;
+            JSGapList.this.tx.mutateAndNotify(JSGapList.this.id, new Transaction.Mutation<E>() {
+                @Override
+                public E mutate() {
+                    final byte[] value = JSGapList.this.tx.kvt.get(key);
+                    if (value == null)
+                        throw new ConcurrentModificationException();
+                    return JSGapList.this.doSet(key, value, index, elem);
+                }
+            });
+        }
+
+        @Override
+        public void add(final E elem) {
+            this.checkModCount();
+            final int index = this.nextIndex;
+            final byte[] key = JSGapList.this.tx.mutateAndNotify(JSGapList.this.id, new Transaction.Mutation<byte[]>() {
+                @Override
+                public byte[] mutate() {
+                    return JSGapList.this.doAddAll(index, Collections.singleton(elem));
+                }
+            });
+            this.cursorKey = ByteUtil.getNextKey(key);
+            this.nextIndex++;
+            this.lastKey = null;
+            this.expectedModCount = JSGapList.this.modCount;
+        }
+
+        private void checkModCount() {
+            if (JSGapList.this.modCount != this.expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+// ListFieldChangeNotifier
+
+    private abstract class ListFieldChangeNotifier implements FieldChangeNotifier {
+
+        @Override
+        public int getStorageId() {
+            return JSGapList.this.field.storageId;
+        }
+
+        @Override
+        public ObjId getId() {
+            return JSGapList.this.id;
+        }
+
+        @Override
+        public void notify(Transaction tx, Object listener, int[] path, NavigableSet<ObjId> referrers) {
+            this.notify(tx, (ListFieldChangeListener)listener, path, referrers);
+        }
+
+        abstract void notify(Transaction tx, ListFieldChangeListener listener, int[] path, NavigableSet<ObjId> referrers);
+    }
+}
@@ -65,6 +65,10 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
     @Override
     public int size() {
 
+        // Read size counter, if any
+        if (this.field.sizeCounter)
+            return this.field.readSizeCounter(this.tx, this.id);
+
         // Find the last entry, if it exists
         final KVPair pair = this.tx.kvt.getAtMost(ByteUtil.getKeyAfterPrefix(this.contentPrefix));
         if (pair == null || !ByteUtil.isPrefixOf(this.contentPrefix, pair.getKey()))
@@ -183,6 +187,7 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
             // Advance index
             index++;
         }
+        this.field.adjustSizeCounter(this.tx, this.id, numElems);
 
         // Done
         return numElems > 0;
@@ -209,8 +214,9 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
         if (this.field.elementField.indexed)
             this.field.removeIndexEntries(this.tx, this.id, this.field.elementField);
 
-        // Delete content
+        // Delete content and reset size counter
         this.field.deleteContent(this.tx, this.id);
+        this.field.initializeSizeCounter(this.tx, this.id);
 
         // Notify field monitors
         this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
@@ -280,6 +286,7 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
 
         // Shift
         this.shift(max, min, size);
+        this.field.adjustSizeCounter(this.tx, this.id, min - max);
     }
 
     // Shift a contiguous range of list elements; values created or removed are not handled
@@ -32,9 +32,7 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
      * Primary constructor.
      */
     JSMap(Transaction tx, MapField<K, V> field, ObjId id) {
-        super(tx, field.keyField.fieldType, false, field.buildKey(id));
-        this.id = id;
-        this.field = field;
+        this(tx, field, id, false, JSSet.buildContentRange(field.buildKey(id)), null, new Bounds<K>());
     }
 
     /**
@@ -49,6 +47,24 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
         this.field = field;
     }
 
+    @Override
+    public int size() {
+        if (this.field.sizeCounter && this.isUnrestricted())
+            return this.field.readSizeCounter(this.tx, this.id);
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (this.field.sizeCounter && this.isUnrestricted())
+            return this.field.readSizeCounter(this.tx, this.id) == 0;
+        return super.isEmpty();
+    }
+
+    private boolean isUnrestricted() {
+        return this.keyFilter == null && this.bounds.equals(new Bounds<K>());
+    }
+
     @Override
     public V put(final K keyObj, final V valueObj) {
         final byte[] key;
@@ -91,6 +107,8 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
 
         // Put new value
         this.tx.kvt.put(key, newValue);
+        if (oldValue == null)
+            this.field.adjustSizeCounter(this.tx, this.id, 1);
 
         // Add index entries for new value
         if (this.field.keyField.indexed)
@@ -139,6 +157,7 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
 
         // Remove entry
         this.tx.kvt.remove(key);
+        this.field.adjustSizeCounter(this.tx, this.id, -1);
 
         // Remove index entries for old value
         if (this.field.keyField.indexed)
@@ -177,8 +196,9 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
         if (this.isEmpty())
             return;
 
-        // If range is restricted and there are field monitors, use individual deletions so we get individual notifications
-        if (!this.bounds.equals(new Bounds<K>()) && this.tx.hasFieldMonitor(this.id, this.field)) {
+        // If range is restricted and there are field monitors, use individual deletions so we get individual notifications;
+        // likewise if there is a size counter, so it gets adjusted by the number of entries actually removed
+        if (!this.bounds.equals(new Bounds<K>()) && (this.field.sizeCounter || this.tx.hasFieldMonitor(this.id, this.field))) {
             for (Iterator<Map.Entry<K, V>> i = this.entrySet().iterator(); i.hasNext(); ) {
                 i.next();
                 i.remove();
@@ -196,8 +216,9 @@ class JSMap<K, V> extends FieldTypeMap<K, V> {
         if (this.field.valueField.indexed)
             this.field.removeIndexEntries(this.tx, this.id, this.field.valueField, rangeMinKey, rangeMaxKey);
 
-        // Delete content
+        // Delete content and reset size counter (range is not restricted if there is a size counter)
         this.field.deleteContent(this.tx, rangeMinKey, rangeMaxKey);
+        this.field.initializeSizeCounter(this.tx, this.id);
 
         // Notify field monitors
         this.tx.addFieldChangeNotification(new MapFieldChangeNotifier() {
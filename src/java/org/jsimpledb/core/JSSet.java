@@ -27,9 +27,7 @@ class JSSet<E> extends FieldTypeSet<E> {
      * Primary constructor.
      */
     JSSet(Transaction tx, SetField<E> field, ObjId id) {
-        super(tx, field.elementField.fieldType, false, field.buildKey(id));
-        this.id = id;
-        this.field = field;
+        this(tx, field, id, false, JSSet.buildContentRange(field.buildKey(id)), null, new Bounds<E>());
     }
 
     /**
@@ -44,6 +42,29 @@ class JSSet<E> extends FieldTypeSet<E> {
         this.field = field;
     }
 
+    // Excludes the content prefix key itself, which holds the size counter, if any
+    static KeyRange buildContentRange(byte[] prefix) {
+        return new KeyRange(ByteUtil.getNextKey(prefix), ByteUtil.getKeyAfterPrefix(prefix));
+    }
+
+    @Override
+    public int size() {
+        if (this.field.sizeCounter && this.isUnrestricted())
+            return this.field.readSizeCounter(this.tx, this.id);
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (this.field.sizeCounter && this.isUnrestricted())
+            return this.field.readSizeCounter(this.tx, this.id) == 0;
+        return super.isEmpty();
+    }
+
+    private boolean isUnrestricted() {
+        return this.keyFilter == null && this.bounds.equals(new Bounds<E>());
+    }
+
     @Override
     public boolean add(final E newValue) {
         final byte[] key;
@@ -70,6 +91,7 @@ class JSSet<E> extends FieldTypeSet<E> {
         this.tx.kvt.put(key, ByteUtil.EMPTY);
         if (this.field.elementField.indexed)
             this.field.addIndexEntry(this.tx, this.id, this.field.elementField, key, null);
+        this.field.adjustSizeCounter(this.tx, this.id, 1);
 
         // Notify field monitors
         this.tx.addFieldChangeNotification(new SetFieldChangeNotifier() {
@@ -102,8 +124,9 @@ class JSSet<E> extends FieldTypeSet<E> {
         if (this.isEmpty())
             return;
 
-        // If range is restricted and there are field monitors, use individual deletions so we get individual notifications
-        if (!this.bounds.equals(new Bounds<E>()) && this.tx.hasFieldMonitor(this.id, this.field)) {
+        // If range is restricted and there are field monitors, use individual deletions so we get individual notifications;
+        // likewise if there is a size counter, so it gets adjusted by the number of elements actually removed
+        if (!this.bounds.equals(new Bounds<E>()) && (this.field.sizeCounter || this.tx.hasFieldMonitor(this.id, this.field))) {
             for (Iterator<E> i = this.iterator(); i.hasNext(); ) {
                 i.next();
                 i.remove();
@@ -119,8 +142,9 @@ class JSSet<E> extends FieldTypeSet<E> {
         if (this.field.elementField.indexed)
             this.field.removeIndexEntries(this.tx, this.id, this.field.elementField, rangeMinKey, rangeMaxKey);
 
-        // Delete content
+        // Delete content and reset size counter (range is not restricted if there is a size counter)
         this.field.deleteContent(this.tx, rangeMinKey, rangeMaxKey);
+        this.field.initializeSizeCounter(this.tx, this.id);
 
         // Notify field monitors
         this.tx.addFieldChangeNotification(new SetFieldChangeNotifier() {
@@ -155,6 +179,7 @@ class JSSet<E> extends FieldTypeSet<E> {
         this.tx.kvt.remove(key);
         if (this.field.elementField.indexed)
             this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, key, null);
+        this.field.adjustSizeCounter(this.tx, this.id, -1);
 
         // Notify field monitors
         this.tx.addFieldChangeNotification(new SetFieldChangeNotifier() {
@@ -7,12 +7,15 @@
 
 package org.jsimpledb.core;
 
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 
 import org.jsimpledb.util.ByteReader;
 import org.jsimpledb.util.ByteWriter;
@@ -21,13 +24,17 @@ import org.jsimpledb.util.ByteWriter;
  * List field.
  *
  * <p>
- * JSimpleDB list fields have performance characteristics similar to {@link ArrayList}.
+ * JSimpleDB list fields have performance characteristics similar to {@link ArrayList}, unless they use the
+ * {@linkplain #isGapped gapped encoding}, in which case inserts and removes anywhere in the list are cheap
+ * but locating an element by index requires a scan.
  * </p>
  *
  * @param <E> Java type for the list elements
  */
 public class ListField<E> extends CollectionField<List<E>, E> {
 
+    final boolean gapped;
+
     /**
      * Constructor.
      *
@@ -35,17 +42,37 @@ public class ListField<E> extends CollectionField<List<E>, E> {
      * @param storageId field content storage ID
      * @param schema schema version
      * @param elementField this field's element sub-field
+     * @param sizeCounter whether to maintain an element count; implied by {@code gapped}
+     * @param gapped whether to use the gapped encoding
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
     @SuppressWarnings("serial")
-    ListField(String name, int storageId, Schema schema, SimpleField<E> elementField) {
+    ListField(String name, int storageId, Schema schema, SimpleField<E> elementField, boolean sizeCounter, boolean gapped) {
         super(name, storageId, schema, new TypeToken<List<E>>() { }
-          .where(new TypeParameter<E>() { }, elementField.typeToken.wrap()), elementField);
+          .where(new TypeParameter<E>() { }, elementField.typeToken.wrap()), elementField, sizeCounter || gapped);
+        this.gapped = gapped;
     }
 
 // Public methods
 
+    /**
+     * Determine whether this field uses the gapped encoding.
+     *
+     * <p>
+     * In the gapped encoding, elements are stored under sparse, increasing positions rather than consecutive indexes,
+     * and the list size is maintained in a counter. Note that for such fields, the list index component of the
+     * {@linkplain Transaction#queryListElementIndex list element index} is the element's position, which
+     * preserves the order of elements in the list but is not the element's list index.
+     * </p>
+     *
+     * @return true if this field uses the gapped encoding
+     * @see org.jsimpledb.schema.ListSchemaField#isGapped
+     */
+    public boolean isGapped() {
+        return this.gapped;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public List<E> getValue(Transaction tx, ObjId id) {
@@ -61,14 +88,14 @@ public class ListField<E> extends CollectionField<List<E>, E> {
 
     @Override
     public String toString() {
-        return "list field `" + this.name + "' containing " + this.elementField;
+        return (this.gapped ? "gapped " : "") + "list field `" + this.name + "' containing " + this.elementField;
     }
 
 // Non-public methods
 
     @Override
     List<E> getValueInternal(Transaction tx, ObjId id) {
-        return new JSList<E>(tx, this, id);
+        return this.gapped ? new JSGapList<E>(tx, this, id) : new JSList<E>(tx, this, id);
     }
 
     @Override
@@ -85,6 +112,10 @@ public class ListField<E> extends CollectionField<List<E>, E> {
     void copy(ObjId srcId, ObjId dstId, Transaction srcTx, Transaction dstTx) {
         final List<E> srcList = this.getValue(srcTx, srcId);
         final List<E> dstList = this.getValue(dstTx, dstId);
+        if (this.gapped) {
+            this.copyGapped(srcList, dstList);
+            return;
+        }
         final int ssize = srcList.size();
         final int dsize = dstList.size();
         final int min = Math.min(ssize, dsize);
@@ -96,6 +127,20 @@ public class ListField<E> extends CollectionField<List<E>, E> {
             dstList.addAll(srcList.subList(dsize, ssize));
     }
 
+    // Same as above, but without positional access
+    private void copyGapped(List<E> srcList, List<E> dstList) {
+        final Iterator<E> si = srcList.iterator();
+        final ListIterator<E> di = dstList.listIterator();
+        while (si.hasNext() && di.hasNext()) {
+            di.next();
+            di.set(si.next());
+        }
+        if (di.hasNext())
+            dstList.subList(di.nextIndex(), dstList.size()).clear();
+        else if (si.hasNext())
+            dstList.addAll(Lists.newArrayList(si));
+    }
+
     @Override
     void buildIndexEntry(ObjId id, SimpleField<?> subField, ByteReader reader, byte[] value, ByteWriter writer) {
         assert subField == this.elementField;
@@ -15,8 +15,11 @@ import org.jsimpledb.util.UnsignedIntEncoder;
 
 class ListFieldStorageInfo<E> extends CollectionFieldStorageInfo<List<E>, E> {
 
+    final boolean gapped;
+
     ListFieldStorageInfo(ListField<E> field) {
         super(field);
+        this.gapped = field.gapped;
     }
 
     @Override
@@ -34,6 +37,7 @@ class ListFieldStorageInfo<E> extends CollectionFieldStorageInfo<List<E>, E> {
 
     // Note: as we delete list elements, the index of remaining elements will decrease by one each time.
     // However, the KVPairIterator always reflects the current state so we'll see updated indexes.
+    // For gapped lists, the index entries contain positions instead, which don't change on removal.
     @Override
     void unreference(Transaction tx, int storageId, ObjId target, ObjId referrer, byte[] prefix) {
         assert storageId == this.elementField.storageId;
@@ -41,13 +45,34 @@ class ListFieldStorageInfo<E> extends CollectionFieldStorageInfo<List<E>, E> {
         for (KVPairIterator i = new KVPairIterator(tx.kvt, prefix); i.hasNext(); ) {
             final ByteReader reader = new ByteReader(i.next().getKey());
             reader.skip(prefix.length);
-            list.remove(UnsignedIntEncoder.read(reader));
+            if (this.gapped)
+                ((JSGapList<?>)list).removePosition(UnsignedIntEncoder.read(reader));
+            else
+                list.remove(UnsignedIntEncoder.read(reader));
         }
     }
 
+// Object
+
     @Override
     public String toString() {
-        return "list field with element " + this.elementField;
+        return (this.gapped ? "gapped " : "") + "list field with element " + this.elementField
+          + (this.sizeCounter && !this.gapped ? " and size counter" : "");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        final ListFieldStorageInfo<?> that = (ListFieldStorageInfo<?>)obj;
+        return this.gapped == that.gapped;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() ^ (this.gapped ? 1 : 0);
     }
 }
 
@@ -45,14 +45,16 @@ public class MapField<K, V> extends ComplexField<NavigableMap<K, V>> {
      * @param schema schema version
      * @param keyField this field's key sub-field
      * @param valueField this field's value sub-field
+     * @param sizeCounter whether to maintain an entry count
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
     @SuppressWarnings("serial")
-    MapField(String name, int storageId, Schema schema, SimpleField<K> keyField, SimpleField<V> valueField) {
+    MapField(String name, int storageId, Schema schema,
+      SimpleField<K> keyField, SimpleField<V> valueField, boolean sizeCounter) {
         super(name, storageId, schema, new TypeToken<NavigableMap<K, V>>() { }
           .where(new TypeParameter<K>() { }, keyField.typeToken.wrap())
-          .where(new TypeParameter<V>() { }, valueField.typeToken.wrap()));
+          .where(new TypeParameter<V>() { }, valueField.typeToken.wrap()), sizeCounter);
         this.keyField = keyField;
         this.valueField = valueField;
         assert this.keyField.parent == null;
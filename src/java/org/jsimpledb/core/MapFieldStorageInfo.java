@@ -77,7 +77,8 @@ class MapFieldStorageInfo<K, V> extends ComplexFieldStorageInfo<NavigableMap<K,
 
     @Override
     public String toString() {
-        return "map field with key " + this.keyField + " and value " + this.valueField;
+        return "map field with key " + this.keyField + " and value " + this.valueField
+          + (this.sizeCounter ? " and size counter" : "");
     }
 
     @Override
@@ -13,6 +13,10 @@ import org.jsimpledb.util.UnsignedIntEncoder;
 
 /**
  * Per-object meta data encoded in the object's KV value.
+ *
+ * <p>
+ * Instances are cached by the associated {@link Transaction}; use {@link Transaction#getObjInfo} to read them.
+ * </p>
  */
 class ObjInfo {
 
@@ -44,6 +48,13 @@ class ObjInfo {
         this.deleteNotified = FieldTypeRegistry.BOOLEAN.read(reader);
     }
 
+    private ObjInfo(Transaction tx, ObjId id, int version, boolean deleteNotified) {
+        this.tx = tx;
+        this.id = id;
+        this.version = version;
+        this.deleteNotified = deleteNotified;
+    }
+
     public ObjId getId() {
         return this.id;
     }
@@ -88,6 +99,7 @@ class ObjInfo {
         UnsignedIntEncoder.write(writer, version);
         FieldTypeRegistry.BOOLEAN.write(writer, deleteNotified);
         tx.kvt.put(id.getBytes(), writer.getBytes());
+        tx.cacheObjInfo(new ObjInfo(tx, id, version, deleteNotified));
     }
 }
 
@@ -77,6 +77,14 @@ public class ObjType extends SchemaItem {
             assert field.compositeIndexMap == null;
             if (!indexMap.isEmpty())
                 field.compositeIndexMap = Collections.unmodifiableMap(indexMap);
+            final ArrayList<CompositeIndex> includingIndexes = new ArrayList<>();
+            for (CompositeIndex index : this.compositeIndexes.values()) {
+                if (index.includedFields.contains(field))
+                    includingIndexes.add(index);
+            }
+            assert field.compositeIncludes == null;
+            if (!includingIndexes.isEmpty())
+                field.compositeIncludes = Collections.unmodifiableList(includingIndexes);
         }
     }
 
@@ -200,8 +208,27 @@ public class ObjType extends SchemaItem {
         final int[] storageIds = Ints.toArray(schemaIndex.getIndexedFields());
         if (storageIds.length < 2 || storageIds.length > Database.MAX_INDEXED_FIELDS)
             throw new IllegalArgumentException("invalid " + schemaIndex + ": can't index " + storageIds.length + " fields");
+        final ArrayList<SimpleField<?>> list = this.getCompositeIndexFields(schemaIndex, storageIds);
+
+        // Get included fields
+        final ArrayList<SimpleField<?>> includedList = this.getCompositeIndexFields(schemaIndex,
+          Ints.toArray(schemaIndex.getIncludedFields()));
+        for (SimpleField<?> field : includedList) {
+            if (list.contains(field)) {
+                throw new IllegalArgumentException("invalid " + schemaIndex
+                  + ": field with storage ID " + field.storageId + " is both indexed and included");
+            }
+        }
+
+        // Create and add index
+        final CompositeIndex index = new CompositeIndex(schemaIndex.getName(),
+          schemaIndex.getStorageId(), schema, this, list, includedList);
+        this.addSchemaItem(this.compositeIndexes, this.compositeIndexesByName, index);
+        return index;
+    }
+
+    private ArrayList<SimpleField<?>> getCompositeIndexFields(SchemaCompositeIndex schemaIndex, int[] storageIds) {
         final ArrayList<SimpleField<?>> list = new ArrayList<>(storageIds.length);
-        int count = 0;
         for (int storageId : storageIds) {
             final Field<?> field = this.fields.get(storageId);
             if (!(field instanceof SimpleField)) {
@@ -215,11 +242,6 @@ public class ObjType extends SchemaItem {
             }
             list.add(simpleField);
         }
-
-        // Create and add index
-        final CompositeIndex index = new CompositeIndex(schemaIndex.getName(), schemaIndex.getStorageId(), schema, this, list);
-        this.addSchemaItem(this.compositeIndexes, this.compositeIndexesByName, index);
-        return index;
+        return list;
     }
 }
-
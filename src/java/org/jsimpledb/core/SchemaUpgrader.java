@@ -0,0 +1,412 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jsimpledb.kv.RetryTransactionException;
+import org.jsimpledb.schema.SchemaModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upgrades objects to a target schema version in the background.
+ *
+ * <p>
+ * Normally, objects are upgraded to the schema version associated with a transaction only when they are accessed,
+ * so after a schema change, {@link VersionChangeListener}s fire unpredictably during normal database activity.
+ * Instances of this class instead find objects having some other schema version using {@link Transaction#queryVersion}
+ * and upgrade them via {@link Transaction#updateSchemaVersion Transaction.updateSchemaVersion()}, in a series of
+ * separate transactions each of which upgrades at most {@linkplain #setBatchSize batch size} objects.
+ * A configurable {@linkplain #setBatchDelay delay} between batches limits the load imposed on the database.
+ * </p>
+ *
+ * <p>
+ * Batches may be run synchronously via {@link #upgradeBatch}, or in a background thread via {@link #start} and {@link #stop}.
+ * In the latter case, once no more objects remain to be upgraded, the database is re-checked every
+ * {@linkplain #setPollInterval poll interval}, so objects created with an older schema version (e.g., by other nodes
+ * still running older code) are also eventually upgraded.
+ * </p>
+ *
+ * <p>
+ * No state is stored in the database other than the objects themselves, so an upgrade may be stopped and later restarted
+ * by a new instance, even on a different node, without losing any progress. Objects that can't be upgraded because
+ * their type does not exist in the target schema version are skipped and counted as {@linkplain #getFailureCount failures};
+ * they are retried after the database has been fully scanned.
+ * </p>
+ *
+ * <p>
+ * In order for {@link VersionChangeListener}s to be notified, subclasses should override {@link #createTransaction}
+ * and register them there.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe.
+ * </p>
+ */
+public class SchemaUpgrader {
+
+    /**
+     * Default {@linkplain #setBatchSize batch size}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Default {@linkplain #setBatchDelay batch delay} in milliseconds.
+     */
+    public static final long DEFAULT_BATCH_DELAY = 100;
+
+    /**
+     * Default {@linkplain #setPollInterval poll interval} in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 60 * 1000;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Database db;
+    private final SchemaModel schemaModel;
+    private final int version;
+
+    // Last object attempted for each schema version during the current scan of the database
+    private final HashMap<Integer, ObjId> cursors = new HashMap<>();
+
+    private final AtomicLong upgradeCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long batchDelay = DEFAULT_BATCH_DELAY;
+    private volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+    private volatile boolean complete;
+
+    private volatile Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param db database
+     * @param schemaModel target schema, or null to use the schema already recorded in the database
+     * @param version target schema version number, or zero to use the highest recorded version
+     * @throws IllegalArgumentException if {@code db} is null
+     * @throws IllegalArgumentException if {@code version} is less than zero
+     * @see Database#createTransaction Database.createTransaction()
+     */
+    public SchemaUpgrader(Database db, SchemaModel schemaModel, int version) {
+        if (db == null)
+            throw new IllegalArgumentException("null db");
+        if (version < 0)
+            throw new IllegalArgumentException("invalid version " + version);
+        this.db = db;
+        this.schemaModel = schemaModel;
+        this.version = version;
+    }
+
+// Configuration
+
+    /**
+     * Get the maximum number of objects upgraded in a single transaction.
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the maximum number of objects upgraded in a single transaction.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_BATCH_SIZE}.
+     * </p>
+     *
+     * @param batchSize batch size
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize <= 0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the delay between batches when running in the background.
+     *
+     * @return batch delay in milliseconds
+     */
+    public long getBatchDelay() {
+        return this.batchDelay;
+    }
+
+    /**
+     * Set the delay between batches when running in the background.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_BATCH_DELAY}.
+     * </p>
+     *
+     * @param batchDelay batch delay in milliseconds
+     * @throws IllegalArgumentException if {@code batchDelay} is negative
+     */
+    public void setBatchDelay(long batchDelay) {
+        if (batchDelay < 0)
+            throw new IllegalArgumentException("batchDelay < 0");
+        this.batchDelay = batchDelay;
+    }
+
+    /**
+     * Get the delay before re-checking the database after no more objects remain to be upgraded.
+     *
+     * @return poll interval in milliseconds
+     */
+    public long getPollInterval() {
+        return this.pollInterval;
+    }
+
+    /**
+     * Set the delay before re-checking the database after no more objects remain to be upgraded.
+     * This also applies after an unexpected error.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_POLL_INTERVAL}.
+     * </p>
+     *
+     * @param pollInterval poll interval in milliseconds
+     * @throws IllegalArgumentException if {@code pollInterval} is negative
+     */
+    public void setPollInterval(long pollInterval) {
+        if (pollInterval < 0)
+            throw new IllegalArgumentException("pollInterval < 0");
+        this.pollInterval = pollInterval;
+    }
+
+// Progress
+
+    /**
+     * Get the total number of objects upgraded by this instance.
+     *
+     * @return number of objects upgraded
+     */
+    public long getUpgradeCount() {
+        return this.upgradeCount.get();
+    }
+
+    /**
+     * Get the total number of objects that could not be upgraded by this instance because their types
+     * do not exist in the target schema version.
+     *
+     * @return number of failed upgrades
+     */
+    public long getFailureCount() {
+        return this.failureCount.get();
+    }
+
+    /**
+     * Get the total number of batches successfully committed by this instance.
+     *
+     * @return number of batches
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     * Determine whether the most recent batch found no more objects to upgrade.
+     *
+     * @return true if no more (upgradable) objects remained as of the most recent batch
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+// Lifecycle
+
+    /**
+     * Start upgrading objects in a background thread.
+     *
+     * @throws IllegalStateException if this instance is already started
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (this.thread != null)
+            throw new IllegalStateException("already started");
+        this.thread = new Thread("Schema Upgrader") {
+            @Override
+            public void run() {
+                SchemaUpgrader.this.runUpgrades(this);
+            }
+        };
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop the background thread, if running, and wait for it to exit. Any batch in progress is rolled back.
+     */
+    @PreDestroy
+    public void stop() {
+        final Thread stoppingThread;
+        synchronized (this) {
+            if ((stoppingThread = this.thread) == null)
+                return;
+            this.thread = null;
+            this.notifyAll();
+        }
+        stoppingThread.interrupt();
+        try {
+            stoppingThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Upgrade the next batch of objects in a new transaction.
+     *
+     * @return the number of objects upgraded (or attempted), or zero if no more objects remain to be upgraded
+     * @throws RetryTransactionException if the transaction could not be committed
+     */
+    public int upgradeBatch() {
+
+        // Find next batch of objects to upgrade; this is done in a separate step because upgrading
+        // objects modifies the schema version index we are iterating
+        final Transaction tx = this.createTransaction();
+        final ArrayList<ObjId> batch = new ArrayList<>();
+        int numUpgraded = 0;
+        int numFailed = 0;
+        boolean success = false;
+        try {
+            final int targetVersion = tx.getSchema().getVersionNumber();
+            synchronized (this.cursors) {
+                for (Map.Entry<Integer, NavigableSet<ObjId>> entry : tx.queryVersion().asMap().entrySet()) {
+                    final int objVersion = entry.getKey();
+                    if (objVersion == targetVersion)
+                        continue;
+                    NavigableSet<ObjId> ids = entry.getValue();
+                    final ObjId cursor = this.cursors.get(objVersion);
+                    if (cursor != null)
+                        ids = ids.tailSet(cursor, false);
+                    for (ObjId id : ids) {
+                        batch.add(id);
+                        this.cursors.put(objVersion, id);
+                        if (batch.size() >= this.batchSize)
+                            break;
+                    }
+                    if (batch.size() >= this.batchSize)
+                        break;
+                }
+                if (batch.isEmpty())
+                    this.cursors.clear();
+            }
+
+            // Upgrade objects
+            for (ObjId id : batch) {
+                try {
+                    tx.updateSchemaVersion(id);
+                    numUpgraded++;
+                } catch (DeletedObjectException e) {
+                    // object was deleted by someone else
+                } catch (TypeNotInSchemaVersionException e) {
+                    this.log.debug("can't upgrade " + id + " to schema version " + targetVersion + ": " + e);
+                    numFailed++;
+                }
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                tx.rollback();
+                this.resetCursors();
+            }
+        }
+
+        // Commit
+        try {
+            tx.commit();
+        } catch (RuntimeException e) {
+            this.resetCursors();
+            throw e;
+        }
+
+        // Update progress
+        this.upgradeCount.addAndGet(numUpgraded);
+        this.failureCount.addAndGet(numFailed);
+        this.batchCount.incrementAndGet();
+        this.complete = batch.isEmpty();
+        return batch.size();
+    }
+
+    // Restart from the beginning after a failed batch
+    private void resetCursors() {
+        synchronized (this.cursors) {
+            this.cursors.clear();
+        }
+    }
+
+    /**
+     * Create a transaction for upgrading a batch of objects.
+     *
+     * <p>
+     * The implementation in {@link SchemaUpgrader} invokes {@link Database#createTransaction Database.createTransaction()}
+     * using the schema and version given to the constructor. Subclasses may override, for example,
+     * to register {@link VersionChangeListener}s.
+     * </p>
+     *
+     * @return new transaction
+     */
+    protected Transaction createTransaction() {
+        return this.db.createTransaction(this.schemaModel, this.version, false);
+    }
+
+    // Background thread main loop
+    private void runUpgrades(Thread currentThread) {
+        this.log.info("starting schema upgrades for " + this.db);
+        long delay = 0;
+        while (true) {
+
+            // Wait for next batch
+            synchronized (this) {
+                if (this.thread != currentThread)
+                    break;
+                if (delay > 0) {
+                    try {
+                        this.wait(delay);
+                    } catch (InterruptedException e) {
+                        // re-check whether we've been stopped
+                    }
+                    if (this.thread != currentThread)
+                        break;
+                }
+            }
+
+            // Upgrade next batch
+            try {
+                final int count = this.upgradeBatch();
+                if (count == 0) {
+                    this.log.debug("no more objects to upgrade (" + this.upgradeCount.get() + " upgraded, "
+                      + this.failureCount.get() + " failed so far)");
+                }
+                delay = count > 0 ? this.batchDelay : this.pollInterval;
+            } catch (RetryTransactionException e) {
+                this.log.debug("retrying schema upgrade batch after transaction conflict: " + e);
+                delay = this.batchDelay;
+            } catch (RuntimeException e) {
+                if (this.thread != currentThread)
+                    break;
+                this.log.error("error upgrading objects; will retry in " + this.pollInterval + "ms", e);
+                delay = this.pollInterval;
+            }
+        }
+        this.log.info("stopped schema upgrades for " + this.db + " (" + this.upgradeCount.get() + " objects upgraded)");
+    }
+}
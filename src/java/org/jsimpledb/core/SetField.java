@@ -32,13 +32,14 @@ public class SetField<E> extends CollectionField<NavigableSet<E>, E> {
      * @param storageId field content storage ID
      * @param schema schema version
      * @param elementField this field's element sub-field
+     * @param sizeCounter whether to maintain an element count
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code storageId} is non-positive
      */
     @SuppressWarnings("serial")
-    SetField(String name, int storageId, Schema schema, SimpleField<E> elementField) {
+    SetField(String name, int storageId, Schema schema, SimpleField<E> elementField, boolean sizeCounter) {
         super(name, storageId, schema, new TypeToken<NavigableSet<E>>() { }
-          .where(new TypeParameter<E>() { }, elementField.typeToken.wrap()), elementField);
+          .where(new TypeParameter<E>() { }, elementField.typeToken.wrap()), elementField, sizeCounter);
     }
 
 // Public methods
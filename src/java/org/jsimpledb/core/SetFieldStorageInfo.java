@@ -35,7 +35,7 @@ class SetFieldStorageInfo<E> extends CollectionFieldStorageInfo<NavigableSet<E>,
 
     @Override
     public String toString() {
-        return "set field with element " + this.elementField;
+        return "set field with element " + this.elementField + (this.sizeCounter ? " and size counter" : "");
     }
 }
 
@@ -8,6 +8,7 @@
 package org.jsimpledb.core;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.jsimpledb.util.ByteWriter;
@@ -33,6 +34,7 @@ public class SimpleField<T> extends Field<T> {
 
     ComplexField<?> parent;
     Map<CompositeIndex, Integer> compositeIndexMap;         // maps index to this field's offset in field list
+    List<CompositeIndex> compositeIncludes;                 // indexes that include this field's value in their entries
 
     /**
      * Constructor.
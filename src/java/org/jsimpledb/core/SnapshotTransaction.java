@@ -26,7 +26,7 @@ package org.jsimpledb.core;
 public class SnapshotTransaction extends Transaction {
 
     SnapshotTransaction(Transaction parent) {
-        super(parent.db, new SnapshotKVTransaction(parent), parent.schemas, parent.schema);
+        super(parent.db, new SnapshotKVTransaction(parent), parent.schemas, parent.schema, parent.referrerIndex, false);
     }
 
     /**
@@ -44,6 +44,8 @@ public class SnapshotTransaction extends Transaction {
 
         // Delete all object and index keys
         this.db.reset(this);
+        this.clearObjInfoCache();
+        this.clearReferrersCache();
     }
 
     /**
@@ -8,8 +8,11 @@
 package org.jsimpledb.core;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,11 +20,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -30,6 +35,7 @@ import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVTransaction;
 import org.jsimpledb.kv.KVTransactionException;
 import org.jsimpledb.kv.KeyRanges;
+import org.jsimpledb.tuple.Tuple;
 import org.jsimpledb.util.ByteReader;
 import org.jsimpledb.util.ByteUtil;
 import org.jsimpledb.util.ByteWriter;
@@ -104,6 +110,8 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *  <li>{@link #getAll getAll(int)} - Get all objects, or all objects of a specific type</li>
  *  <li>{@link #readSimpleField readSimpleField()} - Read the value of a {@link SimpleField} in an object</li>
+ *  <li>{@link #readIntField readIntField()}, {@link #readLongField readLongField()}, etc.
+ *      - Read the value of a primitive {@link SimpleField} in an object without boxing it</li>
  *  <li>{@link #writeSimpleField writeSimpleField()} - Write the value of a {@link SimpleField} in an object</li>
  *  <li>{@link #readCounterField readCounterField()} - Read the value of a {@link CounterField} in an object</li>
  *  <li>{@link #writeCounterField writeCounterField()} - Write the value of a {@link CounterField} in an object</li>
@@ -135,6 +143,10 @@ import org.slf4j.LoggerFactory;
  *      {@link ListFieldChangeListener}</li>
  *  <li>{@link #removeMapFieldChangeListener removeMapFieldChangeListener()} - Unregister a previously registered
  *      {@link MapFieldChangeListener}</li>
+ *  <li>{@link #setBatchNotifications setBatchNotifications()} - Configure batched delivery of field change notifications</li>
+ *  <li>{@link #setDeferNotifications setDeferNotifications()} - Configure deferral of field change notifications
+ *      until commit</li>
+ *  <li>{@link #flushNotifications flushNotifications()} - Deliver deferred field change notifications</li>
  * </ul>
  *
  * <p>
@@ -158,6 +170,12 @@ import org.slf4j.LoggerFactory;
  *  <li>{@link #queryCompositeIndex3 queryCompositeIndex3()} - Query a composite index on three fields</li>
  *  <li>{@link #queryCompositeIndex3 queryCompositeIndex4()} - Query a composite index on four fields</li>
  *  <!-- COMPOSITE-INDEX -->
+ *  <li>{@link #queryCompositeIndexIncludes queryCompositeIndexIncludes()} - Query a composite index along with
+ *      the values of its included fields</li>
+ *  <li>{@link #countObjects countObjects()} - Count the objects having some object type</li>
+ *  <li>{@link #countIndexEntries countIndexEntries()} - Count the index entries for some value of a {@link SimpleField}</li>
+ *  <li>{@link #countCompositeIndexEntries countCompositeIndexEntries()} - Count the composite index entries
+ *      for some combination of field values</li>
  * </ul>
  *
  * <p>
@@ -171,6 +189,8 @@ import org.slf4j.LoggerFactory;
 public class Transaction {
 
     private static final int MAX_GENERATED_KEY_ATTEMPTS = 1000;
+    private static final int MAX_OBJ_INFO_CACHE_SIZE = 1000;
+    private static final int MAX_CACHED_REFERRERS = 10000;
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -178,27 +198,44 @@ public class Transaction {
     final KVTransaction kvt;
     final Schemas schemas;
     final Schema schema;
+    final boolean referrerIndex;
+    final boolean statistics;
 
     boolean stale;
     boolean readOnly;
+    boolean kvReadOnly;
     boolean rollbackOnly;
+    boolean batchNotifications;
+    boolean deferNotifications;
 
     private final ThreadLocal<TreeMap<Integer, ArrayList<FieldChangeNotifier>>> pendingNotifications = new ThreadLocal<>();
     private final HashSet<VersionChangeListener> versionChangeListeners = new HashSet<>();
     private final HashSet<CreateListener> createListeners = new HashSet<>();
     private final HashSet<DeleteListener> deleteListeners = new HashSet<>();
     private final TreeMap<Integer, HashSet<FieldMonitor>> monitorMap = new TreeMap<>();
+    private final TreeMap<Integer, ArrayList<FieldChangeNotifier>> deferredNotifications = new TreeMap<>();
     private final LinkedHashSet<Callback> callbacks = new LinkedHashSet<>();
+    @SuppressWarnings("serial")
+    private final LinkedHashMap<ObjId, ObjInfo> objInfoCache = new LinkedHashMap<ObjId, ObjInfo>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjId, ObjInfo> eldest) {
+            return this.size() > MAX_OBJ_INFO_CACHE_SIZE;
+        }
+    };
+    private final LinkedHashMap<ReferrersKey, List<ObjId>> referrersCache = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedReferrers;
 
-    Transaction(Database db, KVTransaction kvt, Schemas schemas, int versionNumber) {
-        this(db, kvt, schemas, schemas.getVersion(versionNumber));
+    Transaction(Database db, KVTransaction kvt, Schemas schemas, int versionNumber, boolean referrerIndex, boolean statistics) {
+        this(db, kvt, schemas, schemas.getVersion(versionNumber), referrerIndex, statistics);
     }
 
-    Transaction(Database db, KVTransaction kvt, Schemas schemas, Schema schema) {
+    Transaction(Database db, KVTransaction kvt, Schemas schemas, Schema schema, boolean referrerIndex, boolean statistics) {
         this.db = db;
         this.kvt = kvt;
         this.schemas = schemas;
         this.schema = schema;
+        this.referrerIndex = referrerIndex;
+        this.statistics = statistics;
     }
 
 // Transaction Meta-Data
@@ -299,6 +336,9 @@ public class Transaction {
             this.rollback();
             throw new RollbackOnlyTransactionException(this);
         }
+
+        // Deliver deferred notifications, if any
+        this.flushNotifications();
         this.stale = true;
 
         // Do before completion callbacks
@@ -357,6 +397,7 @@ public class Transaction {
         if (this.stale)
             throw new StaleTransactionException(this);
         this.stale = true;
+        this.deferredNotifications.clear();
         if (this.log.isTraceEnabled())
             this.log.trace("rollback() invoked on" + (this.readOnly ? " read-only" : "") + " transaction " + this);
 
@@ -419,10 +460,14 @@ public class Transaction {
      *
      * @param readOnly read-only setting
      * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws IllegalStateException if {@code readOnly} is false but this transaction was created with a read-only
+     *  key/value transaction via {@link Database#createTransaction(SchemaModel, int, boolean, boolean)}
      */
     public synchronized void setReadOnly(boolean readOnly) {
         if (this.stale)
             throw new StaleTransactionException(this);
+        if (!readOnly && this.kvReadOnly)
+            throw new IllegalStateException("transaction was created read-only at the key/value level");
         this.readOnly = readOnly;
     }
 
@@ -651,6 +696,7 @@ public class Transaction {
 
         // Write object version index entry
         this.kvt.put(Database.buildVersionIndexKey(id, objType.schema.versionNumber), ByteUtil.EMPTY);
+        this.adjustObjectCount(objType, 1);
 
         // Initialize counters to zero
         if (!objType.counterFields.isEmpty()) {
@@ -658,15 +704,25 @@ public class Transaction {
                 this.kvt.put(field.buildKey(id), this.kvt.encodeCounter(0));
         }
 
+        // Initialize complex field size counters to zero
+        for (ComplexField<?> field : objType.complexFields.values())
+            field.initializeSizeCounter(this, id);
+
         // Write simple field index entries
         for (SimpleField<?> field : objType.simpleFields.values()) {
-            if (field.indexed)
-                this.kvt.put(Transaction.buildSimpleIndexEntry(field, id, null), ByteUtil.EMPTY);
+            if (field.indexed) {
+                final byte[] indexEntry = Transaction.buildSimpleIndexEntry(field, id, null);
+                this.kvt.put(indexEntry, ByteUtil.EMPTY);
+                this.indexEntryChanged(field, indexEntry, 1);
+            }
         }
 
         // Write composite index entries
-        for (CompositeIndex index : objType.compositeIndexes.values())
-            this.kvt.put(Transaction.buildDefaultCompositeIndexEntry(id, index), ByteUtil.EMPTY);
+        for (CompositeIndex index : objType.compositeIndexes.values()) {
+            final byte[] indexEntry = Transaction.buildDefaultCompositeIndexEntry(id, index);
+            this.kvt.put(indexEntry, Transaction.buildCompositeIndexValue(null, id, index));
+            this.adjustCompositeIndexStatistics(indexEntry, 1);
+        }
 
         // Notify listeners
         for (CreateListener listener : this.createListeners.toArray(new CreateListener[this.createListeners.size()]))
@@ -726,16 +782,23 @@ public class Transaction {
 
         // Handle delete cascade and recurive DeleteAction.DELETE without hogging Java stack
         final ObjIdSet deletables = new ObjIdSet();
+        final ObjIdSet deleteds = new ObjIdSet();
         deletables.add(id);
         boolean found = false;
         while (!deletables.isEmpty())
-            found |= this.doDelete(deletables.iterator().next(), deletables);
+            found |= this.doDelete(deletables.iterator().next(), deletables, deleteds);
+
+        // Discard referrer index entries for fields that no longer refer to the deleted objects
+        if (this.referrerIndex) {
+            for (ObjId deleted : deleteds)
+                this.pruneReferrerIndex(deleted);
+        }
 
         // Done
         return found;
     }
 
-    private synchronized boolean doDelete(final ObjId id, ObjIdSet deletables) {
+    private synchronized boolean doDelete(final ObjId id, ObjIdSet deletables, ObjIdSet deleteds) {
 
         // Loop here to handle any mutations within delete notification listener callbacks
         ObjInfo info;
@@ -752,8 +815,7 @@ public class Transaction {
             }
 
             // Determine if any EXCEPTION reference fields refer to the object (from some other object); if so, throw exception
-            for (ReferenceFieldStorageInfo fieldInfo :
-              Iterables.filter(this.schemas.storageInfos.values(), ReferenceFieldStorageInfo.class)) {
+            for (ReferenceFieldStorageInfo fieldInfo : this.findReferringFields(id)) {
                 for (ObjId referrer : this.findReferrers(id, DeleteAction.EXCEPTION, fieldInfo.storageId)) {
                     if (!referrer.equals(id))
                         throw new ReferencedObjectException(id, referrer, fieldInfo.storageId);
@@ -784,10 +846,11 @@ public class Transaction {
         // Actually delete the object
         this.deleteObjectData(info);
         deletables.remove(id);
+        deleteds.add(id);
 
         // Find all UNREFERENCE references and unreference them
-        for (ReferenceFieldStorageInfo fieldInfo :
-          Iterables.filter(this.schemas.storageInfos.values(), ReferenceFieldStorageInfo.class)) {
+        final Iterable<ReferenceFieldStorageInfo> referringFields = this.findReferringFields(id);
+        for (ReferenceFieldStorageInfo fieldInfo : referringFields) {
             final NavigableSet<ObjId> referrers = this.findReferrers(id, DeleteAction.UNREFERENCE, fieldInfo.storageId);
             if (fieldInfo.isSubField()) {
                 final ComplexFieldStorageInfo<?> superFieldInfo = this.schemas.verifyStorageInfo(
@@ -801,8 +864,11 @@ public class Transaction {
         }
 
         // Find all DELETE references and mark the containing object for deletion (caller will call us back to actually delete)
-        for (ObjId referrer : this.findReferrers(id, DeleteAction.DELETE, -1))
-            deletables.add(referrer);
+        if (this.referrerIndex) {
+            for (ReferenceFieldStorageInfo fieldInfo : referringFields)
+                deletables.addAll(this.findReferrers(id, DeleteAction.DELETE, fieldInfo.storageId));
+        } else
+            deletables.addAll(this.findReferrers(id, DeleteAction.DELETE, -1));
 
         // Done
         return true;
@@ -815,13 +881,19 @@ public class Transaction {
         final ObjId id = info.getId();
         final ObjType type = info.getObjType();
         for (SimpleField<?> field : type.simpleFields.values()) {
-            if (field.indexed)
-                this.kvt.remove(Transaction.buildSimpleIndexEntry(field, id, this.kvt.get(field.buildKey(id))));
+            if (field.indexed) {
+                final byte[] indexEntry = Transaction.buildSimpleIndexEntry(field, id, this.kvt.get(field.buildKey(id)));
+                this.kvt.remove(indexEntry);
+                this.indexEntryChanged(field, indexEntry, -1);
+            }
         }
 
         // Delete object's composite index entries
-        for (CompositeIndex index : type.compositeIndexes.values())
-            this.kvt.remove(this.buildCompositeIndexEntry(id, index));
+        for (CompositeIndex index : type.compositeIndexes.values()) {
+            final byte[] indexEntry = this.buildCompositeIndexEntry(id, index);
+            this.kvt.remove(indexEntry);
+            this.adjustCompositeIndexStatistics(indexEntry, -1);
+        }
 
         // Delete object's complex field index entries
         for (ComplexField<?> field : type.complexFields.values())
@@ -831,9 +903,11 @@ public class Transaction {
         final byte[] minKey = info.getId().getBytes();
         final byte[] maxKey = ByteUtil.getKeyAfterPrefix(minKey);
         this.kvt.removeRange(minKey, maxKey);
+        this.uncacheObjInfo(id);
 
         // Delete object schema version entry
         this.kvt.remove(Database.buildVersionIndexKey(id, info.getVersion()));
+        this.adjustObjectCount(type, -1);
     }
 
     /**
@@ -932,14 +1006,105 @@ public class Transaction {
             return dest.mutateAndNotify(new Mutation<Boolean>() {
                 @Override
                 public Boolean mutate() {
-                    return Transaction.doCopyFields(srcInfo, target, Transaction.this, dest, updateVersion);
+                    final TreeSet<byte[]> indexEntries = new TreeSet<>(ByteUtil.COMPARATOR);
+                    final boolean created = Transaction.doCopyFields(srcInfo,
+                      target, Transaction.this, dest, updateVersion, indexEntries);
+                    dest.writeIndexEntries(indexEntries);
+                    return created;
                 }
             });
         }
     }
 
-    // This method assumes both transactions are locked
-    private static boolean doCopyFields(ObjInfo srcInfo, ObjId dstId, Transaction srcTx, Transaction dstTx, boolean updateVersion) {
+    /**
+     * Copy multiple objects into a (possibly) different transaction, replacing any previous values.
+     *
+     * <p>
+     * This is equivalent to invoking {@link #copy(ObjId, ObjId, Transaction, boolean) copy()} for each object
+     * in {@code ids}, using the same object ID in {@code dest}, but is more efficient when copying many objects:
+     * objects are copied in object ID order, so their content is written to {@code dest} in key order, and the
+     * corresponding index entries are accumulated and written afterward in a single sorted pass.
+     * </p>
+     *
+     * <p>
+     * If {@code dest} is this instance, no changes are made and zero is returned.
+     * </p>
+     *
+     * @param ids object IDs of the objects to copy
+     * @param dest destination transaction (possibly same as this transaction)
+     * @param updateVersion true to first automatically update each object's schema version, false to not change it
+     * @return the number of objects in {@code ids} that did not already exist in {@code dest}
+     * @throws DeletedObjectException if any object in {@code ids} is not found in this transaction
+     * @throws UnknownTypeException if any object in {@code ids} specifies an unknown object type
+     * @throws IllegalArgumentException if any parameter is null, or {@code ids} contains a null value
+     * @throws ReadOnlyTransactionException if {@code dest} has been {@linkplain #setReadOnly set read-only}
+     * @throws StaleTransactionException if this transaction or {@code dest} is no longer usable
+     * @throws SchemaMismatchException if the schema version associated with any object in {@code ids} differs between
+     *  this transaction and {@code dest}
+     * @throws TypeNotInSchemaVersionException {@code updateVersion} is true and an object could not be updated because
+     *   the object's type does not exist in the schema version associated with this transaction
+     * @see #copy(ObjId, ObjId, Transaction, boolean)
+     */
+    public synchronized int copy(Iterable<ObjId> ids, final Transaction dest, final boolean updateVersion) {
+
+        // Sanity check
+        if (ids == null)
+            throw new IllegalArgumentException("null ids");
+        if (dest == null)
+            throw new IllegalArgumentException("null dest");
+        if (this.stale)
+            throw new StaleTransactionException(this);
+
+        // Do nothing if nothing to do
+        if (this == dest)
+            return 0;
+
+        // Sort objects so their content is written in key order
+        final TreeSet<ObjId> sortedIds = new TreeSet<>();
+        for (ObjId id : ids) {
+            if (id == null)
+                throw new IllegalArgumentException("null id");
+            sortedIds.add(id);
+        }
+
+        // Do the copy while both transactions are locked
+        synchronized (dest) {
+
+            // Sanity check
+            if (dest.stale)
+                throw new StaleTransactionException(dest);
+            if (dest.readOnly)
+                throw new ReadOnlyTransactionException(dest);
+
+            // Copy objects
+            return dest.mutateAndNotify(new Mutation<Integer>() {
+                @Override
+                public Integer mutate() {
+                    final TreeSet<byte[]> indexEntries = new TreeSet<>(ByteUtil.COMPARATOR);
+                    int numCreated = 0;
+                    for (ObjId id : sortedIds) {
+                        final ObjInfo srcInfo = Transaction.this.getObjectInfo(id, updateVersion);
+                        if (Transaction.doCopyFields(srcInfo, id, Transaction.this, dest, updateVersion, indexEntries))
+                            numCreated++;
+                    }
+                    dest.writeIndexEntries(indexEntries);
+                    return numCreated;
+                }
+            });
+        }
+    }
+
+    /**
+     * Copy an object's fields.
+     *
+     * <p>
+     * When no listeners need to be notified, index entries for {@code dstId} are not written but instead
+     * added to {@code indexEntries}, which the caller must then write using {@link #writeIndexEntries writeIndexEntries()}.
+     * This method assumes both transactions are locked.
+     * </p>
+     */
+    private static boolean doCopyFields(ObjInfo srcInfo, ObjId dstId,
+      Transaction srcTx, Transaction dstTx, boolean updateVersion, Set<byte[]> indexEntries) {
 
         // Sanity check
         final ObjId srcId = srcInfo.getId();
@@ -955,7 +1120,7 @@ public class Transaction {
         // Upgrade source object if necessary
         if (updateVersion && srcInfo.getVersion() != srcTx.schema.versionNumber) {
             srcTx.updateVersion(srcInfo, srcTx.schema);
-            srcInfo = new ObjInfo(srcTx, srcId);
+            srcInfo = srcTx.getObjInfo(srcId);
         }
 
         // Find and verify source object's schema version in destination transaction
@@ -969,15 +1134,29 @@ public class Transaction {
         if (!Arrays.equals(srcTx.schema.encodedXML, dstTx.schema.encodedXML))
             throw new SchemaMismatchException("destination transaction schema version " + objectVersion + " does not match");
 
-        // Create destination object if it doesn't already exist
-        final boolean existed = !dstTx.create(dstId, objectVersion);
-        final ObjInfo dstInfo = dstTx.getObjectInfo(dstId, false);
-        final boolean needUpgrade = dstInfo.getVersion() != objectVersion;      // can only happen if object already existed
+        // Verify object type exists in destination schema version
+        final ObjType type = srcInfo.getObjType();
+        dstSchema.getObjType(dstId.getStorageId());
+
+        // Create destination object if it doesn't already exist; if there are no create listeners, the copy below suffices
+        final boolean existed = dstTx.exists(dstId);
+        if (!existed && !dstTx.createListeners.isEmpty()) {
+            dstTx.writeIndexEntries(indexEntries);                  // make index queries by listeners see prior copies
+            dstTx.create(dstId, objectVersion);
+        }
+        final ObjInfo dstInfo = dstTx.exists(dstId) ? dstTx.getObjectInfo(dstId, false) : null;
+        final boolean needUpgrade = existed && dstInfo.getVersion() != objectVersion;
 
         // Do field-by-field copy if there are change or version listeners, otherwise do fast copy of key/value pairs
-        final ObjType type = srcInfo.getObjType();
         if (dstTx.hasFieldMonitor(type) || (needUpgrade && !dstTx.versionChangeListeners.isEmpty())) {
 
+            // Write any index entries for previously copied objects, so listeners see them
+            dstTx.writeIndexEntries(indexEntries);
+
+            // Create object if not done already
+            if (dstInfo == null)
+                dstTx.create(dstId, objectVersion);
+
             // Upgrade object first
             if (needUpgrade)
                 dstTx.updateVersion(dstInfo, dstSchema);
@@ -988,12 +1167,16 @@ public class Transaction {
         } else {
 
             // Delete pre-existing object's field content, if any
-            dstTx.deleteObjectData(dstInfo);
+            if (dstInfo != null)
+                dstTx.deleteObjectData(dstInfo);
 
             // Add schema version index entry
-            dstTx.kvt.put(Database.buildVersionIndexKey(dstId, objectVersion), ByteUtil.EMPTY);
+            indexEntries.add(Database.buildVersionIndexKey(dstId, objectVersion));
+            dstTx.adjustObjectCount(type, 1);
 
-            // Copy object meta-data and all field content in one key range sweep
+            // Copy object meta-data and all field content in one key range sweep, building complex field index
+            // entries and noting simple field values along the way
+            final HashMap<Integer, byte[]> simpleValues = new HashMap<>();
             final byte[] srcMinKey = srcId.getBytes();
             final byte[] srcMaxKey = ByteUtil.getKeyAfterPrefix(srcMinKey);
             final ByteWriter dstWriter = new ByteWriter();
@@ -1005,28 +1188,52 @@ public class Transaction {
                 srcReader.skip(srcMinKey.length);
                 dstWriter.reset(dstMark);
                 dstWriter.write(srcReader);
-                dstTx.kvt.put(dstWriter.getBytes(), kv.getValue());
+                final byte[] dstKey = dstWriter.getBytes();
+                dstTx.kvt.put(dstKey, kv.getValue());
+
+                // Check for object meta-data
+                final ByteReader fieldReader = new ByteReader(dstKey, dstMark);
+                if (fieldReader.remain() == 0)
+                    continue;
+
+                // Note simple field values and build complex field index entries (skipping any complex field size counter)
+                final int storageId = UnsignedIntEncoder.read(fieldReader);
+                final ComplexField<?> complexField = type.complexFields.get(storageId);
+                if (complexField != null) {
+                    if (fieldReader.remain() == 0)
+                        continue;
+                    for (SimpleField<?> subField : complexField.getSubFields()) {
+                        if (subField.indexed) {
+                            final byte[] indexEntry = complexField.buildIndexEntry(dstId, subField, dstKey, kv.getValue());
+                            indexEntries.add(indexEntry);
+                            dstTx.addReferrerIndexEntry(subField, indexEntry, indexEntries);
+                            dstTx.indexEntryChanged(subField, indexEntry, 1);
+                        }
+                    }
+                } else if (fieldReader.remain() == 0)
+                    simpleValues.put(storageId, kv.getValue());
             }
+            dstTx.uncacheObjInfo(dstId);
 
             // Create object's simple field index entries
             for (SimpleField<?> field : type.simpleFields.values()) {
                 if (field.indexed) {
-                    final byte[] fieldValue = dstTx.kvt.get(field.buildKey(dstId));     // can be null (if field has default value)
-                    final byte[] indexKey = Transaction.buildSimpleIndexEntry(field, dstId, fieldValue);
-                    dstTx.kvt.put(indexKey, ByteUtil.EMPTY);
+                    final byte[] fieldValue = simpleValues.get(field.storageId);      // can be null (if field has default value)
+                    final byte[] indexEntry = Transaction.buildSimpleIndexEntry(field, dstId, fieldValue);
+                    indexEntries.add(indexEntry);
+                    dstTx.addReferrerIndexEntry(field, indexEntry, indexEntries);
+                    dstTx.indexEntryChanged(field, indexEntry, 1);
                 }
             }
 
             // Create object's composite index entries
-            for (CompositeIndex index : type.compositeIndexes.values())
-                dstTx.kvt.put(Transaction.buildCompositeIndexEntry(dstTx, dstId, index), ByteUtil.EMPTY);
-
-            // Create object's complex field index entries
-            for (ComplexField<?> field : type.complexFields.values()) {
-                for (SimpleField<?> subField : field.getSubFields()) {
-                    if (subField.indexed)
-                        field.addIndexEntries(dstTx, dstId, subField);
-                }
+            for (CompositeIndex index : type.compositeIndexes.values()) {
+                final byte[] indexEntry = Transaction.buildCompositeIndexEntry(dstId, index, simpleValues);
+                if (!index.includedFields.isEmpty())                  // entry has a non-empty value, so write it now
+                    dstTx.kvt.put(indexEntry, Transaction.buildCompositeIndexValue(index, simpleValues));
+                else
+                    indexEntries.add(indexEntry);
+                dstTx.adjustCompositeIndexStatistics(indexEntry, 1);
             }
         }
 
@@ -1034,6 +1241,17 @@ public class Transaction {
         return !existed;
     }
 
+    /**
+     * Write the given index entries, which must be sorted, and then clear them.
+     *
+     * @param indexEntries sorted index entries
+     */
+    private void writeIndexEntries(Set<byte[]> indexEntries) {
+        for (byte[] indexEntry : indexEntries)
+            this.kvt.put(indexEntry, ByteUtil.EMPTY);
+        indexEntries.clear();
+    }
+
     /**
      * Add a {@link CreateListener} to this transaction.
      *
@@ -1206,8 +1424,11 @@ public class Transaction {
 
         // Remove index entries for composite indexes that are going away
         for (CompositeIndex index : oldType.compositeIndexes.values()) {
-            if (!newType.compositeIndexes.containsKey(index.storageId))
-                this.kvt.remove(this.buildCompositeIndexEntry(id, index));
+            if (!newType.compositeIndexes.containsKey(index.storageId)) {
+                final byte[] indexEntry = this.buildCompositeIndexEntry(id, index);
+                this.kvt.remove(indexEntry);
+                this.adjustCompositeIndexStatistics(indexEntry, -1);
+            }
         }
 
     //////// Update counter fields
@@ -1265,20 +1486,30 @@ public class Transaction {
                 this.kvt.remove(key);
 
             // Remove old index entry if index removed in new version
-            if (oldField != null && oldField.indexed && (newField == null || !newField.indexed))
-                this.kvt.remove(Transaction.buildSimpleIndexEntry(oldField, id, oldValue));
+            if (oldField != null && oldField.indexed && (newField == null || !newField.indexed)) {
+                final byte[] indexEntry = Transaction.buildSimpleIndexEntry(oldField, id, oldValue);
+                this.kvt.remove(indexEntry);
+                this.indexEntryChanged(oldField, indexEntry, -1);
+            }
 
             // Add new index entry if index added in new version
-            if (newField != null && newField.indexed && (oldField == null || !oldField.indexed))
-                this.kvt.put(Transaction.buildSimpleIndexEntry(newField, id, oldValue), ByteUtil.EMPTY);
+            if (newField != null && newField.indexed && (oldField == null || !oldField.indexed)) {
+                final byte[] indexEntry = Transaction.buildSimpleIndexEntry(newField, id, oldValue);
+                this.kvt.put(indexEntry, ByteUtil.EMPTY);
+                this.addReferrerIndexEntry(newField, indexEntry);
+                this.indexEntryChanged(newField, indexEntry, 1);
+            }
         }
 
     //////// Add composite index entries for newly added composite indexes
 
         // Add index entries for composite indexes that are newly added
         for (CompositeIndex index : newType.compositeIndexes.values()) {
-            if (!oldType.compositeIndexes.containsKey(index.storageId))
-                this.kvt.put(this.buildCompositeIndexEntry(id, index), ByteUtil.EMPTY);
+            if (!oldType.compositeIndexes.containsKey(index.storageId)) {
+                final byte[] indexEntry = this.buildCompositeIndexEntry(id, index);
+                this.kvt.put(indexEntry, Transaction.buildCompositeIndexValue(this, id, index));
+                this.adjustCompositeIndexStatistics(indexEntry, 1);
+            }
         }
 
     //////// Update complex fields and corresponding index entries
@@ -1291,7 +1522,8 @@ public class Transaction {
         // Notes:
         //
         // - The only changes we support are sub-field changes that don't affect the corresponding StorageInfo's
-        // - New complex fields do not need to be explicitly initialized because their initial state is to have zero KV pairs
+        // - New complex fields only need their size counter, if any, initialized; otherwise, their initial state
+        //   is to have zero KV pairs
         //
         for (int storageId : complexFieldStorageIds) {
 
@@ -1300,8 +1532,10 @@ public class Transaction {
             final ComplexField<?> newField = newType.complexFields.get(storageId);
 
             // If there is no old field, new field and any associated indexes are already initialized (i.e., they're empty)
-            if (oldField == null)
+            if (oldField == null) {
+                newField.initializeSizeCounter(this, id);
                 continue;
+            }
 
             // Save old field's value
             if (oldField != null && oldValueMap != null)
@@ -1533,6 +1767,79 @@ public class Transaction {
      *   the object's type does not exist in the schema version associated with this transaction
      */
     public synchronized Object readSimpleField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        return field.fieldType.read(this.readSimpleFieldValue(id, field));
+    }
+
+    /**
+     * Read the value of a primitive {@code int} {@link SimpleField} without boxing it.
+     * Otherwise equivalent to {@link #readSimpleField readSimpleField()}.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field's type is not {@code int}
+     */
+    public synchronized int readIntField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        if (!(field.fieldType instanceof IntegerType))
+            throw new IllegalArgumentException(field + " does not have type int");
+        return (int)((IntegerType)field.fieldType).readLong(this.readSimpleFieldValue(id, field));
+    }
+
+    /**
+     * Read the value of a primitive {@code long} {@link SimpleField} without boxing it.
+     * Otherwise equivalent to {@link #readSimpleField readSimpleField()}.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field's type is not {@code long}
+     */
+    public synchronized long readLongField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        if (!(field.fieldType instanceof LongType))
+            throw new IllegalArgumentException(field + " does not have type long");
+        return ((LongType)field.fieldType).readLong(this.readSimpleFieldValue(id, field));
+    }
+
+    /**
+     * Read the value of a primitive {@code double} {@link SimpleField} without boxing it.
+     * Otherwise equivalent to {@link #readSimpleField readSimpleField()}.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field's type is not {@code double}
+     */
+    public synchronized double readDoubleField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        if (!(field.fieldType instanceof DoubleType))
+            throw new IllegalArgumentException(field + " does not have type double");
+        return ((DoubleType)field.fieldType).readDouble(this.readSimpleFieldValue(id, field));
+    }
+
+    /**
+     * Read the value of a primitive {@code boolean} {@link SimpleField} without boxing it.
+     * Otherwise equivalent to {@link #readSimpleField readSimpleField()}.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws IllegalArgumentException if the field's type is not {@code boolean}
+     */
+    public synchronized boolean readBooleanField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        if (!(field.fieldType instanceof BooleanType))
+            throw new IllegalArgumentException(field + " does not have type boolean");
+        return ((BooleanType)field.fieldType).readBoolean(this.readSimpleFieldValue(id, field));
+    }
+
+    private synchronized SimpleField<?> findSimpleField(ObjId id, int storageId, boolean updateVersion) {
 
         // Sanity check
         if (this.stale)
@@ -1547,13 +1854,12 @@ public class Transaction {
         final SimpleField<?> field = info.getObjType().simpleFields.get(storageId);
         if (field == null)
             throw new UnknownFieldException(info.getObjType(), storageId, "simple field");
+        return field;
+    }
 
-        // Read field
-        final byte[] key = field.buildKey(id);
-        final byte[] value = this.kvt.get(key);
-
-        // Decode value
-        return field.fieldType.read(new ByteReader(value != null ? value : field.fieldType.getDefaultValue()));
+    private synchronized ByteReader readSimpleFieldValue(ObjId id, SimpleField<?> field) {
+        final byte[] value = this.kvt.get(field.buildKey(id));
+        return new ByteReader(value != null ? value : field.fieldType.getDefaultValue());
     }
 
     /**
@@ -1626,8 +1932,13 @@ public class Transaction {
 
         // Update simple index, if any
         if (field.indexed) {
-            this.kvt.remove(Transaction.buildSimpleIndexEntry(field, id, oldValue));
-            this.kvt.put(Transaction.buildSimpleIndexEntry(field, id, newValue), ByteUtil.EMPTY);
+            final byte[] oldIndexEntry = Transaction.buildSimpleIndexEntry(field, id, oldValue);
+            this.kvt.remove(oldIndexEntry);
+            this.indexEntryChanged(field, oldIndexEntry, -1);
+            final byte[] indexEntry = Transaction.buildSimpleIndexEntry(field, id, newValue);
+            this.kvt.put(indexEntry, ByteUtil.EMPTY);
+            this.addReferrerIndexEntry(field, indexEntry);
+            this.indexEntryChanged(field, indexEntry, 1);
         }
 
         // Update affected composite indexes, if any
@@ -1659,6 +1970,7 @@ public class Transaction {
                 // Remove old composite index entry
                 final byte[] oldIndexEntry = oldWriter.getBytes();
                 this.kvt.remove(oldIndexEntry);
+                this.adjustCompositeIndexStatistics(oldIndexEntry, -1);
 
                 // Patch in new field value to create new composite index entry
                 final ByteWriter newWriter = new ByteWriter(oldIndexEntry.length);
@@ -1667,10 +1979,18 @@ public class Transaction {
                 newWriter.write(oldIndexEntry, fieldEnd, oldIndexEntry.length - fieldEnd);
 
                 // Add new composite index entry
-                this.kvt.put(newWriter.getBytes(), ByteUtil.EMPTY);
+                final byte[] newIndexEntry = newWriter.getBytes();
+                this.kvt.put(newIndexEntry, Transaction.buildCompositeIndexValue(this, id, index));
+                this.adjustCompositeIndexStatistics(newIndexEntry, 1);
             }
         }
 
+        // Update the values of composite index entries that include this field, if any
+        if (field.compositeIncludes != null) {
+            for (CompositeIndex index : field.compositeIncludes)
+                this.kvt.put(this.buildCompositeIndexEntry(id, index), Transaction.buildCompositeIndexValue(this, id, index));
+        }
+
         // Notify monitors
         final Object oldObj = field.fieldType.read(new ByteReader(oldValue != null ? oldValue : field.fieldType.getDefaultValue()));
         this.addFieldChangeNotification(new SimpleFieldChangeNotifier(field, id) {
@@ -2017,7 +2337,7 @@ public class Transaction {
         this.schemas.verifyStorageInfo(id.getStorageId(), ObjTypeStorageInfo.class);
 
         // Check schema version
-        final ObjInfo info = new ObjInfo(this, id);
+        final ObjInfo info = this.getObjInfo(id);
         if (!update || info.getSchema() == this.schema)
             return info;
 
@@ -2031,11 +2351,148 @@ public class Transaction {
         });
 
         // Get updated object info
-        return new ObjInfo(this, id);
+        return this.getObjInfo(id);
+    }
+
+    /**
+     * Read an object's meta-data, using the cached copy if possible.
+     *
+     * <p>
+     * Cached meta-data is updated by {@link ObjInfo#write ObjInfo.write()} and discarded when the object is deleted,
+     * so after the first access, further accesses to the same object don't need to read its meta-data again.
+     * </p>
+     *
+     * @param id object ID of the object
+     * @return object info
+     * @throws DeletedObjectException if no object with ID equal to {@code id} is found
+     */
+    synchronized ObjInfo getObjInfo(ObjId id) {
+        ObjInfo info = this.objInfoCache.get(id);
+        if (info == null) {
+            info = new ObjInfo(this, id);
+            this.objInfoCache.put(id, info);
+        }
+        return info;
+    }
+
+    // Record an object's meta-data after it has been written
+    synchronized void cacheObjInfo(ObjInfo info) {
+        this.objInfoCache.put(info.getId(), info);
+    }
+
+    // Discard cached object meta-data after an object has been deleted
+    synchronized void uncacheObjInfo(ObjId id) {
+        this.objInfoCache.remove(id);
+    }
+
+    // Discard all cached object meta-data after all objects have been deleted
+    synchronized void clearObjInfoCache() {
+        this.objInfoCache.clear();
     }
 
 // Field Change Notifications
 
+    /**
+     * Determine whether field change notifications are delivered in batches.
+     *
+     * @return true if notifications are batched
+     * @see #setBatchNotifications setBatchNotifications()
+     */
+    public synchronized boolean isBatchNotifications() {
+        return this.batchNotifications;
+    }
+
+    /**
+     * Enable or disable batched delivery of field change notifications.
+     *
+     * <p>
+     * Normally, when a mutation completes, each field change notification is delivered separately: for every
+     * monitor of the changed field, the monitor's path of references is inverted starting from the changed object.
+     * In batched mode, the pending notifications for each field are instead grouped by monitor path, and each path
+     * is inverted one reference field at a time for all of the changed objects together, with a single pass over the
+     * reference field's index (see {@link #invertReferencePath invertReferencePath()}). The referring objects found
+     * for each changed object, and therefore the notifications delivered, are the same; only their order differs.
+     * This is much cheaper when a mutation changes many objects watched through the same path.
+     * </p>
+     *
+     * <p>
+     * Default is false.
+     * </p>
+     *
+     * @param batchNotifications true to batch notifications
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized void setBatchNotifications(boolean batchNotifications) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.batchNotifications = batchNotifications;
+    }
+
+    /**
+     * Determine whether field change notifications are deferred until commit.
+     *
+     * @return true if notifications are deferred
+     * @see #setDeferNotifications setDeferNotifications()
+     */
+    public synchronized boolean isDeferNotifications() {
+        return this.deferNotifications;
+    }
+
+    /**
+     * Enable or disable deferral of field change notifications until this transaction is committed.
+     *
+     * <p>
+     * In deferred mode, field change notifications accumulate instead of being delivered when each mutation completes.
+     * They are delivered, batched as described in {@link #setBatchNotifications setBatchNotifications()}, by
+     * {@link #flushNotifications} or at the beginning of {@link #commit}; notifications resulting from changes
+     * made by listeners are delivered as part of the same flush. Listeners will therefore see the state of the
+     * transaction at flush time, rather than immediately after the change. Deferred notifications are discarded
+     * if the transaction is rolled back.
+     * </p>
+     *
+     * <p>
+     * Disabling deferral does not deliver notifications already deferred; use {@link #flushNotifications} for that.
+     * </p>
+     *
+     * <p>
+     * Default is false.
+     * </p>
+     *
+     * @param deferNotifications true to defer notifications
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized void setDeferNotifications(boolean deferNotifications) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.deferNotifications = deferNotifications;
+    }
+
+    /**
+     * Deliver all field change notifications that have been {@linkplain #setDeferNotifications deferred}.
+     * Does nothing if there are none.
+     *
+     * @throws IllegalStateException if invoked from within a mutation or notification delivery
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized void flushNotifications() {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        if (this.pendingNotifications.get() != null)
+            throw new IllegalStateException("flushNotifications() invoked re-entrantly");
+        if (this.deferredNotifications.isEmpty())
+            return;
+
+        // Deliver as if at the end of a mutation, so changes made by listeners add to the same pending notifications
+        final TreeMap<Integer, ArrayList<FieldChangeNotifier>> pendingNotificationMap = new TreeMap<>(this.deferredNotifications);
+        this.deferredNotifications.clear();
+        this.pendingNotifications.set(pendingNotificationMap);
+        try {
+            this.deliverNotifications(pendingNotificationMap, true);
+        } finally {
+            this.pendingNotifications.remove();
+        }
+    }
+
     /**
      * Monitor for changes within this transaction of the value of the given field, as seen through a path of references.
      *
@@ -2357,26 +2814,101 @@ public class Transaction {
         } finally {
             try {
                 final TreeMap<Integer, ArrayList<FieldChangeNotifier>> pendingNotificationMap = this.pendingNotifications.get();
-                while (!pendingNotificationMap.isEmpty()) {
-
-                    // Get the next field with pending notifications
-                    final Map.Entry<Integer, ArrayList<FieldChangeNotifier>> entry = pendingNotificationMap.pollFirstEntry();
-                    final int storageId = entry.getKey();
-
-                    // For all pending notifications, back-track references and notify all field monitors for the field
-                    for (FieldChangeNotifier notifier : entry.getValue()) {
-                        assert notifier.getStorageId() == storageId;
-                        final ArrayList<FieldMonitor> monitorList = new ArrayList<>(this.getMonitorsForField(storageId, false));
-                        if (!monitorList.isEmpty())
-                            this.notifyFieldMonitors(notifier, NavigableSets.singleton(notifier.getId()), monitorList, 0);
+                if (this.deferNotifications) {
+                    for (Map.Entry<Integer, ArrayList<FieldChangeNotifier>> entry : pendingNotificationMap.entrySet()) {
+                        final ArrayList<FieldChangeNotifier> deferredNotificationList = this.deferredNotifications.get(entry.getKey());
+                        if (deferredNotificationList != null)
+                            deferredNotificationList.addAll(entry.getValue());
+                        else
+                            this.deferredNotifications.put(entry.getKey(), entry.getValue());
                     }
-                }
+                } else
+                    this.deliverNotifications(pendingNotificationMap, this.batchNotifications);
             } finally {
                 this.pendingNotifications.remove();
             }
         }
     }
 
+    // Deliver pending notifications until there are none left, including those resulting from listener mutations
+    private void deliverNotifications(TreeMap<Integer, ArrayList<FieldChangeNotifier>> pendingNotificationMap, boolean batch) {
+        while (!pendingNotificationMap.isEmpty()) {
+
+            // Get the next field with pending notifications
+            final Map.Entry<Integer, ArrayList<FieldChangeNotifier>> entry = pendingNotificationMap.pollFirstEntry();
+            final int storageId = entry.getKey();
+
+            // Batch mode: back-track references for all pending notifications together
+            if (batch) {
+                final ArrayList<FieldMonitor> monitorList = new ArrayList<>(this.getMonitorsForField(storageId, false));
+                if (!monitorList.isEmpty())
+                    this.notifyFieldMonitors(entry.getValue(), monitorList);
+                continue;
+            }
+
+            // For all pending notifications, back-track references and notify all field monitors for the field
+            for (FieldChangeNotifier notifier : entry.getValue()) {
+                assert notifier.getStorageId() == storageId;
+                final ArrayList<FieldMonitor> monitorList = new ArrayList<>(this.getMonitorsForField(storageId, false));
+                if (!monitorList.isEmpty())
+                    this.notifyFieldMonitors(notifier, NavigableSets.singleton(notifier.getId()), monitorList, 0);
+            }
+        }
+    }
+
+    // Back-track references along each distinct monitor path for all notifiers together, then notify monitors
+    private void notifyFieldMonitors(ArrayList<FieldChangeNotifier> notifiers, ArrayList<FieldMonitor> monitorList) {
+
+        // Group monitors by path
+        final LinkedHashMap<List<Integer>, ArrayList<FieldMonitor>> pathMonitorsMap = new LinkedHashMap<>();
+        for (FieldMonitor monitor : monitorList) {
+            final List<Integer> path = Ints.asList(monitor.path);
+            ArrayList<FieldMonitor> pathMonitors = pathMonitorsMap.get(path);
+            if (pathMonitors == null) {
+                pathMonitors = new ArrayList<FieldMonitor>();
+                pathMonitorsMap.put(path, pathMonitors);
+            }
+            pathMonitors.add(monitor);
+        }
+
+        // Handle each path
+        for (ArrayList<FieldMonitor> pathMonitors : pathMonitorsMap.values()) {
+            final int[] path = pathMonitors.get(0).path;
+
+            // Find the notifiers that pass at least one monitor's type filter
+            final ArrayList<FieldChangeNotifier> pathNotifiers = new ArrayList<>(notifiers.size());
+            final ArrayList<NavigableSet<ObjId>> referrersList = new ArrayList<>(notifiers.size());
+            for (FieldChangeNotifier notifier : notifiers) {
+                for (FieldMonitor monitor : pathMonitors) {
+                    if (monitor.types == null || monitor.types.contains(notifier.getId().getBytes())) {
+                        pathNotifiers.add(notifier);
+                        referrersList.add(NavigableSets.singleton(notifier.getId()));
+                        break;
+                    }
+                }
+            }
+
+            // Invert each reference in the path, scanning the index once for all notifiers and then splitting the results
+            for (int i = path.length - 1; i >= 0 && !pathNotifiers.isEmpty(); i--) {
+                final HashMap<ObjId, List<ObjId>> referrersMap = this.mapReferrers(path[i], Iterables.concat(referrersList));
+                for (int j = 0; j < referrersList.size(); j++)
+                    referrersList.set(j, Transaction.collectReferrers(referrersMap, referrersList.get(j)));
+            }
+
+            // Issue notification callbacks
+            for (int j = 0; j < pathNotifiers.size(); j++) {
+                final FieldChangeNotifier notifier = pathNotifiers.get(j);
+                final NavigableSet<ObjId> referrers = referrersList.get(j);
+                if (referrers.isEmpty())
+                    continue;
+                for (FieldMonitor monitor : pathMonitors) {
+                    if (monitor.types == null || monitor.types.contains(notifier.getId().getBytes()))
+                        notifier.notify(this, monitor.listener, monitor.path, referrers);
+                }
+            }
+        }
+    }
+
     // Recursively back-track references along monitor paths and notify monitors when we reach the end (i.e., beginning)
     private void notifyFieldMonitors(FieldChangeNotifier notifier,
       NavigableSet<ObjId> objects, ArrayList<FieldMonitor> monitorList, int step) {
@@ -2410,17 +2942,10 @@ public class Transaction {
         for (Map.Entry<Integer, ArrayList<FieldMonitor>> entry : remainingMonitorsMap.entrySet()) {
             final int storageId = entry.getKey();
 
-            // Gather all objects that refer to any object in our current "objects" set
-            final ArrayList<NavigableSet<ObjId>> refsList = new ArrayList<>();
-            for (ObjId object : objects) {
-                final NavigableSet<ObjId> refs = this.queryReferences(storageId).get(object);
-                if (refs != null)
-                    refsList.add(refs);
-            }
-
-            // Recurse on the union of those objects
-            if (!refsList.isEmpty())
-                this.notifyFieldMonitors(notifier, NavigableSets.union(refsList), entry.getValue(), step + 1);
+            // Gather all objects that refer to any object in our current "objects" set and recurse on them
+            final NavigableSet<ObjId> refs = this.invertReferences(storageId, objects);
+            if (!refs.isEmpty())
+                this.notifyFieldMonitors(notifier, refs, entry.getValue(), step + 1);
         }
     }
 
@@ -2429,17 +2954,31 @@ public class Transaction {
     /**
      * Find all objects that refer to any object in the given target set through the specified path of references.
      *
+     * <p>
+     * Each reference field in the path is inverted with a single pass over the field's index, and the referrers
+     * found for each target object are remembered for the remainder of this transaction (until a change to the
+     * reference field invalidates them, or they are evicted to make room for others), so repeated inversions through
+     * the same fields are inexpensive.
+     * </p>
+     *
+     * <p>
+     * The returned set is a snapshot taken when this method is invoked: it is not a real-time view, so it does not
+     * reflect subsequent changes to the reference fields in {@code path}.
+     * </p>
+     *
      * @param path path of one or more reference fields (represented by storage IDs) through which to reach the target objects
      * @param targetObjects target objects
-     * @return set of objects that refer to the {@code targetObjects} via {@code path}
+     * @return read-only snapshot of the set of objects that refer to the {@code targetObjects} via {@code path}
      * @throws UnknownFieldException if {@code path} contains a storage ID that does not correspond to a {@link ReferenceField}
      * @throws IllegalArgumentException if {@code targetObjects} or {@code path} is null
      * @throws IllegalArgumentException if {@code path} is empty
      * @throws StaleTransactionException if this transaction is no longer usable
      */
-    public NavigableSet<ObjId> invertReferencePath(int[] path, Iterable<ObjId> targetObjects) {
+    public synchronized NavigableSet<ObjId> invertReferencePath(int[] path, Iterable<ObjId> targetObjects) {
 
         // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
         if (targetObjects == null)
             throw new IllegalArgumentException("null targetObjects");
         if (path == null)
@@ -2454,26 +2993,167 @@ public class Transaction {
         // Invert references in reverse order
         NavigableSet<ObjId> result = null;
         for (int i = path.length - 1; i >= 0; i--) {
-            final int storageId = path[i];
-
-            // Gather all objects that refer to any object in our current target objects set
-            final ArrayList<NavigableSet<ObjId>> refsList = new ArrayList<>();
-            for (ObjId id : targetObjects) {
-                final NavigableSet<ObjId> refs = this.queryReferences(storageId).get(id);
-                if (refs != null)
-                    refsList.add(refs);
-            }
-            if (refsList.isEmpty())
-                return NavigableSets.empty();
-
-            // Recurse on the union of those objects
-            targetObjects = result = NavigableSets.union(refsList);
+            result = this.invertReferences(path[i], targetObjects);
+            if (result.isEmpty())
+                break;
+            targetObjects = result;
         }
 
         // Done
         return result;
     }
 
+    /**
+     * Find all objects that refer to any object in the given target set through the specified reference field.
+     *
+     * @param storageId reference field storage ID
+     * @param targets target objects
+     * @return read-only set of referring objects
+     */
+    private NavigableSet<ObjId> invertReferences(int storageId, Iterable<ObjId> targets) {
+        return Transaction.collectReferrers(this.mapReferrers(storageId, targets), targets);
+    }
+
+    /**
+     * Find the objects that refer to each object in the given target set through the specified reference field.
+     *
+     * <p>
+     * Referrers of targets already in the cache are taken from there. The remaining targets are sorted and joined
+     * against the field's index in one forward pass: consecutive index entries are read while they match the
+     * current target, and the iteration only seeks ahead when the next target is not the next indexed value.
+     * The referrers found for each target, including none, are added to the cache, evicting the least recently used
+     * entries as needed to keep the total number of cached referrers under a fixed limit.
+     * </p>
+     *
+     * <p>
+     * The returned map is complete even when some of its entries have already been evicted from the cache, so callers
+     * should take referrers from it, not from the cache.
+     * </p>
+     *
+     * @param storageId reference field storage ID
+     * @param targets target objects
+     * @return mapping from each non-null target to its referrers
+     */
+    private synchronized HashMap<ObjId, List<ObjId>> mapReferrers(int storageId, Iterable<ObjId> targets) {
+
+        // Get cached referrers and gather uncached targets
+        final HashMap<ObjId, List<ObjId>> referrersMap = new HashMap<>();
+        final TreeSet<ObjId> uncached = new TreeSet<>();
+        for (ObjId target : targets) {
+            if (target == null || referrersMap.containsKey(target))
+                continue;
+            final List<ObjId> refs = this.referrersCache.get(new ReferrersKey(storageId, target));
+            if (refs != null)
+                referrersMap.put(target, refs);
+            else
+                uncached.add(target);
+        }
+
+        // Scan the index for uncached targets
+        if (!uncached.isEmpty())
+            this.scanReferences(storageId, new ArrayList<ObjId>(uncached), referrersMap);
+
+        // Done
+        return referrersMap;
+    }
+
+    // Gather the referrers of the given targets from a map built by mapReferrers()
+    private static NavigableSet<ObjId> collectReferrers(Map<ObjId, List<ObjId>> referrersMap, Iterable<ObjId> targets) {
+        final ArrayList<ObjId> referrers = new ArrayList<>();
+        for (ObjId target : targets) {
+            if (target != null)
+                referrers.addAll(referrersMap.get(target));
+        }
+        return !referrers.isEmpty() ?
+          ImmutableSortedSet.copyOf(FieldTypeRegistry.OBJ_ID, referrers) : NavigableSets.empty(FieldTypeRegistry.OBJ_ID);
+    }
+
+    // Merge join the given sorted targets against the reference field index, adding their referrers to the map and cache
+    private void scanReferences(int storageId, List<ObjId> targets, Map<ObjId, List<ObjId>> referrersMap) {
+        final byte[] maxKey = ByteUtil.getKeyAfterPrefix(UnsignedIntEncoder.encode(storageId));
+        final int numTargets = targets.size();
+        int pos = 0;
+        ArrayList<ObjId> refs = new ArrayList<>();
+        Iterator<KVPair> i = this.kvt.getRange(Transaction.buildReferenceIndexPrefix(storageId, targets.get(0)), maxKey, false);
+        while (i.hasNext()) {
+
+            // Decode index entry; null references sort last
+            final ByteReader reader = new ByteReader(i.next().getKey());
+            UnsignedIntEncoder.skip(reader);
+            final ObjId target = FieldTypeRegistry.REFERENCE.read(reader);
+            if (target == null)
+                break;
+
+            // If entry is past the current target, advance to the first target at or after the entry, seeking if needed
+            if (!target.equals(targets.get(pos))) {
+                this.cacheReferrers(storageId, referrersMap, targets.get(pos), refs);
+                refs = new ArrayList<>();
+                int next = Collections.binarySearch(targets.subList(pos + 1, numTargets), target);
+                final boolean found = next >= 0;
+                next = (found ? next : -next - 1) + pos + 1;
+                while (++pos < next)
+                    this.cacheReferrers(storageId, referrersMap, targets.get(pos), Collections.<ObjId>emptyList());
+                if (pos == numTargets)
+                    break;
+                if (!found) {
+                    i = this.kvt.getRange(Transaction.buildReferenceIndexPrefix(storageId, targets.get(pos)), maxKey, false);
+                    continue;
+                }
+            }
+
+            // Add referrer
+            refs.add(new ObjId(reader));
+        }
+
+        // Cache the remaining targets' referrers
+        if (pos < numTargets) {
+            this.cacheReferrers(storageId, referrersMap, targets.get(pos), refs);
+            while (++pos < numTargets)
+                this.cacheReferrers(storageId, referrersMap, targets.get(pos), Collections.<ObjId>emptyList());
+        }
+    }
+
+    // Add referrers to the map and cache; each cache entry counts as one plus its number of referrers
+    private void cacheReferrers(int storageId, Map<ObjId, List<ObjId>> referrersMap, ObjId target, List<ObjId> refs) {
+        referrersMap.put(target, refs);
+        final int weight = 1 + refs.size();
+        if (weight > MAX_CACHED_REFERRERS)
+            return;
+        final List<ObjId> previous = this.referrersCache.put(new ReferrersKey(storageId, target), refs);
+        this.cachedReferrers += weight - (previous != null ? 1 + previous.size() : 0);
+        for (Iterator<List<ObjId>> i = this.referrersCache.values().iterator(); this.cachedReferrers > MAX_CACHED_REFERRERS; ) {
+            this.cachedReferrers -= 1 + i.next().size();
+            i.remove();
+        }
+    }
+
+    // Discard cached referrers of the target object in the given index entry after it has been added or removed
+    private synchronized void uncacheReferrers(SimpleField<?> field, byte[] indexEntry) {
+        if (!(field instanceof ReferenceField) || this.referrersCache.isEmpty())
+            return;
+        final ByteReader reader = new ByteReader(indexEntry);
+        UnsignedIntEncoder.skip(reader);
+        final ObjId target = FieldTypeRegistry.REFERENCE.read(reader);
+        if (target == null)
+            return;
+        final List<ObjId> refs = this.referrersCache.remove(new ReferrersKey(field.storageId, target));
+        if (refs != null)
+            this.cachedReferrers -= 1 + refs.size();
+    }
+
+    // Discard all cached referrers after all objects have been deleted
+    synchronized void clearReferrersCache() {
+        this.referrersCache.clear();
+        this.cachedReferrers = 0;
+    }
+
+    private static byte[] buildReferenceIndexPrefix(int storageId, ObjId target) {
+        final ByteWriter writer = new ByteWriter();
+        UnsignedIntEncoder.write(writer, storageId);
+        FieldTypeRegistry.REFERENCE.write(writer, target);
+        return writer.getBytes();
+    }
+
 // Index Queries
 
     /**
@@ -2639,6 +3319,174 @@ public class Transaction {
         return indexInfo.getIndex(this);
     }
 
+    /**
+     * Access a composite index along with the values of its {@linkplain CompositeIndex#getIncludedFields included fields}.
+     *
+     * <p>
+     * The returned map's keys are the index entries, i.e., {@link org.jsimpledb.tuple.Tuple}s consisting of the indexed
+     * field values followed by the object ID (e.g., a {@link org.jsimpledb.tuple.Tuple3} for an index on two fields),
+     * and its values are the corresponding included field values, in order. The included field values are stored in
+     * the index itself, so iterating the map requires a single key range scan; in particular, no objects are read.
+     * Use {@link NavigableMap#subMap subMap()}, etc., to restrict to a range of entries.
+     * </p>
+     *
+     * <p>
+     * The returned index contains objects from all recorded schema versions in which the composite index is defined.
+     * </p>
+     *
+     * @param storageId composite index's storage ID
+     * @return read-only, real-time view of the index entries and the corresponding included field values
+     * @throws UnknownIndexException if {@code storageID} is unknown or does not correspond to a composite index
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized NavigableMap<Tuple, List<Object>> queryCompositeIndexIncludes(int storageId) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final CompositeIndexStorageInfo indexInfo = this.schemas.verifyStorageInfo(storageId, CompositeIndexStorageInfo.class);
+        return (NavigableMap<Tuple, List<Object>>)indexInfo.getIncludesMap(this);
+    }
+
+    /**
+     * Determine whether this transaction's database maintains statistics, in which case {@link #countObjects countObjects()},
+     * {@link #countIndexEntries countIndexEntries()}, and {@link #countCompositeIndexEntries countCompositeIndexEntries()}
+     * take constant time.
+     *
+     * @return true if statistics are maintained
+     * @see Database#setMaintainStatistics Database.setMaintainStatistics()
+     */
+    public boolean hasStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Count the objects whose object type has the specified storage ID.
+     *
+     * <p>
+     * If {@linkplain #hasStatistics statistics} are maintained, this takes constant time;
+     * otherwise, the objects are iterated and counted.
+     * </p>
+     *
+     * @param storageId object type storage ID
+     * @return number of objects having the specified object type
+     * @throws UnknownTypeException if {@code storageId} does not correspond to any known object type
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized long countObjects(int storageId) {
+
+        // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.schemas.verifyStorageInfo(storageId, ObjTypeStorageInfo.class);
+
+        // Read count, or count objects
+        if (this.statistics) {
+            final byte[] value = this.kvt.get(Database.buildObjectCountKey(storageId));
+            return value != null ? this.kvt.decodeCounter(value) : 0;
+        }
+        return this.getAll(storageId).size();
+    }
+
+    /**
+     * Count the index entries having the specified value in the specified {@link SimpleField}'s index.
+     *
+     * <p>
+     * The {@code storageId} may refer to any indexed {@link SimpleField}, whether part of an object or a sub-field
+     * of a {@link ComplexField}. For fields that are not sub-fields, and sub-fields of a {@link SetField} or
+     * the key sub-field of a {@link MapField}, this is the number of objects having {@code value} in the field;
+     * for list elements and map values, the same object is counted once for each occurrence of {@code value}.
+     * </p>
+     *
+     * <p>
+     * If {@linkplain #hasStatistics statistics} are maintained, this takes constant time;
+     * otherwise, the index entries are iterated and counted.
+     * </p>
+     *
+     * @param storageId {@link SimpleField}'s storage ID
+     * @param value field value
+     * @return number of index entries having {@code value} in the field's index
+     * @throws UnknownFieldException if no {@link SimpleField} corresponding to {@code storageId} exists
+     * @throws IllegalArgumentException if {@code value} is not a valid value for the field
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized long countIndexEntries(int storageId, Object value) {
+
+        // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final SimpleFieldStorageInfo<?> fieldInfo = this.schemas.verifyStorageInfo(storageId, SimpleFieldStorageInfo.class);
+
+        // Build index prefix
+        final ByteWriter writer = new ByteWriter();
+        UnsignedIntEncoder.write(writer, storageId);
+        Transaction.writeValue(writer, fieldInfo.fieldType, value);
+
+        // Count
+        return this.countIndexEntries(writer.getBytes());
+    }
+
+    /**
+     * Count the index entries having the specified combination of field values in the specified composite index,
+     * i.e., the number of objects having those values in the indexed fields.
+     *
+     * <p>
+     * If {@linkplain #hasStatistics statistics} are maintained, this takes constant time;
+     * otherwise, the index entries are iterated and counted.
+     * </p>
+     *
+     * @param storageId composite index's storage ID
+     * @param values indexed field values, in the same order as the fields in the index
+     * @return number of objects having the given values in the indexed fields
+     * @throws UnknownIndexException if {@code storageID} is unknown or does not correspond to a composite index
+     * @throws IllegalArgumentException if {@code values} is null or has the wrong length
+     * @throws IllegalArgumentException if any value in {@code values} is not a valid value for the corresponding field
+     * @throws StaleTransactionException if this transaction is no longer usable
+     */
+    public synchronized long countCompositeIndexEntries(int storageId, Object... values) {
+
+        // Sanity check
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final CompositeIndexStorageInfo indexInfo = this.schemas.verifyStorageInfo(storageId, CompositeIndexStorageInfo.class);
+        if (values == null)
+            throw new IllegalArgumentException("null values");
+        if (values.length != indexInfo.fields.size()) {
+            throw new IllegalArgumentException("the composite index with storage ID " + storageId
+              + " is on " + indexInfo.fields.size() + " != " + values.length + " fields");
+        }
+
+        // Build index prefix
+        final ByteWriter writer = new ByteWriter();
+        UnsignedIntEncoder.write(writer, storageId);
+        for (int i = 0; i < values.length; i++)
+            Transaction.writeValue(writer, indexInfo.fields.get(i).fieldType, values[i]);
+
+        // Count
+        return this.countIndexEntries(writer.getBytes());
+    }
+
+    /**
+     * Count the index entries having the given prefix, which must consist of a storage ID followed by the encoded
+     * value(s) of all indexed fields.
+     *
+     * @param prefix index entry prefix
+     * @return number of index entries
+     */
+    long countIndexEntries(byte[] prefix) {
+        if (this.statistics) {
+            final byte[] value = this.kvt.get(Database.buildIndexStatisticsKey(prefix, prefix.length));
+            return value != null ? this.kvt.decodeCounter(value) : 0;
+        }
+        long count = 0;
+        for (Iterator<KVPair> i = this.kvt.getRange(prefix, ByteUtil.getKeyAfterPrefix(prefix), false); i.hasNext(); i.next())
+            count++;
+        return count;
+    }
+
+    private static <T> void writeValue(ByteWriter writer, FieldType<T> fieldType, Object value) {
+        fieldType.write(writer, fieldType.validate(value));
+    }
+
     // Query an index on a reference field for referring objects
     @SuppressWarnings("unchecked")
     private NavigableMap<ObjId, NavigableSet<ObjId>> queryReferences(int storageId) {
@@ -2691,6 +3539,135 @@ public class Transaction {
         return !refSets.isEmpty() ? NavigableSets.union(refSets) : NavigableSets.empty(FieldTypeRegistry.OBJ_ID);
     }
 
+    /**
+     * Find all reference fields that might refer to the given target object.
+     *
+     * <p>
+     * If this transaction's database maintains a referrer index, only the fields recorded there for {@code target}
+     * are returned; this is a superset of the fields that actually refer to {@code target}. Otherwise, all
+     * reference fields are returned.
+     * </p>
+     *
+     * @param target referred-to object
+     */
+    private List<ReferenceFieldStorageInfo> findReferringFields(ObjId target) {
+        if (!this.referrerIndex)
+            return Lists.newArrayList(Iterables.filter(this.schemas.storageInfos.values(), ReferenceFieldStorageInfo.class));
+        final ArrayList<ReferenceFieldStorageInfo> fieldInfos = new ArrayList<>();
+        final byte[] prefix = Database.buildReferrerIndexPrefix(target);
+        for (Iterator<KVPair> i = this.kvt.getRange(prefix, ByteUtil.getKeyAfterPrefix(prefix), false); i.hasNext(); ) {
+            final KVPair pair = i.next();
+            final int storageId = UnsignedIntEncoder.read(new ByteReader(pair.getKey(), prefix.length));
+            final StorageInfo storageInfo = this.schemas.storageInfos.get(storageId);
+            if (storageInfo instanceof ReferenceFieldStorageInfo)
+                fieldInfos.add((ReferenceFieldStorageInfo)storageInfo);
+        }
+        return fieldInfos;
+    }
+
+    /**
+     * Record in the referrer index, if any, that the reference field indexed by the given index entry refers to
+     * the target object in the index entry. Does nothing if {@code field} is not a reference field.
+     *
+     * @param field indexed simple field
+     * @param indexEntry index entry just added for {@code field}
+     */
+    void addReferrerIndexEntry(SimpleField<?> field, byte[] indexEntry) {
+        final byte[] key = this.buildReferrerIndexEntry(field, indexEntry);
+        if (key != null)
+            this.kvt.put(key, ByteUtil.EMPTY);
+    }
+
+    // Same as above, but adds the referrer index entry, if any, to the given set instead of writing it
+    private void addReferrerIndexEntry(SimpleField<?> field, byte[] indexEntry, Set<byte[]> indexEntries) {
+        final byte[] key = this.buildReferrerIndexEntry(field, indexEntry);
+        if (key != null)
+            indexEntries.add(key);
+    }
+
+    private byte[] buildReferrerIndexEntry(SimpleField<?> field, byte[] indexEntry) {
+        if (!this.referrerIndex || !(field instanceof ReferenceField))
+            return null;
+        final ByteReader reader = new ByteReader(indexEntry);
+        UnsignedIntEncoder.skip(reader);
+        final ObjId target = ((ReferenceField)field).fieldType.read(reader);
+        return target != null ? Database.buildReferrerIndexKey(target, field.storageId) : null;
+    }
+
+    /**
+     * Build the referrer index from the reference field indexes. Used when upgrading the database format version.
+     */
+    void buildReferrerIndex() {
+        assert this.referrerIndex;
+        for (ReferenceFieldStorageInfo fieldInfo : Iterables.filter(this.schemas.storageInfos.values(),
+          ReferenceFieldStorageInfo.class)) {
+            for (ObjId target : this.queryReferences(fieldInfo.storageId).keySet()) {
+                if (target != null)
+                    this.kvt.put(Database.buildReferrerIndexKey(target, fieldInfo.storageId), ByteUtil.EMPTY);
+            }
+        }
+    }
+
+    // Remove referrer index entries for reference fields that no longer refer to the given object
+    private void pruneReferrerIndex(ObjId target) {
+        final byte[] prefix = Database.buildReferrerIndexPrefix(target);
+        final ArrayList<Integer> storageIds = new ArrayList<>();
+        for (Iterator<KVPair> i = this.kvt.getRange(prefix, ByteUtil.getKeyAfterPrefix(prefix), false); i.hasNext(); )
+            storageIds.add(UnsignedIntEncoder.read(new ByteReader(i.next().getKey(), prefix.length)));
+        for (int storageId : storageIds) {
+            if (!(this.schemas.storageInfos.get(storageId) instanceof ReferenceFieldStorageInfo)
+              || !this.queryReferences(storageId).containsKey(target))
+                this.kvt.remove(Database.buildReferrerIndexKey(target, storageId));
+        }
+    }
+
+    /**
+     * Adjust the count of objects having the given object type, if statistics are maintained.
+     * These counts always exist, so they can be adjusted without reading them first.
+     *
+     * @param type object type
+     * @param delta amount to adjust
+     */
+    private void adjustObjectCount(ObjType type, long delta) {
+        if (this.statistics)
+            this.kvt.adjustCounter(Database.buildObjectCountKey(type.storageId), delta);
+    }
+
+    /**
+     * Update derived state after an index entry has been added or removed: discard affected cached referrers,
+     * if any, and adjust index statistics, if maintained.
+     *
+     * @param field indexed simple field
+     * @param indexEntry index entry just added or removed for {@code field}
+     * @param delta 1 if added or -1 if removed
+     */
+    void indexEntryChanged(SimpleField<?> field, byte[] indexEntry, long delta) {
+        this.uncacheReferrers(field, indexEntry);
+        this.adjustIndexStatistics(field, indexEntry, delta);
+    }
+
+    // Adjust the count of index entries having the same field value as the given index entry, if statistics are maintained
+    private void adjustIndexStatistics(SimpleField<?> field, byte[] indexEntry, long delta) {
+        if (!this.statistics)
+            return;
+        final ByteReader reader = new ByteReader(indexEntry);
+        UnsignedIntEncoder.skip(reader);
+        field.fieldType.skip(reader);
+        this.adjustStatistic(Database.buildIndexStatisticsKey(indexEntry, reader.getOffset()), delta);
+    }
+
+    // Same as above, but for a composite index entry
+    private void adjustCompositeIndexStatistics(byte[] indexEntry, long delta) {
+        if (this.statistics)
+            this.adjustStatistic(Database.buildIndexStatisticsKey(indexEntry, indexEntry.length - ObjId.NUM_BYTES), delta);
+    }
+
+    // The first occurrence of a value has no count yet, but adjustCounter() starts missing counters from zero;
+    // we must not read the count here, or concurrent transactions updating the same value would conflict
+    private void adjustStatistic(byte[] key, long delta) {
+        this.kvt.adjustCounter(key, delta);
+    }
+
     private byte[] buildCompositeIndexEntry(ObjId id, CompositeIndex index) {
         return Transaction.buildCompositeIndexEntry(this, id, index);
     }
@@ -2710,6 +3687,47 @@ public class Transaction {
         return writer.getBytes();
     }
 
+    // Build a composite index entry from the given simple field values (missing values are default values)
+    private static byte[] buildCompositeIndexEntry(ObjId id, CompositeIndex index, Map<Integer, byte[]> values) {
+        final ByteWriter writer = new ByteWriter();
+        UnsignedIntEncoder.write(writer, index.storageId);
+        for (SimpleField<?> field : index.fields) {
+            final byte[] value = values.get(field.storageId);
+            writer.write(value != null ? value : field.fieldType.getDefaultValue());
+        }
+        id.writeTo(writer);
+        return writer.getBytes();
+    }
+
+    /**
+     * Build the value of a composite index entry, which is the concatenated values of the index's included fields, if any.
+     *
+     * @param tx transaction to read field values from, or null to use default values
+     * @param id ID of the indexed object
+     * @param index composite index
+     * @return index entry value
+     */
+    private static byte[] buildCompositeIndexValue(Transaction tx, ObjId id, CompositeIndex index) {
+        if (index.includedFields.isEmpty())
+            return ByteUtil.EMPTY;
+        final ByteWriter writer = new ByteWriter();
+        for (SimpleField<?> field : index.includedFields) {
+            final byte[] value = tx != null ? tx.kvt.get(field.buildKey(id)) : null;
+            writer.write(value != null ? value : field.fieldType.getDefaultValue());
+        }
+        return writer.getBytes();
+    }
+
+    // Build the value of a composite index entry from the given simple field values (missing values are default values)
+    private static byte[] buildCompositeIndexValue(CompositeIndex index, Map<Integer, byte[]> values) {
+        final ByteWriter writer = new ByteWriter();
+        for (SimpleField<?> field : index.includedFields) {
+            final byte[] value = values.get(field.storageId);
+            writer.write(value != null ? value : field.fieldType.getDefaultValue());
+        }
+        return writer.getBytes();
+    }
+
 // Mutation
 
     interface Mutation<V> {
@@ -2834,6 +3852,35 @@ public class Transaction {
         }
     }
 
+// ReferrersKey
+
+    // Key for the referrers cache: a reference field and a target object
+    private static final class ReferrersKey {
+
+        private final int storageId;
+        private final ObjId target;
+
+        ReferrersKey(int storageId, ObjId target) {
+            this.storageId = storageId;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (obj == null || obj.getClass() != this.getClass())
+                return false;
+            final ReferrersKey that = (ReferrersKey)obj;
+            return this.storageId == that.storageId && this.target.equals(that.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.storageId ^ this.target.hashCode();
+        }
+    }
+
 // Predicates & Functions
 
     // Matches FieldMonitors who monitor the specified field in the specified object type
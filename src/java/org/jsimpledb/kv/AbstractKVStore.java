@@ -7,8 +7,13 @@
 
 package org.jsimpledb.kv;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jsimpledb.util.ByteReader;
 import org.jsimpledb.util.ByteUtil;
@@ -21,6 +26,9 @@ import org.jsimpledb.util.ByteWriter;
  * This class provides a partial implementation via the following methods:
  * <ul>
  *  <li>A {@link #get get()} implementation based on {@link #getAtLeast getAtLeast()}</li>
+ *  <li>A {@link #getMulti getMulti()} implementation that invokes {@link #get get()} for each key</li>
+ *  <li>{@link #getAsync getAsync()} and {@link #getRangeAsync getRangeAsync()} implementations that perform
+ *      the read immediately and return a completed future</li>
  *  <li>{@link #getAtLeast getAtLeast()} and {@link #getAtMost getAtMost()} implementations based on
  *      {@link #getRange getRange()}.</li>
  *  <li>A {@link #remove remove()} implementation that delegates to {@link #removeRange removeRange()}.</li>
@@ -47,6 +55,34 @@ public abstract class AbstractKVStore implements KVStore {
         return pair != null && Arrays.equals(pair.getKey(), key) ? pair.getValue() : null;
     }
 
+    @Override
+    public List<byte[]> getMulti(List<byte[]> keys) {
+        final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            values.add(this.get(key));
+        return values;
+    }
+
+    @Override
+    public ListenableFuture<byte[]> getAsync(byte[] key) {
+        return Futures.immediateFuture(this.get(key));
+    }
+
+    @Override
+    public ListenableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit < 0");
+        final ArrayList<KVPair> pairs = new ArrayList<>();
+        final Iterator<KVPair> i = this.getRange(minKey, maxKey, reverse);
+        try {
+            while ((limit == 0 || pairs.size() < limit) && i.hasNext())
+                pairs.add(i.next());
+        } finally {
+            this.closeIfPossible(i);
+        }
+        return Futures.<List<KVPair>>immediateFuture(pairs);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey) {
         final Iterator<KVPair> i = this.getRange(minKey, null, false);
@@ -109,9 +145,7 @@ public abstract class AbstractKVStore implements KVStore {
         if (key == null)
             throw new NullPointerException("null key");
         final byte[] previous = this.get(key);
-        if (previous == null)
-            return;
-        this.put(key, this.encodeCounter(this.decodeCounter(previous) + amount));
+        this.put(key, this.encodeCounter(previous != null ? this.decodeCounter(previous) + amount : amount));
     }
 
     private void closeIfPossible(Iterator<KVPair> i) {
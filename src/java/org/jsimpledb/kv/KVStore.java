@@ -7,7 +7,10 @@
 
 package org.jsimpledb.kv;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * General API into a key/value store where the keys are sorted lexicographically as unsigned bytes.
@@ -33,6 +36,14 @@ import java.util.Iterator;
  * should use {@link #decodeCounter decodeCounter()} and {@link #encodeCounter encodeCounter()}, respectively.
  * Counters are removed using the normal methods (i.e., {@link #remove remove()} and {@link #removeRange removeRange()}).
  * </p>
+ *
+ * <p><b>Asynchronous Reads</b></p>
+ *
+ * <p>
+ * The {@link #getAsync getAsync()} and {@link #getRangeAsync getRangeAsync()} methods return a {@link ListenableFuture}
+ * instead of blocking. Implementations backed by a remote server can use them to have many reads in flight at once;
+ * other implementations may simply perform the read immediately and return an already completed future.
+ * </p>
  */
 public interface KVStore {
 
@@ -48,6 +59,38 @@ public interface KVStore {
      */
     byte[] get(byte[] key);
 
+    /**
+     * Get the values associated with multiple keys, if any.
+     *
+     * <p>
+     * The result is the same as invoking {@link #get get()} on each key in turn; however, implementations are
+     * encouraged to perform the reads as a batch, e.g., in a single round trip to a remote server.
+     * </p>
+     *
+     * @param keys keys to read
+     * @return list of the values associated with {@code keys}, in the same order, with null for keys not found
+     * @throws IllegalArgumentException if any key starts with {@code 0xff} and such keys are not supported
+     * @throws StaleTransactionException if an underlying transaction is no longer usable
+     * @throws RetryTransactionException if an underlying transaction must be retried and is no longer usable
+     * @throws NullPointerException if {@code keys} or any key in {@code keys} is null
+     */
+    List<byte[]> getMulti(List<byte[]> keys);
+
+    /**
+     * Get the value associated with the given key, if any, asynchronously.
+     *
+     * <p>
+     * Exceptions that would be thrown by {@link #get get()} may be thrown directly or reported by the returned future.
+     * </p>
+     *
+     * @param key key
+     * @return future value associated with key, or null if not found
+     * @throws IllegalArgumentException if {@code key} starts with {@code 0xff} and such keys are not supported
+     * @throws StaleTransactionException if an underlying transaction is no longer usable
+     * @throws NullPointerException if {@code key} is null
+     */
+    ListenableFuture<byte[]> getAsync(byte[] key);
+
     /**
      * Get the key/value pair having the smallest key greater than or equal to the given minimum, if any.
      *
@@ -113,6 +156,25 @@ public interface KVStore {
      */
     Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse);
 
+    /**
+     * Get the key/value pairs in the specified range, up to some limit, asynchronously.
+     *
+     * <p>
+     * The {@code minKey}, {@code maxKey}, and {@code reverse} parameters are interpreted as for {@link #getRange getRange()}.
+     * Exceptions that would be thrown by {@link #getRange getRange()} may be thrown directly or reported by the returned future.
+     * </p>
+     *
+     * @param minKey minimum key (inclusive), or null for no minimum (start at the smallest key)
+     * @param maxKey maximum key (exclusive), or null for no maximum (end at the largest key)
+     * @param reverse true to return key/value pairs in reverse order (i.e., keys descending)
+     * @param limit maximum number of key/value pairs to return, or zero for no limit
+     * @return future list of key/value pairs in the range {@code minKey} (inclusive) to {@code maxKey} (exclusive)
+     * @throws IllegalArgumentException if {@code minKey > maxKey}
+     * @throws IllegalArgumentException if {@code limit} is negative
+     * @throws StaleTransactionException if an underlying transaction is no longer usable
+     */
+    ListenableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit);
+
     /**
      * Set the value associated with the given key.
      *
@@ -191,9 +253,10 @@ public interface KVStore {
      * </p>
      *
      * <p>
-     * If there is no value associated with {@code key}, or {@code key}'s value is not a valid counter encoding as
-     * would be acceptable to {@link #decodeCounter decodeCounter()}, then how this operation affects {@code key}'s
-     * value is undefined.
+     * If there is no value associated with {@code key}, the counter is treated as having value zero, i.e., {@code key}'s
+     * value becomes the {@linkplain #encodeCounter encoding} of {@code amount}. This allows counters to be created without
+     * first reading them. If {@code key}'s value is not a valid counter encoding as would be acceptable to
+     * {@link #decodeCounter decodeCounter()}, then how this operation affects {@code key}'s value is undefined.
      * </p>
      *
      * @param key key
@@ -17,6 +17,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -427,15 +428,7 @@ public class KeyRanges implements Iterable<KeyRange>, KeyFilter, SizeEstimating
      * @throws IllegalArgumentException if {@code out} is null
      */
     public void serialize(OutputStream out) throws IOException {
-        UnsignedIntEncoder.write(out, this.ranges.size());
-        byte[] prev = null;
-        for (KeyRange range : this.ranges) {
-            final byte[] min = range.getMin();
-            final byte[] max = range.getMax();
-            KeyListEncoder.write(out, min, prev);
-            KeyListEncoder.write(out, max != null ? max : min, min);            // map final [min, null) to [min, min]
-            prev = max;
-        }
+        KeyRanges.serialize(out, this.ranges);
     }
 
     /**
@@ -444,11 +437,29 @@ public class KeyRanges implements Iterable<KeyRange>, KeyFilter, SizeEstimating
      * @return number of serialized bytes
      */
     public long serializedLength() {
-        long total = UnsignedIntEncoder.encodeLength(this.ranges.size());
+        return KeyRanges.serializedLength(this.ranges);
+    }
+
+    // Serialize the given sorted, non-overlapping, non-adjacent ranges
+    static void serialize(OutputStream out, Collection<KeyRange> ranges) throws IOException {
+        UnsignedIntEncoder.write(out, ranges.size());
         byte[] prev = null;
-        for (KeyRange range : this.ranges) {
-            final byte[] min = range.getMin();
-            final byte[] max = range.getMax();
+        for (KeyRange range : ranges) {
+            final byte[] min = range.min;
+            final byte[] max = range.max;
+            KeyListEncoder.write(out, min, prev);
+            KeyListEncoder.write(out, max != null ? max : min, min);            // map final [min, null) to [min, min]
+            prev = max;
+        }
+    }
+
+    // Calculate the serialized length of the given sorted, non-overlapping, non-adjacent ranges
+    static long serializedLength(Collection<KeyRange> ranges) {
+        long total = UnsignedIntEncoder.encodeLength(ranges.size());
+        byte[] prev = null;
+        for (KeyRange range : ranges) {
+            final byte[] min = range.min;
+            final byte[] max = range.max;
             total += KeyListEncoder.writeLength(min, prev);
             total += KeyListEncoder.writeLength(max != null ? max : min, min);
             prev = max;
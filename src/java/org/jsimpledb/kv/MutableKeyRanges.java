@@ -0,0 +1,383 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.jsimpledb.util.ByteUtil;
+import org.jsimpledb.util.SizeEstimating;
+import org.jsimpledb.util.SizeEstimator;
+
+/**
+ * A mutable set of {@link KeyRange} instances that can be treated as a unified whole, in particular as a {@link KeyFilter}.
+ *
+ * <p>
+ * This class is the mutable counterpart to {@link KeyRanges}. Whereas every modification of a {@link KeyRanges} instance
+ * creates a new instance by copying and re-normalizing all of its ranges, instances of this class are backed by a
+ * balanced tree and are modified in place: {@link #add add()}, {@link #remove remove()}, and the various query methods
+ * each require only O(log n) time (plus time proportional to the number of ranges merged or removed, if any).
+ * This makes instances suitable for incrementally accumulating large numbers of ranges, e.g., when tracking reads.
+ * </p>
+ *
+ * <p>
+ * The contained ranges are always kept in normalized form: sorted, non-overlapping, and with adjacent ranges consolidated.
+ * The {@linkplain #serialize serialized form} is identical to that of {@link KeyRanges}.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ *
+ * @see KeyRanges
+ */
+public class MutableKeyRanges implements Iterable<KeyRange>, KeyFilter, SizeEstimating {
+
+    private final TreeMap<byte[], KeyRange> map = new TreeMap<>(ByteUtil.COMPARATOR);      // keyed by range minimum
+
+// Constructors
+
+    /**
+     * Constructs an empty instance.
+     */
+    public MutableKeyRanges() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Creates an instance that contains all keys contained by any of the {@link KeyRange}s in {@code ranges}.
+     * The given {@code ranges} may be adjacent, overlap, and/or be listed in any order.
+     * </p>
+     *
+     * @param ranges individual key ranges
+     * @throws IllegalArgumentException if {@code ranges} or any {@link KeyRange} therein is null
+     */
+    public MutableKeyRanges(Iterable<? extends KeyRange> ranges) {
+        Preconditions.checkArgument(ranges != null, "null ranges");
+        for (KeyRange range : ranges)
+            this.add(range);
+    }
+
+    /**
+     * Constructor for an instance initially containing a single range.
+     *
+     * @param range single range
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public MutableKeyRanges(KeyRange range) {
+        this.add(range);
+    }
+
+// Instance methods
+
+    /**
+     * Get the {@link KeyRange}s contained by this instance as a list.
+     *
+     * <p>
+     * The returned list is a copy; subsequent modifications to this instance are not reflected in it.
+     * </p>
+     *
+     * @return minimal list of {@link KeyRange}s sorted by key range
+     */
+    public List<KeyRange> asList() {
+        return new ArrayList<>(this.map.values());
+    }
+
+    /**
+     * Create an immutable {@link KeyRanges} instance containing the same keys as this instance.
+     *
+     * @return immutable copy of this instance
+     */
+    public KeyRanges toKeyRanges() {
+        return new KeyRanges(this.map.values());
+    }
+
+    /**
+     * Determine whether this instance is empty, i.e., contains no keys.
+     *
+     * @return true if this instance is empty
+     */
+    public boolean isEmpty() {
+        return this.map.isEmpty();
+    }
+
+    /**
+     * Get the number of disjoint {@link KeyRange}s in this instance.
+     *
+     * @return number of key ranges
+     */
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Remove all keys from this instance.
+     */
+    public void clear() {
+        this.map.clear();
+    }
+
+    /**
+     * Add all keys in the given {@link KeyRange} to this instance.
+     *
+     * @param range range to add
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public void add(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        if (range.isEmpty())
+            return;
+        byte[] min = range.min;
+        byte[] max = range.max;
+
+        // Merge with any range to the left that overlaps or is adjacent
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(min);
+        if (floor != null && KeyRange.compare(floor.getValue().max, min) >= 0) {
+            if (KeyRange.compare(floor.getValue().max, max) >= 0)
+                return;                                                 // already contained
+            min = floor.getKey();
+        }
+
+        // Absorb any ranges that start within or adjacent to the new range
+        final NavigableMap<byte[], KeyRange> absorbed = max != null ?
+          this.map.subMap(min, true, max, true) : this.map.tailMap(min, true);
+        if (!absorbed.isEmpty()) {
+            final KeyRange last = absorbed.lastEntry().getValue();
+            if (KeyRange.compare(last.max, max) > 0)
+                max = last.max;
+            absorbed.clear();
+        }
+
+        // Add merged range
+        this.map.put(min, min == range.min && max == range.max ? range : new KeyRange(min, max));
+    }
+
+    /**
+     * Add all keys in the given {@link KeyRange}s to this instance.
+     *
+     * @param ranges ranges to add
+     * @throws IllegalArgumentException if {@code ranges} is null
+     */
+    public void add(Iterable<? extends KeyRange> ranges) {
+        Preconditions.checkArgument(ranges != null, "null ranges");
+        for (KeyRange range : ranges)
+            this.add(range);
+    }
+
+    /**
+     * Remove all keys in the given {@link KeyRange} from this instance.
+     *
+     * @param range range to remove
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public void remove(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        if (range.isEmpty())
+            return;
+        final byte[] min = range.min;
+        final byte[] max = range.max;
+
+        // Truncate any range that starts to the left and overlaps, splitting it if necessary
+        final Map.Entry<byte[], KeyRange> lower = this.map.lowerEntry(min);
+        if (lower != null) {
+            final KeyRange left = lower.getValue();
+            if (KeyRange.compare(left.max, min) > 0) {
+                this.map.put(left.min, new KeyRange(left.min, min));
+                if (KeyRange.compare(left.max, max) > 0) {
+                    this.map.put(max, new KeyRange(max, left.max));
+                    return;
+                }
+            }
+        }
+
+        // Remove any ranges that start within the removed range, preserving any portion of the last one past max
+        final NavigableMap<byte[], KeyRange> removed = max != null ?
+          this.map.subMap(min, true, max, false) : this.map.tailMap(min, true);
+        if (!removed.isEmpty()) {
+            final KeyRange last = removed.lastEntry().getValue();
+            removed.clear();
+            if (KeyRange.compare(last.max, max) > 0)
+                this.map.put(max, new KeyRange(max, last.max));
+        }
+    }
+
+    /**
+     * Determine whether this instance contains the given {@link KeyRange}, i.e., all keys contained by
+     * the given {@link KeyRange} are also contained by this instance.
+     *
+     * @param range key range to test
+     * @return true if this instance contains {@code range}, otherwise false
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public boolean contains(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(range.min);
+        return floor != null && floor.getValue().contains(range);
+    }
+
+    /**
+     * Determine whether this instance contains any of the keys in the given {@link KeyRange}.
+     *
+     * @param range key range to test
+     * @return true if this instance and {@code range} have at least one key in common, otherwise false
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public boolean intersects(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        if (range.isEmpty())
+            return false;
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(range.min);
+        if (floor != null && KeyRange.compare(floor.getValue().max, range.min) > 0)
+            return true;
+        final byte[] higher = this.map.higherKey(range.min);
+        return higher != null && KeyRange.compare(higher, range.max) < 0;
+    }
+
+// Iterable<KeyRange>
+
+    /**
+     * Iterate the {@link KeyRange}s in this instance in order.
+     *
+     * <p>
+     * The returned iterator does not support removal, and its behavior is undefined if this instance is modified
+     * during iteration.
+     * </p>
+     */
+    @Override
+    public Iterator<KeyRange> iterator() {
+        return Iterators.unmodifiableIterator(this.map.values().iterator());
+    }
+
+// KeyFilter
+
+    @Override
+    public boolean contains(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(key);
+        return floor != null && floor.getValue().contains(key);
+    }
+
+    @Override
+    public byte[] seekHigher(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(key);
+        if (floor != null && floor.getValue().contains(key))
+            return key;
+        final Map.Entry<byte[], KeyRange> higher = this.map.higherEntry(key);
+        return higher != null ? higher.getValue().getMin() : null;
+    }
+
+    @Override
+    public byte[] seekLower(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        if (key.length == 0) {
+            if (this.map.isEmpty())
+                return null;
+            final byte[] lastMax = this.map.lastEntry().getValue().getMax();
+            return lastMax != null ? lastMax : ByteUtil.EMPTY;
+        }
+        final Map.Entry<byte[], KeyRange> floor = this.map.floorEntry(key);
+        if (floor == null)
+            return null;
+        return floor.getValue().contains(key) ? key : floor.getValue().getMax();
+    }
+
+// SizeEstimating
+
+    @Override
+    public void addTo(SizeEstimator estimator) {
+        estimator
+          .addObjectOverhead()                              // this object overhead
+          .addTreeMapField(this.map);                       // this.map
+        for (KeyRange range : this.map.values())
+            estimator.add(range);
+    }
+
+// Serialization
+
+    /**
+     * Serialize this instance.
+     *
+     * <p>
+     * The serialized form is the same as that of {@link KeyRanges#serialize KeyRanges.serialize()}.
+     *
+     * @param out output
+     * @throws IOException if an error occurs
+     * @throws IllegalArgumentException if {@code out} is null
+     */
+    public void serialize(OutputStream out) throws IOException {
+        KeyRanges.serialize(out, this.map.values());
+    }
+
+    /**
+     * Calculate the number of bytes required to serialize this instance via {@link #serialize serialize()}.
+     *
+     * @return number of serialized bytes
+     */
+    public long serializedLength() {
+        return KeyRanges.serializedLength(this.map.values());
+    }
+
+    /**
+     * Deserialize an instance created by {@link #serialize serialize()} or {@link KeyRanges#serialize KeyRanges.serialize()}.
+     *
+     * @param input input stream containing data from {@link #serialize serialize()}
+     * @return deserialized instance
+     * @throws IOException if an I/O error occurs
+     * @throws java.io.EOFException if the input ends unexpectedly
+     * @throws IllegalArgumentException if {@code input} is null
+     */
+    public static MutableKeyRanges deserialize(InputStream input) throws IOException {
+        return new MutableKeyRanges(KeyRanges.deserialize(input));
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final MutableKeyRanges that = (MutableKeyRanges)obj;
+        return this.asList().equals(that.asList());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.asList().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(this.getClass().getSimpleName()).append("[");
+        boolean first = true;
+        for (KeyRange range : this.map.values()) {
+            if (first)
+                first = false;
+            else
+                buf.append(",");
+            buf.append(range);
+        }
+        buf.append("]");
+        return buf.toString();
+    }
+}
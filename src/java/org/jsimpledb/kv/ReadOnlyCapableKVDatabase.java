@@ -0,0 +1,55 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv;
+
+/**
+ * A {@link KVDatabase} that can create transactions that will only read data.
+ *
+ * <p>
+ * Implementing this interface is optional; {@link org.jsimpledb.core.Database} uses it when present, and otherwise
+ * falls back to normal transactions.
+ * </p>
+ *
+ * @see org.jsimpledb.core.Database#createTransaction(org.jsimpledb.schema.SchemaModel, int, boolean, boolean)
+ */
+public interface ReadOnlyCapableKVDatabase extends KVDatabase {
+
+    /**
+     * Create a new transaction, optionally hinting that the transaction will only read data.
+     *
+     * <p>
+     * Implementations may use the hint to make the transaction cheaper, for example by not tracking or locking
+     * the keys it reads. Such a transaction never conflicts with any other transaction, so its
+     * {@link KVTransaction#commit commit()} should not fail with a {@link RetryTransactionException}.
+     * Implementations are free to ignore the hint.
+     * </p>
+     *
+     * <p>
+     * The price may be weaker isolation. Depending on the implementation, a read-only transaction may see a consistent
+     * snapshot of the data (e.g., {@link org.jsimpledb.kv.mvcc.SnapshotKVDatabase}), or only "read committed" isolation,
+     * where each read sees the most recently committed data, so two reads of the same key may return different values
+     * (e.g., {@link org.jsimpledb.kv.simple.SimpleKVDatabase} and {@link org.jsimpledb.kv.bdb.BerkeleyKVDatabase}).
+     * Callers that require a consistent view should not pass {@code true} unless they know which implementation is in use.
+     * </p>
+     *
+     * <p>
+     * The caller must not modify the data in a read-only transaction. If it does, the outcome is implementation dependent:
+     * the changes may be committed, silently discarded, or rejected with an exception.
+     * </p>
+     *
+     * <p>
+     * Invoking this method with {@code false} is equivalent to invoking {@link #createTransaction()}.
+     * </p>
+     *
+     * @param readOnly true if the transaction will only read data
+     * @return newly created transaction
+     * @throws KVDatabaseException if an unexpected error occurs
+     */
+    KVTransaction createTransaction(boolean readOnly);
+}
+
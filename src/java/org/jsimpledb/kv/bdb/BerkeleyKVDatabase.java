@@ -24,6 +24,7 @@ import javax.annotation.PreDestroy;
 
 import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVDatabaseException;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +40,7 @@ import org.slf4j.LoggerFactory;
  * @see <a href="http://www.oracle.com/technetwork/database/database-technologies/berkeleydb/overview/index-093405.html"
  *  >Oracle Berkeley DB Java Edition</a>
  */
-public class BerkeleyKVDatabase implements KVDatabase {
+public class BerkeleyKVDatabase implements ReadOnlyCapableKVDatabase {
 
 // Locking order: (1) BerkeleyKVTransaction, (2) BerkeleyKVDatabase
 
@@ -281,7 +282,25 @@ public class BerkeleyKVDatabase implements KVDatabase {
      * @throws KVDatabaseException if an unexpected error occurs
      */
     @Override
-    public synchronized BerkeleyKVTransaction createTransaction() {
+    public BerkeleyKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * Unless a {@linkplain #setNextTransactionConfig custom configuration} has been set for the current thread,
+     * or the {@linkplain #setTransactionConfig default configuration} specifies its own isolation level,
+     * read-only transactions are configured for "read committed" isolation, so they release their read locks
+     * as soon as each read completes.
+     * </p>
+     *
+     * @throws IllegalStateException if this instance is not {@linkplain #start started}
+     * @throws KVDatabaseException if an unexpected error occurs
+     */
+    @Override
+    public synchronized BerkeleyKVTransaction createTransaction(boolean readOnly) {
 
         // Check open
         if (this.environment == null)
@@ -290,9 +309,13 @@ public class BerkeleyKVDatabase implements KVDatabase {
 
         // Get the config for this transaction
         TransactionConfig config = NEXT_TX_CONFIG.get();
-        if (config == null)
+        if (config == null) {
             config = this.defaultTransactionConfig;
-        else
+            if (readOnly && !config.getReadCommitted() && !config.getReadUncommitted() && !config.getSerializableIsolation()) {
+                config = config.clone();
+                config.setReadCommitted(true);
+            }
+        } else
             NEXT_TX_CONFIG.remove();
 
         // Create the transaction
@@ -19,6 +19,7 @@ import javax.annotation.PreDestroy;
 
 import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVDatabaseException;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 
 /**
  * FoundationDB {@link KVDatabase} implementation.
@@ -27,7 +28,7 @@ import org.jsimpledb.kv.KVDatabaseException;
  * Allows specifying a {@linkplain #setKeyPrefix key prefix} for all keys, allowing multiple independent databases.
  * </p>
  */
-public class FoundationKVDatabase implements KVDatabase {
+public class FoundationKVDatabase implements ReadOnlyCapableKVDatabase {
 
     /**
      * The API version used by this class.
@@ -173,10 +174,27 @@ public class FoundationKVDatabase implements KVDatabase {
      */
     @Override
     public FoundationKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * Read-only transactions perform all reads as FoundationDB snapshot reads, which add no read conflict ranges,
+     * and their commit simply discards the transaction without contacting the cluster.
+     * </p>
+     *
+     * @throws IllegalStateException if this instance has not yet been {@linkplain #start started}
+     * @throws IllegalStateException if this instance has already been {@linkplain #stop stopped}
+     * @throws KVDatabaseException if an unexpected error occurs
+     */
+    @Override
+    public FoundationKVTransaction createTransaction(boolean readOnly) {
         if (this.database == null)
             throw new IllegalStateException("not started");
         try {
-            return new FoundationKVTransaction(this, this.keyPrefix);
+            return new FoundationKVTransaction(this, this.keyPrefix, readOnly);
         } catch (FDBException e) {
             throw new KVDatabaseException(this, e);
         }
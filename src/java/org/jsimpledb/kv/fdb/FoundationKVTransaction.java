@@ -14,11 +14,18 @@ import com.foundationdb.Range;
 import com.foundationdb.ReadTransaction;
 import com.foundationdb.Transaction;
 import com.foundationdb.async.AsyncIterator;
+import com.foundationdb.async.Future;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVTransaction;
@@ -40,7 +47,9 @@ public class FoundationKVTransaction implements KVTransaction {
 
     private final FoundationKVDatabase store;
     private final Transaction tx;
+    private final ReadTransaction reader;
     private final byte[] keyPrefix;
+    private final boolean readOnly;
 
     private volatile boolean stale;
     private volatile boolean canceled;
@@ -48,12 +57,14 @@ public class FoundationKVTransaction implements KVTransaction {
     /**
      * Constructor.
      */
-    FoundationKVTransaction(FoundationKVDatabase store, byte[] keyPrefix) {
+    FoundationKVTransaction(FoundationKVDatabase store, byte[] keyPrefix, boolean readOnly) {
         if (store == null)
             throw new IllegalArgumentException("null store");
         this.store = store;
         this.tx = this.store.getDatabase().createTransaction();
+        this.reader = readOnly ? this.tx.snapshot() : this.tx;
         this.keyPrefix = keyPrefix;
+        this.readOnly = readOnly;
     }
 
 // KVTransaction
@@ -86,7 +97,52 @@ public class FoundationKVTransaction implements KVTransaction {
         if (key.length > 0 && key[0] == (byte)0xff)
             throw new IllegalArgumentException("key starts with 0xff");
         try {
-            return this.tx.get(this.addPrefix(key)).get();
+            return this.reader.get(this.addPrefix(key)).get();
+        } catch (FDBException e) {
+            throw this.wrapException(e);
+        }
+    }
+
+    /**
+     * Get the values associated with multiple keys, if any.
+     *
+     * <p>
+     * The implementation in {@link FoundationKVTransaction} issues all of the reads before waiting for any of them,
+     * so they proceed in parallel.
+     * </p>
+     *
+     * @param keys keys to read
+     * @return list of values, in the same order as {@code keys}, with null for keys not found
+     */
+    @Override
+    public List<byte[]> getMulti(List<byte[]> keys) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        for (byte[] key : keys) {
+            if (key.length > 0 && key[0] == (byte)0xff)
+                throw new IllegalArgumentException("key starts with 0xff");
+        }
+        try {
+            final ArrayList<Future<byte[]>> futures = new ArrayList<>(keys.size());
+            for (byte[] key : keys)
+                futures.add(this.reader.get(this.addPrefix(key)));
+            final ArrayList<byte[]> values = new ArrayList<>(futures.size());
+            for (Future<byte[]> future : futures)
+                values.add(future.get());
+            return values;
+        } catch (FDBException e) {
+            throw this.wrapException(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<byte[]> getAsync(byte[] key) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        if (key.length > 0 && key[0] == (byte)0xff)
+            throw new IllegalArgumentException("key starts with 0xff");
+        try {
+            return this.adapt(this.reader.get(this.addPrefix(key)));
         } catch (FDBException e) {
             throw this.wrapException(e);
         }
@@ -121,7 +177,7 @@ public class FoundationKVTransaction implements KVTransaction {
         if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) > 0)
             throw new IllegalArgumentException("minKey > maxKey");
         try {
-            return Iterators.transform(this.tx.getRange(this.addPrefix(minKey, maxKey),
+            return Iterators.transform(this.reader.getRange(this.addPrefix(minKey, maxKey),
               ReadTransaction.ROW_LIMIT_UNLIMITED, reverse).iterator(), new Function<KeyValue, KVPair>() {
                 @Override
                 public KVPair apply(KeyValue kv) {
@@ -133,9 +189,38 @@ public class FoundationKVTransaction implements KVTransaction {
         }
     }
 
+    @Override
+    public ListenableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        if (limit < 0)
+            throw new IllegalArgumentException("limit < 0");
+        if (minKey != null && minKey.length > 0 && minKey[0] == (byte)0xff)
+            minKey = MAX_KEY;
+        if (maxKey != null && maxKey.length > 0 && maxKey[0] == (byte)0xff)
+            maxKey = null;
+        if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) > 0)
+            throw new IllegalArgumentException("minKey > maxKey");
+        final ListenableFuture<List<KeyValue>> future;
+        try {
+            future = this.adapt(this.reader.getRange(this.addPrefix(minKey, maxKey), limit, reverse).asList());
+        } catch (FDBException e) {
+            throw this.wrapException(e);
+        }
+        return Futures.transform(future, new Function<List<KeyValue>, List<KVPair>>() {
+            @Override
+            public List<KVPair> apply(List<KeyValue> kvs) {
+                final ArrayList<KVPair> pairs = new ArrayList<>(kvs.size());
+                for (KeyValue kv : kvs)
+                    pairs.add(new KVPair(FoundationKVTransaction.this.removePrefix(kv.getKey()), kv.getValue()));
+                return pairs;
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
     private KVPair getFirstInRange(byte[] minKey, byte[] maxKey, boolean reverse) {
         try {
-            final AsyncIterator<KeyValue> i = this.tx.getRange(this.addPrefix(minKey, maxKey),
+            final AsyncIterator<KeyValue> i = this.reader.getRange(this.addPrefix(minKey, maxKey),
               ReadTransaction.ROW_LIMIT_UNLIMITED, reverse).iterator();
             if (!i.hasNext())
                 return null;
@@ -194,6 +279,10 @@ public class FoundationKVTransaction implements KVTransaction {
         if (this.stale)
             throw new StaleTransactionException(this);
         this.stale = true;
+        if (this.readOnly) {
+            this.cancel();
+            return;
+        }
         try {
             this.tx.commit().get();
         } catch (FDBException e) {
@@ -263,6 +352,34 @@ public class FoundationKVTransaction implements KVTransaction {
 
 // Other methods
 
+    /**
+     * Adapt a FoundationDB {@link Future} into a {@link ListenableFuture}.
+     *
+     * <p>
+     * Any {@link FDBException} is reported as the appropriate {@link KVTransactionException} via {@link #wrapException}.
+     * </p>
+     *
+     * @param future FoundationDB future
+     * @param <T> future result type
+     * @return equivalent {@link ListenableFuture}
+     */
+    protected <T> ListenableFuture<T> adapt(final Future<T> future) {
+        final SettableFuture<T> result = SettableFuture.create();
+        future.onReady(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.set(future.get());
+                } catch (FDBException e) {
+                    result.setException(FoundationKVTransaction.this.wrapException(e));
+                } catch (RuntimeException e) {
+                    result.setException(e);
+                }
+            }
+        });
+        return result;
+    }
+
     /**
      * Wrap the given {@link FDBException} in the appropriate {@link KVTransactionException}.
      *
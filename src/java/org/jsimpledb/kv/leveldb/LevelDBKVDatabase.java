@@ -370,7 +370,17 @@ public class LevelDBKVDatabase extends SnapshotKVDatabase {
      * @throws IllegalStateException if this instance is not {@linkplain #start started}
      */
     @Override
-    public synchronized LevelDBKVTransaction createTransaction() {
+    public LevelDBKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * @throws IllegalStateException if this instance is not {@linkplain #start started}
+     */
+    @Override
+    public synchronized LevelDBKVTransaction createTransaction(boolean readOnly) {
 
         // Sanity check
         if (this.db == null)
@@ -379,14 +389,14 @@ public class LevelDBKVDatabase extends SnapshotKVDatabase {
             throw new IllegalStateException("stop in progress");
 
         // OK
-        return (LevelDBKVTransaction)super.createTransaction();
+        return (LevelDBKVTransaction)super.createTransaction(readOnly);
     }
 
 // SnapshotKVDatabase
 
     @Override
-    protected LevelDBKVTransaction createSnapshotKVTransaction(SnapshotVersion versionInfo) {
-        return new LevelDBKVTransaction(this, versionInfo);
+    protected LevelDBKVTransaction createSnapshotKVTransaction(SnapshotVersion versionInfo, boolean readOnly) {
+        return new LevelDBKVTransaction(this, versionInfo, readOnly);
     }
 
     @Override
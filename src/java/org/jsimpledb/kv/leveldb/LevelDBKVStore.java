@@ -14,6 +14,9 @@ import com.google.common.collect.Iterables;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -91,6 +94,57 @@ public class LevelDBKVStore extends AbstractKVStore implements AtomicKVStore, Cl
         return this.db.get(key, this.readOptions);
     }
 
+    /**
+     * Get the values associated with multiple keys, if any.
+     *
+     * <p>
+     * The implementation in {@link LevelDBKVStore} visits the keys in sorted order using a single cursor,
+     * skipping the seek entirely for keys that fall before the cursor's current position.
+     * </p>
+     *
+     * @param keys keys to read
+     * @return list of values, in the same order as {@code keys}, with null for keys not found
+     */
+    @Override
+    public synchronized List<byte[]> getMulti(final List<byte[]> keys) {
+        if (this.closed)
+            throw new IllegalStateException("the store is closed");
+        this.cursorTracker.poll();
+
+        // Sort key indexes by key
+        final Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            keys.get(i).getClass();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return ByteUtil.compare(keys.get(i1), keys.get(i2));
+            }
+        });
+
+        // Visit keys in order; "entry" is always the first entry at or after the previously sought key
+        final byte[][] values = new byte[order.length][];
+        try (DBIterator cursor = this.db.iterator(this.readOptions)) {
+            Map.Entry<byte[], byte[]> entry = null;
+            for (int index : order) {
+                final byte[] key = keys.get(index);
+                if (entry == null || ByteUtil.compare(key, entry.getKey()) > 0) {
+                    cursor.seek(key);
+                    if (!cursor.hasNext())
+                        break;                                      // no more keys in the database
+                    entry = cursor.peekNext();
+                }
+                if (Arrays.equals(key, entry.getKey()))
+                    values[index] = entry.getValue();
+            }
+        } catch (IOException e) {
+            throw new DBException("error closing LevelDB iterator", e);
+        }
+        return Arrays.asList(values);
+    }
+
     @Override
     public synchronized java.util.Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
         if (this.closed)
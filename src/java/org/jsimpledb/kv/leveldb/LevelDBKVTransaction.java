@@ -18,8 +18,8 @@ public class LevelDBKVTransaction extends SnapshotKVTransaction {
     /**
      * Constructor.
      */
-    LevelDBKVTransaction(LevelDBKVDatabase kvdb, SnapshotVersion versionInfo) {
-        super(kvdb, versionInfo);
+    LevelDBKVTransaction(LevelDBKVDatabase kvdb, SnapshotVersion versionInfo, boolean readOnly) {
+        super(kvdb, versionInfo, readOnly);
     }
 
 // KVTransaction
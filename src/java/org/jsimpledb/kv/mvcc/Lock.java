@@ -7,8 +7,6 @@
 
 package org.jsimpledb.kv.mvcc;
 
-import java.util.Comparator;
-
 import org.jsimpledb.kv.KeyRange;
 import org.jsimpledb.util.ByteUtil;
 
@@ -20,44 +18,9 @@ import org.jsimpledb.util.ByteUtil;
  */
 class Lock extends KeyRange {
 
-    /**
-     * Sorts locks by min value, then read locks before write locks.
-     * Note: the comparison does not include the {@linkplain #getOwner owner} in the comparison.
-     */
-    public static final Comparator<Lock> MIN_COMPARATOR = new Comparator<Lock>() {
-        @Override
-        public int compare(Lock lock1, Lock lock2) {
-            int diff = KeyRange.compare(lock1.min, lock2.min);
-            if (diff != 0)
-                return diff;
-            diff = Boolean.compare(lock1.write, lock2.write);
-            if (diff != 0)
-                return diff;
-            return 0;
-        }
-    };
-
-    /**
-     * Sorts locks by max value, then read locks before write locks.
-     * Note: the comparison does not include the {@linkplain #getOwner owner} in the comparison.
-     */
-    public static final Comparator<Lock> MAX_COMPARATOR = new Comparator<Lock>() {
-        @Override
-        public int compare(Lock lock1, Lock lock2) {
-            int diff = KeyRange.compare(lock1.max, lock2.max);
-            if (diff != 0)
-                return diff;
-            diff = Boolean.compare(lock1.write, lock2.write);
-            if (diff != 0)
-                return diff;
-            return 0;
-        }
-    };
-
-    private static final LockOwner DUMMY_OWNER = new LockOwner();
-
     final boolean write;
     final LockOwner owner;
+    final long id;
 
     /**
      * Constructor. The current thread becomes the implicit {@linkplain #getOwner owner} of the lock.
@@ -65,16 +28,18 @@ class Lock extends KeyRange {
      * @param min min key; must not be null
      * @param max max key, or null for no maximum
      * @param write true for write lock, false for read lock
+     * @param id unique ID, used to order locks having the same minimum key
      * @throws IllegalArgumentException if {@code min} is null
      * @throws IllegalArgumentException if {@code owner} is null
      * @throws IllegalArgumentException if {@code min > max}
      */
-    public Lock(LockOwner owner, byte[] min, byte[] max, boolean write) {
+    public Lock(LockOwner owner, byte[] min, byte[] max, boolean write, long id) {
         super(min, max);
         if (owner == null)
             throw new IllegalArgumentException("null owner");
         this.owner = owner;
         this.write = write;
+        this.id = id;
     }
 
     /**
@@ -127,6 +92,10 @@ class Lock extends KeyRange {
      * </ul>
      * </p>
      *
+     * <p>
+     * The returned lock has the same ID as this instance.
+     * </p>
+     *
      * @param that lock to merge with this one
      * @return combined lock, or null if this lock is not mergable with {@code that}
      */
@@ -149,7 +118,7 @@ class Lock extends KeyRange {
         // Merge locks
         final byte[] newMin = KeyRange.compare(this.min, that.min) < 0 ? this.min : that.min;
         final byte[] newMax = KeyRange.compare(this.max, that.max) > 0 ? this.max : that.max;
-        return new Lock(this.owner, newMin, newMax, this.write || that.write);
+        return new Lock(this.owner, newMin, newMax, this.write || that.write, this.id);
     }
 
     @Override
@@ -173,22 +142,12 @@ class Lock extends KeyRange {
           + ByteUtil.toString(this.max) + ",type=" + (this.write ? "write" : "read") + "]";
     }
 
-    /**
-     * Get a search key for use with instances sorted via {@link #MIN_COMPARATOR}.
-     */
-    public static Lock getMinKey(byte[] min, boolean write) {
-        if (min == null)
-            throw new IllegalArgumentException("null min");
-        return new Lock(DUMMY_OWNER, min, min, write);
+    // Non-copying accessors for use by LockTree
+    byte[] minKey() {
+        return this.min;
     }
 
-    /**
-     * Get a search key for use with instances sorted via {@link #MAX_COMPARATOR}.
-     */
-    public static Lock getMaxKey(byte[] max, boolean write) {
-        if (max == null)
-            throw new IllegalArgumentException("null max");
-        return new Lock(DUMMY_OWNER, max, max, write);
+    byte[] maxKey() {
+        return this.max;
     }
 }
-
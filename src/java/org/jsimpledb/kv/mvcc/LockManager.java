@@ -10,13 +10,9 @@ package org.jsimpledb.kv.mvcc;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.NavigableSet;
-import java.util.TreeSet;
-
-import org.dellroad.stuff.java.Predicate;
-import org.dellroad.stuff.java.TimedWait;
-import org.jsimpledb.util.ByteUtil;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manager of read/write locks on {@code byte[]} key ranges that ensures isolation and serialization while allowing concurrent
@@ -28,8 +24,13 @@ import org.jsimpledb.util.ByteUtil;
  * </p>
  *
  * <p>
- * Instances are configured with a monitor object which is used for all internal locking and inter-thread wait/notify
- * handshaking (by default, this instance). A user-supplied monitor object may be provided via the constructor.
+ * All locks are kept in an interval tree, so checking a new lock for conflicts takes O(k + log n) time, where n is
+ * the number of outstanding locks and k is the number of those locks that overlap the new lock without conflicting with it
+ * (e.g., other read locks). Each {@link LockOwner} also indexes its own locks, which makes merging a new lock with the
+ * owner's existing locks and releasing all of an owner's locks efficient. A thread that must wait for a lock waits on its
+ * own {@link Condition}, and is only woken up when a conflicting lock, i.e., one that overlaps the lock it's waiting for,
+ * is released; releasing unrelated locks does not disturb it. When an external lock object is supplied to the
+ * {@linkplain #LockManager(Object) constructor}, waiting threads instead share that object's monitor.
  * </p>
  *
  * <p>
@@ -51,7 +52,8 @@ public class LockManager {
 
     private static final long TEN_YEARS_MILLIS = 10L * 365L * 24L * 60L * 60L * 1000L;
 
-    private final Object lockObject;
+    private final Object lockObject;                                                // external monitor, or null
+    private final ReentrantLock mutex;                                              // internal lock, if no lockObject
 
     // Contains each owner's lock time, or null if hold timeout has expired.
     // Invariant: if owner has any locks, then owner is a key in this map and value is not null.
@@ -59,11 +61,12 @@ public class LockManager {
     // owner will own no locks but still exist in this map (with a null value), until its next lock() or release().
     private final HashMap<LockOwner, Long> lockTimes = new HashMap<>();
 
-    private final TreeSet<Lock> locksByMin = new TreeSet<>(Lock.MIN_COMPARATOR);            // locks ordered by minimum
-    private final TreeSet<Lock> locksByMax = new TreeSet<>(Lock.MAX_COMPARATOR);            // locks ordered by maximum
+    private final LockTree locks = new LockTree();                                  // all locks, from all owners
+    private final HashSet<Waiter> waiters = new HashSet<>();                        // threads waiting for a lock
     private final long nanoBasis = System.nanoTime();
 
     private long holdTimeout;
+    private long nextLockId;
 
     /**
      * Convenience constructor. Equivalent to <code>LockManager(null)</code>.
@@ -75,11 +78,18 @@ public class LockManager {
     /**
      * Primary constructor.
      *
+     * <p>
+     * If {@code lockObject} is not null, its Java monitor is used to synchronize field access and for the inter-thread
+     * wait/notify handshake. In that case, releasing a lock that blocks any waiting thread wakes up all waiting threads.
+     * If {@code lockObject} is null, an internal lock is used and only the blocked threads are woken up.
+     * </p>
+     *
      * @param lockObject Java object used to synchronize field access and inter-thread wait/notify handshake,
-     *  or null to use this instance
+     *  or null to use an internal lock
      */
     public LockManager(Object lockObject) {
-        this.lockObject = lockObject != null ? lockObject : this;
+        this.lockObject = lockObject;
+        this.mutex = lockObject == null ? new ReentrantLock() : null;
     }
 
     /**
@@ -93,8 +103,16 @@ public class LockManager {
      * @return hold timeout in milliseconds
      */
     public long getHoldTimeout() {
-        synchronized (this.lockObject) {
+        if (this.lockObject != null) {
+            synchronized (this.lockObject) {
+                return this.holdTimeout;
+            }
+        }
+        this.mutex.lock();
+        try {
             return this.holdTimeout;
+        } finally {
+            this.mutex.unlock();
         }
     }
 
@@ -106,10 +124,20 @@ public class LockManager {
      * @throws IllegalArgumentException if {@code holdTimeout} is negative
      */
     public void setHoldTimeout(long holdTimeout) {
-        synchronized (this.lockObject) {
-            if (holdTimeout < 0)
-                throw new IllegalArgumentException("holdTimeout < 0");
-            this.holdTimeout = Math.min(holdTimeout, TEN_YEARS_MILLIS);             // limit to 10 years to avoid overflow
+        if (holdTimeout < 0)
+            throw new IllegalArgumentException("holdTimeout < 0");
+        holdTimeout = Math.min(holdTimeout, TEN_YEARS_MILLIS);                      // limit to 10 years to avoid overflow
+        if (this.lockObject != null) {
+            synchronized (this.lockObject) {
+                this.holdTimeout = holdTimeout;
+            }
+            return;
+        }
+        this.mutex.lock();
+        try {
+            this.holdTimeout = holdTimeout;
+        } finally {
+            this.mutex.unlock();
         }
     }
 
@@ -119,7 +147,6 @@ public class LockManager {
      * <p>
      * This method will block for up to {@code waitTimeout} milliseconds if the lock is held by
      * another thread, after which point {@link LockResult#WAIT_TIMEOUT_EXPIRED} is returned.
-     * The configured locking object will be used for inter-thread wait/notify handshaking.
      * </p>
      *
      * <p>
@@ -146,66 +173,94 @@ public class LockManager {
      */
     public LockResult lock(LockOwner owner, byte[] minKey, byte[] maxKey, boolean write, long waitTimeout)
       throws InterruptedException {
-        synchronized (this.lockObject) {
-
-            // Sanity check
-            if (owner == null)
-                throw new IllegalArgumentException("null owner");
-            if (waitTimeout < 0)
-                throw new IllegalArgumentException("waitTimeout < 0");
-            waitTimeout = Math.min(waitTimeout, TEN_YEARS_MILLIS);                  // limit to 10 years to avoid overflow
-
-            // Check hold timeout
-            final long lockerRemaining = this.checkHoldTimeout(owner);
-            if (lockerRemaining == -1)
-                return LockResult.HOLD_TIMEOUT_EXPIRED;
-
-            // Create lock
-            Lock lock = new Lock(owner, minKey, maxKey, write);
-
-            // Wait for lockability, until the first one of:
-            //  - Wait timeout
-            //  - Locker's hold timeout
-            //  - Lock owner's hold timeout
-            final LockChecker lockChecker = new LockChecker(lock);
-            if (!lockChecker.test()) {
-                long timeToWait = Math.min(waitTimeout, lockChecker.getTimeRemaining());
+
+        // Sanity check
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
+        if (waitTimeout < 0)
+            throw new IllegalArgumentException("waitTimeout < 0");
+        waitTimeout = Math.min(waitTimeout, TEN_YEARS_MILLIS);                      // limit to 10 years to avoid overflow
+
+        if (this.lockObject != null) {
+            synchronized (this.lockObject) {
+                return this.doLock(owner, minKey, maxKey, write, waitTimeout);
+            }
+        }
+        this.mutex.lock();
+        try {
+            return this.doLock(owner, minKey, maxKey, write, waitTimeout);
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
+    // Acquire a lock. Assumes this.lockObject or this.mutex is held.
+    private LockResult doLock(LockOwner owner, byte[] minKey, byte[] maxKey, boolean write, long waitTimeout)
+      throws InterruptedException {
+
+        // Check hold timeout
+        long lockerRemaining = this.doCheckHoldTimeout(owner);
+        if (lockerRemaining == -1)
+            return LockResult.HOLD_TIMEOUT_EXPIRED;
+
+        // Create lock
+        Lock lock = new Lock(owner, minKey, maxKey, write, this.nextLockId++);
+
+        // Wait for lockability, until the first one of:
+        //  - Wait timeout
+        //  - Locker's hold timeout
+        //  - Lock owner's hold timeout (in which case we check again)
+        final long waitDeadline = System.nanoTime() + waitTimeout * 1000000L;
+        Waiter waiter = null;
+        try {
+            long timeToWait;
+            while ((timeToWait = this.checkLock(lock)) != 0) {
+                if (waitTimeout != 0) {
+                    final long waitRemaining = (waitDeadline - System.nanoTime() + 999999L) / 1000000L;
+                    if (waitRemaining <= 0)
+                        return LockResult.WAIT_TIMEOUT_EXPIRED;
+                    timeToWait = Math.min(timeToWait, waitRemaining);
+                }
                 if (lockerRemaining != 0)
                     timeToWait = Math.min(timeToWait, lockerRemaining);
-                if (!TimedWait.wait(this.lockObject, timeToWait, lockChecker))
-                    return LockResult.WAIT_TIMEOUT_EXPIRED;
+                if (waiter == null) {
+                    waiter = new Waiter(lock, this.mutex != null ? this.mutex.newCondition() : null);
+                    this.waiters.add(waiter);
+                }
+                this.await(waiter, timeToWait);
+                if ((lockerRemaining = this.doCheckHoldTimeout(owner)) == -1)
+                    return LockResult.HOLD_TIMEOUT_EXPIRED;
             }
+        } finally {
+            if (waiter != null)
+                this.waiters.remove(waiter);
+        }
 
-            // Check hold timeout again
-            if (this.checkHoldTimeout(owner) == -1)
-                return LockResult.HOLD_TIMEOUT_EXPIRED;
-
-            // Merge the lock with other locks it can merge with, removing those locks in the process
-            for (Lock that : lockChecker.getMergers()) {
-                final Lock mergedLock = lock.mergeWith(that);
-                if (mergedLock != null) {
-                    this.locksByMin.remove(that);
-                    this.locksByMax.remove(that);
-                    owner.locks.remove(that);
-                    lock = mergedLock;
-                }
+        // Merge the lock with other locks it can merge with, removing those locks in the process
+        final ArrayList<Lock> mergers = new ArrayList<>();
+        owner.locks.findTouching(lock, mergers);
+        for (Lock that : mergers) {
+            final Lock mergedLock = lock.mergeWith(that);
+            if (mergedLock != null) {
+                this.locks.remove(that);
+                owner.locks.remove(that);
+                lock = mergedLock;
             }
+        }
 
-            // Add lock
-            this.locksByMin.add(lock);
-            this.locksByMax.add(lock);
-            owner.locks.add(lock);
+        // Add lock
+        this.locks.add(lock);
+        owner.locks.add(lock);
 
-            // Set hold timeout (if not already set)
-            if (!this.lockTimes.containsKey(owner)) {
-                final long currentTime = System.nanoTime() - this.nanoBasis;
-                this.lockTimes.put(owner, currentTime);
-            } else
-                assert this.lockTimes.get(owner) != null;
+        // Set hold timeout (if not already set)
+        if (!this.lockTimes.containsKey(owner)) {
+            final long currentTime = System.nanoTime() - this.nanoBasis;
+            this.lockTimes.put(owner, currentTime);
+        } else
+            assert this.lockTimes.get(owner) != null;
 
-            // Done
-            return LockResult.SUCCESS;
-        }
+        // Done
+        return LockResult.SUCCESS;
     }
 
     /**
@@ -225,25 +280,39 @@ public class LockManager {
      * @throws IllegalArgumentException if {@code owner} is null
      */
     public boolean release(LockOwner owner) {
-        synchronized (this.lockObject) {
 
-            // Sanity check
-            if (owner == null)
-                throw new IllegalArgumentException("null owner");
+        // Sanity check
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
 
-            // Check if hold timeout has alread expired; in any case, remove lock time
-            if (this.lockTimes.containsKey(owner)) {
-                final Long lockTime = this.lockTimes.remove(owner);
-                if (lockTime == null)
-                    return false;
+        if (this.lockObject != null) {
+            synchronized (this.lockObject) {
+                return this.doReleaseAll(owner);
             }
+        }
+        this.mutex.lock();
+        try {
+            return this.doReleaseAll(owner);
+        } finally {
+            this.mutex.unlock();
+        }
+    }
 
-            // Release all locks
-            this.doRelease(owner);
+    // Release all locks held by owner, checking its hold timeout. Assumes this.lockObject or this.mutex is held.
+    private boolean doReleaseAll(LockOwner owner) {
 
-            // Done
-            return true;
+        // Check if hold timeout has alread expired; in any case, remove lock time
+        if (this.lockTimes.containsKey(owner)) {
+            final Long lockTime = this.lockTimes.remove(owner);
+            if (lockTime == null)
+                return false;
         }
+
+        // Release all locks
+        this.doRelease(owner);
+
+        // Done
+        return true;
     }
 
     /**
@@ -261,98 +330,87 @@ public class LockManager {
      * @throws IllegalArgumentException if {@code owner} is null
      */
     public long checkHoldTimeout(LockOwner owner) {
-        synchronized (this.lockObject) {
-            if (this.holdTimeout == 0)
-                return 0;
-            if (!this.lockTimes.containsKey(owner))
-                return 0;
-            final Long lockTime = this.lockTimes.get(owner);
-            if (lockTime == null)
-                return -1;
-            final long currentTime = System.nanoTime() - this.nanoBasis;
-            final long holdDeadline = lockTime + this.holdTimeout * 1000000L;
-            final long remaining = holdDeadline - currentTime;
-            if (remaining <= 0) {
-                this.lockTimes.put(owner, null);
-                this.doRelease(owner);
-                return -1;
+        if (this.lockObject != null) {
+            synchronized (this.lockObject) {
+                return this.doCheckHoldTimeout(owner);
             }
-            return (remaining + 999999L) / 1000000L;
+        }
+        this.mutex.lock();
+        try {
+            return this.doCheckHoldTimeout(owner);
+        } finally {
+            this.mutex.unlock();
         }
     }
 
-    // Release all locks held by owner. Assumes synchronized already on this.lockObject.
-    private void doRelease(LockOwner owner) {
-        for (Lock lock : owner.locks) {
-            this.locksByMin.remove(lock);
-            this.locksByMax.remove(lock);
+    // Check hold timeout. Assumes this.lockObject or this.mutex is held.
+    private long doCheckHoldTimeout(LockOwner owner) {
+        if (this.holdTimeout == 0)
+            return 0;
+        if (!this.lockTimes.containsKey(owner))
+            return 0;
+        final Long lockTime = this.lockTimes.get(owner);
+        if (lockTime == null)
+            return -1;
+        final long currentTime = System.nanoTime() - this.nanoBasis;
+        final long holdDeadline = lockTime + this.holdTimeout * 1000000L;
+        final long remaining = holdDeadline - currentTime;
+        if (remaining <= 0) {
+            this.lockTimes.put(owner, null);
+            this.doRelease(owner);
+            return -1;
         }
-        owner.locks.clear();
-        this.lockObject.notifyAll();
+        return (remaining + 999999L) / 1000000L;
     }
 
-    // Check whether we can lock, and fill the list of mergers and return zero if so. If not, return time remaining.
-    // Assumes synchronized already on this.lockObject.
-    private long checkLock(Lock lock, List<Lock> mergers) {
-
-        // Get lock's min & max
-        final byte[] lockMin = lock.getMin();
-        final byte[] lockMax = lock.getMax();
-
-    startOver:
-        while (true) {
-
-            // Get locks whose min is < lockMax
-            final NavigableSet<Lock> lhs = lockMax == null ? this.locksByMin :
-              this.locksByMin.headSet(Lock.getMinKey(lockMax, false), false);
-
-            // Get locks whose max is > lockMin
-            final NavigableSet<Lock> rhs = lockMin == null ? this.locksByMax : this.locksByMax.tailSet(
-              Lock.getMaxKey(ByteUtil.getNextKey(lockMin), false), true);
-
-            // Find overlapping locks and check for conflicts
-            final HashSet<Lock> overlaps = new HashSet<>();
-            for (Lock other : lhs) {
-
-                // Does this lock overlap?
-                if (!rhs.contains(other))
-                    continue;
-
-                // Do this lock & other lock conflict?
-                if (lock.conflictsWith(other)) {
-
-                    // See if other lock's owner's hold timeout has expired
-                    assert this.lockTimes.containsKey(other.owner);
-                    final long remaining = this.checkHoldTimeout(other.owner);
-                    if (remaining == -1)
-                        continue startOver;
+    // Wait to be woken up or for the timeout to expire. Assumes this.lockObject or this.mutex is held.
+    private void await(Waiter waiter, long timeToWait) throws InterruptedException {
+        if (this.lockObject != null)
+            this.lockObject.wait(timeToWait != Long.MAX_VALUE ? timeToWait : 0);
+        else if (timeToWait != Long.MAX_VALUE)
+            waiter.condition.await(timeToWait, TimeUnit.MILLISECONDS);
+        else
+            waiter.condition.await();
+    }
 
-                    // Return time remaining until conflicting owner's hold timeout
-                    return Math.max(remaining, 1);
+    // Release all locks held by owner and wake up any waiters they were blocking.
+    // Assumes this.lockObject or this.mutex is held.
+    private void doRelease(LockOwner owner) {
+        if (owner.locks.isEmpty())
+            return;
+        for (Waiter waiter : this.waiters) {
+            if (owner.locks.findConflict(waiter.lock) != null) {
+                if (this.lockObject != null) {
+                    this.lockObject.notifyAll();
+                    break;
                 }
-
-                // Add overlap
-                overlaps.add(other);
+                waiter.condition.signal();
             }
+        }
+        for (Lock lock : owner.locks)
+            this.locks.remove(lock);
+        owner.locks.clear();
+    }
 
-            //System.out.println(Thread.currentThread().getName() + ": LockChecker: BEFORE: lock = " + lock + "\n"
-            //+ "  lockByMin = " + this.locksByMin + "\n"
-            //+ "  lockByMax = " + this.locksByMax + "\n"
-            //+ "   overlaps = " + overlaps + "\n");
+    // Check whether we can lock. Returns zero if so; otherwise, returns the time remaining until the conflicting
+    // lock's owner's hold timeout expires, or Long.MAX_VALUE if there is no hold timeout.
+    // Assumes this.lockObject or this.mutex is held.
+    private long checkLock(Lock lock) {
+        while (true) {
 
-            // Find overlaps we can merge with
-            for (Lock other : overlaps) {
-                if (lock.mergeWith(other) != null)
-                    mergers.add(other);
-            }
+            // Find a conflicting lock, if any
+            final Lock conflict = this.locks.findConflict(lock);
+            if (conflict == null)
+                return 0;
 
-            //System.out.println(Thread.currentThread().getName() + ": LockChecker: AFTER: lock = " + lock + "\n"
-            //+ "  lockByMin = " + this.locksByMin + "\n"
-            //+ "  lockByMax = " + this.locksByMax + "\n"
-            //+ "    mergers = " + mergers + "\n");
+            // See if other lock's owner's hold timeout has expired; if so, its locks are now released, so check again
+            assert this.lockTimes.containsKey(conflict.owner);
+            final long remaining = this.doCheckHoldTimeout(conflict.owner);
+            if (remaining == -1)
+                continue;
 
-            // Done
-            return 0;
+            // Return time remaining until conflicting owner's hold timeout
+            return remaining != 0 ? remaining : Long.MAX_VALUE;
         }
     }
 
@@ -379,37 +437,16 @@ public class LockManager {
         HOLD_TIMEOUT_EXPIRED;
     }
 
-// LockChecker predicate
+// Waiter
 
-    private class LockChecker implements Predicate {
+    private static final class Waiter {
 
-        private final Lock lock;
-        private final ArrayList<Lock> mergers = new ArrayList<>();
+        final Lock lock;
+        final Condition condition;
 
-        private long timeRemaining;
-
-        LockChecker(Lock lock) {
+        Waiter(Lock lock, Condition condition) {
             this.lock = lock;
-        }
-
-        public List<Lock> getMergers() {
-            return this.mergers;
-        }
-
-        public long getTimeRemaining() {
-            return this.timeRemaining;
-        }
-
-        @Override
-        public boolean test() {
-
-            // Reset state
-            this.mergers.clear();
-
-            // See if we can lock
-            this.timeRemaining = LockManager.this.checkLock(this.lock, this.mergers);
-            return this.timeRemaining == 0;
+            this.condition = condition;
         }
     }
 }
-
@@ -7,8 +7,6 @@
 
 package org.jsimpledb.kv.mvcc;
 
-import java.util.HashSet;
-
 /**
  * Represents the owner of a {@link Lock} managed by a {@link LockManager}.
  *
@@ -20,7 +18,7 @@ import java.util.HashSet;
  */
 public final class LockOwner {
 
-    final HashSet<Lock> locks = new HashSet<>();
+    final LockTree locks = new LockTree();                  // locks held by this owner
 
     /**
      * Constructor.
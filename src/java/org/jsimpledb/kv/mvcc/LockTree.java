@@ -0,0 +1,297 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.util.ByteUtil;
+
+/**
+ * Interval tree containing {@link Lock}s.
+ *
+ * <p>
+ * This is a treap ordered by lock {@linkplain Lock#getMin minimum} (then {@linkplain Lock#id lock ID}, so that
+ * multiple locks on the same range may coexist), where each node also records the greatest
+ * {@linkplain Lock#getMax maximum} found in its subtree. Insertion and removal require O(log n) expected time.
+ * Finding a conflicting lock requires O(k + log n) expected time, where k is the number of overlapping locks
+ * that do not conflict (e.g., other read locks) and are visited before a conflict is found.
+ * Node priorities are derived from lock IDs, so no random number generator is needed.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ *
+ * @see LockManager
+ */
+class LockTree implements Iterable<Lock> {
+
+    private Node root;
+    private int size;
+    private boolean removed;
+
+// Public methods
+
+    /**
+     * Add a lock to this tree.
+     *
+     * @param lock lock to add; must not already be in this tree
+     */
+    public void add(Lock lock) {
+        this.root = this.insert(this.root, new Node(lock));
+        this.size++;
+    }
+
+    /**
+     * Remove a lock from this tree.
+     *
+     * @param lock lock to remove
+     * @return true if {@code lock} was found and removed, otherwise false
+     */
+    public boolean remove(Lock lock) {
+        this.removed = false;
+        this.root = this.delete(this.root, lock);
+        if (!this.removed)
+            return false;
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Find any lock in this tree that {@linkplain Lock#conflictsWith conflicts with} the given lock.
+     *
+     * <p>
+     * Overlapping locks that do not conflict must be skipped over, so this takes O(k + log n) expected time,
+     * where k is the number of such locks.
+     *
+     * @param lock lock to check
+     * @return some conflicting lock, or null if there are none
+     */
+    public Lock findConflict(Lock lock) {
+        return this.findConflict(this.root, lock);
+    }
+
+    /**
+     * Find all locks in this tree that overlap or are adjacent to the given lock's key range.
+     *
+     * @param lock lock whose key range to check
+     * @param result list to which overlapping and adjacent locks are added, in order
+     */
+    public void findTouching(Lock lock, List<Lock> result) {
+        this.findTouching(this.root, lock.minKey(), lock.maxKey(), result);
+    }
+
+    /**
+     * Get the number of locks in this tree.
+     *
+     * @return number of locks
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Determine whether this tree is empty.
+     *
+     * @return true if this tree contains no locks
+     */
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    /**
+     * Remove all locks from this tree.
+     */
+    public void clear() {
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Iterate the locks in this tree in order. The returned iterator does not support removal,
+     * and its behavior is undefined if this instance is modified during iteration.
+     */
+    @Override
+    public Iterator<Lock> iterator() {
+        return new LockIterator(this.root);
+    }
+
+// Internal methods
+
+    private Node insert(Node node, Node newNode) {
+        if (node == null)
+            return newNode;
+        if (LockTree.compare(newNode.lock, node.lock) < 0) {
+            node.left = this.insert(node.left, newNode);
+            if (node.left.priority > node.priority)
+                node = LockTree.rotateRight(node);
+        } else {
+            node.right = this.insert(node.right, newNode);
+            if (node.right.priority > node.priority)
+                node = LockTree.rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, Lock lock) {
+        if (node == null)
+            return null;
+        final int diff = LockTree.compare(lock, node.lock);
+        if (diff == 0) {
+            this.removed = true;
+            return LockTree.join(node.left, node.right);
+        }
+        if (diff < 0)
+            node.left = this.delete(node.left, lock);
+        else
+            node.right = this.delete(node.right, lock);
+        node.update();
+        return node;
+    }
+
+    private Lock findConflict(Node node, Lock lock) {
+        while (node != null) {
+
+            // Does anything in this subtree extend past the lock's minimum?
+            if (KeyRange.compare(node.subtreeMax, lock.minKey()) <= 0)
+                return null;
+
+            // Check left subtree
+            final Lock conflict = this.findConflict(node.left, lock);
+            if (conflict != null)
+                return conflict;
+
+            // Does this node (and everything to its right) start at or after the lock's maximum?
+            if (KeyRange.compare(node.lock.minKey(), lock.maxKey()) >= 0)
+                return null;
+
+            // Check this node, then continue with the right subtree
+            if (lock.conflictsWith(node.lock))
+                return node.lock;
+            node = node.right;
+        }
+        return null;
+    }
+
+    private void findTouching(Node node, byte[] min, byte[] max, List<Lock> result) {
+        while (node != null) {
+            if (KeyRange.compare(node.subtreeMax, min) < 0)
+                return;
+            this.findTouching(node.left, min, max, result);
+            if (KeyRange.compare(node.lock.minKey(), max) > 0)
+                return;
+            if (KeyRange.compare(node.lock.maxKey(), min) >= 0)
+                result.add(node.lock);
+            node = node.right;
+        }
+    }
+
+    private static Node join(Node left, Node right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority) {
+            left.right = LockTree.join(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = LockTree.join(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        final Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        final Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        return right;
+    }
+
+    private static int compare(Lock lock1, Lock lock2) {
+        final int diff = ByteUtil.compare(lock1.minKey(), lock2.minKey());
+        return diff != 0 ? diff : Long.compare(lock1.id, lock2.id);
+    }
+
+// Node
+
+    private static final class Node {
+
+        final Lock lock;
+        final long priority;
+        Node left;
+        Node right;
+        byte[] subtreeMax;                          // greatest lock maximum in this subtree, or null if unbounded
+
+        Node(Lock lock) {
+            this.lock = lock;
+            this.priority = lock.id * 0x9e3779b97f4a7c15L;
+            this.subtreeMax = lock.maxKey();
+        }
+
+        void update() {
+            byte[] max = this.lock.maxKey();
+            if (this.left != null && KeyRange.compare(this.left.subtreeMax, max) > 0)
+                max = this.left.subtreeMax;
+            if (this.right != null && KeyRange.compare(this.right.subtreeMax, max) > 0)
+                max = this.right.subtreeMax;
+            this.subtreeMax = max;
+        }
+    }
+
+// LockIterator
+
+    private static final class LockIterator implements Iterator<Lock> {
+
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+        LockIterator(Node node) {
+            this.pushLeft(node);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.stack.isEmpty();
+        }
+
+        @Override
+        public Lock next() {
+            final Node node = this.stack.pollFirst();
+            if (node == null)
+                throw new NoSuchElementException();
+            this.pushLeft(node.right);
+            return node.lock;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void pushLeft(Node node) {
+            while (node != null) {
+                this.stack.addFirst(node);
+                node = node.left;
+            }
+        }
+    }
+}
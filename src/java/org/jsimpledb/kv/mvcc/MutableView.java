@@ -9,7 +9,9 @@ package org.jsimpledb.kv.mvcc;
 
 import com.google.common.base.Preconditions;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -20,6 +22,7 @@ import org.jsimpledb.kv.KVPairIterator;
 import org.jsimpledb.kv.KVStore;
 import org.jsimpledb.kv.KeyRange;
 import org.jsimpledb.kv.KeyRanges;
+import org.jsimpledb.kv.MutableKeyRanges;
 import org.jsimpledb.util.ByteUtil;
 import org.jsimpledb.util.SizeEstimating;
 import org.jsimpledb.util.SizeEstimator;
@@ -93,7 +96,8 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
      *
      * <p>
      * This includes all keys explicitly or implicitly read by calls to
-     * {@link #get get()}, {@link #getAtLeast getAtLeast()}, {@link #getAtMost getAtMost()}, and {@link #getRange getRange()}.
+     * {@link #get get()}, {@link #getMulti getMulti()}, {@link #getAtLeast getAtLeast()}, {@link #getAtMost getAtMost()},
+     * and {@link #getRange getRange()}.
      *
      * @return reads recorded, or null if this instance is not configured to record reads
      */
@@ -144,9 +148,9 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
         this.recordReads(key, ByteUtil.getNextKey(key));
 
         // Check counter adjustments
-        if (value == null)                      // we can ignore adjustments of missing values
-            return null;
         final Long adjust = this.writes.getAdjusts().get(key);
+        if (value == null)                      // adjustments of missing values start from zero
+            return adjust != null ? this.kv.encodeCounter(adjust) : null;
         if (adjust != null) {
 
             // Decode value we just read as a counter
@@ -166,6 +170,71 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
         return value;
     }
 
+    /**
+     * Get the values associated with multiple keys, if any.
+     *
+     * <p>
+     * Keys not resolved by previous writes are read from the underlying {@link KVStore} in a single
+     * {@link KVStore#getMulti getMulti()} invocation, and the corresponding reads are recorded together.
+     * </p>
+     *
+     * @param keys keys to read
+     * @return list of values, in the same order as {@code keys}, with null for keys not found
+     */
+    @Override
+    public synchronized List<byte[]> getMulti(List<byte[]> keys) {
+
+        // Sanity check
+        assert this.check();
+
+        // Resolve what we can from puts and removes; gather the rest
+        final int numKeys = keys.size();
+        final ArrayList<byte[]> values = new ArrayList<>(numKeys);
+        final ArrayList<byte[]> readKeys = new ArrayList<>(numKeys);
+        final int[] readIndexes = new int[numKeys];
+        for (byte[] key : keys) {
+            final byte[] putValue = this.writes.getPuts().get(key);
+            if (putValue == null && !this.writes.getRemoves().contains(key)) {
+                readIndexes[readKeys.size()] = values.size();
+                readKeys.add(key);
+            }
+            values.add(putValue);
+        }
+        if (readKeys.isEmpty())
+            return values;
+
+        // Read from k/v store
+        final List<byte[]> readValues = this.kv.getMulti(readKeys);
+
+        // Record the reads; none of these keys is shadowed by a put or remove
+        if (this.reads != null) {
+            final ArrayList<KeyRange> readRanges = new ArrayList<>(readKeys.size());
+            for (byte[] key : readKeys)
+                readRanges.add(new KeyRange(key));
+            this.reads.getMutableReads().add(readRanges);
+        }
+
+        // Apply counter adjustments and fill in values
+        for (int i = 0; i < readKeys.size(); i++) {
+            final byte[] key = readKeys.get(i);
+            byte[] value = readValues.get(i);
+            final Long adjust = this.writes.getAdjusts().get(key);
+            if (adjust != null && value == null)
+                value = this.kv.encodeCounter(adjust);
+            else if (adjust != null) {
+                try {
+                    value = this.kv.encodeCounter(this.kv.decodeCounter(value) + adjust);
+                } catch (IllegalArgumentException e) {
+                    this.writes.getAdjusts().remove(key);   // previous adjustment was bogus because value was not decodable
+                }
+            }
+            values.set(readIndexes[i], value);
+        }
+
+        // Done
+        return values;
+    }
+
     @Override
     public Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
 
@@ -264,19 +333,18 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
             return;
         }
 
-        // Check removes
-        if (this.writes.getRemoves().contains(key))
+        // Check removes; the counter starts over from zero
+        if (this.writes.getRemoves().contains(key)) {
+            this.put(key, this.kv.encodeCounter(amount));
             return;
+        }
 
         // Calculate new, cumulative adjustment
         final Long oldAdjust = this.writes.getAdjusts().get(key);
         final long adjust = (oldAdjust != null ? oldAdjust : 0) + amount;
 
-        // Record/update adjustment
-        if (adjust != 0)
-            this.writes.getAdjusts().put(key, adjust);
-        else
-            this.writes.getAdjusts().remove(key);
+        // Record/update adjustment; a zero adjustment is retained, because it still creates a missing counter
+        this.writes.getAdjusts().put(key, adjust);
     }
 
 // SizeEstimating
@@ -323,20 +391,40 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
 
         // Already tracked?
         final KeyRange readRange = new KeyRange(minKey, maxKey);
-        if (this.reads.getReads().contains(readRange))
+        final MutableKeyRanges reads = this.reads.getMutableReads();
+        if (reads.contains(readRange))
             return;
 
         // Subtract out the part of the read range that did not really go through to k/v store due to puts or removes
-        KeyRanges readRanges = new KeyRanges(readRange);
+        final MutableKeyRanges readRanges = new MutableKeyRanges(readRange);
         final Set<byte[]> putKeys = (maxKey != null ?
           this.writes.getPuts().subMap(minKey, maxKey) : this.writes.getPuts().tailMap(minKey)).keySet();
         for (byte[] key : putKeys)
-            readRanges = readRanges.remove(new KeyRange(key));
-        readRanges = readRanges.intersection(this.writes.getRemoves().inverse());
+            readRanges.remove(new KeyRange(key));
+        final KeyRanges removes = this.writes.getRemoves();
+        for (byte[] key = removes.seekHigher(minKey); key != null && KeyRange.compare(key, maxKey) < 0; ) {
+            final KeyRange remove = removes.findKey(key)[0];
+            readRanges.remove(remove);
+            key = remove.getMax() != null ? removes.seekHigher(remove.getMax()) : null;
+        }
 
         // Record reads
-        if (!readRanges.isEmpty())
-            this.reads.setReads(this.reads.getReads().union(readRanges));
+        reads.add(readRanges);
+    }
+
+    // Apply any counter adjustment to a k/v pair read from the underlying k/v store
+    private synchronized KVPair applyAdjust(KVPair pair) {
+        final Long adjust = this.writes.getAdjusts().get(pair.getKey());
+        if (adjust == null)
+            return pair;
+        final long counterValue;
+        try {
+            counterValue = this.kv.decodeCounter(pair.getValue());
+        } catch (IllegalArgumentException e) {
+            this.writes.getAdjusts().remove(pair.getKey());         // previous adjustment was bogus because value was not decodable
+            return pair;
+        }
+        return new KVPair(pair.getKey(), this.kv.encodeCounter(counterValue + adjust));
     }
 
 // Debugging
@@ -441,6 +529,7 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
                         readPair = null;
                         continue;
                     }
+                    readPair = MutableView.this.applyAdjust(readPair);
                     break;
                 }
 
@@ -449,10 +538,20 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
                   (this.cursor != null ?
                    MutableView.this.writes.getPuts().lowerEntry(this.cursor) : MutableView.this.writes.getPuts().lastEntry()) :
                   MutableView.this.writes.getPuts().ceilingEntry(this.cursor);
-                final KVPair putPair = putEntry != null ? new KVPair(putEntry) : null;
+                final KVPair putPair = putEntry != null && this.inRange(putEntry.getKey()) ? new KVPair(putEntry) : null;
+
+                // Find the next adjustment, if any; if it precedes the read pair, its key is missing from the underlying
+                // k/v store (otherwise we would have read it), so its counter starts from zero
+                final Map.Entry<byte[], Long> adjustEntry = this.reverse ?
+                  (this.cursor != null ?
+                   MutableView.this.writes.getAdjusts().lowerEntry(this.cursor) : MutableView.this.writes.getAdjusts().lastEntry()) :
+                  MutableView.this.writes.getAdjusts().ceilingEntry(this.cursor);
+                final KVPair adjustPair = adjustEntry != null && this.inRange(adjustEntry.getKey())
+                  && (readPair == null || this.compare(adjustEntry.getKey(), readPair.getKey()) < 0) ?
+                  new KVPair(adjustEntry.getKey(), MutableView.this.kv.encodeCounter(adjustEntry.getValue())) : null;
 
                 // Figure out which pair wins (read or put)
-                final KVPair pair;
+                KVPair pair;
                 int diff = 0;
                 if (readPair == null && putPair == null)
                     pair = null;
@@ -461,12 +560,16 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
                 else if (putPair == null)
                     pair = readPair;
                 else {
-                    diff = ByteUtil.compare(putPair.getKey(), readPair.getKey());
-                    if (reverse)
-                        diff = -diff;
+                    diff = this.compare(putPair.getKey(), readPair.getKey());
                     pair = diff <= 0 ? putPair : readPair;                  // if there's a tie, the put wins
                 }
 
+                // An adjustment of a missing key wins if it comes first (it can never tie with a put)
+                if (adjustPair != null && (pair == null || this.compare(adjustPair.getKey(), pair.getKey()) < 0)) {
+                    pair = adjustPair;
+                    diff = readPair != null ? -1 : 0;
+                }
+
                 // Record that we read from everything we just scanned over in the underlying KVStore
                 final byte[] skipMin;
                 final byte[] skipMax;
@@ -490,7 +593,7 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
                 this.next = pair;
                 this.cursor = pair != null ? (this.reverse ? pair.getKey() : ByteUtil.getNextKey(pair.getKey())) : null;
 
-                // If a put appeared prior to the KVPPairIterator's next k/v pair, backup the KVPairIterator for next time
+                // If a put or adjustment appeared prior to the KVPPairIterator's next k/v pair, backup the KVPairIterator
                 if (diff < 0)
                     this.pi.setNextTarget(this.cursor);
 
@@ -498,6 +601,17 @@ public class MutableView extends AbstractKVStore implements SizeEstimating {
                 return this.next != null;
             }
         }
+
+        // Compare keys in iteration order
+        private int compare(byte[] key1, byte[] key2) {
+            final int diff = ByteUtil.compare(key1, key2);
+            return this.reverse ? -diff : diff;
+        }
+
+        // Check whether key has not gone past the end of the range we are iterating
+        private boolean inRange(byte[] key) {
+            return this.reverse ? ByteUtil.compare(key, this.limit) >= 0 : KeyRange.compare(key, this.limit) < 0;
+        }
     }
 }
 
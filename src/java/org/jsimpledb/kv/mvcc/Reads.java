@@ -13,11 +13,11 @@ import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Map;
 
 import org.jsimpledb.kv.KeyRange;
 import org.jsimpledb.kv.KeyRanges;
+import org.jsimpledb.kv.MutableKeyRanges;
 import org.jsimpledb.util.ByteUtil;
 import org.jsimpledb.util.SizeEstimating;
 import org.jsimpledb.util.SizeEstimator;
@@ -34,7 +34,7 @@ import org.jsimpledb.util.SizeEstimator;
  */
 public class Reads implements SizeEstimating {
 
-    private KeyRanges reads;
+    private final MutableKeyRanges reads;
 
 // Constructors
 
@@ -42,7 +42,7 @@ public class Reads implements SizeEstimating {
      * Constructs an empty instance.
      */
     public Reads() {
-        this(KeyRanges.EMPTY);
+        this.reads = new MutableKeyRanges();
     }
 
     /**
@@ -51,8 +51,9 @@ public class Reads implements SizeEstimating {
      * @param reads read ranges
      * @throws IllegalArgumentException if {@code reads} is null
      */
-    public Reads(KeyRanges reads) {
-        this.setReads(reads);
+    public Reads(Iterable<? extends KeyRange> reads) {
+        Preconditions.checkArgument(reads != null, "null reads");
+        this.reads = new MutableKeyRanges(reads);
     }
 
 // Public methods
@@ -60,9 +61,24 @@ public class Reads implements SizeEstimating {
     /**
      * Get the ranges of keys read.
      *
+     * <p>
+     * The returned instance is an immutable snapshot; use {@link #getMutableReads} for a live view.
+     *
      * @return ranges of keys read
      */
     public KeyRanges getReads() {
+        return this.reads.toKeyRanges();
+    }
+
+    /**
+     * Get the ranges of keys read as a live, mutable instance.
+     *
+     * <p>
+     * Modifications to the returned instance are reflected in this instance.
+     *
+     * @return ranges of keys read
+     */
+    public MutableKeyRanges getMutableReads() {
         return this.reads;
     }
 
@@ -72,9 +88,20 @@ public class Reads implements SizeEstimating {
      * @param reads ranges of keys read
      * @throws IllegalArgumentException if {@code reads} is null
      */
-    public void setReads(KeyRanges reads) {
+    public void setReads(Iterable<? extends KeyRange> reads) {
         Preconditions.checkArgument(reads != null, "null reads");
-        this.reads = reads;
+        this.reads.clear();
+        this.reads.add(reads);
+    }
+
+    /**
+     * Add the given range of keys to the keys read.
+     *
+     * @param range range of keys read
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public void add(KeyRange range) {
+        this.reads.add(range);
     }
 
 // MVCC
@@ -99,11 +126,10 @@ public class Reads implements SizeEstimating {
         Preconditions.checkArgument(mutations != null, "null mutations");
 
         // Check removes
-        final ArrayList<KeyRange> removes = new ArrayList<KeyRange>();
-        for (KeyRange remove : mutations.getRemoveRanges())
-            removes.add(remove);
-        if (!this.reads.intersection(new KeyRanges(removes)).isEmpty())
-            return true;                        // read/remove conflict
+        for (KeyRange remove : mutations.getRemoveRanges()) {
+            if (this.reads.intersects(remove))
+                return true;                    // read/remove conflict
+        }
 
         // Check puts
         for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs()) {
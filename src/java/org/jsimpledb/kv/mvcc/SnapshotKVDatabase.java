@@ -9,6 +9,7 @@ package org.jsimpledb.kv.mvcc;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -16,6 +17,7 @@ import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVStore;
 import org.jsimpledb.kv.KVTransaction;
 import org.jsimpledb.kv.KVTransactionException;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 import org.jsimpledb.kv.RetryTransactionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,17 +40,31 @@ import org.slf4j.LoggerFactory;
  * </p>
  *
  * <p>
+ * Conflicts with previously committed versions are detected using an index that merges the key ranges written by all
+ * recent versions, so a committing transaction requires only a single pass over its reads, regardless of how many
+ * versions have been committed since its snapshot was taken. Commits are pipelined: validated commits are queued and
+ * applied to the underlying {@link AtomicKVStore} in groups: whichever committing thread finds no group in progress
+ * becomes the "leader" and applies all queued commits using a single {@link AtomicKVStore#mutate AtomicKVStore.mutate()}
+ * invocation, so that any number of concurrent committers share the cost of one durable sync. Each group of commits
+ * results in a single new MVCC version.
+ * </p>
+ *
+ * <p>
  * Each outstanding transaction's mutations are batched up in memory using a {@link Writes} instance. Therefore, the
  * transaction load supported by this class is limited to what can fit in memory.
  * </p>
  */
-public class SnapshotKVDatabase implements KVDatabase {
+public class SnapshotKVDatabase implements ReadOnlyCapableKVDatabase {
 
 // Locking order: (1) SnapshotKVTransaction, (2) SnapshotKVDatabase
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final TreeMap<Long, SnapshotVersion> versionInfoMap = new TreeMap<>();
+    private final WriteIndex writeIndex = new WriteIndex();
+    private final ArrayList<PendingCommit> pendingCommits = new ArrayList<>();
+
+    private ArrayList<PendingCommit> flushingCommits;           // commits currently being applied by the group leader
 
     private AtomicKVStore kvstore;
     private long currentVersion;
@@ -107,7 +123,22 @@ public class SnapshotKVDatabase implements KVDatabase {
      * @throws IllegalStateException if no {@link AtomicKVStore} is configured
      */
     @Override
-    public synchronized KVTransaction createTransaction() {
+    public KVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * A read-only transaction does not record the keys it reads, and its commit does not check for conflicts
+     * or write anything; any mutations made in the transaction are simply discarded.
+     * </p>
+     *
+     * @throws IllegalStateException if no {@link AtomicKVStore} is configured
+     */
+    @Override
+    public synchronized KVTransaction createTransaction(boolean readOnly) {
 
         // Sanity check
         if (this.kvstore == null)
@@ -117,7 +148,7 @@ public class SnapshotKVDatabase implements KVDatabase {
         final SnapshotVersion versionInfo = this.getCurrentSnapshotVersion();
 
         // Create the new transaction and associate it with the current version
-        final SnapshotKVTransaction tx = this.createSnapshotKVTransaction(versionInfo);
+        final SnapshotKVTransaction tx = this.createSnapshotKVTransaction(versionInfo, readOnly);
         versionInfo.addOpenTransaction(tx);
         if (this.log.isDebugEnabled())
             this.log.debug("created new transaction " + tx);
@@ -135,15 +166,16 @@ public class SnapshotKVDatabase implements KVDatabase {
      *
      * <p>
      * The implementation in {@link SnapshotKVDatabase} just invokes the {@link SnapshotKVTransaction}
-     * constructor using {@code this} and {@code versionInfo}. Subclasses may want to override this method
-     * to create a more specific subclass.
+     * constructor using {@code this}, {@code versionInfo}, and {@code readOnly}. Subclasses may want to override
+     * this method to create a more specific subclass.
      *
      * @param versionInfo associated snapshot info
+     * @param readOnly true for a read-only transaction
      * @return new transaction instance
      * @throws KVTransactionException if an error occurs
      */
-    protected SnapshotKVTransaction createSnapshotKVTransaction(SnapshotVersion versionInfo) {
-        return new SnapshotKVTransaction(this, versionInfo);
+    protected SnapshotKVTransaction createSnapshotKVTransaction(SnapshotVersion versionInfo, boolean readOnly) {
+        return new SnapshotKVTransaction(this, versionInfo, readOnly);
     }
 
     /**
@@ -203,11 +235,25 @@ public class SnapshotKVDatabase implements KVDatabase {
     /**
      * Commit a transaction.
      */
-    synchronized void commit(SnapshotKVTransaction tx) {
+    void commit(SnapshotKVTransaction tx) {
+
+        // Read-only transactions can't conflict and have nothing to write
+        if (tx.isReadOnly()) {
+            synchronized (this) {
+                if (this.log.isDebugEnabled())
+                    this.log.debug("committing read-only transaction " + tx);
+                this.cleanupTransaction(tx);
+            }
+            return;
+        }
+
+        // Commit normally
         try {
             this.doCommit(tx);
         } finally {
-            this.cleanupTransaction(tx);
+            synchronized (this) {
+                this.cleanupTransaction(tx);
+            }
         }
     }
 
@@ -222,59 +268,180 @@ public class SnapshotKVDatabase implements KVDatabase {
 
 // Internal methods
 
-    private synchronized void doCommit(SnapshotKVTransaction tx) {
+    private void doCommit(SnapshotKVTransaction tx) {
 
-        // Get current and transaction's version info
-        final SnapshotVersion currentSnapshotVersion = this.getCurrentSnapshotVersion();
+        // Get transaction's version info
         final SnapshotVersion transactionSnapshotVersion = tx.getSnapshotVersion();
         final long transactionVersion = transactionSnapshotVersion.getVersion();
-        assert this.currentVersion - transactionVersion >= 0;
-        assert transactionSnapshotVersion.getOpenTransactions().contains(tx);
 
         // Debug
         if (this.log.isDebugEnabled()) {
-            this.log.debug("committing transaction " + tx + " based on version "
-              + transactionVersion + " (current version is " + this.currentVersion + ")");
+            synchronized (this) {
+                this.log.debug("committing transaction " + tx + " based on version "
+                  + transactionVersion + " (current version is " + this.currentVersion + ")");
+            }
         }
 
-        // Check whether transaction has been forcibly killed somehow
-        if (!transactionSnapshotVersion.getOpenTransactions().contains(tx))
-            throw this.logException(new RetryTransactionException(tx, "transaction has been forcibly invalidated"));
-
         // Get transaction reads & writes
         final Reads transactionReads = tx.getMutableView().getReads();
         final Writes transactionWrites = tx.getMutableView().getWrites();
 
-        // If the current version has advanced past the transaction's version, check for conflicts from intervening commits
-        for (long version = transactionVersion; version != this.currentVersion; version++) {
-            final SnapshotVersion committedSnapshotVersion = this.versionInfoMap.get(version);
-            final Writes committedWrites = committedSnapshotVersion.getCommittedWrites();
-            final boolean conflict = transactionReads.isConflict(committedWrites);
+        // Check for conflicts from intervening commits. We check the versions already committed using the write index
+        // in a single pass without holding our lock, then re-check under the lock only the versions committed meanwhile.
+        // Once caught up, we check for conflicts with commits still in progress and enqueue the commit.
+        final long checkedVersion;
+        synchronized (this) {
+            assert this.currentVersion - transactionVersion >= 0;
+            checkedVersion = this.currentVersion;
+        }
+        if (checkedVersion != transactionVersion) {
+            final boolean conflict = this.writeIndex.isConflict(transactionReads, transactionVersion);
             if (this.log.isDebugEnabled()) {
-                this.log.debug("ordering " + tx + " after writes in version " + version + " results in "
-                  + (conflict ? "conflict" : "no conflict"));
+                this.log.debug("ordering " + tx + " after writes in versions " + transactionVersion + " through "
+                  + (checkedVersion - 1) + " results in " + (conflict ? "conflict" : "no conflict"));
                 if (this.log.isTraceEnabled())
-                    this.log.trace("transaction reads: {} committed writes: {}", transactionReads, committedWrites);
+                    this.log.trace("transaction reads: {} write index: {}", transactionReads, this.writeIndex);
             }
             if (conflict) {
                 throw this.logException(new RetryTransactionException(tx, "transaction is based on MVCC version "
-                  + transactionSnapshotVersion.getVersion() + " but the transaction committed at MVCC version "
-                  + version + " contains conflicting writes"));
+                  + transactionVersion + " but a transaction committed at MVCC version " + transactionVersion
+                  + " or later contains conflicting writes"));
             }
         }
+        final PendingCommit commit;
+        synchronized (this) {
 
-        // Atomically apply the transaction's mutations
-        if (this.log.isDebugEnabled())
-            this.log.debug("applying mutations of " + tx + " to SnapshotMVCC database");
-        this.kvstore.mutate(transactionWrites, true);
+            // Sanity check
+            assert this.currentVersion - checkedVersion >= 0;
+            assert transactionSnapshotVersion.getOpenTransactions().contains(tx);
+
+            // Check whether transaction has been forcibly killed somehow
+            if (!transactionSnapshotVersion.getOpenTransactions().contains(tx))
+                throw this.logException(new RetryTransactionException(tx, "transaction has been forcibly invalidated"));
+
+            // Check for conflicts with versions committed while we were checking the write index
+            for (long version = checkedVersion; version != this.currentVersion; version++) {
+                final Writes committedWrites = this.versionInfoMap.get(version).getCommittedWrites();
+                final boolean conflict = transactionReads.isConflict(committedWrites);
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("ordering " + tx + " after writes in version " + version + " results in "
+                      + (conflict ? "conflict" : "no conflict"));
+                }
+                if (conflict) {
+                    throw this.logException(new RetryTransactionException(tx, "transaction is based on MVCC version "
+                      + transactionVersion + " but the transaction committed at MVCC version "
+                      + version + " contains conflicting writes"));
+                }
+            }
 
-        // Record transaction's writes for this version
-        currentSnapshotVersion.setCommittedWrites(transactionWrites);
+            // Check for conflicts with commits in progress
+            if (this.flushingCommits != null)
+                this.checkPendingConflicts(tx, transactionReads, this.flushingCommits);
+            this.checkPendingConflicts(tx, transactionReads, this.pendingCommits);
 
-        // Advance to the next MVCC version
-        if (this.log.isDebugEnabled())
-            this.log.debug("updating current version from " + this.currentVersion + " -> " + (this.currentVersion + 1));
-        this.currentVersion++;
+            // Enqueue commit
+            commit = new PendingCommit(tx, transactionWrites);
+            this.pendingCommits.add(commit);
+        }
+
+        // Wait for our commit to be applied, either by some other thread or by ourselves
+        this.applyCommit(commit);
+    }
+
+    // Check for conflicts with commits that have been validated but not yet applied
+    private void checkPendingConflicts(SnapshotKVTransaction tx, Reads transactionReads, List<PendingCommit> commits) {
+        assert Thread.holdsLock(this);
+        for (PendingCommit commit : commits) {
+            final boolean conflict = transactionReads.isConflict(commit.getWrites());
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("ordering " + tx + " after writes of pending commit " + commit.getTransaction()
+                  + " results in " + (conflict ? "conflict" : "no conflict"));
+            }
+            if (conflict) {
+                throw this.logException(new RetryTransactionException(tx, "transaction is based on MVCC version "
+                  + tx.getSnapshotVersion().getVersion() + " but the transaction " + commit.getTransaction()
+                  + " committing concurrently contains conflicting writes"));
+            }
+        }
+    }
+
+    // Wait for the given commit to be applied; if no other thread is applying commits, become the group leader and do it
+    private void applyCommit(PendingCommit commit) {
+
+        // Wait for our commit to be applied, or for the previous group to complete so we can become the leader
+        final ArrayList<PendingCommit> group;
+        final AtomicKVStore store;
+        synchronized (this) {
+            boolean interrupted = false;
+            try {
+                while (!commit.isFinished() && this.flushingCommits != null) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;                             // we're already committed to committing
+                    }
+                }
+            } finally {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+            if (commit.isFinished()) {
+                commit.checkError();
+                return;
+            }
+
+            // Take over all queued commits (which must include ours) as the next group
+            assert this.pendingCommits.contains(commit);
+            group = new ArrayList<>(this.pendingCommits);
+            this.pendingCommits.clear();
+            this.flushingCommits = group;
+
+            // Ensure transactions created while we apply the group get a snapshot that precedes it
+            this.getCurrentSnapshotVersion();
+            store = this.kvstore;
+        }
+
+        // Merge the group's writes (if more than one) and apply them atomically and durably
+        Writes groupWrites = null;
+        RuntimeException error = null;
+        try {
+            if (group.size() == 1)
+                groupWrites = group.get(0).getWrites();
+            else {
+                final MutableView merge = new MutableView(store, null, new Writes());
+                for (PendingCommit member : group)
+                    member.getWrites().applyTo(merge);
+                groupWrites = merge.getWrites();
+            }
+            if (this.log.isDebugEnabled())
+                this.log.debug("applying mutations of " + group.size() + " transaction(s) to SnapshotMVCC database");
+            store.mutate(groupWrites, true);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        // Record the outcome and wake up the other group members and anyone waiting to become the next leader
+        synchronized (this) {
+            assert this.flushingCommits == group;
+            if (error == null) {
+
+                // Record group's writes for this version
+                this.getCurrentSnapshotVersion().setCommittedWrites(groupWrites);
+                this.writeIndex.add(this.currentVersion, groupWrites);
+
+                // Advance to the next MVCC version
+                if (this.log.isDebugEnabled())
+                    this.log.debug("updating current version from " + this.currentVersion + " -> " + (this.currentVersion + 1));
+                this.currentVersion++;
+            }
+            for (PendingCommit member : group)
+                member.setFinished(error != null ? this.wrapException(member.getTransaction(), error) : null);
+            this.flushingCommits = null;
+            this.notifyAll();
+        }
+
+        // Report our own outcome
+        commit.checkError();
     }
 
     private void cleanupTransaction(SnapshotKVTransaction tx) {
@@ -304,6 +471,9 @@ public class SnapshotKVDatabase implements KVDatabase {
             }
             i.remove();
         }
+
+        // Discard write index information that no remaining or future transaction can conflict with
+        this.writeIndex.prune(!this.versionInfoMap.isEmpty() ? this.versionInfoMap.firstKey() : this.currentVersion);
     }
 
     // Get SnapshotVersion for the current MVCC version, creating on demand if necessary
@@ -317,5 +487,43 @@ public class SnapshotKVDatabase implements KVDatabase {
         }
         return versionInfo;
     }
-}
 
+// PendingCommit
+
+    private static class PendingCommit {
+
+        private final SnapshotKVTransaction tx;
+        private final Writes writes;
+
+        private boolean finished;
+        private RuntimeException error;
+
+        PendingCommit(SnapshotKVTransaction tx, Writes writes) {
+            this.tx = tx;
+            this.writes = writes;
+        }
+
+        public SnapshotKVTransaction getTransaction() {
+            return this.tx;
+        }
+
+        public Writes getWrites() {
+            return this.writes;
+        }
+
+        public boolean isFinished() {
+            return this.finished;
+        }
+
+        public void setFinished(RuntimeException error) {
+            this.finished = true;
+            this.error = error;
+        }
+
+        public void checkError() {
+            assert this.finished;
+            if (this.error != null)
+                throw this.error;
+        }
+    }
+}
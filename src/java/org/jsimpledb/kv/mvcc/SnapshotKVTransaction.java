@@ -33,6 +33,7 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
     private final SnapshotKVDatabase kvdb;
     private final SnapshotVersion versionInfo;
     private final MutableView mutableView;
+    private final boolean readOnly;
 
     private boolean closed;
     private long timeout;
@@ -44,10 +45,27 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
      * @param versionInfo the associated MVCC version
      */
     protected SnapshotKVTransaction(SnapshotKVDatabase kvdb, SnapshotVersion versionInfo) {
+        this(kvdb, versionInfo, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * A read-only transaction does not track its reads and its {@link #commit commit()} never conflicts;
+     * any mutations are discarded.
+     *
+     * @param kvdb the associated database
+     * @param versionInfo the associated MVCC version
+     * @param readOnly true for a read-only transaction
+     */
+    protected SnapshotKVTransaction(SnapshotKVDatabase kvdb, SnapshotVersion versionInfo, boolean readOnly) {
         this.kvdb = kvdb;
         this.versionInfo = versionInfo;
         this.startTime = System.nanoTime();
-        this.mutableView = new MutableView(versionInfo.getSnapshot());
+        this.readOnly = readOnly;
+        this.mutableView = readOnly ?
+          new MutableView(versionInfo.getSnapshot(), null, new Writes()) : new MutableView(versionInfo.getSnapshot());
     }
 
 // Accessors
@@ -70,6 +88,16 @@ public class SnapshotKVTransaction extends ForwardingKVStore implements KVTransa
         return this.versionInfo;
     }
 
+    /**
+     * Determine whether this instance was created as a read-only transaction.
+     *
+     * @return true if this transaction is read-only
+     * @see SnapshotKVDatabase#createTransaction(boolean)
+     */
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+
 // ForwardingKVStore
 
     /**
@@ -0,0 +1,201 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.util.ByteUtil;
+
+/**
+ * Index of the keys written by recently committed {@link SnapshotKVDatabase} MVCC versions.
+ *
+ * <p>
+ * Instances merge the {@link Mutations} of successive MVCC versions into a single set of disjoint key ranges,
+ * each associated with the most recent version in which some key in the range was written. This allows a committing
+ * transaction to be checked for conflicts against all intervening versions with a single pass over its {@link Reads}.
+ *
+ * <p>
+ * Instances are thread safe. Any number of threads may check for conflicts concurrently; {@link #add add()}
+ * and {@link #prune prune()} exclude all other access while they run.
+ * </p>
+ */
+class WriteIndex {
+
+    private final TreeMap<byte[], Segment> segments = new TreeMap<>(ByteUtil.COMPARATOR);     // keyed by segment minimum
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int pruneSize;
+
+// Public methods
+
+    /**
+     * Record the mutations committed in the given MVCC version.
+     *
+     * <p>
+     * Versions must be added in increasing order.
+     *
+     * @param version MVCC version
+     * @param mutations mutations committed in {@code version}
+     * @throws IllegalArgumentException if {@code mutations} is null
+     */
+    public void add(long version, Mutations mutations) {
+        Preconditions.checkArgument(mutations != null, "null mutations");
+        this.lock.writeLock().lock();
+        try {
+            for (KeyRange remove : mutations.getRemoveRanges())
+                this.record(remove.getMin(), remove.getMax(), version);
+            for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs())
+                this.record(entry.getKey(), ByteUtil.getNextKey(entry.getKey()), version);
+            for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs())
+                this.record(entry.getKey(), ByteUtil.getNextKey(entry.getKey()), version);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Determine whether any key read by the given {@link Reads} was written in the given MVCC version or any later version.
+     *
+     * <p>
+     * Versions {@linkplain #add added} concurrently with this method may or may not be included in the check.
+     *
+     * @param reads keys read by the committing transaction
+     * @param version MVCC version on which the committing transaction is based
+     * @return true if there is a read/write conflict, otherwise false
+     * @throws IllegalArgumentException if {@code reads} is null
+     */
+    public boolean isConflict(Reads reads, long version) {
+        Preconditions.checkArgument(reads != null, "null reads");
+        this.lock.readLock().lock();
+        try {
+            return this.checkConflict(reads, version);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private boolean checkConflict(Reads reads, long version) {
+        for (KeyRange range : reads.getMutableReads()) {
+            final byte[] min = range.getMin();
+            final byte[] max = range.getMax();
+
+            // Check the segment starting at or before the read range, if any
+            final Map.Entry<byte[], Segment> floor = this.segments.floorEntry(min);
+            if (floor != null && floor.getValue().version - version >= 0 && KeyRange.compare(floor.getValue().max, min) > 0)
+                return true;
+
+            // Check segments starting within the read range
+            final NavigableMap<byte[], Segment> within = max != null ?
+              this.segments.subMap(min, false, max, false) : this.segments.tailMap(min, false);
+            for (Segment segment : within.values()) {
+                if (segment.version - version >= 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discard information about MVCC versions prior to the given version.
+     *
+     * <p>
+     * To keep the amortized cost low, this method only does any work when the number of key ranges in this index has doubled
+     * since it last did. Retaining information about older versions is harmless: it can never cause a spurious conflict.
+     *
+     * @param version oldest MVCC version on which any open or future transaction may be based
+     */
+    public void prune(long version) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.segments.size() <= Math.max(this.pruneSize * 2, 1000))
+                return;
+            for (Iterator<Segment> i = this.segments.values().iterator(); i.hasNext(); ) {
+                if (i.next().version - version < 0)
+                    i.remove();
+            }
+            this.pruneSize = this.segments.size();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of disjoint key ranges in this index.
+     *
+     * @return number of key ranges
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.segments.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+// Internal methods
+
+    // Record a write of the range [min, max) in the given version, replacing any overlapping portion of existing segments
+    private void record(byte[] min, byte[] max, long version) {
+
+        // Ignore empty ranges
+        if (max != null && ByteUtil.compare(min, max) >= 0)
+            return;
+
+        // Truncate any segment that starts before min and overlaps the new range, preserving any portion past max
+        final Map.Entry<byte[], Segment> lower = this.segments.lowerEntry(min);
+        if (lower != null) {
+            final Segment segment = lower.getValue();
+            if (KeyRange.compare(segment.max, min) > 0) {
+                if (KeyRange.compare(segment.max, max) > 0)
+                    this.segments.put(max, new Segment(segment.max, segment.version));
+                segment.max = min;
+            }
+        }
+
+        // Remove segments that start within the new range, preserving any portion of the last one past max
+        final NavigableMap<byte[], Segment> covered = max != null ?
+          this.segments.subMap(min, true, max, false) : this.segments.tailMap(min, true);
+        if (!covered.isEmpty()) {
+            final Segment last = covered.lastEntry().getValue();
+            covered.clear();
+            if (KeyRange.compare(last.max, max) > 0)
+                this.segments.put(max, last);
+        }
+
+        // Add new segment
+        this.segments.put(min, new Segment(max, version));
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[segments=" + this.size() + "]";
+    }
+
+// Segment
+
+    private static class Segment {
+
+        byte[] max;                                 // exclusive upper bound, or null for none
+        final long version;                         // most recent version in which this range was written
+
+        Segment(byte[] max, long version) {
+            this.max = max;
+            this.version = version;
+        }
+    }
+}
@@ -10,11 +10,14 @@ package org.jsimpledb.kv.simple;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVStore;
 import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 import org.jsimpledb.kv.RetryTransactionException;
 import org.jsimpledb.kv.StaleTransactionException;
 import org.jsimpledb.kv.TransactionTimeoutException;
@@ -41,9 +44,19 @@ import org.slf4j.LoggerFactory;
  * {@link #preCommit preCommit()} and {@link #postCommit postCommit()}.
  * </p>
  *
+ * <p>
+ * Operations in different transactions execute concurrently. Each transaction's state is protected by that transaction's
+ * Java monitor, the {@link LockManager} uses its own internal lock, and this instance's Java monitor is only held briefly while
+ * {@link #checkState checkState()} is invoked and while a transaction commits. Access to the underlying {@link KVStore}
+ * is guarded by a {@linkplain #getKVStoreLock read/write lock}: reads performed by different transactions (which, thanks
+ * to the {@link LockManager}, never conflict) proceed in parallel, while applying a commit's mutations is exclusive.
+ * Therefore, the underlying {@link KVStore} must support concurrent reads; the default {@link NavigableMapKVStore},
+ * which is backed by a {@link java.util.concurrent.ConcurrentSkipListMap}, does.
+ * </p>
+ *
  * @see LockManager
  */
-public class SimpleKVDatabase implements KVDatabase {
+public class SimpleKVDatabase implements ReadOnlyCapableKVDatabase {
 
     /**
      * Default {@linkplain #getWaitTimeout wait timeout} for newly created transactions in milliseconds
@@ -63,7 +76,8 @@ public class SimpleKVDatabase implements KVDatabase {
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
-    private final LockManager lockManager = new LockManager(this);
+    private final LockManager lockManager = new LockManager();
+    private final ReentrantReadWriteLock kvLock = new ReentrantReadWriteLock();
 
     private long waitTimeout;
 
@@ -165,8 +179,37 @@ public class SimpleKVDatabase implements KVDatabase {
     }
 
     @Override
-    public synchronized SimpleKVTransaction createTransaction() {
-        return new SimpleKVTransaction(this, this.waitTimeout);
+    public SimpleKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * A read-only transaction does not acquire any locks, so it never waits for or blocks other transactions and is not
+     * subject to the hold timeout. The price is weaker isolation: each read sees the most recently committed data,
+     * i.e., "read committed" semantics. Committing a read-only transaction discards any mutations made in it.
+     * </p>
+     */
+    @Override
+    public synchronized SimpleKVTransaction createTransaction(boolean readOnly) {
+        return new SimpleKVTransaction(this, this.waitTimeout, readOnly);
+    }
+
+    /**
+     * Get the read/write lock that guards access to the underlying {@link KVStore}.
+     *
+     * <p>
+     * Transactions hold the read lock while reading from the underlying {@link KVStore}, and the write lock is held
+     * while a commit's mutations are applied to it. Subclasses that modify the underlying {@link KVStore} directly
+     * (i.e., other than via a transaction) must hold the write lock while doing so.
+     * </p>
+     *
+     * @return lock guarding {@link #kv}
+     */
+    protected ReadWriteLock getKVStoreLock() {
+        return this.kvLock;
     }
 
 // Subclass hooks
@@ -176,7 +219,8 @@ public class SimpleKVDatabase implements KVDatabase {
      *
      * <p>
      * {@link SimpleKVDatabase} guarantees this method and {@link #postCommit postCommit()} will be invoked in matching pairs,
-     * and that this instance will be locked when these methods are invoked.
+     * and that this instance will be locked when these methods are invoked. When this method is invoked, the
+     * {@linkplain #getKVStoreLock write lock} for the underlying {@link KVStore} is held as well.
      * </p>
      *
      * <p>
@@ -199,7 +243,8 @@ public class SimpleKVDatabase implements KVDatabase {
      *
      * <p>
      * This method is invoked even if the underlying {@link KVStore} throws an exception while changes were being written to it.
-     * In that case, {@code successful} will be false.
+     * In that case, {@code successful} will be false. When this method is invoked, the {@linkplain #getKVStoreLock write lock}
+     * for the underlying {@link KVStore} has already been released, so concurrent reads may be in progress.
      * </p>
      *
      * <p>
@@ -219,8 +264,8 @@ public class SimpleKVDatabase implements KVDatabase {
      * <p>
      * This method is invoked at the start of the {@link KVStore} data access and {@link SimpleKVTransaction#commit commit()}
      * methods of the {@link SimpleKVTransaction} associated with this instance. This allows for any checks which depend on
-     * a consistent view of the transaction and database together. This instance's lock will be held when this method is invoked.
-     * Note: transaction state is also protected by this instance's lock.
+     * a consistent view of the transaction and database together. This instance's lock will be held when this method is invoked,
+     * as will the Java monitor of {@code tx}, which protects the transaction's state.
      * </p>
      *
      * <p>
@@ -235,6 +280,15 @@ public class SimpleKVDatabase implements KVDatabase {
     protected void checkState(SimpleKVTransaction tx) {
     }
 
+    // Check that the transaction is usable. Assumes synchronized already on tx.
+    private void checkAccess(SimpleKVTransaction tx) {
+        assert Thread.holdsLock(tx);
+        synchronized (this) {
+            this.checkUsable(tx);
+            this.checkState(tx);
+        }
+    }
+
     private void checkUsable(SimpleKVTransaction tx) {
         if (tx.stale)
             throw new StaleTransactionException(tx);
@@ -247,36 +301,270 @@ public class SimpleKVDatabase implements KVDatabase {
 
 // SimpleKVTransaction hooks
 
-    synchronized byte[] get(SimpleKVTransaction tx, byte[] key) {
+    byte[] get(SimpleKVTransaction tx, byte[] key) {
 
         // Sanity check
         if (key.length > 0 && key[0] == (byte)0xff)
             throw new IllegalArgumentException("key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
+        synchronized (tx) {
+            this.checkAccess(tx);
 
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation != null)
-            return mutation instanceof Put ? ((Put)mutation).getValue() : null;
+            // Check transaction mutations
+            final Mutation mutation = tx.findMutation(key);
+            if (mutation != null)
+                return mutation instanceof Put ? ((Put)mutation).getValue() : null;
 
-        // Read from underlying store
-        this.getLock(tx, key, ByteUtil.getNextKey(key), false);
-        return this.kv.get(key);
+            // Read from underlying store
+            this.getLock(tx, key, ByteUtil.getNextKey(key), false);
+            this.kvLock.readLock().lock();
+            try {
+                return this.kv.get(key);
+            } finally {
+                this.kvLock.readLock().unlock();
+            }
+        }
     }
 
-    synchronized KVPair getAtLeast(SimpleKVTransaction tx, byte[] minKey) {
+    KVPair getAtLeast(SimpleKVTransaction tx, byte[] minKey) {
 
         // Realize minKey
         if (minKey == null)
             minKey = ByteUtil.EMPTY;
 
         // Sanity check
-        this.checkUsable(tx);
-        this.checkState(tx);
+        synchronized (tx) {
+            this.checkAccess(tx);
+
+            // Find the answer, lock the range it depends on, and then repeat until the answer is unaffected by our waiting
+            KVPair pair = this.findAtLeast(tx, minKey);
+            while (true) {
+                this.getLock(tx, minKey, pair != null ? ByteUtil.getNextKey(pair.getKey()) : null, false);
+                final KVPair check = this.findAtLeast(tx, minKey);
+                if (pair == null || (check != null && ByteUtil.compare(check.getKey(), pair.getKey()) <= 0))
+                    return check;
+                pair = check;
+            }
+        }
+    }
+
+    KVPair getAtMost(SimpleKVTransaction tx, byte[] maxKey) {
+
+        // Sanity check
+        synchronized (tx) {
+            this.checkAccess(tx);
+
+            // Find the answer, lock the range it depends on, and then repeat until the answer is unaffected by our waiting
+            KVPair pair = this.findAtMost(tx, maxKey);
+            while (true) {
+                this.getLock(tx, pair != null ? pair.getKey() : ByteUtil.EMPTY, maxKey, false);
+                final KVPair check = this.findAtMost(tx, maxKey);
+                if (pair == null || (check != null && ByteUtil.compare(check.getKey(), pair.getKey()) >= 0))
+                    return check;
+                pair = check;
+            }
+        }
+    }
+
+    void put(SimpleKVTransaction tx, byte[] key, byte[] value) {
+
+        // Sanity check
+        if (value == null)
+            throw new NullPointerException();
+        if (key.length > 0 && key[0] == (byte)0xff)
+            throw new IllegalArgumentException("key starts with 0xff");
+        synchronized (tx) {
+            this.checkAccess(tx);
+            final byte[] keyNext = ByteUtil.getNextKey(key);
+
+            // Check transaction mutations
+            final Mutation mutation = tx.findMutation(key);
+            if (mutation instanceof Put) {
+                assert Arrays.equals(((Put)mutation).getKey(), key);
+
+                // Replace Put with new Put
+                tx.mutations.remove(mutation);
+                tx.mutations.add(new Put(key, value));
+            } else if (mutation instanceof Del) {
+
+                // Split [Del] -> [Del*, Put, Del*]  *if needed
+                final Del del = (Del)mutation;
+                final byte[] delMin = del.getMin();
+                final byte[] delMax = del.getMax();
+                tx.mutations.remove(del);
+                if (KeyRange.compare(delMin, key) < 0)
+                    tx.mutations.add(new Del(delMin, key));
+                if (KeyRange.compare(keyNext, delMax) < 0)
+                    tx.mutations.add(new Del(keyNext, delMax));
+                tx.mutations.add(new Put(key, value));
+            } else {
+
+                // Add write lock and new tx mutation
+                this.getLock(tx, key, keyNext, true);
+                tx.mutations.add(new Put(key, value));
+            }
+        }
+    }
+
+    void remove(SimpleKVTransaction tx, byte[] key) {
+
+        // Sanity check
+        if (key.length > 0 && key[0] == (byte)0xff)
+            throw new IllegalArgumentException("key starts with 0xff");
+        synchronized (tx) {
+            this.checkAccess(tx);
+            final byte[] keyNext = ByteUtil.getNextKey(key);
+
+            // Check transaction mutations
+            final Mutation mutation = tx.findMutation(key);
+            if (mutation instanceof Put) {
+                assert Arrays.equals(((Put)mutation).getKey(), key);
+
+                // Replace Put with Del
+                tx.mutations.remove(mutation);
+                tx.mutations.add(new Del(key));
+            } else if (mutation == null) {
+
+                // Add write lock and new tx mutation
+                this.getLock(tx, key, keyNext, true);
+                tx.mutations.add(new Del(key));
+            }
+        }
+    }
+
+    void removeRange(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey) {
+
+        // Realize minKey
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+
+        // Sanity check
+        int diff = KeyRange.compare(minKey, maxKey);
+        if (diff > 0)
+            throw new IllegalArgumentException("minKey > maxKey");
+        synchronized (tx) {
+            this.checkAccess(tx);
+            if (diff == 0)                                                          // range is empty
+                return;
+            final byte[] originalMinKey = minKey;
+            final byte[] originalMaxKey = maxKey;
+
+            // Deal with partial overlap at the left end of the range
+            if (minKey.length > 0) {
+                final Mutation leftMutation = tx.findMutation(minKey);
+                if (leftMutation instanceof Put) {
+                    assert Arrays.equals(((Put)leftMutation).getKey(), minKey);
+                    tx.mutations.remove(leftMutation);                                          // overwritten by this change
+                } else if (leftMutation instanceof Del) {
+                    final Del del = (Del)leftMutation;
+                    tx.mutations.remove(del);                                                   // will merge into this change
+                    minKey = del.getMin();                                                      // guaranteed to be <= minKey
+                    if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
+                        maxKey = del.getMax();
+                }
+            }
+
+            // Deal with partial overlap at the right end of the range
+            if (maxKey != null) {
+                Mutation rightMutation = null;
+                try {
+                    rightMutation = minKey != null ?
+                      tx.mutations.subSet(Mutation.key(minKey), Mutation.key(maxKey)).last() :
+                      tx.mutations.headSet(Mutation.key(maxKey)).last();
+                } catch (NoSuchElementException e) {
+                    // ignore
+                }
+                if (rightMutation instanceof Put)
+                    tx.mutations.remove(rightMutation);                                         // overwritten by this change
+                else if (rightMutation instanceof Del) {
+                    final Del del = (Del)rightMutation;
+                    tx.mutations.remove(del);                                                   // will merge into this change
+                    if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
+                        maxKey = del.getMax();
+                }
+            }
+
+            // Remove all mutations in the middle
+            if (originalMinKey == null && originalMaxKey == null)
+                tx.mutations.clear();
+            else if (originalMinKey == null)
+                tx.mutations.headSet(Mutation.key(originalMaxKey)).clear();
+            else if (originalMaxKey == null)
+                tx.mutations.tailSet(Mutation.key(originalMinKey)).clear();
+            else
+                tx.mutations.subSet(Mutation.key(originalMinKey), Mutation.key(originalMaxKey)).clear();
+
+            // Add write lock and new tx mutation
+            this.getLock(tx, minKey, maxKey, true);
+            tx.mutations.add(new Del(minKey, maxKey));
+        }
+    }
+
+    void commit(SimpleKVTransaction tx) {
+        synchronized (tx) {
+
+            // Prevent use after commit() or rollback() invoked
+            if (tx.stale)
+                throw new StaleTransactionException(tx);
+            tx.stale = true;
+
+            // Read-only transactions hold no locks and their mutations are discarded
+            if (tx.readOnly)
+                return;
+
+            // Commits are serialized and exclude all reads of the underlying store
+            synchronized (this) {
+                boolean mutating = false;
+                boolean successful = false;
+                this.kvLock.writeLock().lock();
+                try {
+
+                    // Release all locks
+                    if (!this.lockManager.release(tx.lockOwner)) {
+                        throw new TransactionTimeoutException(tx,
+                          "transaction taking too long: hold timeout of " + this.lockManager.getHoldTimeout() + "ms has expired");
+                    }
+
+                    // Check subclass state
+                    this.checkState(tx);
+
+                    // If there are no mutations, there's no need to write anything
+                    if (tx.mutations.isEmpty())
+                        return;
+
+                    // Commit mutations
+                    this.preCommit(tx);
+                    mutating = true;
+                    for (Mutation mutation : tx.mutations)
+                        mutation.apply(this.kv);
+                    successful = true;
+                } finally {
+                    this.kvLock.writeLock().unlock();
+                    if (mutating) {
+                        tx.mutations.clear();
+                        this.postCommit(tx, successful);
+                    }
+                }
+            }
+        }
+    }
+
+    void rollback(SimpleKVTransaction tx) {
+        synchronized (tx) {
 
-        // Save original min key for locking purposes
-        final byte[] originalMinKey = minKey;
+            // Prevent use after commit() or rollback() invoked
+            if (tx.stale)
+                return;
+            tx.stale = true;
+
+            // Release all locks
+            this.lockManager.release(tx.lockOwner);
+        }
+    }
+
+// Internal methods
+
+    // Find the first key >= minKey in the transaction's view, without locking. Assumes synchronized already on tx.
+    private KVPair findAtLeast(SimpleKVTransaction tx, byte[] minKey) {
 
         // Look for a mutation starting before minKey but containing it
         if (minKey.length > 0) {
@@ -300,44 +588,36 @@ public class SimpleKVDatabase implements KVDatabase {
         while (true) {
 
             // Get the next mutation and kvstore entry >= minKey (if they exist)
-            if (minKey != null)
-                mutations = mutations.tailSet(Mutation.key(minKey));
+            mutations = mutations.tailSet(Mutation.key(minKey));
             final Mutation mutation = !mutations.isEmpty() ? mutations.first() : null;
-            final KVPair entry = this.kv.getAtLeast(minKey);
+            final KVPair entry;
+            this.kvLock.readLock().lock();
+            try {
+                entry = this.kv.getAtLeast(minKey);
+            } finally {
+                this.kvLock.readLock().unlock();
+            }
 
             // Handle the case where neither is found
-            if (mutation == null && entry == null) {
-                this.getLock(tx, originalMinKey, null, false);
+            if (mutation == null && entry == null)
                 return null;
-            }
 
             // Check for whether mutation or kvstore wins (i.e., which is first)
             if (mutation != null && (entry == null || mutation.compareTo(entry.getKey()) <= 0)) {
                 if (mutation instanceof Del) {
-                    if ((minKey = mutation.getMax()) == null) {
-                        this.getLock(tx, originalMinKey, null, false);
+                    if ((minKey = mutation.getMax()) == null)
                         return null;
-                    }
                     continue;
                 }
                 final Put put = (Put)mutation;
-                this.getLock(tx, originalMinKey, ByteUtil.getNextKey(put.getKey()), false);
                 return new KVPair(put.getKey(), put.getValue());
-            } else {
-                this.getLock(tx, originalMinKey, ByteUtil.getNextKey(entry.getKey()), false);
-                return entry;
             }
+            return entry;
         }
     }
 
-    synchronized KVPair getAtMost(SimpleKVTransaction tx, byte[] maxKey) {
-
-        // Sanity check
-        this.checkUsable(tx);
-        this.checkState(tx);
-
-        // Save original max key for locking purposes
-        final byte[] originalMaxKey = maxKey;
+    // Find the last key < maxKey in the transaction's view, without locking. Assumes synchronized already on tx.
+    private KVPair findAtMost(SimpleKVTransaction tx, byte[] maxKey) {
 
         // Find whichever is first: a transaction addition, or an underlying store entry not covered by a transaction deletion
         SortedSet<Mutation> mutations = tx.mutations;
@@ -347,211 +627,38 @@ public class SimpleKVDatabase implements KVDatabase {
             if (maxKey != null)
                 mutations = mutations.headSet(Mutation.key(maxKey));
             final Mutation mutation = !mutations.isEmpty() ? mutations.last() : null;
-            final KVPair entry = this.kv.getAtMost(maxKey);
+            final KVPair entry;
+            this.kvLock.readLock().lock();
+            try {
+                entry = this.kv.getAtMost(maxKey);
+            } finally {
+                this.kvLock.readLock().unlock();
+            }
 
             // Handle the case where neither is found
-            if (mutation == null && entry == null) {
-                this.getLock(tx, ByteUtil.EMPTY, originalMaxKey, false);
+            if (mutation == null && entry == null)
                 return null;
-            }
 
             // Check for whether mutation or kvstore wins (i.e., which is first)
             if (mutation != null && (entry == null || mutation.compareTo(entry.getKey()) >= 0)) {
                 if (mutation instanceof Del) {
-                    if ((maxKey = mutation.getMin()) == null) {
-                        this.getLock(tx, ByteUtil.EMPTY, originalMaxKey, false);
+                    if ((maxKey = mutation.getMin()) == null)
                         return null;
-                    }
                     continue;
                 }
                 final Put put = (Put)mutation;
-                this.getLock(tx, put.getKey(), originalMaxKey, false);
                 return new KVPair(put.getKey(), put.getValue());
-            } else {
-                this.getLock(tx, entry.getKey(), originalMaxKey, false);
-                return entry;
-            }
-        }
-    }
-
-    synchronized void put(SimpleKVTransaction tx, byte[] key, byte[] value) {
-
-        // Sanity check
-        if (value == null)
-            throw new NullPointerException();
-        if (key.length > 0 && key[0] == (byte)0xff)
-            throw new IllegalArgumentException("key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
-        final byte[] keyNext = ByteUtil.getNextKey(key);
-
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation instanceof Put) {
-            assert Arrays.equals(((Put)mutation).getKey(), key);
-
-            // Replace Put with new Put
-            tx.mutations.remove(mutation);
-            tx.mutations.add(new Put(key, value));
-        } else if (mutation instanceof Del) {
-
-            // Split [Del] -> [Del*, Put, Del*]  *if needed
-            final Del del = (Del)mutation;
-            final byte[] delMin = del.getMin();
-            final byte[] delMax = del.getMax();
-            tx.mutations.remove(del);
-            if (KeyRange.compare(delMin, key) < 0)
-                tx.mutations.add(new Del(delMin, key));
-            if (KeyRange.compare(keyNext, delMax) < 0)
-                tx.mutations.add(new Del(keyNext, delMax));
-            tx.mutations.add(new Put(key, value));
-        } else {
-
-            // Add write lock and new tx mutation
-            this.getLock(tx, key, keyNext, true);
-            tx.mutations.add(new Put(key, value));
-        }
-    }
-
-    synchronized void remove(SimpleKVTransaction tx, byte[] key) {
-
-        // Sanity check
-        if (key.length > 0 && key[0] == (byte)0xff)
-            throw new IllegalArgumentException("key starts with 0xff");
-        this.checkUsable(tx);
-        this.checkState(tx);
-        final byte[] keyNext = ByteUtil.getNextKey(key);
-
-        // Check transaction mutations
-        final Mutation mutation = tx.findMutation(key);
-        if (mutation instanceof Put) {
-            assert Arrays.equals(((Put)mutation).getKey(), key);
-
-            // Replace Put with Del
-            tx.mutations.remove(mutation);
-            tx.mutations.add(new Del(key));
-        } else if (mutation == null) {
-
-            // Add write lock and new tx mutation
-            this.getLock(tx, key, keyNext, true);
-            tx.mutations.add(new Del(key));
-        }
-    }
-
-    synchronized void removeRange(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey) {
-
-        // Realize minKey
-        if (minKey == null)
-            minKey = ByteUtil.EMPTY;
-
-        // Sanity check
-        int diff = KeyRange.compare(minKey, maxKey);
-        if (diff > 0)
-            throw new IllegalArgumentException("minKey > maxKey");
-        this.checkUsable(tx);
-        this.checkState(tx);
-        if (diff == 0)                                                          // range is empty
-            return;
-        final byte[] originalMinKey = minKey;
-        final byte[] originalMaxKey = maxKey;
-
-        // Deal with partial overlap at the left end of the range
-        if (minKey.length > 0) {
-            final Mutation leftMutation = tx.findMutation(minKey);
-            if (leftMutation instanceof Put) {
-                assert Arrays.equals(((Put)leftMutation).getKey(), minKey);
-                tx.mutations.remove(leftMutation);                                          // overwritten by this change
-            } else if (leftMutation instanceof Del) {
-                final Del del = (Del)leftMutation;
-                tx.mutations.remove(del);                                                   // will merge into this change
-                minKey = del.getMin();                                                      // guaranteed to be <= minKey
-                if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
-                    maxKey = del.getMax();
-            }
-        }
-
-        // Deal with partial overlap at the right end of the range
-        if (maxKey != null) {
-            Mutation rightMutation = null;
-            try {
-                rightMutation = minKey != null ?
-                  tx.mutations.subSet(Mutation.key(minKey), Mutation.key(maxKey)).last() :
-                  tx.mutations.headSet(Mutation.key(maxKey)).last();
-            } catch (NoSuchElementException e) {
-                // ignore
             }
-            if (rightMutation instanceof Put)
-                tx.mutations.remove(rightMutation);                                         // overwritten by this change
-            else if (rightMutation instanceof Del) {
-                final Del del = (Del)rightMutation;
-                tx.mutations.remove(del);                                                   // will merge into this change
-                if (KeyRange.compare(del.getMax(), maxKey) > 0)                             // get higher of the two maxKeys
-                    maxKey = del.getMax();
-            }
-        }
-
-        // Remove all mutations in the middle
-        if (originalMinKey == null && originalMaxKey == null)
-            tx.mutations.clear();
-        else if (originalMinKey == null)
-            tx.mutations.headSet(Mutation.key(originalMaxKey)).clear();
-        else if (originalMaxKey == null)
-            tx.mutations.tailSet(Mutation.key(originalMinKey)).clear();
-        else
-            tx.mutations.subSet(Mutation.key(originalMinKey), Mutation.key(originalMaxKey)).clear();
-
-        // Add write lock and new tx mutation
-        this.getLock(tx, minKey, maxKey, true);
-        tx.mutations.add(new Del(minKey, maxKey));
-    }
-
-    synchronized void commit(SimpleKVTransaction tx) {
-
-        // Prevent use after commit() or rollback() invoked
-        if (tx.stale)
-            throw new StaleTransactionException(tx);
-        tx.stale = true;
-
-        // Release all locks
-        if (!this.lockManager.release(tx.lockOwner)) {
-            throw new TransactionTimeoutException(tx,
-              "transaction taking too long: hold timeout of " + this.lockManager.getHoldTimeout() + "ms has expired");
-        }
-
-        // Check subclass state
-        this.checkState(tx);
-
-        // If there are no mutations, there's no need to write anything
-        if (tx.mutations.isEmpty())
-            return;
-
-        // Commit mutations
-        this.preCommit(tx);
-        boolean successful = false;
-        try {
-            for (Mutation mutation : tx.mutations)
-                mutation.apply(this.kv);
-            successful = true;
-        } finally {
-            tx.mutations.clear();
-            this.postCommit(tx, successful);
+            return entry;
         }
     }
 
-    synchronized void rollback(SimpleKVTransaction tx) {
+    // Acquire a lock for the transaction. Assumes synchronized already on tx; must not be invoked with the KVStore lock held.
+    private void getLock(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey, boolean write) {
 
-        // Prevent use after commit() or rollback() invoked
-        if (tx.stale)
+        // Read-only transactions don't lock
+        if (tx.readOnly)
             return;
-        tx.stale = true;
-
-        // Release all locks
-        this.lockManager.release(tx.lockOwner);
-    }
-
-// Internal methods
-
-    private /*synchronized*/ void getLock(SimpleKVTransaction tx, byte[] minKey, byte[] maxKey, boolean write) {
 
         // Attempt to get the lock
         LockManager.LockResult lockResult;
@@ -25,8 +25,8 @@ import org.slf4j.LoggerFactory;
  * {@link KVTransaction} implementation for {@link SimpleKVDatabase}.
  *
  * <p>
- * Locking note: all fields in this class are protected by the Java monitor of the associated {@link SimpleKVDatabase},
- * not the Java monitor of this instance.
+ * Locking note: all fields in this class are protected by the Java monitor of this instance, which
+ * the associated {@link SimpleKVDatabase} acquires on entry to each operation.
  * </p>
  */
 public class SimpleKVTransaction extends AbstractKVStore implements KVTransaction {
@@ -34,6 +34,7 @@ public class SimpleKVTransaction extends AbstractKVStore implements KVTransactio
     final SimpleKVDatabase kvdb;
     final TreeSet<Mutation> mutations = new TreeSet<>(KeyRange.SORT_BY_MIN);
     final LockOwner lockOwner = new LockOwner();
+    final boolean readOnly;
 
     boolean stale;
     long waitTimeout;
@@ -47,9 +48,24 @@ public class SimpleKVTransaction extends AbstractKVStore implements KVTransactio
      * @throws IllegalArgumentException if {@code waitTimeout} is negative
      */
     protected SimpleKVTransaction(SimpleKVDatabase kvdb, long waitTimeout) {
+        this(kvdb, waitTimeout, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param kvdb associated database
+     * @param waitTimeout wait timeout for this transaction
+     * @param readOnly true for a read-only transaction
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     * @throws IllegalArgumentException if {@code waitTimeout} is negative
+     * @see SimpleKVDatabase#createTransaction(boolean)
+     */
+    protected SimpleKVTransaction(SimpleKVDatabase kvdb, long waitTimeout, boolean readOnly) {
         if (kvdb == null)
             throw new IllegalArgumentException("null kvdb");
         this.kvdb = kvdb;
+        this.readOnly = readOnly;
         this.setTimeout(waitTimeout);
     }
 
@@ -113,7 +129,7 @@ public class SimpleKVTransaction extends AbstractKVStore implements KVTransactio
     }
 
     // Find the mutation that overlaps with the given key, if any.
-    // This method assumes we are already synchronized on the associated database.
+    // This method assumes we are already synchronized on this instance.
     Mutation findMutation(byte[] key) {
 
         // Sanity check during unit testing
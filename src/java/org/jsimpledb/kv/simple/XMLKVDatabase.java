@@ -119,9 +119,14 @@ public class XMLKVDatabase extends SimpleKVDatabase {
     }
 
     @Override
-    public synchronized XMLKVTransaction createTransaction() {
+    public XMLKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    @Override
+    public synchronized XMLKVTransaction createTransaction(boolean readOnly) {
         this.checkForOutOfBandUpdate();
-        return new XMLKVTransaction(this, this.getWaitTimeout(), this.generation);
+        return new XMLKVTransaction(this, this.getWaitTimeout(), readOnly, this.generation);
     }
 
     /**
@@ -193,56 +198,63 @@ public class XMLKVDatabase extends SimpleKVDatabase {
 
     protected synchronized void readXML() {
 
-        // Clear all existing keys
-        this.kv.removeRange(null, null);
-
-        // Snapshot file's current modification timestamp
-        final long newTimestamp = this.file != null ? this.file.lastModified() : 0;
-
-        // Open file input
-        InputStream input;
+        // Exclude concurrent reads of the underlying store while we replace its contents
+        this.getKVStoreLock().writeLock().lock();
         try {
-            input = this.repository.getInputStream();
-        } catch (FileNotFoundException e) {
 
-            // If this is not the first load, file must have mysteriously disappeared
-            if (this.generation != 0)
-                throw new KVDatabaseException(this, "error reading XML content: file not longer available", e);
+            // Clear all existing keys
+            this.kv.removeRange(null, null);
+
+            // Snapshot file's current modification timestamp
+            final long newTimestamp = this.file != null ? this.file.lastModified() : 0;
 
-            // Get default initial content instead, if any
+            // Open file input
+            InputStream input;
             try {
-                input = this.getInitialContent();
-            } catch (IOException e2) {
-                throw new KVDatabaseException(this, "error opening initial XML content", e2);
+                input = this.repository.getInputStream();
+            } catch (FileNotFoundException e) {
+
+                // If this is not the first load, file must have mysteriously disappeared
+                if (this.generation != 0)
+                    throw new KVDatabaseException(this, "error reading XML content: file not longer available", e);
+
+                // Get default initial content instead, if any
+                try {
+                    input = this.getInitialContent();
+                } catch (IOException e2) {
+                    throw new KVDatabaseException(this, "error opening initial XML content", e2);
+                }
+                final String desc = this.file != null ? "file `" + this.file + "'" : "database file";
+                if (input == null)
+                    this.log.info(desc + " not found and no initial content is configured; creating new, empty database");
+                else
+                    this.log.info(desc + " not found; applying default initial content");
+            } catch (IOException e) {
+                throw new KVDatabaseException(this, "error opening XML content", e);
             }
-            final String desc = this.file != null ? "file `" + this.file + "'" : "database file";
-            if (input == null)
-                this.log.info(desc + " not found and no initial content is configured; creating new, empty database");
-            else
-                this.log.info(desc + " not found; applying default initial content");
-        } catch (IOException e) {
-            throw new KVDatabaseException(this, "error opening XML content", e);
-        }
 
-        // Read XML
-        if (input != null) {
-            try {
-                this.serializer.read(new BufferedInputStream(input));
-            } catch (XMLStreamException e) {
-                throw new KVDatabaseException(this, "error reading XML content", e);
-            } finally {
+            // Read XML
+            if (input != null) {
                 try {
-                    input.close();
-                } catch (IOException e) {
-                    // ignore
+                    this.serializer.read(new BufferedInputStream(input));
+                } catch (XMLStreamException e) {
+                    throw new KVDatabaseException(this, "error reading XML content", e);
+                } finally {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
                 }
             }
-        }
 
-        // Update timestamp and generation number
-        if (newTimestamp != 0)
-            this.timestamp = newTimestamp;
-        this.generation++;
+            // Update timestamp and generation number
+            if (newTimestamp != 0)
+                this.timestamp = newTimestamp;
+            this.generation++;
+        } finally {
+            this.getKVStoreLock().writeLock().unlock();
+        }
     }
 
     protected synchronized void writeXML() {
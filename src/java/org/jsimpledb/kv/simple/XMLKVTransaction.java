@@ -14,8 +14,8 @@ public class XMLKVTransaction extends SimpleKVTransaction {
 
     private final int generation;
 
-    XMLKVTransaction(XMLKVDatabase database, long waitTimeout, int generation) {
-        super(database, waitTimeout);
+    XMLKVTransaction(XMLKVDatabase database, long waitTimeout, boolean readOnly, int generation) {
+        super(database, waitTimeout, readOnly);
         this.generation = generation;
     }
 
@@ -48,6 +48,22 @@ public class MySQLKVDatabase extends SQLKVDatabase {
         return "`" + name + "`";
     }
 
+    /**
+     * Uses a multi-row {@code INSERT ... ON DUPLICATE KEY UPDATE} statement.
+     */
+    @Override
+    public String createPutMultiStatement(int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count <= 0");
+        final StringBuilder buf = new StringBuilder();
+        buf.append("INSERT INTO ").append(this.quote(this.tableName)).append(" (").append(this.quote(this.keyColumnName))
+          .append(", ").append(this.quote(this.valueColumnName)).append(") VALUES (?, ?)");
+        for (int i = 1; i < count; i++)
+            buf.append(", (?, ?)");
+        return buf.append(" ON DUPLICATE KEY UPDATE ").append(this.quote(this.valueColumnName))
+          .append(" = VALUES(").append(this.quote(this.valueColumnName)).append(')').toString();
+    }
+
     /**
      * Appends {@code LIMIT 1} to the statement.
      */
@@ -56,6 +72,14 @@ public class MySQLKVDatabase extends SQLKVDatabase {
         return sql + " LIMIT 1";
     }
 
+    /**
+     * Appends {@code LIMIT limit} to the statement.
+     */
+    @Override
+    public String limitRows(String sql, int limit) {
+        return sql + " LIMIT " + limit;
+    }
+
     @Override
     public KVTransactionException wrapException(SQLKVTransaction tx, SQLException e) {
         switch (e.getErrorCode()) {
@@ -18,13 +18,14 @@ import javax.sql.DataSource;
 import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVDatabaseException;
 import org.jsimpledb.kv.KVTransactionException;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 import org.jsimpledb.kv.RetryTransactionException;
 import org.jsimpledb.kv.TransactionTimeoutException;
 
 /**
  * Support superclass for SQL {@link KVDatabase} implementations.
  */
-public class SQLKVDatabase implements KVDatabase {
+public class SQLKVDatabase implements ReadOnlyCapableKVDatabase {
 
     /**
      * Default table name ({@value #DEFAULT_TABLE_NAME}).
@@ -41,6 +42,11 @@ public class SQLKVDatabase implements KVDatabase {
      */
     public static final String DEFAULT_VALUE_COLUMN_NAME = "kv_value";
 
+    /**
+     * Default read-ahead row count ({@value #DEFAULT_READ_AHEAD}, i.e., read-ahead disabled).
+     */
+    public static final int DEFAULT_READ_AHEAD = 1;
+
     protected DataSource dataSource;
 
     /**
@@ -63,6 +69,27 @@ public class SQLKVDatabase implements KVDatabase {
      */
     protected IsolationLevel isolationLevel = IsolationLevel.SERIALIZABLE;
 
+    /**
+     * The JDBC fetch size hint for range queries, or zero for the driver default. Default is zero.
+     */
+    protected int fetchSize;
+
+    /**
+     * The maximum number of rows read by each range query, or zero for no limit. Default is zero.
+     */
+    protected int pageSize;
+
+    /**
+     * The number of rows read by {@link SQLKVTransaction#getAtLeast getAtLeast()} and
+     * {@link SQLKVTransaction#getAtMost getAtMost()} queries. Default is {@value #DEFAULT_READ_AHEAD}.
+     */
+    protected int readAhead = DEFAULT_READ_AHEAD;
+
+    /**
+     * Whether transactions buffer mutations in memory until commit. Default is false.
+     */
+    protected boolean writeBehind;
+
     /**
      * Get the {@link DataSource} used with this instance.
      *
@@ -185,6 +212,136 @@ public class SQLKVDatabase implements KVDatabase {
         this.isolationLevel = isolationLevel;
     }
 
+    /**
+     * Get the JDBC fetch size hint used for range queries.
+     *
+     * <p>
+     * Default value is zero.
+     * </p>
+     *
+     * @return fetch size hint, or zero for the JDBC driver's default
+     */
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Configure the JDBC fetch size hint used for range queries.
+     *
+     * @param fetchSize fetch size hint, or zero for the JDBC driver's default
+     * @throws IllegalArgumentException if {@code fetchSize} is negative
+     * @see java.sql.Statement#setFetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0)
+            throw new IllegalArgumentException("fetchSize < 0");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Get the maximum number of rows read by each range query.
+     *
+     * <p>
+     * Default value is zero.
+     * </p>
+     *
+     * @return page size, or zero for no limit
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Configure the maximum number of rows read by each range query.
+     *
+     * <p>
+     * If this is non-zero, iterators returned by {@link SQLKVTransaction#getRange SQLKVTransaction.getRange()} query
+     * the range in pages of at most {@code pageSize} rows, each page resuming after the last key of the previous one
+     * (i.e., keyset pagination). This bounds the size of each result set, which matters for JDBC drivers that read
+     * entire result sets into memory. Page limits are applied by {@link #limitRows limitRows()}.
+     * </p>
+     *
+     * @param pageSize page size, or zero for no limit
+     * @throws IllegalArgumentException if {@code pageSize} is negative
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0)
+            throw new IllegalArgumentException("pageSize < 0");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Get the number of rows read by each {@link SQLKVTransaction#getAtLeast getAtLeast()} or
+     * {@link SQLKVTransaction#getAtMost getAtMost()} query.
+     *
+     * <p>
+     * Default value is {@value #DEFAULT_READ_AHEAD}, i.e., read-ahead is disabled.
+     * </p>
+     *
+     * @return read-ahead row count
+     */
+    public int getReadAhead() {
+        return this.readAhead;
+    }
+
+    /**
+     * Configure the number of rows read by each {@link SQLKVTransaction#getAtLeast getAtLeast()} or
+     * {@link SQLKVTransaction#getAtMost getAtMost()} query.
+     *
+     * <p>
+     * Values greater than one enable read-ahead: the extra rows are remembered by the transaction, so that
+     * subsequent {@link SQLKVTransaction#getAtLeast getAtLeast()}, {@link SQLKVTransaction#getAtMost getAtMost()},
+     * and {@link SQLKVTransaction#getRange getRange()} calls nearby can be answered, at least in part, without
+     * another query. Any write discards the remembered rows. Note that with {@linkplain #setIsolationLevel isolation levels}
+     * weaker than {@link IsolationLevel#REPEATABLE_READ}, remembered rows may not reflect changes committed since they were read.
+     * </p>
+     *
+     * @param readAhead number of rows, or one to disable read-ahead
+     * @throws IllegalArgumentException if {@code readAhead} is less than one
+     */
+    public void setReadAhead(int readAhead) {
+        if (readAhead < 1)
+            throw new IllegalArgumentException("readAhead < 1");
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Determine whether transactions buffer mutations in memory until commit.
+     *
+     * <p>
+     * Default value is false.
+     * </p>
+     *
+     * @return true if write-behind mode is enabled
+     */
+    public boolean isWriteBehind() {
+        return this.writeBehind;
+    }
+
+    /**
+     * Configure whether transactions buffer mutations in memory until commit.
+     *
+     * <p>
+     * Normally each {@link SQLKVTransaction#put put()}, {@link SQLKVTransaction#remove remove()}, etc. executes its own
+     * SQL statement. In write-behind mode, mutations are instead recorded in memory (see {@link org.jsimpledb.kv.mvcc.Writes})
+     * and reads are served through them, so the transaction always sees its own writes. On
+     * {@link SQLKVTransaction#commit commit()}, the buffered mutations are written using as few SQL statements as possible:
+     * overlapping range removes are coalesced, individual removes and puts are sent as JDBC batches, and puts are combined
+     * into {@linkplain #createPutMultiStatement multi-row statements} when supported. Counter adjustments are applied
+     * at commit time as well.
+     * </p>
+     *
+     * <p>
+     * This greatly reduces the number of round trips for write-heavy transactions, at the cost of holding all mutations
+     * in memory. Also, errors caused by writes, including lock conflicts, are not detected until commit time.
+     * </p>
+     *
+     * @param writeBehind true to enable write-behind mode
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
     /**
      * Create a new transaction.
      *
@@ -204,14 +361,36 @@ public class SQLKVDatabase implements KVDatabase {
      */
     @Override
     public SQLKVTransaction createTransaction() {
+        return this.createTransaction(false);
+    }
+
+    /**
+     * Create a new transaction, optionally read-only.
+     *
+     * <p>
+     * For read-only transactions, the {@link Connection} is put into {@linkplain Connection#setReadOnly read-only mode}
+     * before the SQL transaction is opened, which allows the database to optimize it. Mutations will be rejected by
+     * the database. The {@link Connection} is restored to read-write mode before it is closed.
+     * Otherwise, this method behaves like {@link #createTransaction()}.
+     * </p>
+     *
+     * @throws KVDatabaseException if an unexpected error occurs
+     * @throws IllegalStateException if no {@link DataSource} is {@linkplain #setDataSource configured}
+     */
+    @Override
+    public SQLKVTransaction createTransaction(boolean readOnly) {
         if (this.dataSource == null)
             throw new IllegalStateException("no DataSource configured");
         try {
             final Connection connection = this.createTransactionConnection();
+            if (readOnly)
+                connection.setReadOnly(true);
             this.preBeginTransaction(connection);
             this.beginTransaction(connection);
             this.postBeginTransaction(connection);
-            return this.createSQLKVTransaction(connection);
+            final SQLKVTransaction tx = this.createSQLKVTransaction(connection);
+            tx.readOnlyConnection = readOnly;
+            return tx;
         } catch (SQLException e) {
             throw new KVDatabaseException(this, e);
         }
@@ -304,6 +483,26 @@ public class SQLKVDatabase implements KVDatabase {
           + this.quote(this.tableName) + " WHERE " + this.quote(this.keyColumnName) + " = ?";
     }
 
+    /**
+     * Create an SQL statement that reads the key and value columns (in that order) of all rows
+     * whose key is one of <code>&#63;1</code> through <code>&#63;<i>count</i></code>.
+     *
+     * @param count number of key parameters
+     * @return SQL query statement
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    public String createGetMultiStatement(int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count <= 0");
+        final StringBuilder buf = new StringBuilder();
+        buf.append("SELECT ").append(this.quote(this.keyColumnName)).append(", ").append(this.quote(this.valueColumnName))
+          .append(" FROM ").append(this.quote(this.tableName)).append(" WHERE ").append(this.quote(this.keyColumnName))
+          .append(" IN (?");
+        for (int i = 1; i < count; i++)
+            buf.append(", ?");
+        return buf.append(')').toString();
+    }
+
     /**
      * Create an SQL statement that reads the key and value columns (in that order) associated
      * with the smallest key greater than or equal to <code>&#63;1</code>, if any.
@@ -367,6 +566,31 @@ public class SQLKVDatabase implements KVDatabase {
           + this.quote(this.valueColumnName) + " = ?";
     }
 
+    /**
+     * Create an SQL statement that inserts or updates {@code count} key/value pairs at once, with keys
+     * <code>&#63;1</code>, <code>&#63;3</code>, <code>&#63;5</code>, etc., and corresponding values
+     * <code>&#63;2</code>, <code>&#63;4</code>, <code>&#63;6</code>, etc. Rows with any of the keys may already exist;
+     * if so, their values should be updated. The keys are guaranteed to be distinct.
+     *
+     * <p>
+     * This is an optional method; if not supported, null may be returned, in which case individual
+     * {@linkplain #createPutStatement put statements} are used instead.
+     * </p>
+     *
+     * <p>
+     * The implementation in {@link SQLKVDatabase} returns null.
+     * </p>
+     *
+     * @param count number of key/value pairs
+     * @return SQL insertion statement, or null if not supported
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    public String createPutMultiStatement(int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count <= 0");
+        return null;
+    }
+
     /**
      * Create an SQL statement that deletes the row associated with key <code>&#63;1</code>, if any.
      * Note that the key may or may not exist prior to this method being invoked.
@@ -424,14 +648,35 @@ public class SQLKVDatabase implements KVDatabase {
      * </p>
      *
      * <p>
-     * The implementation in {@link SQLKVDatabase} returns its parameter unchanged.
+     * The implementation in {@link SQLKVDatabase} delegates to {@link #limitRows limitRows()}.
      * </p>
      *
      * @param sql SQL statement
      * @return SQL statement
      */
     public String limitSingleRow(String sql) {
-        return sql;
+        return this.limitRows(sql, 1);
+    }
+
+    /**
+     * Modify the given SQL statement so that at most {@code limit} rows are returned.
+     *
+     * <p>
+     * Without a limit, each page of a {@linkplain #setPageSize paged} range query would read the remainder of the range,
+     * so subclasses for databases that do not support the standard syntax must override this method. Returning
+     * {@code statement} unmodified is correct (callers stop reading after {@code limit} rows) but inefficient.
+     * </p>
+     *
+     * <p>
+     * The implementation in {@link SQLKVDatabase} appends the SQL:2008 standard {@code FETCH FIRST limit ROWS ONLY}.
+     * </p>
+     *
+     * @param sql SQL statement
+     * @param limit maximum number of rows
+     * @return SQL statement
+     */
+    public String limitRows(String sql, int limit) {
+        return sql + " FETCH FIRST " + limit + " ROWS ONLY";
     }
 
     /**
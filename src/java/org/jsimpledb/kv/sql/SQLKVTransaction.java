@@ -12,15 +12,25 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
 
 import org.jsimpledb.kv.AbstractKVStore;
 import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVTransaction;
 import org.jsimpledb.kv.KVTransactionException;
+import org.jsimpledb.kv.KeyRange;
 import org.jsimpledb.kv.StaleTransactionException;
+import org.jsimpledb.kv.mvcc.MutableView;
+import org.jsimpledb.kv.mvcc.Writes;
+import org.jsimpledb.util.ByteUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,15 +39,23 @@ import org.slf4j.LoggerFactory;
  */
 public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
 
+    private static final int GET_MULTI_BATCH_SIZE = 100;
+    private static final int PUT_MULTI_BATCH_SIZE = 100;
+
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     protected final SQLKVDatabase database;
     protected final Connection connection;
     protected final HashMap<StmtType, PreparedStatement> preparedStatements = new HashMap<StmtType, PreparedStatement>();
 
+    private final HashMap<String, PreparedStatement> limitedStatements = new HashMap<>();
+    private final MutableView writeBehind;
+
+    private ReadAhead readAhead;
     private long timeout;
     private boolean closed;
-    private boolean stale;
+    boolean readOnlyConnection;                 // connection was put in read-only mode by SQLKVDatabase
+    private volatile boolean stale;
 
     /**
      * Constructor.
@@ -53,6 +71,7 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
             throw new IllegalArgumentException("null connection");
         this.database = database;
         this.connection = connection;
+        this.writeBehind = database.isWriteBehind() ? new MutableView(new DirectView(), null, new Writes()) : null;
     }
 
     @Override
@@ -68,90 +87,123 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
     }
 
     @Override
-    public synchronized byte[] get(byte[] key) {
-        if (this.stale)
-            throw new StaleTransactionException(this);
+    public byte[] get(byte[] key) {
         if (key == null)
             throw new IllegalArgumentException("null key");
-        return this.queryBytes(StmtType.GET, key);
+        if (key.length > 0 && key[0] == (byte)0xff)
+            throw new IllegalArgumentException("key starts with 0xff");
+        final MutableView view = this.getWriteBehindView();
+        return view != null ? view.get(key) : this.doGet(key);
     }
 
+    /**
+     * Get the values associated with multiple keys, if any.
+     *
+     * <p>
+     * The implementation in {@link SQLKVTransaction} reads the keys in batches using a single
+     * {@link SQLKVDatabase#createGetMultiStatement SELECT ... WHERE ... IN (...)} query per batch.
+     * </p>
+     *
+     * @param keys keys to read
+     * @return list of values, in the same order as {@code keys}, with null for keys not found
+     * @throws IllegalArgumentException if {@code keys} or any key in {@code keys} is null
+     * @throws IllegalArgumentException if any key starts with {@code 0xff}
+     */
     @Override
-    public synchronized KVPair getAtLeast(byte[] minKey) {
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        return minKey != null ?
-          this.queryKVPair(StmtType.GET_AT_LEAST_SINGLE, minKey) : this.queryKVPair(StmtType.GET_FIRST);
+    public List<byte[]> getMulti(List<byte[]> keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("null keys");
+        for (byte[] key : keys) {
+            if (key == null)
+                throw new IllegalArgumentException("null key");
+            if (key.length > 0 && key[0] == (byte)0xff)
+                throw new IllegalArgumentException("key starts with 0xff");
+        }
+        final MutableView view = this.getWriteBehindView();
+        return view != null ? view.getMulti(keys) : this.doGetMulti(keys);
     }
 
     @Override
-    public synchronized KVPair getAtMost(byte[] maxKey) {
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        return maxKey != null ?
-          this.queryKVPair(StmtType.GET_AT_MOST_SINGLE, maxKey) : this.queryKVPair(StmtType.GET_LAST);
+    public KVPair getAtLeast(byte[] minKey) {
+        final MutableView view = this.getWriteBehindView();
+        return view != null ? view.getAtLeast(minKey) : this.doGetAtLeast(minKey);
     }
 
     @Override
-    public synchronized Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        if (minKey == null && maxKey == null)
-            return this.queryIterator(reverse ? StmtType.GET_ALL_REVERSE : StmtType.GET_ALL_FORWARD);
-        if (minKey == null)
-            return this.queryIterator(reverse ? StmtType.GET_AT_MOST_REVERSE : StmtType.GET_AT_MOST_FORWARD, maxKey);
-        if (maxKey == null)
-            return this.queryIterator(reverse ? StmtType.GET_AT_LEAST_REVERSE : StmtType.GET_AT_LEAST_FORWARD, minKey);
-        else
-            return this.queryIterator(reverse ? StmtType.GET_RANGE_REVERSE : StmtType.GET_RANGE_FORWARD, minKey, maxKey);
+    public KVPair getAtMost(byte[] maxKey) {
+        final MutableView view = this.getWriteBehindView();
+        return view != null ? view.getAtMost(maxKey) : this.doGetAtMost(maxKey);
+    }
+
+    /**
+     * Iterate the key/value pairs in the specified range.
+     *
+     * <p>
+     * If a {@linkplain SQLKVDatabase#setPageSize page size} is configured, the range is queried in pages.
+     * Rows remembered from a previous {@linkplain SQLKVDatabase#setReadAhead read-ahead} that fall at the start
+     * of the range are returned without querying them again.
+     * </p>
+     */
+    @Override
+    public Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        final MutableView view = this.getWriteBehindView();
+        return view != null ? view.getRange(minKey, maxKey, reverse) : this.doGetRange(minKey, maxKey, reverse);
     }
 
     @Override
-    public synchronized void put(byte[] key, byte[] value) {
+    public void put(byte[] key, byte[] value) {
         if (key == null)
             throw new IllegalArgumentException("null key");
         if (value == null)
             throw new IllegalArgumentException("null value");
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        this.update(StmtType.PUT, key, value, value);
+        final MutableView view = this.getWriteBehindView();
+        if (view != null)
+            view.put(key, value);
+        else
+            this.doPut(key, value);
     }
 
     @Override
-    public synchronized void remove(byte[] key) {
+    public void remove(byte[] key) {
         if (key == null)
             throw new IllegalArgumentException("null key");
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        this.update(StmtType.REMOVE, key);
+        final MutableView view = this.getWriteBehindView();
+        if (view != null)
+            view.remove(key);
+        else
+            this.doRemove(key);
     }
 
     @Override
-    public synchronized void removeRange(byte[] minKey, byte[] maxKey) {
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        if (minKey == null && maxKey == null)
-            this.update(StmtType.REMOVE_ALL);
-        else if (minKey == null)
-            this.update(StmtType.REMOVE_AT_MOST, maxKey);
-        else if (maxKey == null)
-            this.update(StmtType.REMOVE_AT_LEAST, minKey);
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        final MutableView view = this.getWriteBehindView();
+        if (view != null)
+            view.removeRange(minKey, maxKey);
         else
-            this.update(StmtType.REMOVE_RANGE, minKey, maxKey);
+            this.doRemoveRange(minKey, maxKey);
     }
 
     @Override
-    public synchronized void commit() {
-        if (this.stale)
-            throw new StaleTransactionException(this);
-        this.stale = true;
-        try {
-            this.connection.commit();
-        } catch (SQLException e) {
-            throw this.handleException(e);
-        } finally {
-            this.closeConnection();
-        }
+    public void adjustCounter(byte[] key, long amount) {
+        final MutableView view = this.getWriteBehindView();
+        if (view != null)
+            view.adjustCounter(key, amount);
+        else
+            super.adjustCounter(key, amount);
+    }
+
+    /**
+     * Commit this transaction.
+     *
+     * <p>
+     * In {@linkplain SQLKVDatabase#setWriteBehind write-behind} mode, the buffered mutations are written to the
+     * database first, using as few SQL statements as possible.
+     * </p>
+     */
+    @Override
+    public void commit() {
+        final MutableView view = this.getWriteBehindView();
+        this.doCommit(view != null ? view.getWrites() : null);
     }
 
     @Override
@@ -194,11 +246,23 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
     /**
      * Close the {@link Connection} associated with this instance, if it's not already closed.
      * This method is idempotent.
+     *
+     * <p>
+     * If the {@link Connection} was put into read-only mode for a read-only transaction, it is first restored to
+     * read-write mode, so that a pooled connection is not handed out read-only to the next transaction.
+     * </p>
      */
     protected void closeConnection() {
         if (this.closed)
             return;
         this.closed = true;
+        if (this.readOnlyConnection) {
+            try {
+                this.connection.setReadOnly(false);
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
         try {
             this.connection.close();
         } catch (SQLException e) {
@@ -217,8 +281,244 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
         }
     }
 
+// Direct access
+
+    private synchronized byte[] doGet(byte[] key) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        return this.queryBytes(StmtType.GET, key);
+    }
+
+    private synchronized List<byte[]> doGetMulti(List<byte[]> keys) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        if (keys.size() == 1) {
+            final byte[] key = keys.get(0);
+            if (key == null)
+                throw new IllegalArgumentException("null key");
+            return Collections.singletonList(this.queryBytes(StmtType.GET, key));
+        }
+
+        // Query keys in fixed size batches, padding the last batch by repeating its final key
+        final TreeMap<byte[], byte[]> found = new TreeMap<>(ByteUtil.COMPARATOR);
+        final ResultSetFunction<Void> collector = new ResultSetFunction<Void>() {
+            @Override
+            public Void apply(ResultSet resultSet) throws SQLException {
+                while (resultSet.next())
+                    found.put(resultSet.getBytes(1), resultSet.getBytes(2));
+                return null;
+            }
+        };
+        final byte[][] params = new byte[GET_MULTI_BATCH_SIZE][];
+        for (int offset = 0; offset < keys.size(); offset += GET_MULTI_BATCH_SIZE) {
+            final int count = Math.min(GET_MULTI_BATCH_SIZE, keys.size() - offset);
+            for (int i = 0; i < params.length; i++) {
+                final byte[] key = keys.get(offset + Math.min(i, count - 1));
+                if (key == null)
+                    throw new IllegalArgumentException("null key");
+                params[i] = key;
+            }
+            this.query(StmtType.GET_MULTI, collector, true, params);
+        }
+
+        // Return values in the same order as the requested keys
+        final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            values.add(found.get(key));
+        return values;
+    }
+
+    private synchronized KVPair doGetAtLeast(byte[] minKey) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final int limit = this.database.getReadAhead();
+        if (limit <= 1) {
+            return minKey != null ?
+              this.queryKVPair(StmtType.GET_AT_LEAST_SINGLE, minKey) : this.queryKVPair(StmtType.GET_FIRST);
+        }
+
+        // Check read-ahead rows
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        if (this.readAhead != null && this.readAhead.contains(minKey)) {
+            final Map.Entry<byte[], byte[]> entry = this.readAhead.rows.ceilingEntry(minKey);
+            if (entry != null)
+                return ReadAhead.copy(entry);
+            if (this.readAhead.max == null)
+                return null;
+            minKey = this.readAhead.max;                            // there are no rows in between
+        }
+
+        // Query rows and remember them
+        final List<KVPair> pairs = this.queryList(minKey, null, false, limit);
+        final byte[] max = pairs.size() < limit ? null : ByteUtil.getNextKey(pairs.get(pairs.size() - 1).getKey());
+        this.readAhead = new ReadAhead(minKey, max, pairs);
+        return !pairs.isEmpty() ? ReadAhead.copy(pairs.get(0)) : null;
+    }
+
+    private synchronized KVPair doGetAtMost(byte[] maxKey) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final int limit = this.database.getReadAhead();
+        if (limit <= 1) {
+            return maxKey != null ?
+              this.queryKVPair(StmtType.GET_AT_MOST_SINGLE, maxKey) : this.queryKVPair(StmtType.GET_LAST);
+        }
+
+        // Check read-ahead rows
+        if (this.readAhead != null && this.readAhead.containsBelow(maxKey)) {
+            final Map.Entry<byte[], byte[]> entry = maxKey != null ?
+              this.readAhead.rows.lowerEntry(maxKey) : this.readAhead.rows.lastEntry();
+            if (entry != null)
+                return ReadAhead.copy(entry);
+            if (this.readAhead.min.length == 0)
+                return null;
+            maxKey = this.readAhead.min;                            // there are no rows in between
+        }
+
+        // Query rows and remember them
+        final List<KVPair> pairs = this.queryList(null, maxKey, true, limit);
+        final byte[] min = pairs.size() < limit ? ByteUtil.EMPTY : pairs.get(pairs.size() - 1).getKey();
+        this.readAhead = new ReadAhead(min, maxKey, pairs);
+        return !pairs.isEmpty() ? ReadAhead.copy(pairs.get(0)) : null;
+    }
+
+    private synchronized Iterator<KVPair> doGetRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+
+        // Start with read-ahead rows, if any apply
+        final ReadAhead ra = this.readAhead;
+        final byte[] realMinKey = minKey != null ? minKey : ByteUtil.EMPTY;
+        if (ra != null && (reverse ? ra.containsBelow(maxKey) : ra.contains(realMinKey))) {
+            final NavigableMap<byte[], byte[]> rows = maxKey != null ?
+              ra.rows.subMap(realMinKey, true, maxKey, false) : ra.rows.tailMap(realMinKey, true);
+            return reverse ?
+              new PagingIterator(minKey, maxKey, true, rows.descendingMap(), ra.min, ByteUtil.compare(realMinKey, ra.min) >= 0) :
+              new PagingIterator(minKey, maxKey, false, rows, ra.max, KeyRange.compare(maxKey, ra.max) <= 0);
+        }
+
+        // Query in pages?
+        if (this.database.getPageSize() > 0)
+            return new PagingIterator(minKey, maxKey, reverse, null, reverse ? maxKey : minKey, false);
+
+        // Query all at once
+        if (minKey == null && maxKey == null)
+            return this.queryIterator(reverse ? StmtType.GET_ALL_REVERSE : StmtType.GET_ALL_FORWARD);
+        if (minKey == null)
+            return this.queryIterator(reverse ? StmtType.GET_AT_MOST_REVERSE : StmtType.GET_AT_MOST_FORWARD, maxKey);
+        if (maxKey == null)
+            return this.queryIterator(reverse ? StmtType.GET_AT_LEAST_REVERSE : StmtType.GET_AT_LEAST_FORWARD, minKey);
+        else
+            return this.queryIterator(reverse ? StmtType.GET_RANGE_REVERSE : StmtType.GET_RANGE_FORWARD, minKey, maxKey);
+    }
+
+    private synchronized void doPut(byte[] key, byte[] value) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.readAhead = null;
+        this.update(StmtType.PUT, key, value, value);
+    }
+
+    private synchronized void doRemove(byte[] key) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.readAhead = null;
+        this.update(StmtType.REMOVE, key);
+    }
+
+    private synchronized void doRemoveRange(byte[] minKey, byte[] maxKey) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.readAhead = null;
+        if (minKey == null && maxKey == null)
+            this.update(StmtType.REMOVE_ALL);
+        else if (minKey == null)
+            this.update(StmtType.REMOVE_AT_MOST, maxKey);
+        else if (maxKey == null)
+            this.update(StmtType.REMOVE_AT_LEAST, minKey);
+        else
+            this.update(StmtType.REMOVE_RANGE, minKey, maxKey);
+    }
+
+    private synchronized void doCommit(Writes writes) {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        if (writes != null)
+            this.flush(writes);
+        this.stale = true;
+        try {
+            this.connection.commit();
+        } catch (SQLException e) {
+            throw this.handleException(e);
+        } finally {
+            this.closeConnection();
+        }
+    }
+
 // Helper methods
 
+    // Get the write-behind buffer, if any, after verifying this transaction is still usable
+    private MutableView getWriteBehindView() {
+        if (this.writeBehind == null)
+            return null;
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        return this.writeBehind;
+    }
+
+    // Write the mutations buffered in write-behind mode to the database using as few SQL statements as possible
+    private void flush(Writes writes) {
+
+        // Apply removes; overlapping and adjacent ranges have already been coalesced, and single key removes are batched
+        final ArrayList<byte[][]> removes = new ArrayList<>();
+        for (KeyRange range : writes.getRemoveRanges()) {
+            if (range.isSingleKey())
+                removes.add(new byte[][] { range.getMin() });
+            else
+                this.doRemoveRange(range.getMin().length > 0 ? range.getMin() : null, range.getMax());
+        }
+        this.updateBatch(StmtType.REMOVE, removes);
+
+        // Gather puts, including adjusted counters; missing counters start from zero, and non-counter values are left alone
+        final ArrayList<byte[][]> puts = new ArrayList<>(writes.getPuts().size() + writes.getAdjusts().size());
+        for (Map.Entry<byte[], byte[]> entry : writes.getPuts().entrySet())
+            puts.add(new byte[][] { entry.getKey(), entry.getValue(), entry.getValue() });
+        if (!writes.getAdjusts().isEmpty()) {
+            final ArrayList<byte[]> keys = new ArrayList<>(writes.getAdjusts().keySet());
+            final List<byte[]> values = this.doGetMulti(keys);
+            for (int i = 0; i < keys.size(); i++) {
+                final byte[] key = keys.get(i);
+                final byte[] value = values.get(i);
+                long counter = 0;
+                if (value != null) {
+                    try {
+                        counter = this.decodeCounter(value);
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                }
+                final byte[] newValue = this.encodeCounter(counter + writes.getAdjusts().get(key));
+                puts.add(new byte[][] { key, newValue, newValue });
+            }
+        }
+
+        // Apply puts, using multi-row statements for full batches if supported
+        int offset = 0;
+        if (puts.size() >= PUT_MULTI_BATCH_SIZE && this.database.createPutMultiStatement(PUT_MULTI_BATCH_SIZE) != null) {
+            final byte[][] params = new byte[PUT_MULTI_BATCH_SIZE * 2][];
+            for ( ; offset + PUT_MULTI_BATCH_SIZE <= puts.size(); offset += PUT_MULTI_BATCH_SIZE) {
+                for (int i = 0; i < PUT_MULTI_BATCH_SIZE; i++) {
+                    final byte[][] put = puts.get(offset + i);
+                    params[i * 2] = put[0];
+                    params[i * 2 + 1] = put[1];
+                }
+                this.update(StmtType.PUT_MULTI, params);
+            }
+        }
+        this.updateBatch(StmtType.PUT, puts.subList(offset, puts.size()));
+    }
+
     private byte[] queryBytes(StmtType stmtType, byte[]... params) {
         return this.query(stmtType, new ResultSetFunction<byte[]>() {
             @Override
@@ -246,35 +546,86 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
         }, false, params);
     }
 
-    private <T> T query(StmtType stmtType, ResultSetFunction<T> resultSetFunction, boolean close, byte[]... params) {
+    // Query at most limit rows (zero for no limit) in the given range; an empty minKey means no minimum
+    private Iterator<KVPair> queryRange(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        if (minKey != null && minKey.length == 0)
+            minKey = null;
+        final SQLKVDatabase db = this.database;
+        String sql = minKey != null ?
+          (maxKey != null ? db.createGetRangeStatement(reverse) : db.createGetAtLeastStatement(reverse)) :
+          (maxKey != null ? db.createGetAtMostStatement(reverse) : db.createGetAllStatement(reverse));
+        if (limit > 0)
+            sql = db.limitRows(sql, limit);
+        final byte[][] params = minKey != null ?
+          (maxKey != null ? new byte[][] { minKey, maxKey } : new byte[][] { minKey }) :
+          (maxKey != null ? new byte[][] { maxKey } : new byte[0][]);
         try {
-            PreparedStatement preparedStatement = this.preparedStatements.get(stmtType);
+            PreparedStatement preparedStatement = this.limitedStatements.get(sql);
             if (preparedStatement == null) {
-                preparedStatement = stmtType.create(this.database, this.connection);
-                this.preparedStatements.put(stmtType, preparedStatement);
+                preparedStatement = this.connection.prepareStatement(sql);
+                this.limitedStatements.put(sql, preparedStatement);
             }
-            for (int i = 0; i < params.length; i++)
-                preparedStatement.setBytes(i + 1, params[i]);
-            preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
-            if (this.log.isTraceEnabled())
-                this.log.trace("SQL query: " + preparedStatement);
-            final ResultSet resultSet = preparedStatement.executeQuery();
-            final T result = resultSetFunction.apply(resultSet);
-            if (close)
-                resultSet.close();
-            return result;
+            return this.query(preparedStatement, new ResultSetFunction<Iterator<KVPair>>() {
+                @Override
+                public Iterator<KVPair> apply(ResultSet resultSet) throws SQLException {
+                    return new ResultSetIterator(resultSet);
+                }
+            }, false, params);
         } catch (SQLException e) {
             throw this.handleException(e);
         }
     }
 
+    // Read at most limit rows in the given range into a list
+    private List<KVPair> queryList(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        final ArrayList<KVPair> list = new ArrayList<>(limit);
+        final Iterator<KVPair> i = this.queryRange(minKey, maxKey, reverse, limit);
+        try {
+            while (list.size() < limit && i.hasNext())
+                list.add(i.next());
+        } finally {
+            ((ResultSetIterator)i).close();
+        }
+        return list;
+    }
+
+    private <T> T query(StmtType stmtType, ResultSetFunction<T> resultSetFunction, boolean close, byte[]... params) {
+        try {
+            final PreparedStatement preparedStatement = this.prepare(stmtType);
+            return this.query(preparedStatement, resultSetFunction, close, params);
+        } catch (SQLException e) {
+            throw this.handleException(e);
+        }
+    }
+
+    private <T> T query(PreparedStatement preparedStatement, ResultSetFunction<T> resultSetFunction, boolean close,
+      byte[]... params) throws SQLException {
+        for (int i = 0; i < params.length; i++)
+            preparedStatement.setBytes(i + 1, params[i]);
+        preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
+        if (!close && this.database.getFetchSize() > 0)
+            preparedStatement.setFetchSize(this.database.getFetchSize());
+        if (this.log.isTraceEnabled())
+            this.log.trace("SQL query: " + preparedStatement);
+        final ResultSet resultSet = preparedStatement.executeQuery();
+        final T result = resultSetFunction.apply(resultSet);
+        if (close)
+            resultSet.close();
+        return result;
+    }
+
+    private PreparedStatement prepare(StmtType stmtType) throws SQLException {
+        PreparedStatement preparedStatement = this.preparedStatements.get(stmtType);
+        if (preparedStatement == null) {
+            preparedStatement = stmtType.create(this.database, this.connection);
+            this.preparedStatements.put(stmtType, preparedStatement);
+        }
+        return preparedStatement;
+    }
+
     private void update(StmtType stmtType, byte[]... params) {
         try {
-            PreparedStatement preparedStatement = this.preparedStatements.get(stmtType);
-            if (preparedStatement == null) {
-                preparedStatement = stmtType.create(this.database, this.connection);
-                this.preparedStatements.put(stmtType, preparedStatement);
-            }
+            final PreparedStatement preparedStatement = this.prepare(stmtType);
             for (int i = 0; i < params.length; i++)
                 preparedStatement.setBytes(i + 1, params[i]);
             preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
@@ -286,6 +637,25 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
         }
     }
 
+    private void updateBatch(StmtType stmtType, List<byte[][]> paramsList) {
+        if (paramsList.isEmpty())
+            return;
+        try {
+            final PreparedStatement preparedStatement = this.prepare(stmtType);
+            for (byte[][] params : paramsList) {
+                for (int i = 0; i < params.length; i++)
+                    preparedStatement.setBytes(i + 1, params[i]);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
+            if (this.log.isTraceEnabled())
+                this.log.trace("SQL batch update (" + paramsList.size() + " rows): " + preparedStatement);
+            preparedStatement.executeBatch();
+        } catch (SQLException e) {
+            throw this.handleException(e);
+        }
+    }
+
 // ResultSetFunction
 
     private interface ResultSetFunction<T> {
@@ -293,6 +663,182 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
         T apply(ResultSet resultSet) throws SQLException;
     }
 
+// DirectView
+
+    // Reads directly from the database; serves as the underlying store for the write-behind buffer, which never writes to it
+    private class DirectView extends AbstractKVStore {
+
+        @Override
+        public byte[] get(byte[] key) {
+            return SQLKVTransaction.this.doGet(key);
+        }
+
+        @Override
+        public List<byte[]> getMulti(List<byte[]> keys) {
+            return SQLKVTransaction.this.doGetMulti(keys);
+        }
+
+        @Override
+        public KVPair getAtLeast(byte[] minKey) {
+            return SQLKVTransaction.this.doGetAtLeast(minKey);
+        }
+
+        @Override
+        public KVPair getAtMost(byte[] maxKey) {
+            return SQLKVTransaction.this.doGetAtMost(maxKey);
+        }
+
+        @Override
+        public Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            return SQLKVTransaction.this.doGetRange(minKey, maxKey, reverse);
+        }
+
+        @Override
+        public void remove(byte[] key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeRange(byte[] minKey, byte[] maxKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+// ReadAhead
+
+    // All of the rows in the key range [min, max) as of the most recent read-ahead
+    private static final class ReadAhead {
+
+        final byte[] min;                                       // never null
+        final byte[] max;                                       // null means no maximum
+        final TreeMap<byte[], byte[]> rows = new TreeMap<>(ByteUtil.COMPARATOR);
+
+        ReadAhead(byte[] min, byte[] max, List<KVPair> pairs) {
+            this.min = min;
+            this.max = max;
+            for (KVPair pair : pairs)
+                this.rows.put(pair.getKey(), pair.getValue());
+        }
+
+        // Is key in [min, max)?
+        boolean contains(byte[] key) {
+            return ByteUtil.compare(this.min, key) <= 0 && KeyRange.compare(key, this.max) < 0;
+        }
+
+        // Are the keys just below key (exclusive, or null for no maximum) in [min, max)?
+        boolean containsBelow(byte[] key) {
+            return KeyRange.compare(this.min, key) < 0 && KeyRange.compare(key, this.max) <= 0;
+        }
+
+        // Copy key/value pair so callers can't modify our rows
+        static KVPair copy(Map.Entry<byte[], byte[]> entry) {
+            return new KVPair(entry.getKey().clone(), entry.getValue().clone());
+        }
+
+        static KVPair copy(KVPair pair) {
+            return new KVPair(pair.getKey().clone(), pair.getValue().clone());
+        }
+    }
+
+// PagingIterator
+
+    // Iterates a range, starting with some known rows (if any), then querying the rest in pages (if configured)
+    private class PagingIterator implements Iterator<KVPair>, Closeable {
+
+        private final byte[] minKey;
+        private final byte[] maxKey;
+        private final boolean reverse;
+
+        private Iterator<KVPair> page;
+        private int pageCount;
+        private int pageLimit;                                  // zero means no limit
+        private boolean lastPage;
+        private byte[] resumeKey;                               // min key (forward) or max key (reverse) of the next page
+        private byte[] removeKey;
+        private boolean closed;
+
+        PagingIterator(byte[] minKey, byte[] maxKey, boolean reverse,
+          NavigableMap<byte[], byte[]> rows, byte[] resumeKey, boolean lastPage) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.reverse = reverse;
+            this.resumeKey = resumeKey;
+            if (rows != null) {
+                final ArrayList<KVPair> pairs = new ArrayList<>(rows.size());
+                for (Map.Entry<byte[], byte[]> entry : rows.entrySet())
+                    pairs.add(ReadAhead.copy(entry));
+                this.page = pairs.iterator();
+                this.lastPage = lastPage;
+            } else
+                this.nextPage();
+        }
+
+    // Iterator
+
+        @Override
+        public synchronized boolean hasNext() {
+            if (this.closed)
+                return false;
+            while ((this.pageLimit > 0 && this.pageCount >= this.pageLimit) || !this.page.hasNext()) {
+                if (this.lastPage || this.pageCount < this.pageLimit) {
+                    this.close();
+                    return false;
+                }
+                this.nextPage();
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized KVPair next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            final KVPair pair = this.page.next();
+            this.pageCount++;
+            this.resumeKey = this.reverse ? pair.getKey() : ByteUtil.getNextKey(pair.getKey());
+            this.removeKey = pair.getKey().clone();
+            return pair;
+        }
+
+        @Override
+        public synchronized void remove() {
+            if (this.removeKey == null)
+                throw new IllegalStateException();
+            SQLKVTransaction.this.remove(this.removeKey);
+            this.removeKey = null;
+        }
+
+        private void nextPage() {
+            this.closePage();
+            final int limit = SQLKVTransaction.this.database.getPageSize();
+            synchronized (SQLKVTransaction.this) {
+                if (SQLKVTransaction.this.stale)
+                    throw new StaleTransactionException(SQLKVTransaction.this);
+                this.page = this.reverse ?
+                  SQLKVTransaction.this.queryRange(this.minKey, this.resumeKey, true, limit) :
+                  SQLKVTransaction.this.queryRange(this.resumeKey, this.maxKey, false, limit);
+            }
+            this.pageCount = 0;
+            this.pageLimit = limit;
+            this.lastPage = limit == 0;
+        }
+
+        private void closePage() {
+            if (this.page instanceof ResultSetIterator)
+                ((ResultSetIterator)this.page).close();
+        }
+
+    // Closeable
+
+        @Override
+        public synchronized void close() {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.closePage();
+        }
+    }
+
 // ResultSetIterator
 
     private class ResultSetIterator implements Iterator<KVPair>, Closeable {
@@ -388,6 +934,12 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
                 return c.prepareStatement(db.createGetStatement());
             };
         };
+        static final StmtType GET_MULTI = new StmtType() {
+            @Override
+            PreparedStatement create(SQLKVDatabase db, Connection c) throws SQLException {
+                return c.prepareStatement(db.createGetMultiStatement(GET_MULTI_BATCH_SIZE));
+            };
+        };
         static final StmtType GET_AT_LEAST_SINGLE = new StmtType() {
             @Override
             PreparedStatement create(SQLKVDatabase db, Connection c) throws SQLException {
@@ -397,7 +949,7 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
         static final StmtType GET_AT_MOST_SINGLE = new StmtType() {
             @Override
             PreparedStatement create(SQLKVDatabase db, Connection c) throws SQLException {
-                return c.prepareStatement(db.limitSingleRow(db.createGetAtMostStatement(false)));
+                return c.prepareStatement(db.limitSingleRow(db.createGetAtMostStatement(true)));
             };
         };
         static final StmtType GET_FIRST = new StmtType() {
@@ -466,6 +1018,12 @@ public class SQLKVTransaction extends AbstractKVStore implements KVTransaction {
                 return c.prepareStatement(db.createPutStatement());
             };
         };
+        static final StmtType PUT_MULTI = new StmtType() {
+            @Override
+            PreparedStatement create(SQLKVDatabase db, Connection c) throws SQLException {
+                return c.prepareStatement(db.createPutMultiStatement(PUT_MULTI_BATCH_SIZE));
+            };
+        };
         static final StmtType REMOVE = new StmtType() {
             @Override
             PreparedStatement create(SQLKVDatabase db, Connection c) throws SQLException {
@@ -7,7 +7,10 @@
 
 package org.jsimpledb.kv.util;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import java.util.Iterator;
+import java.util.List;
 
 import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVStore;
@@ -31,6 +34,16 @@ public abstract class ForwardingKVStore implements KVStore {
         return this.delegate().get(key);
     }
 
+    @Override
+    public List<byte[]> getMulti(List<byte[]> keys) {
+        return this.delegate().getMulti(keys);
+    }
+
+    @Override
+    public ListenableFuture<byte[]> getAsync(byte[] key) {
+        return this.delegate().getAsync(key);
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey) {
         return this.delegate().getAtLeast(minKey);
@@ -46,6 +59,11 @@ public abstract class ForwardingKVStore implements KVStore {
         return this.delegate().getRange(minKey, maxKey, reverse);
     }
 
+    @Override
+    public ListenableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        return this.delegate().getRangeAsync(minKey, maxKey, reverse, limit);
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.delegate().put(key, value);
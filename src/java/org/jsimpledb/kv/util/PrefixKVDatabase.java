@@ -8,6 +8,7 @@
 package org.jsimpledb.kv.util;
 
 import org.jsimpledb.kv.KVDatabase;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 
 /**
  * Prefix {@link KVDatabase} implementation.
@@ -18,7 +19,7 @@ import org.jsimpledb.kv.KVDatabase;
  * {@link KVDatabase}s to exist within a single containing {@link KVDatabase} under different key prefixes.
  * </p>
  */
-public class PrefixKVDatabase implements KVDatabase {
+public class PrefixKVDatabase implements ReadOnlyCapableKVDatabase {
 
     private final KVDatabase db;
     private final byte[] keyPrefix;
@@ -59,7 +60,12 @@ public class PrefixKVDatabase implements KVDatabase {
 
     @Override
     public PrefixKVTransaction createTransaction() {
-        return new PrefixKVTransaction(this);
+        return this.createTransaction(false);
+    }
+
+    @Override
+    public PrefixKVTransaction createTransaction(boolean readOnly) {
+        return new PrefixKVTransaction(this, readOnly);
     }
 }
 
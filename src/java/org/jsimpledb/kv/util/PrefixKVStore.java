@@ -11,8 +11,13 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jsimpledb.kv.KVPair;
 import org.jsimpledb.kv.KVStore;
@@ -72,6 +77,19 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         return this.delegate().get(this.addPrefix(key));
     }
 
+    @Override
+    public List<byte[]> getMulti(List<byte[]> keys) {
+        final ArrayList<byte[]> prefixedKeys = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            prefixedKeys.add(this.addPrefix(key));
+        return this.delegate().getMulti(prefixedKeys);
+    }
+
+    @Override
+    public ListenableFuture<byte[]> getAsync(byte[] key) {
+        return this.delegate().getAsync(this.addPrefix(key));
+    }
+
     @Override
     public KVPair getAtLeast(byte[] minKey) {
         final KVPair pair = this.delegate().getAtLeast(this.addMinPrefix(minKey));
@@ -95,6 +113,21 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         });
     }
 
+    @Override
+    public ListenableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        final ListenableFuture<List<KVPair>> future = this.delegate().getRangeAsync(
+          this.addMinPrefix(minKey), this.addMaxPrefix(maxKey), reverse, limit);
+        return Futures.transform(future, new Function<List<KVPair>, List<KVPair>>() {
+            @Override
+            public List<KVPair> apply(List<KVPair> pairs) {
+                final ArrayList<KVPair> list = new ArrayList<>(pairs.size());
+                for (KVPair pair : pairs)
+                    list.add(new KVPair(PrefixKVStore.this.removePrefix(pair.getKey()), pair.getValue()));
+                return list;
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         this.delegate().put(this.addPrefix(key), value);
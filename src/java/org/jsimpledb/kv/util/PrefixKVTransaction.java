@@ -7,7 +7,9 @@
 
 package org.jsimpledb.kv.util;
 
+import org.jsimpledb.kv.KVDatabase;
 import org.jsimpledb.kv.KVTransaction;
+import org.jsimpledb.kv.ReadOnlyCapableKVDatabase;
 
 /**
  * {@link KVTransaction} view of all keys having a common {@code byte[]} prefix in a containing {@link KVTransaction}.
@@ -41,10 +43,12 @@ public class PrefixKVTransaction extends PrefixKVStore implements KVTransaction
      * Constructor for when there is an associated {@link PrefixKVDatabase}.
      *
      * @param db the containing {@link PrefixKVDatabase}
+     * @param readOnly true for a read-only transaction; ignored unless the containing database
+     *  is a {@link ReadOnlyCapableKVDatabase}
      * @throws NullPointerException if {@code db} is null
      */
-    PrefixKVTransaction(PrefixKVDatabase db) {
-        this(db.getContainingKVDatabase().createTransaction(), db.getKeyPrefix(), db);
+    PrefixKVTransaction(PrefixKVDatabase db, boolean readOnly) {
+        this(PrefixKVTransaction.createContainingTransaction(db.getContainingKVDatabase(), readOnly), db.getKeyPrefix(), db);
     }
 
     private PrefixKVTransaction(KVTransaction tx, byte[] keyPrefix, PrefixKVDatabase db) {
@@ -55,6 +59,11 @@ public class PrefixKVTransaction extends PrefixKVStore implements KVTransaction
         this.db = db;
     }
 
+    private static KVTransaction createContainingTransaction(KVDatabase kvdb, boolean readOnly) {
+        return readOnly && kvdb instanceof ReadOnlyCapableKVDatabase ?
+          ((ReadOnlyCapableKVDatabase)kvdb).createTransaction(true) : kvdb.createTransaction();
+    }
+
 // PrefixKVStore
 
     @Override
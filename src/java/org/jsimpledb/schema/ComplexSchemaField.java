@@ -15,12 +15,40 @@ import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.jsimpledb.core.InvalidSchemaException;
+import org.jsimpledb.util.Diffs;
 
 /**
  * A complex field in one version of a {@link SchemaObjectType}.
  */
 public abstract class ComplexSchemaField extends SchemaField {
 
+    private boolean sizeCounter;
+
+    /**
+     * Determine whether this field maintains a count of its elements (or entries, for maps).
+     *
+     * <p>
+     * When enabled, the count is stored in a {@linkplain org.jsimpledb.kv.KVStore#adjustCounter counter} which is
+     * updated on every addition and removal, so {@code size()} and {@code isEmpty()} on the field's collection
+     * only require reading one key instead of scanning the collection. Because the counter is only ever adjusted,
+     * not read, when the collection changes, concurrent modifications to the same collection do not conflict
+     * on its account.
+     * </p>
+     *
+     * <p>
+     * This setting is part of the field's storage format, so it must be the same in every schema version
+     * that uses this field's storage ID.
+     * </p>
+     *
+     * @return true if this field maintains an element count
+     */
+    public boolean isSizeCounter() {
+        return this.sizeCounter;
+    }
+    public void setSizeCounter(boolean sizeCounter) {
+        this.sizeCounter = sizeCounter;
+    }
+
     @Override
     void validate() {
         super.validate();
@@ -42,6 +70,8 @@ public abstract class ComplexSchemaField extends SchemaField {
     @Override
     boolean isCompatibleWithInternal(AbstractSchemaItem that0) {
         final ComplexSchemaField that = (ComplexSchemaField)that0;
+        if (this.sizeCounter != that.sizeCounter)
+            return false;
         if (!this.getSubFields().keySet().equals(that.getSubFields().keySet()))
             return false;
         for (String subFieldName : this.getSubFields().keySet()) {
@@ -53,6 +83,25 @@ public abstract class ComplexSchemaField extends SchemaField {
         return true;
     }
 
+// DiffGenerating
+
+    protected Diffs differencesFrom(ComplexSchemaField that) {
+        final Diffs diffs = new Diffs(super.differencesFrom(that));
+        if (this.sizeCounter != that.sizeCounter)
+            diffs.add("changed size counter from " + that.sizeCounter + " to " + this.sizeCounter);
+        return diffs;
+    }
+
+// XML Reading
+
+    @Override
+    void readAttributes(XMLStreamReader reader, int formatVersion) throws XMLStreamException {
+        super.readAttributes(reader, formatVersion);
+        final Boolean sizeCounterAttr = this.getBooleanAttr(reader, SIZE_COUNTER_ATTRIBUTE, false);
+        if (sizeCounterAttr != null)
+            this.setSizeCounter(sizeCounterAttr);
+    }
+
     SimpleSchemaField readSubField(XMLStreamReader reader, int formatVersion, String name) throws XMLStreamException {
         final SimpleSchemaField field = this.readMappedType(reader, false, SchemaModel.SIMPLE_FIELD_TAG_MAP);
         field.readXML(reader, formatVersion);
@@ -71,8 +120,39 @@ public abstract class ComplexSchemaField extends SchemaField {
         writer.writeEndElement();
     }
 
+    @Override
+    void writeAttributes(XMLStreamWriter writer, boolean includeName) throws XMLStreamException {
+        super.writeAttributes(writer, includeName);
+        if (this.sizeCounter) {
+            writer.writeAttribute(SIZE_COUNTER_ATTRIBUTE.getNamespaceURI(),
+              SIZE_COUNTER_ATTRIBUTE.getLocalPart(), "" + this.sizeCounter);
+        }
+    }
+
     abstract QName getXMLTag();
 
+// Object
+
+    @Override
+    public String toString() {
+        return super.toString() + (this.sizeCounter ? " with size counter" : "");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        final ComplexSchemaField that = (ComplexSchemaField)obj;
+        return this.sizeCounter == that.sizeCounter;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() ^ (this.sizeCounter ? 2 : 0);
+    }
+
 // Cloneable
 
     @Override
@@ -8,6 +8,9 @@
 package org.jsimpledb.schema;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.jsimpledb.util.DiffGenerating;
 import org.jsimpledb.util.Diffs;
@@ -17,6 +20,33 @@ import org.jsimpledb.util.Diffs;
  */
 public class ListSchemaField extends CollectionSchemaField implements DiffGenerating<ListSchemaField> {
 
+    private boolean gapped;
+
+    /**
+     * Determine whether this list field uses the gapped encoding.
+     *
+     * <p>
+     * By default, list elements are stored under consecutive indexes, so that {@link java.util.List#get List.get()}
+     * is constant time but inserting or removing an element rewrites all of the elements that follow it. In the gapped
+     * encoding, elements are stored under sparse positions with room left in between, so inserts and removes only
+     * touch the affected elements (plus, occasionally, some neighbors), and the list size is maintained in a counter.
+     * The price is that locating an element by index requires scanning from the nearer end of the list.
+     * </p>
+     *
+     * <p>
+     * The encoding is part of the field's storage format, so it must be the same in every schema version
+     * that uses this field's storage ID.
+     * </p>
+     *
+     * @return true if this field uses the gapped encoding
+     */
+    public boolean isGapped() {
+        return this.gapped;
+    }
+    public void setGapped(boolean gapped) {
+        this.gapped = gapped;
+    }
+
     @Override
     public <R> R visit(SchemaFieldSwitch<R> target) {
         return target.caseListSchemaField(this);
@@ -27,18 +57,65 @@ public class ListSchemaField extends CollectionSchemaField implements DiffGenera
         return LIST_FIELD_TAG;
     }
 
+    @Override
+    boolean isCompatibleWithInternal(AbstractSchemaItem that0) {
+        final ListSchemaField that = (ListSchemaField)that0;
+        if (!super.isCompatibleWithInternal(that))
+            return false;
+        if (this.gapped != that.gapped)
+            return false;
+        return true;
+    }
+
 // DiffGenerating
 
     @Override
     public Diffs differencesFrom(ListSchemaField that) {
-        return super.differencesFrom(that);
+        final Diffs diffs = new Diffs(super.differencesFrom(that));
+        if (this.gapped != that.gapped)
+            diffs.add("changed gapped encoding from " + that.gapped + " to " + this.gapped);
+        return diffs;
+    }
+
+// XML Reading
+
+    @Override
+    void readAttributes(XMLStreamReader reader, int formatVersion) throws XMLStreamException {
+        super.readAttributes(reader, formatVersion);
+        final Boolean gappedAttr = this.getBooleanAttr(reader, GAPPED_ATTRIBUTE, false);
+        if (gappedAttr != null)
+            this.setGapped(gappedAttr);
+    }
+
+// XML Writing
+
+    @Override
+    void writeAttributes(XMLStreamWriter writer, boolean includeName) throws XMLStreamException {
+        super.writeAttributes(writer, includeName);
+        if (this.gapped)
+            writer.writeAttribute(GAPPED_ATTRIBUTE.getNamespaceURI(), GAPPED_ATTRIBUTE.getLocalPart(), "" + this.gapped);
     }
 
 // Object
 
     @Override
     public String toString() {
-        return "list " + super.toString();
+        return (this.gapped ? "gapped " : "") + "list " + super.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        final ListSchemaField that = (ListSchemaField)obj;
+        return this.gapped == that.gapped;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() ^ (this.gapped ? 1 : 0);
     }
 
 // Cloneable
@@ -26,6 +26,7 @@ import org.jsimpledb.util.Diffs;
 public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGenerating<SchemaCompositeIndex> {
 
     private /*final*/ ArrayList<Integer> indexedFields = new ArrayList<>();
+    private /*final*/ ArrayList<Integer> includedFields = new ArrayList<>();
 
     /**
      * Get the fields that comprise this index.
@@ -36,6 +37,21 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
         return this.indexedFields;
     }
 
+    /**
+     * Get the additional, non-indexed fields whose values are stored in this index's entries.
+     *
+     * <p>
+     * Storing these values in the index allows queries to retrieve them directly from the index,
+     * instead of having to read them from each matching object. Included fields must be simple fields
+     * that are not also indexed fields of this index.
+     * </p>
+     *
+     * @return storage IDs of included fields, possibly empty
+     */
+    public List<Integer> getIncludedFields() {
+        return this.includedFields;
+    }
+
     @Override
     void validate() {
         super.validate();
@@ -49,6 +65,11 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
             if (!idsSeen.add(storageId))
                 throw new InvalidSchemaException("invalid " + this + ": duplicate field in composite index: " + storageId);
         }
+        for (int i = 0; i < this.includedFields.size(); i++) {
+            final int storageId = this.includedFields.get(i);
+            if (!idsSeen.add(storageId))
+                throw new InvalidSchemaException("invalid " + this + ": duplicate field in composite index: " + storageId);
+        }
     }
 
     @Override
@@ -56,6 +77,8 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
         final SchemaCompositeIndex that = (SchemaCompositeIndex)that0;
         if (!this.indexedFields.equals(that.indexedFields))
             return false;
+        if (!this.includedFields.equals(that.includedFields))
+            return false;
         return true;
     }
 
@@ -64,11 +87,17 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
     @Override
     void readSubElements(XMLStreamReader reader, int formatVersion) throws XMLStreamException {
         this.indexedFields.clear();
-        while (this.expect(reader, true, INDEXED_FIELD_TAG)) {
-            this.indexedFields.add(this.getIntAttr(reader, STORAGE_ID_ATTRIBUTE));
-            this.expectClose(reader);   // </IndexedField>
+        this.includedFields.clear();
+        while (this.expect(reader, true, INDEXED_FIELD_TAG, INCLUDED_FIELD_TAG)) {
+            final int storageId = this.getIntAttr(reader, STORAGE_ID_ATTRIBUTE);
+            if (INCLUDED_FIELD_TAG.equals(reader.getName()))
+                this.includedFields.add(storageId);
+            else
+                this.indexedFields.add(storageId);
+            this.expectClose(reader);   // </IndexedField> or </IncludedField>
         }
         this.indexedFields.trimToSize();
+        this.includedFields.trimToSize();
     }
 
 // XML Writing
@@ -81,6 +110,10 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
             writer.writeEmptyElement(INDEXED_FIELD_TAG.getNamespaceURI(), INDEXED_FIELD_TAG.getLocalPart());
             writer.writeAttribute(STORAGE_ID_ATTRIBUTE.getNamespaceURI(), STORAGE_ID_ATTRIBUTE.getLocalPart(), "" + storageId);
         }
+        for (int storageId : this.includedFields) {
+            writer.writeEmptyElement(INCLUDED_FIELD_TAG.getNamespaceURI(), INCLUDED_FIELD_TAG.getLocalPart());
+            writer.writeAttribute(STORAGE_ID_ATTRIBUTE.getNamespaceURI(), STORAGE_ID_ATTRIBUTE.getLocalPart(), "" + storageId);
+        }
         writer.writeEndElement();           // </CompositeIndex>
     }
 
@@ -91,6 +124,8 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
         final Diffs diffs = new Diffs(super.differencesFrom(that));
         if (!this.indexedFields.equals(that.indexedFields))
             diffs.add("changed indexed field storage IDs from " + that.indexedFields + " to " + this.indexedFields);
+        if (!this.includedFields.equals(that.includedFields))
+            diffs.add("changed included field storage IDs from " + that.includedFields + " to " + this.includedFields);
         return diffs;
     }
 
@@ -108,12 +143,12 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
         if (!super.equals(obj))
             return false;
         final SchemaCompositeIndex that = (SchemaCompositeIndex)obj;
-        return this.indexedFields.equals(that.indexedFields);
+        return this.indexedFields.equals(that.indexedFields) && this.includedFields.equals(that.includedFields);
     }
 
     @Override
     public int hashCode() {
-        return super.hashCode() ^ this.indexedFields.hashCode();
+        return super.hashCode() ^ this.indexedFields.hashCode() ^ this.includedFields.hashCode();
     }
 
 // Cloneable
@@ -123,6 +158,7 @@ public class SchemaCompositeIndex extends AbstractSchemaItem implements DiffGene
     public SchemaCompositeIndex clone() {
         final SchemaCompositeIndex clone = (SchemaCompositeIndex)super.clone();
         clone.indexedFields = (ArrayList<Integer>)clone.indexedFields.clone();
+        clone.includedFields = (ArrayList<Integer>)clone.includedFields.clone();
         return clone;
     }
 }
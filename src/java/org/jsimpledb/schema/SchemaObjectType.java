@@ -80,6 +80,11 @@ public class SchemaObjectType extends AbstractSchemaItem implements DiffGenerati
                 if (!(field instanceof SimpleSchemaField))
                     throw new InvalidSchemaException(index + " indexes unknown or invalid field with storage ID " + storageId);
             }
+            for (int storageId : index.getIncludedFields()) {
+                final SchemaField field = this.schemaFields.get(storageId);
+                if (!(field instanceof SimpleSchemaField))
+                    throw new InvalidSchemaException(index + " includes unknown or invalid field with storage ID " + storageId);
+            }
         }
 
         // Verify there are no duplicate composite indexes
@@ -19,6 +19,7 @@ public interface XMLConstants {
     QName COUNTER_FIELD_TAG = new QName("CounterField");
     QName ENUM_FIELD_TAG = new QName("EnumField");
     QName IDENTIFIER_TAG = new QName("Identifier");
+    QName INCLUDED_FIELD_TAG = new QName("IncludedField");
     QName INDEXED_FIELD_TAG = new QName("IndexedField");
     QName LIST_FIELD_TAG = new QName("ListField");
     QName MAP_FIELD_TAG = new QName("MapField");
@@ -33,9 +34,11 @@ public interface XMLConstants {
     QName CASCADE_DELETE_ATTRIBUTE = new QName("cascadeDelete");
     QName ENCODING_SIGNATURE_ATTRIBUTE = new QName("encodingSignature");
     QName FORMAT_VERSION_ATTRIBUTE = new QName("formatVersion");
+    QName GAPPED_ATTRIBUTE = new QName("gapped");
     QName INDEXED_ATTRIBUTE = new QName("indexed");
     QName NAME_ATTRIBUTE = new QName("name");
     QName ON_DELETE_ATTRIBUTE = new QName("onDelete");
+    QName SIZE_COUNTER_ATTRIBUTE = new QName("sizeCounter");
     QName STORAGE_ID_ATTRIBUTE = new QName("storageId");
     QName TYPE_ATTRIBUTE = new QName("type");
 }
@@ -68,6 +68,7 @@ public class JSimpleDBTransactionManager extends AbstractPlatformTransactionMana
     protected ValidationMode validationMode = DEFAULT_VALIDATION_MODE;
 
     private boolean validateBeforeCommit = true;
+    private boolean readOnlyKVTransactions;
 
     public void afterPropertiesSet() throws Exception {
         if (this.jdb == null)
@@ -129,6 +130,28 @@ public class JSimpleDBTransactionManager extends AbstractPlatformTransactionMana
         this.validateBeforeCommit = validateBeforeCommit;
     }
 
+    /**
+     * Configure whether read-only transactions are also created read-only at the key/value store level.
+     *
+     * <p>
+     * If true, a transaction whose {@link TransactionDefinition} is read-only is created via
+     * {@link JSimpleDB#createTransaction(boolean, ValidationMode, boolean) JSimpleDB.createTransaction(..., true)},
+     * which allows the key/value store to avoid tracking or locking the keys read. Depending on the key/value store,
+     * such transactions may only have "read committed" isolation; see
+     * {@link org.jsimpledb.kv.ReadOnlyCapableKVDatabase#createTransaction(boolean) ReadOnlyCapableKVDatabase.createTransaction()}.
+     * If false, read-only transactions are normal key/value transactions that merely reject writes.
+     * </p>
+     *
+     * <p>
+     * Default false.
+     * </p>
+     *
+     * @param readOnlyKVTransactions whether to create read-only key/value transactions
+     */
+    public void setReadOnlyKVTransactions(boolean readOnlyKVTransactions) {
+        this.readOnlyKVTransactions = readOnlyKVTransactions;
+    }
+
     @Override
     public Object getResourceFactory() {
         return this.jdb;
@@ -155,7 +178,8 @@ public class JSimpleDBTransactionManager extends AbstractPlatformTransactionMana
         // Create JSimpleDB transaction
         final JTransaction jtx;
         try {
-            jtx = this.jdb.createTransaction(this.allowNewSchema, this.validationMode);
+            jtx = this.jdb.createTransaction(this.allowNewSchema, this.validationMode,
+              this.readOnlyKVTransactions && txDef.isReadOnly());
         } catch (DatabaseException e) {
             throw new CannotCreateTransactionException("error creating new JSimpleDB transaction", e);
         }
@@ -44,6 +44,9 @@ import org.springframework.web.filter.OncePerRequestFilter;
  *      (see {@link JSimpleDB#createTransaction JSimpleDB.createTransaction()}). Default false.</li>
  *  <li>{@code "validationMode"} - validation mode for the transaction
  *      (see {@link JSimpleDB#createTransaction JSimpleDB.createTransaction()}). Default {@link ValidationMode#AUTOMATIC}.</li>
+ *  <li>{@code "readOnlyKVTransactions"} - whether read-only transactions are also read-only at the key/value store level
+ *      (see {@link JSimpleDBTransactionManager#setReadOnlyKVTransactions
+ *      JSimpleDBTransactionManager.setReadOnlyKVTransactions()}). Default false.</li>
  * </ul>
  */
 public class OpenTransactionInViewFilter extends OncePerRequestFilter {
@@ -79,10 +82,17 @@ public class OpenTransactionInViewFilter extends OncePerRequestFilter {
      */
     public static final String JSIMPLEDB_VALIDATION_MODE_PARAMETER = "validationMode";
 
+    /**
+     * Filter init parameter that specifies whether read-only transactions are also read-only at the key/value store level.
+     * Default false.
+     */
+    public static final String JSIMPLEDB_READ_ONLY_KV_TRANSACTIONS_PARAMETER = "readOnlyKVTransactions";
+
     private String jsimpledbBeanName = DEFAULT_JSIMPLEDB_BEAN_NAME;
     private TransactionAttribute transactionAttributes;
     private boolean allowNewSchema;
     private ValidationMode validationMode = ValidationMode.AUTOMATIC;
+    private boolean readOnlyKVTransactions;
 
     private volatile JSimpleDB jdb;
 
@@ -169,6 +179,27 @@ public class OpenTransactionInViewFilter extends OncePerRequestFilter {
         this.validationMode = validationMode;
     }
 
+    /**
+     * Get whether read-only transactions are also read-only at the key/value store level.
+     *
+     * @return whether to create read-only key/value transactions
+     * @see #JSIMPLEDB_READ_ONLY_KV_TRANSACTIONS_PARAMETER
+     */
+    public boolean isReadOnlyKVTransactions() {
+        return this.readOnlyKVTransactions;
+    }
+
+    /**
+     * Set whether read-only transactions are also read-only at the key/value store level.
+     *
+     * @param readOnlyKVTransactions whether to create read-only key/value transactions
+     * @see #JSIMPLEDB_READ_ONLY_KV_TRANSACTIONS_PARAMETER
+     * @see JSimpleDBTransactionManager#setReadOnlyKVTransactions JSimpleDBTransactionManager.setReadOnlyKVTransactions()
+     */
+    public void setReadOnlyKVTransactions(boolean readOnlyKVTransactions) {
+        this.readOnlyKVTransactions = readOnlyKVTransactions;
+    }
+
     /**
      * Look up the {@link JSimpleDB} that this filter should use.
      *
@@ -201,7 +232,8 @@ public class OpenTransactionInViewFilter extends OncePerRequestFilter {
             attr = new DefaultTransactionAttribute();
 
         // Create transaction
-        final JTransaction jtx = this.lookupJSimpleDB().createTransaction(this.allowNewSchema, this.validationMode);
+        final JTransaction jtx = this.lookupJSimpleDB().createTransaction(this.allowNewSchema,
+          this.validationMode, this.readOnlyKVTransactions && attr.isReadOnly());
 
         // Configure it
         if (attr.isReadOnly())
@@ -0,0 +1,157 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.spring;
+
+import java.util.concurrent.Callable;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jsimpledb.JTransaction;
+import org.jsimpledb.RetryExecutor;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * AOP {@link MethodInterceptor} that re-invokes a method, typically a
+ * {@link org.springframework.transaction.annotation.Transactional &#64;Transactional} one, in a new transaction
+ * when its transaction fails with a {@link org.jsimpledb.kv.RetryTransactionException}.
+ *
+ * <p>
+ * Retries are governed by the configured {@link RetryExecutor}. The retry exception is recognized whether thrown
+ * directly or wrapped by {@link JSimpleDBTransactionManager} or {@link JSimpleDBExceptionTranslator}.
+ * Any other exception or error, checked or not, is rethrown to the caller unchanged.
+ * </p>
+ *
+ * <p>
+ * This interceptor does not look for {@link org.springframework.transaction.annotation.Transactional &#64;Transactional}
+ * itself: every method it is applied to is retried, so the pointcut alone decides which methods are retried, and
+ * each of those methods must be safe to invoke more than once.
+ * </p>
+ *
+ * <p>
+ * For each retry to get a fresh transaction, this interceptor must be applied outside of (i.e., with a higher precedence
+ * than) Spring's transaction interceptor. If a transaction is already active when the method is invoked, the method is
+ * participating in an outer transaction and is invoked just once; retrying is left to the outermost boundary.
+ * For example:
+ * <pre>
+ *     &lt;bean id="retryExecutor" class="org.jsimpledb.RetryExecutor" p:maxAttempts="10"/&gt;
+ *     &lt;bean id="retryInterceptor" class="org.jsimpledb.spring.RetryTransactionInterceptor"
+ *       p:retryExecutor-ref="retryExecutor"/&gt;
+ *
+ *     &lt;aop:config&gt;
+ *         &lt;aop:advisor advice-ref="retryInterceptor" order="0" pointcut="
+ *           &#64;annotation(org.springframework.transaction.annotation.Transactional)
+ *           or &#64;within(org.springframework.transaction.annotation.Transactional)"/&gt;
+ *     &lt;/aop:config&gt;
+ *
+ *     &lt;tx:annotation-driven transaction-manager="transactionManager" order="100"/&gt;
+ * </pre>
+ * </p>
+ *
+ * @see org.jsimpledb.spring
+ */
+public class RetryTransactionInterceptor implements MethodInterceptor, Ordered {
+
+    private RetryExecutor retryExecutor = new RetryExecutor();
+    private int order = Ordered.HIGHEST_PRECEDENCE;
+
+    /**
+     * Get the {@link RetryExecutor} that governs retries.
+     *
+     * @return retry executor
+     */
+    public RetryExecutor getRetryExecutor() {
+        return this.retryExecutor;
+    }
+
+    /**
+     * Configure the {@link RetryExecutor} that governs retries.
+     *
+     * <p>
+     * By default, a {@link RetryExecutor} with default settings is used.
+     * </p>
+     *
+     * @param retryExecutor retry executor
+     * @throws IllegalArgumentException if {@code retryExecutor} is null
+     */
+    public void setRetryExecutor(RetryExecutor retryExecutor) {
+        if (retryExecutor == null)
+            throw new IllegalArgumentException("null retryExecutor");
+        this.retryExecutor = retryExecutor;
+    }
+
+    @Override
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Configure the order of this interceptor relative to other advice.
+     *
+     * <p>
+     * Default is {@link Ordered#HIGHEST_PRECEDENCE}.
+     * </p>
+     *
+     * @param order advice order
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+
+        // Only retry at the outermost transaction boundary, and only when the invocation can be repeated
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+          || this.hasCurrentJTransaction()
+          || !(invocation instanceof ProxyMethodInvocation))
+            return invocation.proceed();
+
+        // Re-invoke the remainder of the interceptor chain, including the transaction interceptor, on each attempt
+        final ProxyMethodInvocation proxyInvocation = (ProxyMethodInvocation)invocation;
+        try {
+            return this.retryExecutor.call(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    try {
+                        return proxyInvocation.invocableClone().proceed();
+                    } catch (Exception e) {
+                        throw e;
+                    } catch (Error e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        throw new ThrowableWrapper(t);
+                    }
+                }
+            });
+        } catch (ThrowableWrapper e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean hasCurrentJTransaction() {
+        try {
+            JTransaction.getCurrent();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+// ThrowableWrapper
+
+    // Carries a throwable that is neither an Exception nor an Error through Callable.call()
+    @SuppressWarnings("serial")
+    private static class ThrowableWrapper extends Exception {
+
+        ThrowableWrapper(Throwable t) {
+            super(t);
+        }
+    }
+}
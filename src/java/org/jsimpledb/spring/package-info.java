@@ -23,6 +23,9 @@
  *      {@linkplain org.jsimpledb.spring.JSimpleDBExceptionTranslator implementation} suitable for use with JSimpleDB</li>
  *  <li>{@link org.jsimpledb.spring.OpenTransactionInViewFilter}, which allows {@link org.jsimpledb.JSimpleDB}
  *      transactions to span an entire web request.</li>
+ *  <li>{@link org.jsimpledb.spring.RetryTransactionInterceptor}, which re-invokes the methods it advises
+ *      (typically {@link org.springframework.transaction.annotation.Transactional &#64;Transactional} ones) whose
+ *      transactions fail with a {@link org.jsimpledb.kv.RetryTransactionException}.</li>
  * </ul>
  *
  * <p><b>JSimpleDB XML Tags</b></p>
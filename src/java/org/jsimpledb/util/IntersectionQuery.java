@@ -0,0 +1,232 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * Plans and executes a query that intersects two or more {@link NavigableSet}s, typically the object sets
+ * matching several predicates obtained from different indexes (e.g., from {@code CoreIndex.asMap().get(value)}).
+ *
+ * <p>
+ * The cost of iterating an intersection is dominated by the size of the set that drives the iteration,
+ * i.e., the set whose elements become the candidates which are then looked up in the other sets
+ * (see {@link NavigableSets#intersection NavigableSets.intersection()}). Choosing the wrong driving set can
+ * make a query orders of magnitude slower. This class chooses the order automatically: before the query executes,
+ * each set's size is estimated by iterating up to {@linkplain #setSampleLimit sample limit} elements from all
+ * of the sets in lock step, which is cheap and stops as soon as a definitive ordering is known. The set with the
+ * smallest estimated size then drives the iteration, and the remaining sets are probed in order of increasing size.
+ * The chosen plan is available via {@link #explain}.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * <blockquote><pre>
+ * final IntersectionQuery&lt;ObjId&gt; query = new IntersectionQuery&lt;ObjId&gt;()
+ *   .add("status=" + status, statusIndex.asMap().get(status))
+ *   .add("owner=" + owner, ownerIndex.asMap().get(owner))
+ *   .add("date in [" + min + ", " + max + ")", NavigableSets.union(dateIndex.asMap().subMap(min, max).values()));
+ * final NavigableSet&lt;ObjId&gt; result = query.getResult();
+ * log.debug("query plan: " + query.explain());
+ * </pre></blockquote>
+ * </p>
+ *
+ * <p>
+ * The plan is computed once, the first time it is needed; adding another set invalidates it.
+ * Instances are not thread safe.
+ * </p>
+ *
+ * @param <E> element type
+ */
+public class IntersectionQuery<E> {
+
+    /**
+     * Default {@linkplain #setSampleLimit sample limit}.
+     */
+    public static final int DEFAULT_SAMPLE_LIMIT = 100;
+
+    private final ArrayList<Term<E>> terms = new ArrayList<>();
+
+    private int sampleLimit = DEFAULT_SAMPLE_LIMIT;
+    private List<Term<E>> plan;
+
+    /**
+     * Add a set to be intersected.
+     *
+     * @param description description of {@code set} for {@link #explain}, e.g., the predicate it represents
+     * @param set set of elements
+     * @return this instance
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public IntersectionQuery<E> add(String description, NavigableSet<E> set) {
+        if (description == null)
+            throw new IllegalArgumentException("null description");
+        if (set == null)
+            throw new IllegalArgumentException("null set");
+        this.terms.add(new Term<E>(description, set, this.terms.size()));
+        this.plan = null;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of elements that will be read from each set when estimating set sizes.
+     *
+     * @return sample limit
+     */
+    public int getSampleLimit() {
+        return this.sampleLimit;
+    }
+
+    /**
+     * Set the maximum number of elements that will be read from each set when estimating set sizes.
+     * Sets having at least this many elements are considered equally large.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_SAMPLE_LIMIT}.
+     * </p>
+     *
+     * @param sampleLimit sample limit
+     * @return this instance
+     * @throws IllegalArgumentException if {@code sampleLimit} is not positive
+     */
+    public IntersectionQuery<E> setSampleLimit(int sampleLimit) {
+        if (sampleLimit <= 0)
+            throw new IllegalArgumentException("sampleLimit <= 0");
+        this.sampleLimit = sampleLimit;
+        this.plan = null;
+        return this;
+    }
+
+    /**
+     * Get the result of this query, i.e., the intersection of all of the sets, ordered for efficient iteration.
+     *
+     * @return read-only view of the intersection of all sets added to this instance
+     * @throws IllegalStateException if no sets have been added
+     * @throws IllegalArgumentException if the sets do not have equal {@link java.util.Comparator}s
+     */
+    public NavigableSet<E> getResult() {
+        final List<Term<E>> currentPlan = this.getPlan();
+        if (currentPlan.size() == 1)
+            return currentPlan.get(0).set;
+        final ArrayList<NavigableSet<E>> sets = new ArrayList<>(currentPlan.size());
+        for (Term<E> term : currentPlan)
+            sets.add(term.set);
+        return NavigableSets.intersection(sets);
+    }
+
+    /**
+     * Describe the chosen query plan.
+     *
+     * <p>
+     * The returned string lists the set that drives the iteration first, followed by the sets probed
+     * for each candidate element, in order, each with its estimated size.
+     * </p>
+     *
+     * @return description of the query plan
+     * @throws IllegalStateException if no sets have been added
+     */
+    public String explain() {
+        final StringBuilder buf = new StringBuilder();
+        for (Term<E> term : this.getPlan()) {
+            buf.append(buf.length() == 0 ? "drive " : ", then probe ").append('[').append(term.description)
+              .append("] (").append(term.estimateIsExact ? "size " : "size >= ").append(term.estimate).append(')');
+        }
+        return buf.toString();
+    }
+
+// Internal methods
+
+    private List<Term<E>> getPlan() {
+        if (this.terms.isEmpty())
+            throw new IllegalStateException("no sets have been added");
+        if (this.plan == null) {
+            this.estimateSizes();
+            final ArrayList<Term<E>> newPlan = new ArrayList<>(this.terms);
+            Collections.sort(newPlan);
+            this.plan = newPlan;
+        }
+        return this.plan;
+    }
+
+    // Iterate all sets in lock step until all but one are exhausted or the sample limit is reached
+    private void estimateSizes() {
+        for (Term<E> term : this.terms) {
+            term.estimate = 0;
+            term.estimateIsExact = false;
+        }
+        if (this.terms.size() < 2)
+            return;
+        final ArrayList<Iterator<E>> iterators = new ArrayList<>(this.terms.size());
+        try {
+            for (Term<E> term : this.terms)
+                iterators.add(term.set.iterator());
+            int numActive = this.terms.size();
+            for (int count = 0; count < this.sampleLimit && numActive > 1; count++) {
+                for (int i = 0; i < this.terms.size(); i++) {
+                    final Term<E> term = this.terms.get(i);
+                    if (term.estimateIsExact)
+                        continue;
+                    final Iterator<E> iterator = iterators.get(i);
+                    if (!iterator.hasNext()) {
+                        term.estimateIsExact = true;
+                        numActive--;
+                        continue;
+                    }
+                    iterator.next();
+                    term.estimate++;
+                }
+            }
+        } finally {
+            for (Iterator<E> iterator : iterators)
+                IntersectionQuery.closeIfPossible(iterator);
+        }
+    }
+
+    // Release any resources held by a sampling iterator, e.g., an underlying key/value store cursor
+    private static void closeIfPossible(Iterator<?> iterator) {
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable)iterator).close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+
+// Term
+
+    private static final class Term<E> implements Comparable<Term<E>> {
+
+        final String description;
+        final NavigableSet<E> set;
+        final int index;
+
+        int estimate;
+        boolean estimateIsExact;
+
+        Term(String description, NavigableSet<E> set, int index) {
+            this.description = description;
+            this.set = set;
+            this.index = index;
+        }
+
+        // Order by estimated size, then by order added
+        @Override
+        public int compareTo(Term<E> that) {
+            if (this.estimate != that.estimate)
+                return this.estimate < that.estimate ? -1 : 1;
+            if (this.estimateIsExact != that.estimateIsExact)
+                return this.estimateIsExact ? -1 : 1;
+            return this.index < that.index ? -1 : this.index > that.index ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.jsimpledb.annotation.JCompositeIndex;
+import org.jsimpledb.annotation.JField;
+import org.jsimpledb.annotation.JSimpleClass;
+import org.jsimpledb.core.Database;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.tuple.Tuple;
+import org.jsimpledb.tuple.Tuple3;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompositeIndexIncludesTest extends TestSupport {
+
+    @Test
+    public void testIncludes() throws Exception {
+
+        final JSimpleDB jdb = new JSimpleDB(new Database(new SimpleKVDatabase()), 1, null, Arrays.<Class<?>>asList(Person.class));
+
+        JTransaction jtx = jdb.createTransaction(true, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+
+            final Person fred = jtx.create(Person.class);
+            fred.setName("Fred");
+            fred.setAge(30);
+            final Person joe = jtx.create(Person.class);
+            joe.setName("Joe");
+            joe.setAge(40);
+            joe.setScore(2.5);
+            joe.setFriend(fred);
+
+            // Keys are converted to Java values and objects, values are the included fields
+            final NavigableMap<Tuple, List<Object>> map = jtx.queryCompositeIndexIncludes(Person.class, "nameAge");
+            Assert.assertEquals(map.size(), 2);
+            Assert.assertEquals(map.firstKey(), new Tuple3<String, Integer, Person>("Fred", 30, fred));
+            Assert.assertEquals(map.get(new Tuple3<String, Integer, Person>("Fred", 30, fred)), Arrays.<Object>asList(0.0, null));
+            Assert.assertEquals(map.get(new Tuple3<String, Integer, Person>("Joe", 40, joe)), Arrays.<Object>asList(2.5, fred));
+            Assert.assertNull(map.get(new Tuple3<String, Integer, Person>("Joe", 41, joe)));
+
+            // Changing an included field updates the entry
+            fred.setScore(-1.0);
+            fred.setFriend(joe);
+            final Map.Entry<Tuple, List<Object>> entry = map.firstEntry();
+            Assert.assertEquals(entry.getKey(), new Tuple3<String, Integer, Person>("Fred", 30, fred));
+            Assert.assertEquals(entry.getValue(), Arrays.<Object>asList(-1.0, joe));
+            Assert.assertSame(entry.getValue().get(1), joe);
+
+            // Changing an indexed field moves the entry
+            joe.setAge(41);
+            Assert.assertEquals(map.lastEntry().getKey(), new Tuple3<String, Integer, Person>("Joe", 41, joe));
+            Assert.assertEquals(map.lastEntry().getValue(), Arrays.<Object>asList(2.5, fred));
+
+            // Unknown index
+            try {
+                jtx.queryCompositeIndexIncludes(Person.class, "foobar");
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+    }
+
+// Model Classes
+
+    @JSimpleClass(storageId = 100, compositeIndexes = {
+      @JCompositeIndex(storageId = 110, name = "nameAge", fields = { "name", "age" }, include = { "score", "friend" })
+    })
+    public abstract static class Person implements JObject {
+
+        @JField(storageId = 101)
+        public abstract String getName();
+        public abstract void setName(String name);
+
+        @JField(storageId = 102)
+        public abstract int getAge();
+        public abstract void setAge(int age);
+
+        @JField(storageId = 103)
+        public abstract double getScore();
+        public abstract void setScore(double score);
+
+        @JField(storageId = 104)
+        public abstract Person getFriend();
+        public abstract void setFriend(Person friend);
+    }
+}
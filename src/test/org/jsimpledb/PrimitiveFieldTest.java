@@ -0,0 +1,160 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jsimpledb.annotation.JField;
+import org.jsimpledb.annotation.JSimpleClass;
+import org.jsimpledb.core.Transaction;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PrimitiveFieldTest extends TestSupport {
+
+    @Test
+    public void testPrimitiveFields() {
+
+        final JSimpleDB jdb = BasicTest.getJSimpleDB(Foo.class);
+        final JTransaction jtx = jdb.createTransaction(true, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+
+            // Check default values
+            final Foo foo = jtx.create(Foo.class);
+            Assert.assertEquals(foo.getInt(), 0);
+            Assert.assertEquals(foo.getLong(), 0L);
+            Assert.assertEquals(foo.getDouble(), 0.0);
+            Assert.assertEquals(foo.getBoolean(), false);
+            Assert.assertNull(foo.getInteger());
+
+            // Check round trip through typed accessors
+            foo.setInt(-123);
+            foo.setLong(Long.MAX_VALUE);
+            foo.setDouble(-1.5e300);
+            foo.setBoolean(true);
+            foo.setInteger(456);
+            Assert.assertEquals(foo.getInt(), -123);
+            Assert.assertEquals(foo.getLong(), Long.MAX_VALUE);
+            Assert.assertEquals(foo.getDouble(), -1.5e300);
+            Assert.assertEquals(foo.getBoolean(), true);
+            Assert.assertEquals(foo.getInteger(), (Integer)456);
+
+            // Typed reads agree with generic reads
+            final Transaction tx = jtx.getTransaction();
+            Assert.assertEquals(tx.readSimpleField(foo.getObjId(), 1, false), -123);
+            Assert.assertEquals(tx.readIntField(foo.getObjId(), 1, false), -123);
+            Assert.assertEquals(tx.readLongField(foo.getObjId(), 2, false), Long.MAX_VALUE);
+            Assert.assertEquals(tx.readDoubleField(foo.getObjId(), 3, false), -1.5e300);
+            Assert.assertEquals(tx.readBooleanField(foo.getObjId(), 4, false), true);
+
+            // Typed reads require the matching type
+            try {
+                tx.readIntField(foo.getObjId(), 2, false);
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+            try {
+                tx.readIntField(foo.getObjId(), 5, false);
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+
+            // Snapshot objects use their own transaction
+            final Foo snapshot = (Foo)foo.copyOut();
+            snapshot.setInt(789);
+            Assert.assertEquals(snapshot.getInt(), 789);
+            Assert.assertEquals(snapshot.getLong(), Long.MAX_VALUE);
+            Assert.assertEquals(foo.getInt(), -123);
+
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+    }
+
+    @Test
+    public void testGeneratedAccessors() {
+
+        // Find the JTransaction methods invoked by each generated method
+        final JSimpleDB jdb = BasicTest.getJSimpleDB(Foo.class);
+        final byte[] bytecode = jdb.getJClass(Foo.class).getClassGenerator().generateBytecode();
+        final String jtxName = Type.getInternalName(JTransaction.class);
+        final HashMap<String, List<String>> calls = new HashMap<>();
+        new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                final ArrayList<String> list = new ArrayList<>();
+                calls.put(name, list);
+                return new MethodVisitor(Opcodes.ASM5) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        if (owner.equals(jtxName))
+                            list.add(name);
+                    }
+                };
+            }
+        }, 0);
+
+        // Primitive accessors bypass the converting methods
+        this.checkCalls(calls, "getInt", "readIntField", "readSimpleField");
+        this.checkCalls(calls, "setInt", "writeIntField", "writeSimpleField");
+        this.checkCalls(calls, "getLong", "readLongField", "readSimpleField");
+        this.checkCalls(calls, "setLong", "writeLongField", "writeSimpleField");
+        this.checkCalls(calls, "getDouble", "readDoubleField", "readSimpleField");
+        this.checkCalls(calls, "setDouble", "writeDoubleField", "writeSimpleField");
+        this.checkCalls(calls, "getBoolean", "readBooleanField", "readSimpleField");
+        this.checkCalls(calls, "setBoolean", "writeBooleanField", "writeSimpleField");
+
+        // Wrapper type accessors still use them
+        this.checkCalls(calls, "getInteger", "readSimpleField", "readIntField");
+        this.checkCalls(calls, "setInteger", "writeSimpleField", "writeIntField");
+    }
+
+    private void checkCalls(HashMap<String, List<String>> calls, String method, String expected, String unexpected) {
+        final List<String> list = calls.get(method);
+        Assert.assertNotNull(list, "no generated method " + method);
+        Assert.assertTrue(list.contains(expected), method + " does not invoke " + expected + ": " + list);
+        Assert.assertFalse(list.contains(unexpected), method + " invokes " + unexpected + ": " + list);
+    }
+
+// Model Classes
+
+    @JSimpleClass(storageId = 100)
+    public abstract static class Foo implements JObject {
+
+        @JField(storageId = 1)
+        public abstract int getInt();
+        public abstract void setInt(int value);
+
+        @JField(storageId = 2)
+        public abstract long getLong();
+        public abstract void setLong(long value);
+
+        @JField(storageId = 3)
+        public abstract double getDouble();
+        public abstract void setDouble(double value);
+
+        @JField(storageId = 4)
+        public abstract boolean getBoolean();
+        public abstract void setBoolean(boolean value);
+
+        @JField(storageId = 5)
+        public abstract Integer getInteger();
+        public abstract void setInteger(Integer value);
+    }
+}
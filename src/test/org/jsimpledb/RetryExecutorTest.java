@@ -0,0 +1,127 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb;
+
+import java.util.concurrent.Callable;
+
+import org.jsimpledb.annotation.JField;
+import org.jsimpledb.annotation.JSimpleClass;
+import org.jsimpledb.kv.KVTransaction;
+import org.jsimpledb.kv.RetryTransactionException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RetryExecutorTest extends TestSupport {
+
+    @Test
+    public void testRetryExecutor() throws Exception {
+
+        final JSimpleDB jdb = BasicTest.getJSimpleDB(Person.class);
+        final RetryExecutor executor = new RetryExecutor();
+        executor.setInitialDelay(1);
+        executor.setMaxAttempts(3);
+
+        // Failed attempts are rolled back and retried
+        final int[] count = new int[1];
+        final Person person = executor.transact(jdb, true, ValidationMode.AUTOMATIC, new Callable<Person>() {
+            @Override
+            public Person call() {
+                final JTransaction jtx = JTransaction.getCurrent();
+                final Person p = jtx.create(Person.class);
+                p.setValue(++count[0]);
+                if (count[0] < 3)
+                    throw new RetryTransactionException(jtx.getTransaction().getKVTransaction());
+                return p;
+            }
+        });
+        Assert.assertEquals(count[0], 3);
+        Assert.assertEquals(executor.getInvocations(), 1);
+        Assert.assertEquals(executor.getAttempts(), 3);
+        Assert.assertEquals(executor.getRetries(), 2);
+        Assert.assertEquals(executor.getFailures(), 0);
+        Assert.assertEquals((int)executor.transact(jdb, false, ValidationMode.AUTOMATIC, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Assert.assertEquals(JTransaction.getCurrent().getAll(Person.class).size(), 1);
+                return person.getValue();
+            }
+        }), 3);
+
+        // Give up after max attempts
+        final KVTransaction kvt = jdb.getDatabase().getKVDatabase().createTransaction();
+        kvt.rollback();
+        executor.resetStatistics();
+        try {
+            executor.call(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    throw new RuntimeException(new RetryTransactionException(kvt));
+                }
+            });
+            assert false;
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof RetryTransactionException);
+        }
+        Assert.assertEquals(executor.getAttempts(), 3);
+        Assert.assertEquals(executor.getFailures(), 1);
+
+        // Other exceptions are not retried
+        executor.resetStatistics();
+        try {
+            executor.call(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    throw new IllegalStateException();
+                }
+            });
+            assert false;
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(executor.getAttempts(), 1);
+        Assert.assertEquals(executor.getRetries(), 0);
+
+        // Sessions retry new transactions
+        executor.resetStatistics();
+        final Session session = new Session(jdb);
+        session.setRetryExecutor(executor);
+        count[0] = 0;
+        Assert.assertTrue(session.perform(new Session.Action() {
+            @Override
+            public void run(Session session) {
+                if (++count[0] < 2)
+                    throw new RetryTransactionException(session.getTransaction().getKVTransaction());
+            }
+        }));
+        Assert.assertEquals(count[0], 2);
+        Assert.assertEquals(executor.getRetries(), 1);
+    }
+
+    @Test
+    public void testDelay() {
+        final RetryExecutor executor = new RetryExecutor();
+        executor.setInitialDelay(10);
+        executor.setMaxDelay(100);
+        executor.setJitter(0.5);
+        for (int i = 0; i < 100; i++) {
+            final long delay = executor.calculateDelay(3);
+            Assert.assertTrue(delay >= 20 && delay <= 40, "bad delay " + delay);
+            Assert.assertTrue(executor.calculateDelay(20) <= 100);
+        }
+    }
+
+// Model Classes
+
+    @JSimpleClass(storageId = 100)
+    public abstract static class Person {
+
+        @JField(storageId = 101)
+        public abstract int getValue();
+        public abstract void setValue(int value);
+    }
+}
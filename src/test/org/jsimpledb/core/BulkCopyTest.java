@@ -0,0 +1,119 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.KVStore;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.jsimpledb.util.ByteUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify that a bulk copy produces exactly the same objects and index entries as the original
+public class BulkCopyTest extends TestSupport {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkCopy() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"4\"/>\n"
+          + "    <SetField name=\"set\" storageId=\"5\">\n"
+          + "      <ReferenceField storageId=\"6\"/>\n"
+          + "    </SetField>\n"
+          + "    <MapField name=\"map\" storageId=\"7\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"8\" indexed=\"true\"/>\n"
+          + "      <SimpleField type=\"java.lang.String\" storageId=\"9\" indexed=\"true\"/>\n"
+          + "    </MapField>\n"
+          + "    <CounterField name=\"counter\" storageId=\"10\"/>\n"
+          + "    <CompositeIndex storageId=\"20\" name=\"is\">\n"
+          + "      <IndexedField storageId=\"2\"/>\n"
+          + "      <IndexedField storageId=\"3\"/>\n"
+          + "    </CompositeIndex>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Populate objects, leaving some fields with default values
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final List<ObjId> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            ids.add(tx.create(1));
+        for (int i = 0; i < ids.size(); i++) {
+            final ObjId id = ids.get(i);
+            if (i % 3 != 0)
+                tx.writeSimpleField(id, 2, i % 7, true);
+            if (i % 2 != 0)
+                tx.writeSimpleField(id, 3, "s" + (i % 5), true);
+            tx.writeSimpleField(id, 4, ids.get((i * 7) % ids.size()), true);
+            ((NavigableSet<ObjId>)tx.readSetField(id, 5, true)).add(ids.get((i + 1) % ids.size()));
+            ((NavigableSet<ObjId>)tx.readSetField(id, 5, true)).add(ids.get((i + 2) % ids.size()));
+            ((NavigableMap<Integer, String>)tx.readMapField(id, 7, true)).put(i, "v" + (i % 4));
+            tx.adjustCounterField(id, 10, i, true);
+        }
+
+        // Bulk copy into an empty snapshot transaction
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        Assert.assertEquals(stx.copy(ids, stx, true), 0);
+        Assert.assertEquals(tx.copy(ids, stx, true), ids.size());
+        this.checkSameContent(tx, stx);
+
+        // Bulk copy over existing, modified objects
+        for (int i = 0; i < ids.size(); i += 2) {
+            final ObjId id = ids.get(i);
+            stx.writeSimpleField(id, 2, 1000 + i, true);
+            stx.writeSimpleField(id, 3, "changed", true);
+            ((NavigableSet<ObjId>)stx.readSetField(id, 5, true)).clear();
+            ((NavigableMap<Integer, String>)stx.readMapField(id, 7, true)).put(-i, "extra");
+        }
+        Assert.assertEquals(tx.copy(ids, stx, true), 0);
+        this.checkSameContent(tx, stx);
+
+        // Single object copy agrees as well
+        final SnapshotTransaction stx2 = tx.createSnapshotTransaction();
+        for (ObjId id : ids)
+            Assert.assertTrue(tx.copy(id, id, stx2, true));
+        this.checkSameContent(tx, stx2);
+
+        // Index queries see copied objects
+        Assert.assertEquals(stx.queryIndex(2).asMap().get(3), tx.queryIndex(2).asMap().get(3));
+        Assert.assertEquals(stx.queryIndex(6).asMap().get(ids.get(5)), tx.queryIndex(6).asMap().get(ids.get(5)));
+        tx.commit();
+    }
+
+    // Compare all object data, index entries, and version and referrer index entries
+    private void checkSameContent(Transaction tx1, Transaction tx2) {
+        final byte[] minKey = new byte[] { 0x00, (byte)0x80 };
+        Assert.assertEquals(this.readAll(tx1.getKVTransaction(), minKey), this.readAll(tx2.getKVTransaction(), minKey));
+    }
+
+    private List<String> readAll(KVStore kv, byte[] minKey) {
+        final ArrayList<String> list = new ArrayList<>();
+        for (Iterator<KVPair> i = kv.getRange(minKey, null, false); i.hasNext(); ) {
+            final KVPair pair = i.next();
+            list.add(ByteUtil.toString(pair.getKey()) + "=" + ByteUtil.toString(pair.getValue()));
+        }
+        return list;
+    }
+}
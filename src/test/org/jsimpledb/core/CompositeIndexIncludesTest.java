@@ -0,0 +1,110 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.jsimpledb.tuple.Tuple;
+import org.jsimpledb.tuple.Tuple3;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompositeIndexIncludesTest extends TestSupport {
+
+    @Test
+    public void testIncludes() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+          + "    <SimpleField name=\"d\" type=\"double\" storageId=\"4\"/>\n"
+          + "    <SimpleField name=\"z\" type=\"boolean\" storageId=\"5\"/>\n"
+          + "    <CompositeIndex storageId=\"20\" name=\"is\">\n"
+          + "      <IndexedField storageId=\"2\"/>\n"
+          + "      <IndexedField storageId=\"3\"/>\n"
+          + "      <IncludedField storageId=\"4\"/>\n"
+          + "      <IncludedField storageId=\"5\"/>\n"
+          + "    </CompositeIndex>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Check XML round trip
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        schema.toXML(buf, true);
+        Assert.assertEquals(SchemaModel.fromXML(new ByteArrayInputStream(buf.toByteArray())), schema);
+
+        // New objects have default included values
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id1 = tx.create(1);
+        final ObjId id2 = tx.create(1);
+        final NavigableMap<Tuple, List<Object>> map = tx.queryCompositeIndexIncludes(20);
+        Assert.assertEquals(map.get(new Tuple3<Integer, String, ObjId>(0, null, id1)), Arrays.<Object>asList(0.0, false));
+        Assert.assertEquals(map.size(), 2);
+
+        // Changing an included field updates the index entry value
+        tx.writeSimpleField(id1, 4, 1.5, true);
+        tx.writeSimpleField(id1, 5, true, true);
+        Assert.assertEquals(map.get(new Tuple3<Integer, String, ObjId>(0, null, id1)), Arrays.<Object>asList(1.5, true));
+
+        // Changing an indexed field keeps the included values
+        tx.writeSimpleField(id1, 2, 7, true);
+        tx.writeSimpleField(id1, 3, "foo", true);
+        Assert.assertNull(map.get(new Tuple3<Integer, String, ObjId>(0, null, id1)));
+        Assert.assertEquals(map.get(new Tuple3<Integer, String, ObjId>(7, "foo", id1)), Arrays.<Object>asList(1.5, true));
+        Assert.assertEquals(map.lastEntry().getValue(), Arrays.<Object>asList(1.5, true));
+        Assert.assertEquals(map.firstEntry().getValue(), Arrays.<Object>asList(0.0, false));
+
+        // Copies have the same included values
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        tx.writeSimpleField(id2, 4, -3.0, true);
+        Assert.assertEquals(tx.copy(Arrays.asList(id1, id2), stx, true), 2);
+        Assert.assertEquals(stx.queryCompositeIndexIncludes(20), map);
+
+        // Deleted objects disappear
+        tx.delete(id1);
+        Assert.assertEquals(map.size(), 1);
+        Assert.assertEquals(map.firstEntry().getValue(), Arrays.<Object>asList(-3.0, false));
+        tx.commit();
+    }
+
+    @Test
+    public void testInvalidIncludes() throws Exception {
+        try {
+            SchemaModel.fromXML(new ByteArrayInputStream((
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+              + "<Schema formatVersion=\"2\">\n"
+              + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+              + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+              + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+              + "    <CompositeIndex storageId=\"20\" name=\"is\">\n"
+              + "      <IndexedField storageId=\"2\"/>\n"
+              + "      <IndexedField storageId=\"3\"/>\n"
+              + "      <IncludedField storageId=\"3\"/>\n"
+              + "    </CompositeIndex>\n"
+              + "  </ObjectType>\n"
+              + "</Schema>\n"
+              ).getBytes("UTF-8")));
+            assert false;
+        } catch (InvalidSchemaException e) {
+            this.log.info("got expected " + e);
+        }
+    }
+}
@@ -19,13 +19,14 @@ import org.jsimpledb.TestSupport;
 import org.jsimpledb.kv.simple.SimpleKVDatabase;
 import org.jsimpledb.schema.SchemaModel;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class FieldMonitorTest extends TestSupport {
 
-    @Test
+    @Test(dataProvider = "batch")
     @SuppressWarnings("unchecked")
-    public void testFieldMonitors() throws Exception {
+    public void testFieldMonitors(boolean batch) throws Exception {
 
         final SimpleKVDatabase kvstore = new SimpleKVDatabase();
         final Database db = new Database(kvstore);
@@ -63,6 +64,7 @@ public class FieldMonitorTest extends TestSupport {
         final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream(schemaXML.getBytes("UTF-8")));
 
         Transaction tx = db.createTransaction(schema, 1, true);
+        tx.setBatchNotifications(batch);
 
         final ObjId id1 = new ObjId("6411111111111111");
         final ObjId id2 = new ObjId("6422222222222222");
@@ -304,6 +306,76 @@ public class FieldMonitorTest extends TestSupport {
         tx.rollback();
     }
 
+    @Test
+    public void testDeferredNotifications() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"100\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"105\"/>\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"109\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        tx.setDeferNotifications(true);
+
+        final ObjId id1 = new ObjId("6411111111111111");
+        final ObjId id2 = new ObjId("6422222222222222");
+        final ObjId id3 = new ObjId("6433333333333333");
+        Assert.assertTrue(tx.create(id1));
+        Assert.assertTrue(tx.create(id2));
+        Assert.assertTrue(tx.create(id3));
+        tx.writeSimpleField(id1, 109, id3, true);
+        tx.writeSimpleField(id2, 109, id3, true);
+        tx.writeSimpleField(id3, 109, id1, true);
+
+        final TestListener refListener = new TestListener(tx);
+        final TestListener listener = new TestListener(tx);
+        tx.addSimpleFieldChangeListener(105, new int[] { 109 }, null, refListener);
+        tx.addSimpleFieldChangeListener(105, new int[0], null, listener);
+
+        // Nothing is delivered until flushed
+        tx.writeSimpleField(id1, 105, 1001, true);
+        tx.writeSimpleField(id3, 105, 3001, true);
+        tx.writeSimpleField(id2, 105, 2001, true);
+        refListener.verify();
+        listener.verify();
+
+        // Each path's notifications are delivered together
+        tx.flushNotifications();
+        refListener.verify(
+          new Notify("SimpleChange", id1, 105, new int[] { 109 }, Arrays.asList(id3), 0, 1001),
+          new Notify("SimpleChange", id3, 105, new int[] { 109 }, Arrays.asList(id1, id2), 0, 3001));
+        listener.verify(
+          new Notify("SimpleChange", id1, 105, new int[0], Arrays.asList(id1), 0, 1001),
+          new Notify("SimpleChange", id3, 105, new int[0], Arrays.asList(id3), 0, 3001),
+          new Notify("SimpleChange", id2, 105, new int[0], Arrays.asList(id2), 0, 2001));
+        tx.flushNotifications();
+        refListener.verify();
+        listener.verify();
+
+        // Referrers are computed at delivery time
+        tx.writeSimpleField(id3, 105, 3002, true);
+        tx.writeSimpleField(id2, 109, null, true);
+        tx.removeSimpleFieldChangeListener(105, new int[0], null, listener);
+        tx.commit();
+        refListener.verify(new Notify("SimpleChange", id3, 105, new int[] { 109 }, Arrays.asList(id1), 3001, 3002));
+        listener.verify();
+    }
+
+    @DataProvider(name = "batch")
+    public Object[][] batch() {
+        return new Object[][] {
+            { false },
+            { true },
+        };
+    }
+
     static class TestListener implements SimpleFieldChangeListener, SetFieldChangeListener,
       ListFieldChangeListener, MapFieldChangeListener {
 
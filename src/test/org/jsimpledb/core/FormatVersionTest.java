@@ -0,0 +1,114 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.jsimpledb.schema.SchemaModel;
+import org.jsimpledb.util.ByteUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify older database format versions are still readable and can be upgraded
+public class FormatVersionTest extends TestSupport {
+
+    private static final byte[] FORMAT_VERSION_KEY = new byte[] {
+      0x00, 0x00, (byte)'J', (byte)'S', (byte)'i', (byte)'m', (byte)'p', (byte)'l', (byte)'e', (byte)'D', (byte)'B'
+    };
+    private static final byte[] SCHEMA_KEY = new byte[] { 0x00, 0x01, 0x01 };
+    private static final byte[] SCHEMA_GENERATION_KEY = new byte[] { 0x00, 0x02 };
+    private static final byte[] REFERRER_INDEX_PREFIX = new byte[] { 0x00, (byte)0x81 };
+
+    @Test
+    public void testUpgrade() throws Exception {
+
+        final NavigableMapKVStore kvstore = new NavigableMapKVStore();
+        final Database db = new Database(new SimpleKVDatabase(kvstore));
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"2\" onDelete=\"EXCEPTION\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Create some objects using the current format version
+        Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id1 = tx.create(1);
+        final ObjId id2 = tx.create(1);
+        tx.writeSimpleField(id2, 2, id1, true);
+        tx.commit();
+        Assert.assertEquals(kvstore.get(FORMAT_VERSION_KEY), new byte[] { 0x05 });
+        Assert.assertEquals(this.countReferrerIndexEntries(kvstore), 1);
+
+        // Already current
+        Assert.assertFalse(db.upgradeFormatVersion());
+
+        // Rewind to format version 1: uncompressed schema XML, no schema generation, no referrer index
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        schema.toXML(xml, false);
+        kvstore.put(FORMAT_VERSION_KEY, new byte[] { 0x01 });
+        kvstore.put(SCHEMA_KEY, xml.toByteArray());
+        kvstore.remove(SCHEMA_GENERATION_KEY);
+        kvstore.removeRange(REFERRER_INDEX_PREFIX, ByteUtil.getKeyAfterPrefix(REFERRER_INDEX_PREFIX));
+
+        // The old format is still readable and writable, without using the referrer index
+        final Database db2 = new Database(new SimpleKVDatabase(kvstore));
+        tx = db2.createTransaction(schema, 1, false);
+        final ObjId id3 = tx.create(1);
+        tx.writeSimpleField(id3, 2, id2, true);
+        this.checkReferenced(tx, id2, id3);
+        tx.commit();
+        Assert.assertEquals(kvstore.get(FORMAT_VERSION_KEY), new byte[] { 0x01 });
+        Assert.assertEquals(this.countReferrerIndexEntries(kvstore), 0);
+
+        // Upgrade
+        Assert.assertTrue(db2.upgradeFormatVersion());
+        Assert.assertFalse(db2.upgradeFormatVersion());
+        Assert.assertEquals(kvstore.get(FORMAT_VERSION_KEY), new byte[] { 0x05 });
+        Assert.assertNotNull(kvstore.get(SCHEMA_GENERATION_KEY));
+        Assert.assertFalse(Arrays.equals(kvstore.get(SCHEMA_KEY), xml.toByteArray()));
+        Assert.assertEquals(this.countReferrerIndexEntries(kvstore), 2);
+
+        // Existing references are found via the new referrer index
+        tx = db2.createTransaction(schema, 1, false);
+        Assert.assertTrue(tx.referrerIndex);
+        this.checkReferenced(tx, id1, id2);
+        this.checkReferenced(tx, id2, id3);
+        Assert.assertTrue(tx.delete(id3));
+        Assert.assertTrue(tx.delete(id2));
+        Assert.assertTrue(tx.delete(id1));
+        tx.commit();
+    }
+
+    private void checkReferenced(Transaction tx, ObjId target, ObjId referrer) {
+        try {
+            tx.delete(target);
+            assert false;
+        } catch (ReferencedObjectException e) {
+            Assert.assertEquals(e.getReferrer(), referrer);
+        }
+    }
+
+    private int countReferrerIndexEntries(NavigableMapKVStore kvstore) {
+        int count = 0;
+        for (Iterator<KVPair> i = kvstore.getRange(REFERRER_INDEX_PREFIX,
+          ByteUtil.getKeyAfterPrefix(REFERRER_INDEX_PREFIX), false); i.hasNext(); i.next())
+            count++;
+        return count;
+    }
+}
@@ -0,0 +1,228 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.TreeMap;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.jsimpledb.tuple.Tuple3;
+import org.jsimpledb.util.ByteUtil;
+import org.jsimpledb.util.ByteWriter;
+import org.jsimpledb.util.UnsignedIntEncoder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Compare a gapped list against an ArrayList under random modifications
+public class GappedListTest extends TestSupport {
+
+    private static final String SCHEMA
+      = "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+      + "    <ListField name=\"list\" storageId=\"2\" gapped=\"true\">\n"
+      + "      <SimpleField type=\"int\" storageId=\"3\" indexed=\"true\"/>\n"
+      + "    </ListField>\n"
+      + "    <ListField name=\"refs\" storageId=\"4\" gapped=\"true\">\n"
+      + "      <ReferenceField storageId=\"5\" onDelete=\"UNREFERENCE\"/>\n"
+      + "    </ListField>\n"
+      + "    <ListField name=\"plain\" storageId=\"6\" gapped=\"true\">\n"
+      + "      <SimpleField type=\"int\" storageId=\"7\"/>\n"
+      + "    </ListField>\n"
+      + "  </ObjectType>\n";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGappedList() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+        final SchemaModel schema = this.buildSchema(SCHEMA);
+
+        // Check XML round trip
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        schema.toXML(buf, true);
+        Assert.assertEquals(SchemaModel.fromXML(new ByteArrayInputStream(buf.toByteArray())), schema);
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id = tx.create(1);
+        final List<Integer> list = (List<Integer>)tx.readListField(id, 2, true);
+        final ArrayList<Integer> expected = new ArrayList<>();
+
+        // Repeated inserts at the same spot force renumbering
+        for (int i = 0; i < 100; i++) {
+            list.add(Math.min(i, 1), i);
+            expected.add(Math.min(i, 1), i);
+        }
+        this.check(tx, id, list, expected);
+
+        // Random modifications
+        for (int i = 0; i < 200; i++) {
+            final int size = expected.size();
+            final int index = this.random.nextInt(size + 1);
+            final int value = this.random.nextInt(50);
+            switch (this.random.nextInt(7)) {
+            case 0:
+                list.add(index, value);
+                expected.add(index, value);
+                break;
+            case 1:
+                list.addAll(index, Arrays.asList(value, value + 1, value + 2));
+                expected.addAll(index, Arrays.asList(value, value + 1, value + 2));
+                break;
+            case 2:
+                if (index < size)
+                    Assert.assertEquals(list.remove(index), expected.remove(index));
+                break;
+            case 3:
+                if (index < size)
+                    Assert.assertEquals(list.set(index, value), expected.set(index, value));
+                break;
+            case 4:
+            {
+                final int max = Math.min(size, index + this.random.nextInt(5));
+                list.subList(index, max).clear();
+                expected.subList(index, max).clear();
+                break;
+            }
+            case 5:
+            {
+                final ListIterator<Integer> li = list.listIterator(index);
+                final ListIterator<Integer> ei = expected.listIterator(index);
+                while (li.hasNext()) {
+                    Assert.assertEquals(li.next(), ei.next());
+                    if (this.random.nextInt(4) == 0) {
+                        li.remove();
+                        ei.remove();
+                    } else if (this.random.nextInt(4) == 0) {
+                        li.add(value);
+                        ei.add(value);
+                    }
+                }
+                while (li.hasPrevious()) {
+                    Assert.assertEquals(li.previous(), ei.previous());
+                    if (this.random.nextInt(8) == 0) {
+                        li.set(value);
+                        ei.set(value);
+                    }
+                }
+                break;
+            }
+            default:
+                if (this.random.nextInt(20) == 0) {
+                    list.clear();
+                    expected.clear();
+                }
+                break;
+            }
+            this.check(tx, id, list, expected);
+        }
+
+        // Copies are equal
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        tx.copy(id, id, stx, true);
+        this.check(stx, id, (List<Integer>)stx.readListField(id, 2, false), expected);
+
+        // Unreference removes elements by position
+        final ObjId target = tx.create(1);
+        final List<ObjId> refs = (List<ObjId>)tx.readListField(id, 4, true);
+        refs.addAll(Arrays.asList(id, target, id, target, target, id));
+        tx.delete(target);
+        Assert.assertEquals(refs, Arrays.asList(id, id, id));
+
+        // Clearing removes all content
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+        final byte[] prefix = Field.buildKey(id, 2);
+        final KVPair pair = tx.kvt.getAtLeast(ByteUtil.getNextKey(prefix));
+        Assert.assertTrue(pair == null || !ByteUtil.isPrefixOf(prefix, pair.getKey()));
+        tx.commit();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCrowdedPositions() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+        final Transaction tx = db.createTransaction(this.buildSchema(SCHEMA), 1, true);
+        final ObjId id = tx.create(1);
+        final List<Integer> list = (List<Integer>)tx.readListField(id, 6, true);
+        final ArrayList<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            expected.add(i);
+        list.addAll(expected);
+
+        // Move the elements to the top of the position space, leaving no gaps anywhere after the first element
+        final byte[] prefix = Field.buildKey(id, 6);
+        final byte[] minKey = ByteUtil.getNextKey(prefix);
+        final byte[] maxKey = ByteUtil.getKeyAfterPrefix(prefix);
+        final ArrayList<byte[]> values = new ArrayList<>();
+        for (Iterator<KVPair> i = tx.kvt.getRange(minKey, maxKey, false); i.hasNext(); )
+            values.add(i.next().getValue());
+        tx.kvt.removeRange(minKey, maxKey);
+        for (int i = 0; i < values.size(); i++) {
+            final ByteWriter writer = new ByteWriter();
+            writer.write(prefix);
+            UnsignedIntEncoder.write(writer, Integer.MAX_VALUE - values.size() + 1 + i);
+            tx.kvt.put(writer.getBytes(), values.get(i));
+        }
+        Assert.assertEquals(list, expected);
+
+        // Inserting in the middle or at the end renumbers
+        list.add(5, 100);
+        expected.add(5, 100);
+        Assert.assertEquals(list, expected);
+        list.add(100);
+        expected.add(100);
+        Assert.assertEquals(list, expected);
+        list.addAll(3, Arrays.asList(200, 201, 202));
+        expected.addAll(3, Arrays.asList(200, 201, 202));
+        Assert.assertEquals(list, expected);
+        tx.commit();
+    }
+
+    @Test
+    public void testGappedIncompatible() throws Exception {
+        final Database db = new Database(new SimpleKVDatabase());
+        db.createTransaction(this.buildSchema(SCHEMA), 1, true).commit();
+        try {
+            db.createTransaction(this.buildSchema(SCHEMA.replaceAll(" gapped=\"true\"", "")), 2, true);
+            assert false : "changing list encoding was supposed to be invalid";
+        } catch (InvalidSchemaException e) {
+            this.log.info("got expected " + e);
+        }
+    }
+
+    private SchemaModel buildSchema(String xml) throws Exception {
+        return SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Schema formatVersion=\"2\">\n" + xml + "</Schema>\n").getBytes("UTF-8")));
+    }
+
+    // Check list contents, and that the list element index entries, ordered by position, give the same list
+    private void check(Transaction tx, ObjId id, List<Integer> list, List<Integer> expected) {
+        Assert.assertEquals(list.size(), expected.size());
+        Assert.assertEquals(list, expected);
+        if (!expected.isEmpty()) {
+            final int index = this.random.nextInt(expected.size());
+            Assert.assertEquals(list.get(index), expected.get(index));
+        }
+        final TreeMap<Integer, Integer> positions = new TreeMap<>();
+        for (Object entry : tx.queryListElementIndex(2).asSet()) {
+            final Tuple3<?, ?, ?> tuple = (Tuple3<?, ?, ?>)entry;
+            if (tuple.getValue2().equals(id))
+                Assert.assertNull(positions.put((Integer)tuple.getValue3(), (Integer)tuple.getValue1()));
+        }
+        Assert.assertEquals(new ArrayList<Integer>(positions.values()), expected);
+    }
+}
@@ -0,0 +1,86 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify that object meta-data is read from the key/value store only once per transaction
+public class ObjInfoCacheTest extends TestSupport {
+
+    @Test
+    public void testObjInfoCache() throws Exception {
+
+        final CountingKVStore kvstore = new CountingKVStore();
+        final Database db = new Database(new SimpleKVDatabase(kvstore, 100, 500));
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id = tx.create(1);
+        tx.writeSimpleField(id, 2, 123, true);
+        tx.commit();
+
+        // Repeated field reads only read the object meta-data once
+        tx = db.createTransaction(schema, 1, true);
+        final int before = kvstore.gets;
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(tx.readSimpleField(id, 2, true), 123);
+        Assert.assertEquals(kvstore.gets - before, 10 + 1);
+
+        // Deleting the object discards its cached meta-data
+        Assert.assertTrue(tx.delete(id));
+        Assert.assertFalse(tx.exists(id));
+        try {
+            tx.readSimpleField(id, 2, true);
+            assert false;
+        } catch (DeletedObjectException e) {
+            // expected
+        }
+
+        // Re-creating the object caches its new meta-data
+        Assert.assertTrue(tx.create(id));
+        Assert.assertEquals(tx.readSimpleField(id, 2, true), 0);
+        tx.commit();
+
+        // Snapshot transaction reset discards all cached meta-data
+        tx = db.createTransaction(schema, 1, true);
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        tx.copy(id, id, stx, true);
+        Assert.assertTrue(stx.exists(id));
+        stx.reset();
+        Assert.assertFalse(stx.exists(id));
+        tx.commit();
+    }
+
+// CountingKVStore
+
+    private static class CountingKVStore extends NavigableMapKVStore {
+
+        int gets;
+
+        @Override
+        public byte[] get(byte[] key) {
+            this.gets++;
+            return super.get(key);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVDatabase;
+import org.jsimpledb.kv.KVTransaction;
+import org.jsimpledb.kv.mvcc.MemoryAtomicKVStore;
+import org.jsimpledb.kv.mvcc.SnapshotKVDatabase;
+import org.jsimpledb.kv.mvcc.SnapshotKVTransaction;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ReadOnlyTest extends TestSupport {
+
+    @Test
+    public void testReadOnly() throws Exception {
+
+        final Database db = new Database(new SnapshotKVDatabase(new MemoryAtomicKVStore()));
+
+        final SchemaModel schema1 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final SchemaModel schema2 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "    <SimpleField name=\"j\" type=\"int\" storageId=\"3\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Initializing the database requires a read-write key/value transaction
+        Transaction tx = db.createTransaction(schema1, 1, true, true);
+        Assert.assertTrue(tx.isReadOnly());
+        Assert.assertFalse(((SnapshotKVTransaction)tx.getKVTransaction()).isReadOnly());
+        tx.setReadOnly(false);
+        final ObjId id = tx.create(1);
+        tx.commit();
+
+        // So does recording a new schema version
+        tx = db.createTransaction(schema2, 2, true, true);
+        Assert.assertTrue(tx.isReadOnly());
+        Assert.assertFalse(((SnapshotKVTransaction)tx.getKVTransaction()).isReadOnly());
+        tx.commit();
+
+        // Otherwise, the key/value transaction is read-only and the transaction can't be made read-write
+        tx = db.createTransaction(schema1, 1, false, true);
+        Assert.assertTrue(tx.isReadOnly());
+        Assert.assertTrue(((SnapshotKVTransaction)tx.getKVTransaction()).isReadOnly());
+        Assert.assertTrue(tx.exists(id));
+        tx.setReadOnly(true);
+        try {
+            tx.setReadOnly(false);
+            assert false;
+        } catch (IllegalStateException e) {
+            this.log.info("got expected " + e);
+        }
+        Assert.assertTrue(tx.isReadOnly());
+        try {
+            tx.create(1);
+            assert false;
+        } catch (ReadOnlyTransactionException e) {
+            this.log.info("got expected " + e);
+        }
+        tx.commit();
+
+        // Both schema versions were recorded
+        tx = db.createTransaction(null, 0, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet().size(), 2);
+        tx.rollback();
+    }
+
+    // A key/value database that doesn't implement ReadOnlyCapableKVDatabase gets normal read-only transactions
+    @Test
+    public void testNotReadOnlyCapable() throws Exception {
+
+        final SnapshotKVDatabase kvdb = new SnapshotKVDatabase(new MemoryAtomicKVStore());
+        final Database db = new Database(new KVDatabase() {
+            @Override
+            public KVTransaction createTransaction() {
+                return kvdb.createTransaction();
+            }
+        });
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\"/>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id = tx.create(1);
+        tx.commit();
+
+        tx = db.createTransaction(schema, 1, false, true);
+        Assert.assertTrue(tx.isReadOnly());
+        Assert.assertFalse(((SnapshotKVTransaction)tx.getKVTransaction()).isReadOnly());
+        Assert.assertTrue(tx.exists(id));
+        try {
+            tx.create(1);
+            assert false;
+        } catch (ReadOnlyTransactionException e) {
+            this.log.info("got expected " + e);
+        }
+        tx.setReadOnly(false);
+        tx.delete(id);
+        tx.commit();
+
+        tx = db.createTransaction(schema, 1, false);
+        Assert.assertFalse(tx.exists(id));
+        tx.rollback();
+    }
+}
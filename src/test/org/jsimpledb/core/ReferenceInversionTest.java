@@ -0,0 +1,203 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Compare invertReferencePath() against a brute force search while references change
+public class ReferenceInversionTest extends TestSupport {
+
+    private static final int NUM_OBJECTS = 50;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvertReferencePath() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"2\" onDelete=\"UNREFERENCE\"/>\n"
+          + "    <SetField name=\"set\" storageId=\"3\">\n"
+          + "      <ReferenceField storageId=\"4\" onDelete=\"UNREFERENCE\"/>\n"
+          + "    </SetField>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final ArrayList<ObjId> ids = new ArrayList<>();
+        for (int i = 0; i < NUM_OBJECTS; i++)
+            ids.add(tx.create(1));
+
+        for (int round = 0; round < 10; round++) {
+
+            // Randomly change some references
+            for (int i = 0; i < NUM_OBJECTS / 4; i++) {
+                final ObjId id = ids.get(this.random.nextInt(NUM_OBJECTS));
+                tx.writeSimpleField(id, 2, this.random.nextInt(5) > 0 ? ids.get(this.random.nextInt(NUM_OBJECTS)) : null, true);
+                final NavigableSet<ObjId> set = (NavigableSet<ObjId>)tx.readSetField(id, 3, true);
+                if (this.random.nextBoolean())
+                    set.add(ids.get(this.random.nextInt(NUM_OBJECTS)));
+                else if (!set.isEmpty())
+                    set.remove(set.first());
+            }
+
+            // Invert from random targets, twice to exercise the cache
+            final HashSet<ObjId> targets = new HashSet<>();
+            for (int i = this.random.nextInt(10); i >= 0; i--)
+                targets.add(ids.get(this.random.nextInt(NUM_OBJECTS)));
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(tx.invertReferencePath(new int[] { 2 }, targets), this.invert(tx, ids, 2, targets));
+                Assert.assertEquals(tx.invertReferencePath(new int[] { 4 }, targets), this.invert(tx, ids, 4, targets));
+                Assert.assertEquals(tx.invertReferencePath(new int[] { 2, 4 }, targets),
+                  this.invert(tx, ids, 2, this.invert(tx, ids, 4, targets)));
+            }
+        }
+
+        // Deleted objects are no longer referrers; previously returned sets are snapshots and don't change
+        final ObjId target = ids.get(0);
+        final NavigableSet<ObjId> referrers = tx.invertReferencePath(new int[] { 4 }, buildSet(target));
+        final TreeSet<ObjId> copy = new TreeSet<>(referrers);
+        for (ObjId id : copy)
+            tx.delete(id);
+        Assert.assertEquals(referrers, copy);
+        Assert.assertTrue(tx.invertReferencePath(new int[] { 4 }, buildSet(target)).isEmpty());
+        tx.rollback();
+    }
+
+    // Inversions must stay correct when cached referrers are evicted, including targets with too many referrers to cache
+    @Test
+    public void testReferrersCacheEviction() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"2\" onDelete=\"UNREFERENCE\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction parent = db.createTransaction(schema, 1, true);
+        final SnapshotTransaction tx = parent.createSnapshotTransaction();
+        parent.rollback();
+
+        // Create targets with 6000, 4000, 3000, and 12000 referrers
+        final int[] counts = new int[] { 6000, 4000, 3000, 12000 };
+        final ArrayList<ObjId> targets = new ArrayList<>();
+        final ArrayList<TreeSet<ObjId>> expected = new ArrayList<>();
+        for (int count : counts) {
+            final ObjId target = tx.create(1);
+            final TreeSet<ObjId> referrers = new TreeSet<>();
+            for (int i = 0; i < count; i++) {
+                final ObjId referrer = tx.create(1);
+                tx.writeSimpleField(referrer, 2, target, true);
+                referrers.add(referrer);
+            }
+            targets.add(target);
+            expected.add(referrers);
+        }
+
+        // Invert in an order that forces evictions
+        for (int i : new int[] { 0, 1, 2, 0, 3, 1, 3, 2, 0 })
+            Assert.assertEquals(tx.invertReferencePath(new int[] { 2 }, buildSet(targets.get(i))), expected.get(i));
+
+        // Move a referrer and check again
+        final ObjId moved = expected.get(1).first();
+        tx.writeSimpleField(moved, 2, targets.get(2), true);
+        expected.get(1).remove(moved);
+        expected.get(2).add(moved);
+        for (int i = 0; i < targets.size(); i++)
+            Assert.assertEquals(tx.invertReferencePath(new int[] { 2 }, buildSet(targets.get(i))), expected.get(i));
+    }
+
+    // Batched notifications must find every referrer, even for more targets than the referrer cache holds
+    @Test
+    public void testBatchNotifications() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <ReferenceField name=\"ref\" storageId=\"2\" onDelete=\"UNREFERENCE\"/>\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"5\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction parent = db.createTransaction(schema, 1, true);
+        final SnapshotTransaction tx = parent.createSnapshotTransaction();
+        parent.rollback();
+        tx.setBatchNotifications(true);
+        tx.setDeferNotifications(true);
+
+        // Create targets, each with one referrer
+        final int numTargets = 10100;
+        final HashMap<ObjId, ObjId> expected = new HashMap<>();
+        for (int i = 0; i < numTargets; i++) {
+            final ObjId target = tx.create(1);
+            final ObjId referrer = tx.create(1);
+            tx.writeSimpleField(referrer, 2, target, true);
+            expected.put(target, referrer);
+        }
+
+        // Change every target and check that the referrers are notified
+        final HashMap<ObjId, ObjId> actual = new HashMap<>();
+        tx.addSimpleFieldChangeListener(5, new int[] { 2 }, null, new SimpleFieldChangeListener() {
+            @Override
+            public <V> void onSimpleFieldChange(Transaction tx, ObjId id, SimpleField<V> field,
+              int[] path, NavigableSet<ObjId> referrers, V oldValue, V newValue) {
+                Assert.assertEquals(referrers.size(), 1);
+                Assert.assertNull(actual.put(id, referrers.first()));
+            }
+        });
+        for (ObjId target : expected.keySet())
+            tx.writeSimpleField(target, 5, 1, true);
+        tx.flushNotifications();
+        Assert.assertEquals(actual, expected);
+    }
+
+    // Brute force inversion of a single reference field
+    @SuppressWarnings("unchecked")
+    private TreeSet<ObjId> invert(Transaction tx, ArrayList<ObjId> ids, int storageId, Iterable<ObjId> targets) {
+        final HashSet<ObjId> targetSet = new HashSet<>();
+        for (ObjId target : targets)
+            targetSet.add(target);
+        final TreeSet<ObjId> result = new TreeSet<>();
+        for (ObjId id : ids) {
+            if (storageId == 2) {
+                if (targetSet.contains(tx.readSimpleField(id, 2, false)))
+                    result.add(id);
+            } else {
+                for (ObjId ref : (NavigableSet<ObjId>)tx.readSetField(id, 3, false)) {
+                    if (targetSet.contains(ref))
+                        result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.jsimpledb.schema.SchemaModel;
+import org.jsimpledb.util.ByteUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify deletes only probe the indexes of reference fields that refer to the deleted object
+public class ReferrerIndexTest extends TestSupport {
+
+    private static final int NUM_REFERENCE_FIELDS = 50;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReferrerIndex() throws Exception {
+
+        final CountingKVStore kvstore = new CountingKVStore();
+        final Database db = new Database(new SimpleKVDatabase(kvstore));
+
+        final StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+          .append("<Schema formatVersion=\"2\">\n")
+          .append("  <ObjectType name=\"Foo\" storageId=\"1\">\n");
+        for (int i = 0; i < NUM_REFERENCE_FIELDS; i++)
+            xml.append("    <ReferenceField name=\"ref" + i + "\" storageId=\"" + (100 + i) + "\" onDelete=\"UNREFERENCE\"/>\n");
+        xml.append("    <ReferenceField name=\"exref\" storageId=\"2\" onDelete=\"EXCEPTION\"/>\n")
+          .append("    <SetField name=\"set\" storageId=\"3\">\n")
+          .append("      <ReferenceField storageId=\"4\" onDelete=\"DELETE\"/>\n")
+          .append("    </SetField>\n")
+          .append("  </ObjectType>\n")
+          .append("</Schema>\n");
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")));
+
+        // Create two objects, so some version 1 object remains after deleting one
+        Transaction tx = db.createTransaction(schema, 1, true);
+        tx.create(1);
+        final ObjId id1 = tx.create(1);
+        tx.commit();
+
+        // Deleting an unreferenced object doesn't probe any reference field index
+        tx = db.createTransaction(schema, 1, true);
+        kvstore.target = id1;
+        Assert.assertTrue(tx.delete(id1));
+        Assert.assertEquals(kvstore.probedFields, buildSet());
+
+        // EXCEPTION references are still found
+        final ObjId id2 = tx.create(1);
+        final ObjId id3 = tx.create(1);
+        tx.writeSimpleField(id3, 2, id2, true);
+        try {
+            tx.delete(id2);
+            assert false;
+        } catch (ReferencedObjectException e) {
+            // expected
+        }
+        tx.writeSimpleField(id3, 2, null, true);
+
+        // UNREFERENCE references are still found, including stale ones
+        tx.writeSimpleField(id3, 110, id2, true);
+        tx.writeSimpleField(id3, 120, id3, true);
+        tx.writeSimpleField(id3, 120, id2, true);
+        Assert.assertTrue(tx.delete(id2));
+        Assert.assertNull(tx.readSimpleField(id3, 110, true));
+        Assert.assertNull(tx.readSimpleField(id3, 120, true));
+
+        // DELETE references are still found
+        final ObjId id4 = tx.create(1);
+        ((NavigableSet<ObjId>)tx.readSetField(id3, 3, true)).add(id4);
+        Assert.assertTrue(tx.delete(id4));
+        Assert.assertFalse(tx.exists(id3));
+
+        // Referrer index is empty once everything is deleted
+        Assert.assertFalse(tx.getKVTransaction().getRange(new byte[] { 0x00, (byte)0x81 },
+          new byte[] { 0x00, (byte)0x82 }, false).hasNext());
+        tx.commit();
+    }
+
+// CountingKVStore
+
+    private static class CountingKVStore extends NavigableMapKVStore {
+
+        final TreeSet<Integer> probedFields = new TreeSet<>();
+        ObjId target;
+
+        @Override
+        public KVPair getAtLeast(byte[] minKey) {
+            this.check(minKey);
+            return super.getAtLeast(minKey);
+        }
+
+        @Override
+        public Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            this.check(minKey);
+            return super.getRange(minKey, maxKey, reverse);
+        }
+
+        // Record lookups of the target in the index of any of the UNREFERENCE reference fields
+        private void check(byte[] key) {
+            if (this.target == null || key == null || key.length == 0)
+                return;
+            final int storageId = key[0] & 0xff;
+            if (storageId >= 100 && storageId < 100 + NUM_REFERENCE_FIELDS
+              && ByteUtil.isPrefixOf(this.target.getBytes(), Arrays.copyOfRange(key, 1, key.length)))
+                this.probedFields.add(storageId);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verify that recorded schemas are only re-read when the schema generation changes
+public class SchemaGenerationTest extends TestSupport {
+
+    @Test
+    public void testSchemaGeneration() throws Exception {
+
+        final CountingKVStore kvstore = new CountingKVStore();
+        final SimpleKVDatabase kvdb = new SimpleKVDatabase(kvstore, 100, 500);
+        final Database db1 = new Database(kvdb);
+        final Database db2 = new Database(kvdb);
+
+        final SchemaModel schema1 = this.buildSchema(1);
+        final SchemaModel schema2 = this.buildSchema(2);
+        final SchemaModel schema3 = this.buildSchema(3);
+
+        // Initialize database
+        db1.createTransaction(schema1, 1, true).commit();
+
+        // Schemas are not re-read while unchanged
+        kvstore.schemaReads = 0;
+        for (int i = 0; i < 5; i++)
+            db1.createTransaction(schema1, 1, false).commit();
+        Assert.assertEquals(kvstore.schemaReads, 0);
+
+        // A schema version added by another Database instance is noticed
+        db2.createTransaction(schema2, 2, true).commit();
+        Transaction tx = db1.createTransaction(null, 0, false);
+        Assert.assertEquals(tx.getSchema().getVersionNumber(), 2);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(1, 2));
+        tx.commit();
+
+        // A schema version added by a rolled-back transaction is forgotten
+        db1.createTransaction(schema3, 3, true).rollback();
+        tx = db1.createTransaction(null, 0, false);
+        Assert.assertEquals(tx.getSchema().getVersionNumber(), 2);
+        tx.commit();
+
+        // A schema version deleted by another Database instance is noticed
+        tx = db2.createTransaction(schema2, 2, false);
+        Assert.assertTrue(tx.deleteSchemaVersion(1));
+        tx.commit();
+        tx = db1.createTransaction(null, 0, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(2));
+        tx.commit();
+
+        // A schema version deleted by a rolled-back transaction is not
+        db2.createTransaction(schema3, 3, true).commit();
+        tx = db1.createTransaction(schema3, 3, false);
+        Assert.assertTrue(tx.deleteSchemaVersion(2));
+        tx.rollback();
+        tx = db1.createTransaction(schema3, 3, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(2, 3));
+        tx.commit();
+    }
+
+    private SchemaModel buildSchema(int storageId) throws Exception {
+        return SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo" + storageId + "\" storageId=\"" + (storageId * 10) + "\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"" + (storageId * 10 + 1) + "\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+    }
+
+// CountingKVStore
+
+    private static class CountingKVStore extends NavigableMapKVStore {
+
+        int schemaReads;
+
+        @Override
+        public KVPair getAtLeast(byte[] minKey) {
+            final KVPair pair = super.getAtLeast(minKey);
+            this.check(pair != null ? pair.getKey() : null);
+            return pair;
+        }
+
+        @Override
+        public Iterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            this.check(minKey);
+            return super.getRange(minKey, maxKey, reverse);
+        }
+
+        private void check(byte[] key) {
+            if (key != null && key.length >= 2 && key[0] == 0x00 && key[1] == 0x01)
+                this.schemaReads++;
+        }
+    }
+}
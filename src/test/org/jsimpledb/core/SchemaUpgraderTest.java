@@ -0,0 +1,110 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SchemaUpgraderTest extends TestSupport {
+
+    @Test
+    public void testSchemaUpgrader() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+
+        final SchemaModel schema1 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"10\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"11\"/>\n"
+          + "  </ObjectType>\n"
+          + "  <ObjectType name=\"Bar\" storageId=\"20\"/>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final SchemaModel schema2 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"10\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"11\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"12\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Create version 1 objects, including two that can't be upgraded
+        Transaction tx = db.createTransaction(schema1, 1, true);
+        final ArrayList<ObjId> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            ids.add(tx.create(10));
+        tx.create(20);
+        tx.create(20);
+        tx.commit();
+        db.createTransaction(schema2, 2, true).commit();
+
+        // Upgrade in batches, notifying listeners
+        final AtomicInteger notifications = new AtomicInteger();
+        final SchemaUpgrader upgrader = new SchemaUpgrader(db, schema2, 2) {
+            @Override
+            protected Transaction createTransaction() {
+                final Transaction tx = super.createTransaction();
+                tx.addVersionChangeListener(new VersionChangeListener() {
+                    @Override
+                    public void onVersionChange(Transaction tx, ObjId id,
+                      int oldVersion, int newVersion, Map<Integer, Object> oldFieldValues) {
+                        notifications.incrementAndGet();
+                    }
+                });
+                return tx;
+            }
+        };
+        upgrader.setBatchSize(4);
+        Assert.assertEquals(upgrader.upgradeBatch(), 4);
+        Assert.assertEquals(upgrader.upgradeBatch(), 4);
+        Assert.assertEquals(upgrader.upgradeBatch(), 4);
+        Assert.assertFalse(upgrader.isComplete());
+        Assert.assertEquals(upgrader.upgradeBatch(), 0);
+        Assert.assertTrue(upgrader.isComplete());
+        Assert.assertEquals(upgrader.getUpgradeCount(), 10);
+        Assert.assertEquals(upgrader.getFailureCount(), 2);
+        Assert.assertEquals(upgrader.getBatchCount(), 4);
+        Assert.assertEquals(notifications.get(), 10);
+
+        tx = db.createTransaction(schema2, 2, false);
+        for (ObjId id : ids)
+            Assert.assertEquals(tx.getSchemaVersion(id), 2);
+        Assert.assertEquals(tx.queryVersion().asMap().get(1).size(), 2);
+
+        // Objects created later with an older schema version are upgraded in the background
+        final ObjId id = ids.get(0);
+        tx.delete(id);
+        tx.create(id, 1);
+        tx.commit();
+        upgrader.setPollInterval(10);
+        upgrader.setBatchDelay(0);
+        upgrader.start();
+        try {
+            for (int i = 0; i < 500 && upgrader.getUpgradeCount() < 11; i++)
+                Thread.sleep(10);
+        } finally {
+            upgrader.stop();
+        }
+        Assert.assertEquals(upgrader.getUpgradeCount(), 11);
+        tx = db.createTransaction(schema2, 2, false);
+        Assert.assertEquals(tx.getSchemaVersion(id), 2);
+        tx.commit();
+    }
+}
@@ -0,0 +1,153 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Compare collection fields having size counters against plain Java collections
+public class SizeCounterTest extends TestSupport {
+
+    private static final String SCHEMA1
+      = "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+      + "    <SetField name=\"set\" storageId=\"2\" sizeCounter=\"true\">\n"
+      + "      <SimpleField type=\"int\" storageId=\"3\" indexed=\"true\"/>\n"
+      + "    </SetField>\n"
+      + "    <ListField name=\"list\" storageId=\"4\" sizeCounter=\"true\">\n"
+      + "      <SimpleField type=\"int\" storageId=\"5\"/>\n"
+      + "    </ListField>\n"
+      + "    <MapField name=\"map\" storageId=\"6\" sizeCounter=\"true\">\n"
+      + "      <SimpleField type=\"int\" storageId=\"7\"/>\n"
+      + "      <SimpleField type=\"java.lang.String\" storageId=\"8\" indexed=\"true\"/>\n"
+      + "    </MapField>\n"
+      + "  </ObjectType>\n";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSizeCounter() throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+        final SchemaModel schema1 = this.buildSchema(SCHEMA1);
+
+        // Check XML round trip
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        schema1.toXML(buf, true);
+        Assert.assertEquals(SchemaModel.fromXML(new ByteArrayInputStream(buf.toByteArray())), schema1);
+
+        Transaction tx = db.createTransaction(schema1, 1, true);
+        final ObjId id = tx.create(1);
+        final NavigableSet<Integer> set = (NavigableSet<Integer>)tx.readSetField(id, 2, true);
+        final List<Integer> list = (List<Integer>)tx.readListField(id, 4, true);
+        final NavigableMap<Integer, String> map = (NavigableMap<Integer, String>)tx.readMapField(id, 6, true);
+        final TreeSet<Integer> expectedSet = new TreeSet<>();
+        final ArrayList<Integer> expectedList = new ArrayList<>();
+        final TreeMap<Integer, String> expectedMap = new TreeMap<>();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertTrue(map.isEmpty());
+
+        for (int i = 0; i < 200; i++) {
+            final int value = this.random.nextInt(40);
+            switch (this.random.nextInt(6)) {
+            case 0:
+                Assert.assertEquals(set.add(value), expectedSet.add(value));
+                Assert.assertEquals(map.put(value, "v" + i), expectedMap.put(value, "v" + i));
+                list.add(value);
+                expectedList.add(value);
+                break;
+            case 1:
+                Assert.assertEquals(set.remove(value), expectedSet.remove(value));
+                Assert.assertEquals(map.remove(value), expectedMap.remove(value));
+                if (!expectedList.isEmpty()) {
+                    final int index = this.random.nextInt(expectedList.size());
+                    Assert.assertEquals(list.remove(index), expectedList.remove(index));
+                }
+                break;
+            case 2:
+                set.headSet(value).clear();
+                expectedSet.headSet(value).clear();
+                map.tailMap(value, true).clear();
+                expectedMap.tailMap(value, true).clear();
+                break;
+            case 3:
+                set.descendingSet().pollFirst();
+                expectedSet.descendingSet().pollFirst();
+                map.keySet().remove(value);
+                expectedMap.keySet().remove(value);
+                break;
+            case 4:
+                if (this.random.nextInt(10) == 0) {
+                    set.clear();
+                    expectedSet.clear();
+                    list.clear();
+                    expectedList.clear();
+                    map.clear();
+                    expectedMap.clear();
+                }
+                break;
+            default:
+                Assert.assertEquals(set.subSet(value / 2, value).size(), expectedSet.subSet(value / 2, value).size());
+                break;
+            }
+            Assert.assertEquals(set.size(), expectedSet.size());
+            Assert.assertEquals(set, expectedSet);
+            Assert.assertEquals(list.size(), expectedList.size());
+            Assert.assertEquals(list, expectedList);
+            Assert.assertEquals(map.size(), expectedMap.size());
+            Assert.assertEquals(map, expectedMap);
+            Assert.assertEquals(map.isEmpty(), expectedMap.isEmpty());
+        }
+
+        // Copies have the same sizes
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        tx.copy(id, id, stx, true);
+        Assert.assertEquals(stx.readSetField(id, 2, false).size(), expectedSet.size());
+        Assert.assertEquals(stx.readListField(id, 4, false).size(), expectedList.size());
+        Assert.assertEquals(stx.readMapField(id, 6, false).size(), expectedMap.size());
+        tx.commit();
+
+        // Fields added in a new schema version start out empty
+        final SchemaModel schema2 = this.buildSchema(SCHEMA1.replaceAll("</ObjectType>",
+            "  <SetField name=\"set2\" storageId=\"9\" sizeCounter=\"true\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"10\"/>\n"
+          + "    </SetField>\n"
+          + "  </ObjectType>"));
+        tx = db.createTransaction(schema2, 2, true);
+        final NavigableSet<Integer> set2 = (NavigableSet<Integer>)tx.readSetField(id, 9, true);
+        Assert.assertTrue(set2.isEmpty());
+        set2.add(123);
+        Assert.assertEquals(set2.size(), 1);
+        Assert.assertEquals(tx.readSetField(id, 2, false).size(), expectedSet.size());
+        tx.commit();
+
+        // Changing whether a field has a size counter is not allowed
+        try {
+            db.createTransaction(this.buildSchema(SCHEMA1.replaceAll(" sizeCounter=\"true\"", "")), 3, true);
+            assert false : "changing size counter was supposed to be invalid";
+        } catch (InvalidSchemaException e) {
+            this.log.info("got expected " + e);
+        }
+    }
+
+    private SchemaModel buildSchema(String xml) throws Exception {
+        return SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Schema formatVersion=\"2\">\n" + xml + "</Schema>\n").getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,197 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.NavigableSet;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.mvcc.MemoryAtomicKVStore;
+import org.jsimpledb.kv.mvcc.SnapshotKVDatabase;
+import org.jsimpledb.kv.simple.SimpleKVDatabase;
+import org.jsimpledb.schema.SchemaModel;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+// Verify counts are the same whether or not they come from statistics
+public class StatisticsTest extends TestSupport {
+
+    @Test(dataProvider = "statistics")
+    @SuppressWarnings("unchecked")
+    public void testStatistics(boolean statistics) throws Exception {
+
+        final Database db = new Database(new SimpleKVDatabase());
+        db.setMaintainStatistics(statistics);
+
+        final SchemaModel schema1 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+          + "    <SetField name=\"set\" storageId=\"4\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"5\" indexed=\"true\"/>\n"
+          + "    </SetField>\n"
+          + "    <ListField name=\"list\" storageId=\"6\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"7\" indexed=\"true\"/>\n"
+          + "    </ListField>\n"
+          + "    <CompositeIndex storageId=\"20\" name=\"is\">\n"
+          + "      <IndexedField storageId=\"2\"/>\n"
+          + "      <IndexedField storageId=\"3\"/>\n"
+          + "    </CompositeIndex>\n"
+          + "  </ObjectType>\n"
+          + "  <ObjectType name=\"Bar\" storageId=\"10\"/>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final SchemaModel schema2 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"java.lang.String\" storageId=\"3\" indexed=\"true\"/>\n"
+          + "    <SetField name=\"set\" storageId=\"4\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"5\" indexed=\"true\"/>\n"
+          + "    </SetField>\n"
+          + "    <ListField name=\"list\" storageId=\"6\">\n"
+          + "      <SimpleField type=\"int\" storageId=\"7\" indexed=\"true\"/>\n"
+          + "    </ListField>\n"
+          + "  </ObjectType>\n"
+          + "  <ObjectType name=\"Bar\" storageId=\"10\"/>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Create objects
+        Transaction tx = db.createTransaction(schema1, 1, true);
+        Assert.assertEquals(tx.hasStatistics(), statistics);
+        final ObjId foo1 = tx.create(1);
+        final ObjId foo2 = tx.create(1);
+        final ObjId foo3 = tx.create(1);
+        tx.create(10);
+        Assert.assertEquals(tx.countObjects(1), 3);
+        Assert.assertEquals(tx.countObjects(10), 1);
+        Assert.assertEquals(tx.countIndexEntries(2, 0), 3);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 0, null), 3);
+
+        // Change fields
+        tx.writeSimpleField(foo1, 2, 7, true);
+        tx.writeSimpleField(foo2, 2, 7, true);
+        tx.writeSimpleField(foo2, 3, "abc", true);
+        ((NavigableSet<Integer>)tx.readSetField(foo1, 4, true)).add(5);
+        ((NavigableSet<Integer>)tx.readSetField(foo2, 4, true)).add(5);
+        ((NavigableSet<Integer>)tx.readSetField(foo2, 4, true)).add(6);
+        ((List<Integer>)tx.readListField(foo3, 6, true)).add(8);
+        ((List<Integer>)tx.readListField(foo3, 6, true)).add(8);
+        Assert.assertEquals(tx.countIndexEntries(2, 0), 1);
+        Assert.assertEquals(tx.countIndexEntries(2, 7), 2);
+        Assert.assertEquals(((CoreIndex<Integer, ObjId>)tx.queryIndex(2)).count(7), 2);
+        Assert.assertEquals(tx.countIndexEntries(5, 5), 2);
+        Assert.assertEquals(((CoreIndex<Integer, ObjId>)tx.queryIndex(5)).count(6), 1);
+        Assert.assertEquals(tx.countIndexEntries(7, 8), 2);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 7, null), 1);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 7, "abc"), 1);
+        Assert.assertEquals(((CoreIndex2<Integer, String, ObjId>)tx.queryCompositeIndex2(20)).asIndex().count(7), 2);
+
+        // Delete and remove
+        ((NavigableSet<Integer>)tx.readSetField(foo2, 4, true)).clear();
+        ((List<Integer>)tx.readListField(foo3, 6, true)).remove(0);
+        tx.delete(foo1);
+        Assert.assertEquals(tx.countObjects(1), 2);
+        Assert.assertEquals(tx.countIndexEntries(2, 7), 1);
+        Assert.assertEquals(tx.countIndexEntries(5, 5), 0);
+        Assert.assertEquals(tx.countIndexEntries(7, 8), 1);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 7, null), 0);
+
+        // Copy objects back in from a snapshot
+        final SnapshotTransaction stx = tx.createSnapshotTransaction();
+        Assert.assertFalse(stx.hasStatistics());
+        tx.copy(foo2, foo1, stx, true);
+        tx.copy(foo2, foo2, stx, true);
+        stx.writeSimpleField(foo2, 2, 9, true);
+        ((NavigableSet<Integer>)stx.readSetField(foo1, 4, true)).add(6);
+        Assert.assertEquals(stx.copy(stx.getAll(), tx, true), 1);
+        Assert.assertEquals(tx.countObjects(1), 3);
+        Assert.assertEquals(tx.countIndexEntries(2, 7), 1);
+        Assert.assertEquals(tx.countIndexEntries(2, 9), 1);
+        Assert.assertEquals(tx.countIndexEntries(5, 6), 1);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 9, "abc"), 1);
+        tx.commit();
+
+        // Upgrade objects to a schema version with different indexes
+        tx = db.createTransaction(schema2, 2, true);
+        for (ObjId id : tx.getAll(1))
+            tx.updateSchemaVersion(id);
+        Assert.assertEquals(tx.countIndexEntries(3, "abc"), 2);
+        Assert.assertEquals(tx.countIndexEntries(3, null), 1);
+        Assert.assertEquals(tx.countCompositeIndexEntries(20, 9, "abc"), 0);
+        Assert.assertEquals(tx.countObjects(1), 3);
+        tx.commit();
+
+        // Invalid requests
+        tx = db.createTransaction(schema2, 2, false);
+        try {
+            tx.countObjects(2);
+            assert false;
+        } catch (UnknownTypeException e) {
+            // expected
+        }
+        try {
+            tx.countCompositeIndexEntries(20, 9);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        tx.rollback();
+    }
+
+    // Statistics updates must not cause conflicts between transactions indexing the same new value
+    @Test
+    public void testConcurrentStatistics() throws Exception {
+
+        final Database db = new Database(new SnapshotKVDatabase(new MemoryAtomicKVStore()));
+        db.setMaintainStatistics(true);
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Record schema
+        Transaction tx = db.createTransaction(schema, 1, true);
+        tx.commit();
+
+        // Index the same new value in two concurrent transactions; neither commit should throw RetryTransactionException
+        final Transaction tx1 = db.createTransaction(schema, 1, false);
+        final Transaction tx2 = db.createTransaction(schema, 1, false);
+        tx1.writeSimpleField(tx1.create(1), 2, 7, true);
+        tx2.writeSimpleField(tx2.create(1), 2, 7, true);
+        tx1.commit();
+        tx2.commit();
+
+        // Both updates were counted
+        tx = db.createTransaction(schema, 1, false);
+        Assert.assertEquals(tx.countObjects(1), 2);
+        Assert.assertEquals(tx.countIndexEntries(2, 7), 2);
+        Assert.assertEquals(tx.countIndexEntries(2, 0), 0);
+        tx.rollback();
+    }
+
+    @DataProvider(name = "statistics")
+    public Object[][] statistics() {
+        return new Object[][] {
+            { false },
+            { true },
+        };
+    }
+}
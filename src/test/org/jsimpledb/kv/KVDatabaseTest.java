@@ -14,7 +14,9 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Random;
@@ -60,6 +62,7 @@ public class KVDatabaseTest extends TestSupport {
 
     private SimpleKVDatabase simpleKV;
     private MySQLKVDatabase mysqlKV;
+    private MySQLKVDatabase mysqlWriteBehindKV;
     private FoundationKVDatabase fdbKV;
     private BerkeleyKVDatabase bdbKV;
     private LevelDBKVDatabase leveldbKV;
@@ -82,6 +85,11 @@ public class KVDatabaseTest extends TestSupport {
             this.mysqlKV = new MySQLKVDatabase();
             this.mysqlKV.setDataSource(dataSource);
             this.mysqlKV.setIsolationLevel(IsolationLevel.SERIALIZABLE);
+            this.mysqlKV.setPageSize(7);                                    // exercise keyset pagination
+            this.mysqlWriteBehindKV = new MySQLKVDatabase();
+            this.mysqlWriteBehindKV.setDataSource(dataSource);
+            this.mysqlWriteBehindKV.setIsolationLevel(IsolationLevel.SERIALIZABLE);
+            this.mysqlWriteBehindKV.setWriteBehind(true);
         }
     }
 
@@ -144,6 +152,7 @@ public class KVDatabaseTest extends TestSupport {
         final ArrayList<Object[]> list = new ArrayList<>();
         list.add(new Object[] { this.simpleKV });
         list.add(new Object[] { this.mysqlKV });
+        list.add(new Object[] { this.mysqlWriteBehindKV });
         list.add(new Object[] { this.fdbKV });
         list.add(new Object[] { this.bdbKV });
         list.add(new Object[] { this.leveldbKV });
@@ -194,6 +203,18 @@ public class KVDatabaseTest extends TestSupport {
         x = tx.get(b("01"));
         Assert.assertEquals(x, b("03"));
         tx.put(b("10"), b("01"));
+        final List<byte[]> values = tx.getMulti(Arrays.asList(b("10"), b("02"), b("01"), b("10")));
+        Assert.assertEquals(values.size(), 4);
+        Assert.assertEquals(values.get(0), b("01"));
+        Assert.assertNull(values.get(1));
+        Assert.assertEquals(values.get(2), b("03"));
+        Assert.assertEquals(values.get(3), b("01"));
+        Assert.assertEquals(tx.getAsync(b("01")).get(), b("03"));
+        Assert.assertNull(tx.getAsync(b("02")).get());
+        final List<KVPair> pairs = tx.getRangeAsync(null, null, true, 1).get();
+        Assert.assertEquals(pairs.size(), 1);
+        Assert.assertEquals(pairs.get(0).getKey(), b("10"));
+        Assert.assertEquals(tx.getRangeAsync(b("01"), b("11"), false, 0).get().size(), 2);
         tx.commit();
 
         // Check stale access
@@ -432,6 +453,33 @@ public class KVDatabaseTest extends TestSupport {
         Assert.assertEquals(waiterThread.getResult(), "success");
     }
 
+    @Test
+    public void testSimpleKVReadOnly() throws Exception {
+
+        // Populate database
+        final SimpleKVDatabase store = new SimpleKVDatabase(100, 500);
+        final KVTransaction tx = store.createTransaction();
+        tx.put(b("10"), b("01"));
+        tx.commit();
+
+        // Read-only transactions don't lock, so a writer is not blocked
+        final KVTransaction readTx = store.createTransaction(true);
+        Assert.assertEquals(readTx.get(b("10")), b("01"));
+        Assert.assertEquals(readTx.getAtLeast(b("")), new KVPair(b("10"), b("01")));
+        final KVTransaction writeTx = store.createTransaction();
+        writeTx.put(b("10"), b("02"));
+        writeTx.commit();
+
+        // Read-only transactions see committed data, and their mutations are discarded
+        Assert.assertEquals(readTx.get(b("10")), b("02"));
+        readTx.put(b("20"), b("03"));
+        Assert.assertEquals(readTx.get(b("20")), b("03"));
+        readTx.commit();
+        final KVTransaction checkTx = store.createTransaction();
+        Assert.assertNull(checkTx.get(b("20")));
+        checkTx.commit();
+    }
+
 // TestThread
 
     public abstract class TestThread extends Thread {
@@ -0,0 +1,68 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.jsimpledb.TestSupport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MutableKeyRangesTest extends TestSupport {
+
+    @Test
+    public void testMutableKeyRanges() throws Exception {
+        for (int iteration = 0; iteration < 1000; iteration++) {
+
+            // Apply the same random adds and removes to a KeyRanges and a MutableKeyRanges
+            KeyRanges expected = KeyRanges.EMPTY;
+            final MutableKeyRanges actual = new MutableKeyRanges();
+            for (int i = this.random.nextInt(12); i > 0; i--) {
+                final KeyRange range = this.randomKeyRange();
+                if (this.random.nextInt(3) == 0) {
+                    expected = expected.remove(range);
+                    actual.remove(range);
+                } else {
+                    expected = expected.add(range);
+                    actual.add(range);
+                }
+                Assert.assertEquals(actual.asList(), expected.asList());
+            }
+
+            // Compare queries
+            for (int i = 0; i < 20; i++) {
+                final byte[] key = new byte[] { (byte)this.random.nextInt(40) };
+                Assert.assertEquals(actual.contains(key), expected.contains(key));
+                Assert.assertEquals(actual.seekHigher(key), expected.seekHigher(key));
+                Assert.assertEquals(actual.seekLower(key), expected.seekLower(key));
+                final KeyRange range = this.randomKeyRange();
+                Assert.assertEquals(actual.intersects(range), !expected.intersection(new KeyRanges(range)).isEmpty());
+                if (!range.isEmpty())
+                    Assert.assertEquals(actual.contains(range), expected.contains(range));
+            }
+            Assert.assertEquals(actual.seekLower(new byte[0]), expected.seekLower(new byte[0]));
+            Assert.assertEquals(actual.toKeyRanges(), expected);
+
+            // Compare serialization
+            final ByteArrayOutputStream buf1 = new ByteArrayOutputStream();
+            final ByteArrayOutputStream buf2 = new ByteArrayOutputStream();
+            actual.serialize(buf1);
+            expected.serialize(buf2);
+            Assert.assertEquals(buf1.toByteArray(), buf2.toByteArray());
+            Assert.assertEquals(actual.serializedLength(), (long)buf1.size());
+            Assert.assertEquals(MutableKeyRanges.deserialize(new ByteArrayInputStream(buf1.toByteArray())), actual);
+        }
+    }
+
+    private KeyRange randomKeyRange() {
+        final int min = this.random.nextInt(30);
+        final byte[] max = this.random.nextInt(6) != 0 ? new byte[] { (byte)(min + this.random.nextInt(6)) } : null;
+        return new KeyRange(new byte[] { (byte)min }, max);
+    }
+}
@@ -0,0 +1,170 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.util.ByteUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LockManagerTest extends TestSupport {
+
+    @Test
+    public void testSharedReadLocks() throws Exception {
+        final LockManager lockManager = new LockManager();
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+        final byte[] min = new byte[] { 0x10 };
+        final byte[] max = new byte[] { 0x11 };
+
+        // Two owners read lock the same range; neither may then upgrade to a write lock
+        Assert.assertEquals(lockManager.lock(owner1, min, max, false, 10), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner2, min, max, false, 10), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner1, min, max, true, 10), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+        Assert.assertEquals(lockManager.lock(owner2, min, max, true, 10), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+
+        // Once one releases, the other may
+        Assert.assertTrue(lockManager.release(owner2));
+        Assert.assertEquals(lockManager.lock(owner1, min, max, true, 10), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner2, min, max, false, 10), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+        Assert.assertTrue(lockManager.release(owner1));
+        Assert.assertEquals(lockManager.lock(owner2, min, max, false, 10), LockManager.LockResult.SUCCESS);
+    }
+
+    @Test
+    public void testRandomLocks() throws Exception {
+        final LockManager lockManager = new LockManager();
+        final LockOwner[] owners = new LockOwner[5];
+        for (int i = 0; i < owners.length; i++)
+            owners[i] = new LockOwner();
+        final ArrayList<Lock> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final LockOwner owner = owners[this.random.nextInt(owners.length)];
+
+            // Release all of an owner's locks
+            if (this.random.nextInt(8) == 0) {
+                Assert.assertTrue(lockManager.release(owner));
+                for (Iterator<Lock> j = expected.iterator(); j.hasNext(); ) {
+                    if (j.next().owner == owner)
+                        j.remove();
+                }
+                continue;
+            }
+
+            // Acquire a lock, which should succeed unless it conflicts with another owner's lock
+            final int min = this.random.nextInt(64);
+            final byte[] minKey = new byte[] { (byte)min };
+            final byte[] maxKey = this.random.nextInt(10) != 0 ? new byte[] { (byte)(min + this.random.nextInt(8)) } : null;
+            final Lock lock = new Lock(owner, minKey, maxKey, this.random.nextBoolean(), -1);
+            boolean conflict = false;
+            for (Lock other : expected)
+                conflict |= lock.conflictsWith(other);
+            final LockManager.LockResult result = lockManager.lock(owner, minKey, maxKey, lock.write, 1);
+            Assert.assertEquals(result, conflict ? LockManager.LockResult.WAIT_TIMEOUT_EXPIRED : LockManager.LockResult.SUCCESS,
+              "lock=" + lock + " expected=" + expected);
+            if (!conflict)
+                expected.add(lock);
+        }
+    }
+
+    @Test
+    public void testWakeup() throws Exception {
+        this.testWakeup(new LockManager());
+        this.testWakeup(new LockManager(new Object()));
+    }
+
+    private void testWakeup(final LockManager lockManager) throws Exception {
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+        final LockOwner owner3 = new LockOwner();
+        final LockOwner owner4 = new LockOwner();
+        final byte[] key1 = new byte[] { 0x10 };
+        final byte[] key2 = new byte[] { 0x11 };
+        final byte[] key3 = new byte[] { 0x12 };
+        final byte[] key4 = new byte[] { 0x13 };
+        Assert.assertEquals(lockManager.lock(owner1, key1, key2, true, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner3, key3, key4, true, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner4, key4, null, true, 0), LockManager.LockResult.SUCCESS);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<LockManager.LockResult> future = executor.submit(new Callable<LockManager.LockResult>() {
+                @Override
+                public LockManager.LockResult call() throws Exception {
+                    return lockManager.lock(owner2, key1, key4, false, 0);
+                }
+            });
+            Thread.sleep(100);
+
+            // Releasing a non-overlapping lock does not unblock the waiter
+            Assert.assertTrue(lockManager.release(owner4));
+            Thread.sleep(100);
+            Assert.assertFalse(future.isDone());
+
+            // Releasing one overlapping lock does not unblock the waiter while another is still held
+            Assert.assertTrue(lockManager.release(owner1));
+            Thread.sleep(100);
+            Assert.assertFalse(future.isDone());
+
+            // Releasing the last overlapping lock does
+            Assert.assertTrue(lockManager.release(owner3));
+            Assert.assertEquals(future.get(), LockManager.LockResult.SUCCESS);
+            Assert.assertTrue(lockManager.release(owner2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLockThroughput() throws Exception {
+        final LockManager lockManager = new LockManager();
+        for (int numLocks : new int[] { 100, 1000, 10000 }) {
+
+            // Create lots of outstanding read locks
+            final ArrayList<LockOwner> owners = new ArrayList<>();
+            for (int i = 0; i < numLocks; i++) {
+                if (i % 10 == 0)
+                    owners.add(new LockOwner());
+                final byte[] minKey = this.randomKey();
+                Assert.assertEquals(lockManager.lock(owners.get(owners.size() - 1),
+                  minKey, ByteUtil.getNextKey(minKey), false, 0), LockManager.LockResult.SUCCESS);
+            }
+
+            // Repeatedly acquire and release non-conflicting locks
+            final LockOwner owner = new LockOwner();
+            final int count = 50000;
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                final byte[] minKey = this.randomKey();
+                Assert.assertEquals(lockManager.lock(owner, minKey, ByteUtil.getNextKey(minKey), false, 0),
+                  LockManager.LockResult.SUCCESS);
+                if (i % 10 == 9)
+                    Assert.assertTrue(lockManager.release(owner));
+            }
+            final double seconds = (System.nanoTime() - startTime) / 1e9;
+            this.log.info(String.format("%d outstanding locks: %.0f locks/sec", numLocks, count / seconds));
+
+            // Clean up
+            Assert.assertTrue(lockManager.release(owner));
+            for (LockOwner other : owners)
+                Assert.assertTrue(lockManager.release(other));
+        }
+    }
+
+    private byte[] randomKey() {
+        final byte[] key = new byte[4];
+        this.random.nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,52 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jsimpledb.kv.CloseableKVStore;
+import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.jsimpledb.util.ByteUtil;
+
+/**
+ * In-memory {@link AtomicKVStore} for testing {@link SnapshotKVDatabase} without any persistent storage.
+ */
+public class MemoryAtomicKVStore extends NavigableMapKVStore implements AtomicKVStore {
+
+    @Override
+    public synchronized CloseableKVStore snapshot() {
+        final TreeMap<byte[], byte[]> map = new TreeMap<>(ByteUtil.COMPARATOR);
+        map.putAll(this.getNavigableMap());
+        return new Snapshot(map);
+    }
+
+    @Override
+    public synchronized void mutate(Mutations mutations, boolean sync) {
+        for (KeyRange range : mutations.getRemoveRanges())
+            this.removeRange(range.getMin(), range.getMax());
+        for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs())
+            this.put(entry.getKey(), entry.getValue());
+        for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs())
+            this.adjustCounter(entry.getKey(), entry.getValue());
+    }
+
+// Snapshot
+
+    private static class Snapshot extends NavigableMapKVStore implements CloseableKVStore {
+
+        Snapshot(TreeMap<byte[], byte[]> map) {
+            super(map);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
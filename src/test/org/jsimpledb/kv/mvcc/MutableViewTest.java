@@ -7,6 +7,8 @@
 
 package org.jsimpledb.kv.mvcc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -26,6 +28,7 @@ public class MutableViewTest extends TestSupport {
     private static final byte[] KEY_00 = new byte[] { (byte)0x00 };
     private static final byte[] KEY_10 = new byte[] { (byte)0x10 };
     private static final byte[] KEY_20 = new byte[] { (byte)0x20 };
+    private static final byte[] KEY_21 = new byte[] { (byte)0x21 };
     private static final byte[] KEY_30 = new byte[] { (byte)0x30 };
     private static final byte[] KEY_40 = new byte[] { (byte)0x40 };
     private static final byte[] KEY_50 = new byte[] { (byte)0x50 };
@@ -94,6 +97,96 @@ public class MutableViewTest extends TestSupport {
         Assert.assertEquals(actual, expected);
     }
 
+    @Test
+    public void testGetMulti() {
+
+        // Set up KVStore
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        this.setup(kv);
+
+        // Create views with the same writes
+        final MutableView v1 = new MutableView(new UnmodifiableKVStore(kv));
+        final MutableView v2 = new MutableView(new UnmodifiableKVStore(kv));
+        for (MutableView view : new MutableView[] { v1, v2 }) {
+            view.put(KEY_30, VAL_01);
+            view.put(KEY_40, VAL_03);
+            view.removeRange(KEY_50, KEY_70);
+            view.adjustCounter(KEY_F8, 3);
+        }
+
+        // Compare getMulti() with get()
+        final List<byte[]> keys = Arrays.asList(KEY_E0, KEY_00, KEY_20, KEY_30, KEY_40, KEY_60, KEY_F8, KEY_20, KEY_9000);
+        final List<byte[]> values = v1.getMulti(keys);
+        Assert.assertEquals(values.size(), keys.size());
+        for (int i = 0; i < keys.size(); i++)
+            Assert.assertEquals(values.get(i), v2.get(keys.get(i)), "key " + ByteUtil.toString(keys.get(i)));
+        Assert.assertEquals(v1.decodeCounter(values.get(6)), 3);
+        Assert.assertEquals(v1.getReads().getReads(), v2.getReads().getReads());
+    }
+
+    @Test
+    public void testGetRange() {
+
+        // Set up KVStore
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        this.setup(kv);
+
+        // Put keys on both sides of the range and adjust a counter
+        final MutableView view = new MutableView(new UnmodifiableKVStore(kv));
+        view.put(KEY_10, VAL_01);
+        view.put(KEY_D0, VAL_02);
+        view.adjustCounter(KEY_F8, 5);
+
+        // Puts outside the range must not appear
+        Assert.assertEquals(this.keys(view.getRange(KEY_30, KEY_90, false)), Arrays.asList("40", "60", "80"));
+        Assert.assertEquals(this.keys(view.getRange(KEY_30, KEY_90, true)), Arrays.asList("80", "60", "40"));
+
+        // Counter adjustments must be applied
+        Assert.assertEquals(view.decodeCounter(view.getAtLeast(KEY_F8).getValue()), 5);
+        Assert.assertEquals(view.decodeCounter(view.getAtMost(null).getValue()), 5);
+    }
+
+    @Test
+    public void testAdjustMissing() {
+
+        // Set up KVStore
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        this.setup(kv);
+
+        // Adjust missing counters, including one that was removed
+        final MutableView view = new MutableView(new UnmodifiableKVStore(kv));
+        view.adjustCounter(KEY_30, 3);
+        view.adjustCounter(KEY_50, 5);
+        view.adjustCounter(KEY_50, -5);
+        view.remove(KEY_F8);
+        view.adjustCounter(KEY_F8, 8);
+
+        // Missing counters start from zero
+        Assert.assertEquals(view.decodeCounter(view.get(KEY_30)), 3);
+        Assert.assertEquals(view.decodeCounter(view.getMulti(Arrays.asList(KEY_10, KEY_50)).get(1)), 0);
+        Assert.assertEquals(view.decodeCounter(view.get(KEY_F8)), 8);
+        Assert.assertNull(view.get(KEY_10));
+
+        // Adjusted counters appear in ranges
+        Assert.assertEquals(this.keys(view.getRange(KEY_20, KEY_70, false)), Arrays.asList("20", "30", "40", "50", "60"));
+        Assert.assertEquals(this.keys(view.getRange(KEY_20, KEY_70, true)), Arrays.asList("60", "50", "40", "30", "20"));
+        Assert.assertEquals(this.keys(view.getRange(KEY_E0, null, false)), Arrays.asList("e0", "f0"));
+        Assert.assertEquals(view.decodeCounter(view.getAtLeast(KEY_21).getValue()), 3);
+
+        // Applying the writes creates the counters
+        view.getWrites().applyTo(kv);
+        Assert.assertEquals(kv.decodeCounter(kv.get(KEY_30)), 3);
+        Assert.assertEquals(kv.decodeCounter(kv.get(KEY_50)), 0);
+        Assert.assertEquals(kv.decodeCounter(kv.get(KEY_F8)), 8);
+    }
+
+    private List<String> keys(Iterator<KVPair> i) {
+        final ArrayList<String> list = new ArrayList<>();
+        while (i.hasNext())
+            list.add(ByteUtil.toString(i.next().getKey()));
+        return list;
+    }
+
     @DataProvider(name = "conflicts")
     private Object[][] conflictTests() throws Exception {
         return new Object[][] {
@@ -0,0 +1,67 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVTransaction;
+import org.jsimpledb.kv.RetryTransactionException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SnapshotKVDatabaseTest extends TestSupport {
+
+    private static final byte[] KEY_10 = new byte[] { (byte)0x10 };
+    private static final byte[] KEY_20 = new byte[] { (byte)0x20 };
+
+    private static final byte[] VAL_01 = new byte[] { (byte)0x01 };
+    private static final byte[] VAL_02 = new byte[] { (byte)0x02 };
+    private static final byte[] VAL_03 = new byte[] { (byte)0x03 };
+
+    @Test
+    public void testReadOnly() throws Exception {
+
+        // Populate database
+        final MemoryAtomicKVStore kvstore = new MemoryAtomicKVStore();
+        final SnapshotKVDatabase kvdb = new SnapshotKVDatabase(kvstore);
+        KVTransaction tx = kvdb.createTransaction();
+        tx.put(KEY_10, VAL_01);
+        tx.commit();
+
+        // Start a read-only transaction and a normal transaction, both reading the same key
+        final KVTransaction readTx = kvdb.createTransaction(true);
+        final KVTransaction normalTx = kvdb.createTransaction();
+        Assert.assertTrue(((SnapshotKVTransaction)readTx).isReadOnly());
+        Assert.assertFalse(((SnapshotKVTransaction)normalTx).isReadOnly());
+        Assert.assertEquals(readTx.get(KEY_10), VAL_01);
+        Assert.assertEquals(normalTx.get(KEY_10), VAL_01);
+        normalTx.put(KEY_20, VAL_03);
+
+        // Commit a change to that key
+        tx = kvdb.createTransaction();
+        tx.put(KEY_10, VAL_02);
+        tx.commit();
+
+        // The read-only transaction still sees its snapshot, and its own mutations
+        Assert.assertEquals(readTx.get(KEY_10), VAL_01);
+        readTx.put(KEY_20, VAL_03);
+        Assert.assertEquals(readTx.get(KEY_20), VAL_03);
+
+        // The normal transaction conflicts, but the read-only transaction is not checked for conflicts
+        try {
+            normalTx.commit();
+            assert false;
+        } catch (RetryTransactionException e) {
+            this.log.info("got expected " + e);
+        }
+        readTx.commit();
+
+        // The read-only transaction's mutations were discarded
+        Assert.assertEquals(kvstore.get(KEY_10), VAL_02);
+        Assert.assertNull(kvstore.get(KEY_20));
+    }
+}
@@ -0,0 +1,65 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.mvcc;
+
+import java.util.ArrayList;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KeyRange;
+import org.jsimpledb.kv.KeyRanges;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class WriteIndexTest extends TestSupport {
+
+    @Test
+    public void testWriteIndex() {
+        for (int iteration = 0; iteration < 1000; iteration++) {
+
+            // Build random versions
+            final WriteIndex index = new WriteIndex();
+            final ArrayList<Writes> versions = new ArrayList<>();
+            final int numVersions = 1 + this.random.nextInt(6);
+            for (int version = 0; version < numVersions; version++) {
+                final Writes writes = new Writes();
+                for (int i = this.random.nextInt(4); i > 0; i--)
+                    writes.getPuts().put(this.randomKey(), new byte[] { (byte)version });
+                if (this.random.nextBoolean()) {
+                    final byte[] min = this.randomKey();
+                    final byte[] max = this.random.nextInt(5) != 0 ? new byte[] { (byte)(min[0] + this.random.nextInt(10)) } : null;
+                    writes.setRemoves(new KeyRanges(new KeyRange(min, max)));
+                }
+                if (this.random.nextBoolean())
+                    writes.getAdjusts().put(this.randomKey(), 1L);
+                versions.add(writes);
+                index.add(version, writes);
+            }
+
+            // Compare against checking each version individually
+            for (int i = 0; i < 20; i++) {
+                KeyRanges ranges = KeyRanges.EMPTY;
+                for (int j = this.random.nextInt(3); j > 0; j--) {
+                    final byte[] min = this.randomKey();
+                    ranges = ranges.add(this.random.nextBoolean() ? new KeyRange(min) :
+                      new KeyRange(min, new byte[] { (byte)(min[0] + this.random.nextInt(5)) }));
+                }
+                final Reads reads = new Reads(ranges);
+                final int baseVersion = this.random.nextInt(numVersions + 1);
+                boolean expected = false;
+                for (int version = baseVersion; version < numVersions; version++)
+                    expected |= reads.isConflict(versions.get(version));
+                Assert.assertEquals(index.isConflict(reads, baseVersion), expected,
+                  "reads=" + reads + " versions=" + versions + " base=" + baseVersion);
+            }
+        }
+    }
+
+    private byte[] randomKey() {
+        return new byte[] { (byte)this.random.nextInt(40) };
+    }
+}
@@ -0,0 +1,100 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.simple;
+
+import java.util.ArrayList;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVTransaction;
+import org.jsimpledb.kv.util.NavigableMapKVStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleKVDatabaseTest extends TestSupport {
+
+    private static final int NUM_READERS = 8;
+
+    /**
+     * Verify that reads of non-conflicting keys by different transactions are performed by the underlying
+     * {@link org.jsimpledb.kv.KVStore} concurrently. Each reader blocks inside {@code get()} until all of
+     * the readers are inside {@code get()} at the same time, which is impossible if reads are serialized.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+
+        // Populate database
+        final CyclicBarrier barrier = new CyclicBarrier(NUM_READERS);
+        final BarrierKVStore kvstore = new BarrierKVStore(barrier);
+        final SimpleKVDatabase kvdb = new SimpleKVDatabase(kvstore);
+        KVTransaction tx = kvdb.createTransaction();
+        for (int i = 0; i < NUM_READERS; i++)
+            tx.put(new byte[] { (byte)i }, new byte[] { (byte)(i + 100) });
+        tx.commit();
+
+        // Read each key in a separate transaction in a separate thread
+        kvstore.blocking = true;
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_READERS);
+        try {
+            final ArrayList<Future<byte[]>> futures = new ArrayList<>(NUM_READERS);
+            for (int i = 0; i < NUM_READERS; i++) {
+                final byte[] key = new byte[] { (byte)i };
+                futures.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        final KVTransaction readTx = kvdb.createTransaction();
+                        try {
+                            return readTx.get(key);
+                        } finally {
+                            readTx.commit();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < NUM_READERS; i++)
+                Assert.assertEquals(futures.get(i).get(), new byte[] { (byte)(i + 100) });
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertFalse(barrier.isBroken(), "reads were not concurrent");
+    }
+
+// BarrierKVStore
+
+    private static class BarrierKVStore extends NavigableMapKVStore {
+
+        private final CyclicBarrier barrier;
+
+        volatile boolean blocking;
+
+        BarrierKVStore(CyclicBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            if (this.blocking) {
+                try {
+                    this.barrier.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (BrokenBarrierException | TimeoutException e) {
+                    // reads are serialized; the barrier is now broken and the test will fail
+                }
+            }
+            return super.get(key);
+        }
+    }
+}
@@ -0,0 +1,487 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.kv.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.jsimpledb.TestSupport;
+import org.jsimpledb.kv.KVPair;
+import org.jsimpledb.util.ByteUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link SQLKVTransaction} against an in-memory fake JDBC driver that interprets the statements
+ * generated by {@link SQLKVDatabase}.
+ */
+public class SQLKVTransactionTest extends TestSupport {
+
+    private static final Pattern LIMIT_PATTERN = Pattern.compile(" FETCH FIRST ([0-9]+) ROWS ONLY$");
+
+    private final TreeMap<byte[], byte[]> data = new TreeMap<>(ByteUtil.COMPARATOR);
+    private final ArrayList<Boolean> closedReadOnly = new ArrayList<>();
+    private int queries;
+
+    @Test
+    public void testDefaults() {
+        final SQLKVDatabase db = this.createDatabase();
+        Assert.assertEquals(db.getReadAhead(), 1);
+        Assert.assertEquals(db.getPageSize(), 0);
+        Assert.assertEquals(db.limitRows("SELECT 1", 10), "SELECT 1 FETCH FIRST 10 ROWS ONLY");
+        Assert.assertEquals(db.limitSingleRow("SELECT 1"), "SELECT 1 FETCH FIRST 1 ROWS ONLY");
+    }
+
+    @DataProvider(name = "configs")
+    public Object[][] genConfigs() {
+        return new Object[][] {
+        //    pageSize  readAhead writeBehind
+            { 0,        1,        false },
+            { 3,        1,        false },
+            { 1,        8,        false },
+            { 0,        8,        false },
+            { 7,        4,        true  },
+            { 2,        2,        true  },
+        };
+    }
+
+    @Test(dataProvider = "configs")
+    public void testRandomOperations(int pageSize, int readAhead, boolean writeBehind) throws Exception {
+        final SQLKVDatabase db = this.createDatabase();
+        db.setPageSize(pageSize);
+        db.setReadAhead(readAhead);
+        db.setWriteBehind(writeBehind);
+        this.data.clear();
+        final TreeMap<byte[], byte[]> model = new TreeMap<>(ByteUtil.COMPARATOR);
+        final SQLKVTransaction tx = db.createTransaction();
+        for (int i = 0; i < 2000; i++) {
+            byte[] minKey = this.randomKey();
+            byte[] maxKey = this.randomKey();
+            if (ByteUtil.compare(minKey, maxKey) > 0) {
+                final byte[] temp = minKey;
+                minKey = maxKey;
+                maxKey = temp;
+            }
+            if (this.random.nextInt(5) == 0)
+                minKey = null;
+            if (this.random.nextInt(5) == 0)
+                maxKey = null;
+            final byte[] key = minKey != null ? minKey : ByteUtil.EMPTY;
+            switch (this.random.nextInt(7)) {
+            case 0:
+            {
+                final byte[] value = new byte[] { (byte)this.random.nextInt(256) };
+                tx.put(key, value);
+                model.put(key, value);
+                break;
+            }
+            case 1:
+                tx.remove(key);
+                model.remove(key);
+                break;
+            case 2:
+                this.check(tx.getAtLeast(minKey), minKey != null ? model.ceilingEntry(minKey) : model.firstEntry());
+                break;
+            case 3:
+                this.check(tx.getAtMost(maxKey), maxKey != null ? model.lowerEntry(maxKey) : model.lastEntry());
+                break;
+            case 4:
+            case 5:
+            {
+                final boolean reverse = this.random.nextBoolean();
+                final boolean remove = this.random.nextInt(6) == 0;
+                NavigableMap<byte[], byte[]> expected = model;
+                if (minKey != null)
+                    expected = expected.tailMap(minKey, true);
+                if (maxKey != null)
+                    expected = expected.headMap(maxKey, false);
+                if (reverse)
+                    expected = expected.descendingMap();
+                final ArrayList<byte[]> removed = new ArrayList<>();
+                final Iterator<KVPair> iterator = tx.getRange(minKey, maxKey, reverse);
+                for (Map.Entry<byte[], byte[]> entry : expected.entrySet()) {
+                    Assert.assertTrue(iterator.hasNext(), "range ended early");
+                    this.check(iterator.next(), entry);
+                    if (remove && this.random.nextBoolean()) {
+                        iterator.remove();
+                        removed.add(entry.getKey());
+                    }
+                }
+                Assert.assertFalse(iterator.hasNext(), "range too long");
+                for (byte[] removedKey : removed)
+                    model.remove(removedKey);
+                break;
+            }
+            case 6:
+            {
+                if (this.random.nextInt(10) != 0)
+                    break;
+                tx.removeRange(minKey, maxKey);
+                NavigableMap<byte[], byte[]> removed = model;
+                if (minKey != null)
+                    removed = removed.tailMap(minKey, true);
+                if (maxKey != null)
+                    removed = removed.headMap(maxKey, false);
+                removed.clear();
+                break;
+            }
+            default:
+                throw new RuntimeException("internal error");
+            }
+        }
+        if (writeBehind)
+            Assert.assertTrue(this.data.isEmpty(), "write-behind wrote before commit");
+        tx.commit();
+        Assert.assertEquals(this.data.size(), model.size());
+        for (Map.Entry<byte[], byte[]> entry : model.entrySet())
+            Assert.assertEquals(this.data.get(entry.getKey()), entry.getValue());
+    }
+
+    // getAtMost() must return the greatest key less than maxKey, not the least
+    @Test
+    public void testGetAtMost() {
+        final SQLKVDatabase db = this.createDatabase();
+        for (int readAhead : new int[] { 1, 4 }) {
+            db.setReadAhead(readAhead);
+            this.data.clear();
+            for (int i = 0; i < 10; i++)
+                this.data.put(new byte[] { 0x10, (byte)i }, new byte[] { (byte)i });
+            final SQLKVTransaction tx = db.createTransaction();
+            Assert.assertEquals(tx.getAtMost(new byte[] { 0x10, 0x05 }).getKey(), new byte[] { 0x10, 0x04 });
+            Assert.assertEquals(tx.getAtMost(new byte[] { 0x10, 0x03 }).getKey(), new byte[] { 0x10, 0x02 });
+            Assert.assertEquals(tx.getAtMost(null).getKey(), new byte[] { 0x10, 0x09 });
+            Assert.assertNull(tx.getAtMost(new byte[] { 0x10 }));
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void testGetMulti() {
+        final SQLKVDatabase db = this.createDatabase();
+        this.data.clear();
+        for (int i = 0; i < 10; i++)
+            this.data.put(new byte[] { 0x10, (byte)i }, new byte[] { (byte)i });
+        for (boolean writeBehind : new boolean[] { false, true }) {
+            db.setWriteBehind(writeBehind);
+            final SQLKVTransaction tx = db.createTransaction();
+
+            // Values are returned in request order
+            final List<byte[]> values = tx.getMulti(Arrays.asList(
+              new byte[] { 0x10, 0x07 }, new byte[] { 0x20 }, new byte[] { 0x10, 0x02 }, new byte[] { 0x10, 0x07 }));
+            Assert.assertEquals(values.size(), 4);
+            Assert.assertEquals(values.get(0), new byte[] { 0x07 });
+            Assert.assertNull(values.get(1));
+            Assert.assertEquals(values.get(2), new byte[] { 0x02 });
+            Assert.assertEquals(values.get(3), new byte[] { 0x07 });
+
+            // Keys starting with 0xff are rejected
+            try {
+                tx.getMulti(Arrays.asList(new byte[] { 0x10 }, new byte[] { (byte)0xff, 0x01 }));
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+            try {
+                tx.get(new byte[] { (byte)0xff });
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+            tx.commit();
+        }
+    }
+
+    // Adjusting a missing counter must create it starting from zero, with and without write-behind
+    @Test
+    public void testAdjustMissingCounter() {
+        final SQLKVDatabase db = this.createDatabase();
+        final byte[] existing = new byte[] { 0x10 };
+        final byte[] missing = new byte[] { 0x20 };
+        for (boolean writeBehind : new boolean[] { false, true }) {
+            db.setWriteBehind(writeBehind);
+            this.data.clear();
+            SQLKVTransaction tx = db.createTransaction();
+            tx.put(existing, tx.encodeCounter(100));
+            tx.commit();
+            tx = db.createTransaction();
+            tx.adjustCounter(existing, 5);
+            tx.adjustCounter(missing, 7);
+            tx.adjustCounter(missing, -2);
+            tx.commit();
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.decodeCounter(this.data.get(existing)), 105, "writeBehind=" + writeBehind);
+            Assert.assertNotNull(this.data.get(missing), "missing counter not created with writeBehind=" + writeBehind);
+            Assert.assertEquals(tx.decodeCounter(this.data.get(missing)), 5, "writeBehind=" + writeBehind);
+            tx.commit();
+        }
+    }
+
+    // A getAtLeast() followed by getRange() on the same prefix should be answered by a single read-ahead query
+    @Test
+    public void testReadAhead() {
+        final SQLKVDatabase db = this.createDatabase();
+        this.data.clear();
+        for (int i = 0; i < 20; i++)
+            this.data.put(new byte[] { 0x10, (byte)i }, new byte[] { (byte)i });
+        final byte[] prefix = new byte[] { 0x10 };
+        final byte[] limit = new byte[] { 0x10, 0x05 };
+        final int[] expectedQueries = new int[] { 2, 1 };
+        final int[] readAheads = new int[] { 1, 8 };
+        for (int i = 0; i < readAheads.length; i++) {
+            db.setReadAhead(readAheads[i]);
+            final SQLKVTransaction tx = db.createTransaction();
+            this.queries = 0;
+            Assert.assertEquals(tx.getAtLeast(prefix).getKey(), new byte[] { 0x10, 0x00 });
+            int count = 0;
+            for (Iterator<KVPair> iterator = tx.getRange(prefix, limit, false); iterator.hasNext(); iterator.next())
+                count++;
+            Assert.assertEquals(count, 5);
+            Assert.assertEquals(this.queries, expectedQueries[i], "wrong number of queries with readAhead=" + readAheads[i]);
+            tx.commit();
+        }
+    }
+
+    // Read-only transactions must not return their connection to the pool in read-only mode
+    @Test
+    public void testReadOnly() throws Exception {
+        final SQLKVDatabase db = this.createDatabase();
+        this.data.clear();
+        this.data.put(new byte[] { 0x10 }, new byte[] { 0x01 });
+        this.closedReadOnly.clear();
+        for (int i = 0; i < 3; i++) {
+            final SQLKVTransaction tx = db.createTransaction(true);
+            Assert.assertTrue(tx.connection.isReadOnly());
+            Assert.assertEquals(tx.get(new byte[] { 0x10 }), new byte[] { 0x01 });
+            if (i == 0)
+                tx.commit();
+            else
+                tx.rollback();
+        }
+        final SQLKVTransaction tx = db.createTransaction();
+        Assert.assertFalse(tx.connection.isReadOnly());
+        tx.commit();
+        Assert.assertEquals(this.closedReadOnly, Arrays.asList(false, false, false, false));
+    }
+
+    private void check(KVPair actual, Map.Entry<byte[], byte[]> expected) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertNotNull(actual, "expected " + ByteUtil.toString(expected.getKey()));
+        Assert.assertEquals(ByteUtil.toString(actual.getKey()), ByteUtil.toString(expected.getKey()));
+        Assert.assertEquals(actual.getValue(), expected.getValue());
+    }
+
+    private byte[] randomKey() {
+        final byte[] key = new byte[1 + this.random.nextInt(2)];
+        for (int i = 0; i < key.length; i++)
+            key[i] = (byte)this.random.nextInt(40);
+        return key;
+    }
+
+// Fake JDBC
+
+    private SQLKVDatabase createDatabase() {
+        final SQLKVDatabase db = new SQLKVDatabase() {
+
+            @Override
+            public String createPutMultiStatement(int count) {
+                if (count <= 0)
+                    throw new IllegalArgumentException("count <= 0");
+                final StringBuilder buf = new StringBuilder();
+                buf.append("INSERT INTO ").append(this.tableName).append(" (").append(this.keyColumnName)
+                  .append(", ").append(this.valueColumnName).append(") VALUES (?, ?)");
+                for (int i = 1; i < count; i++)
+                    buf.append(", (?, ?)");
+                return buf.append(" ON DUPLICATE KEY UPDATE ").append(this.valueColumnName)
+                  .append(" = VALUES(").append(this.valueColumnName).append(')').toString();
+            }
+        };
+        db.setDataSource(this.proxy(DataSource.class, new Handler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getConnection") ?
+                  SQLKVTransactionTest.this.createConnection() : this.defaultValue(method);
+            }
+        }));
+        return db;
+    }
+
+    private Connection createConnection() {
+        return this.proxy(Connection.class, new Handler() {
+
+            private boolean readOnly;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                case "prepareStatement":
+                    return SQLKVTransactionTest.this.createStatement((String)args[0]);
+                case "setReadOnly":
+                    this.readOnly = (Boolean)args[0];
+                    return null;
+                case "isReadOnly":
+                    return this.readOnly;
+                case "close":
+                    SQLKVTransactionTest.this.closedReadOnly.add(this.readOnly);
+                    return null;
+                default:
+                    return this.defaultValue(method);
+                }
+            }
+        });
+    }
+
+    private PreparedStatement createStatement(final String sql) {
+        final HashMap<Integer, byte[]> params = new HashMap<>();
+        final ArrayList<HashMap<Integer, byte[]>> batch = new ArrayList<>();
+        return this.proxy(PreparedStatement.class, new Handler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                case "setBytes":
+                    params.put((Integer)args[0], (byte[])args[1]);
+                    return null;
+                case "executeQuery":
+                    SQLKVTransactionTest.this.queries++;
+                    return SQLKVTransactionTest.this.createResultSet(SQLKVTransactionTest.this.select(sql, params));
+                case "executeUpdate":
+                    SQLKVTransactionTest.this.update(sql, params);
+                    return 0;
+                case "addBatch":
+                    batch.add(new HashMap<>(params));
+                    return null;
+                case "executeBatch":
+                    for (HashMap<Integer, byte[]> batchParams : batch)
+                        SQLKVTransactionTest.this.update(sql, batchParams);
+                    final int[] result = new int[batch.size()];
+                    batch.clear();
+                    return result;
+                case "toString":
+                    return sql;
+                default:
+                    return this.defaultValue(method);
+                }
+            }
+        });
+    }
+
+    private ResultSet createResultSet(final List<byte[][]> rows) {
+        return this.proxy(ResultSet.class, new Handler() {
+
+            private int row = -1;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                case "next":
+                    return ++this.row < rows.size();
+                case "getBytes":
+                    return rows.get(this.row)[(Integer)args[0] - 1].clone();
+                default:
+                    return this.defaultValue(method);
+                }
+            }
+        });
+    }
+
+    private List<byte[][]> select(String sql, Map<Integer, byte[]> params) {
+        final ArrayList<byte[][]> rows = new ArrayList<>();
+
+        // Single get
+        if (sql.startsWith("SELECT kv_value ")) {
+            final byte[] value = this.data.get(params.get(1));
+            if (value != null)
+                rows.add(new byte[][] { value });
+            return rows;
+        }
+
+        // Multiple get
+        if (sql.contains(" IN (")) {
+            final TreeMap<byte[], byte[]> found = new TreeMap<>(ByteUtil.COMPARATOR);
+            for (byte[] key : params.values()) {
+                final byte[] value = this.data.get(key);
+                if (value != null)
+                    found.put(key, value);
+            }
+            for (Map.Entry<byte[], byte[]> entry : found.entrySet())
+                rows.add(new byte[][] { entry.getKey(), entry.getValue() });
+            return rows;
+        }
+
+        // Range query
+        NavigableMap<byte[], byte[]> range = this.range(sql, params);
+        if (sql.contains(" DESC"))
+            range = range.descendingMap();
+        final Matcher matcher = LIMIT_PATTERN.matcher(sql);
+        final int limit = matcher.find() ? Integer.parseInt(matcher.group(1)) : Integer.MAX_VALUE;
+        for (Map.Entry<byte[], byte[]> entry : range.entrySet()) {
+            if (rows.size() >= limit)
+                break;
+            rows.add(new byte[][] { entry.getKey(), entry.getValue() });
+        }
+        return rows;
+    }
+
+    private void update(String sql, Map<Integer, byte[]> params) {
+        if (sql.startsWith("INSERT ")) {
+            final int numParams = sql.contains(" = VALUES(") ? params.size() : 2;
+            for (int i = 1; i < numParams; i += 2)
+                this.data.put(params.get(i), params.get(i + 1));
+        } else if (sql.endsWith(" kv_key = ?"))
+            this.data.remove(params.get(1));
+        else
+            this.range(sql, params).clear();
+    }
+
+    private NavigableMap<byte[], byte[]> range(String sql, Map<Integer, byte[]> params) {
+        NavigableMap<byte[], byte[]> range = this.data;
+        int index = 1;
+        if (sql.contains(" >= ?"))
+            range = range.tailMap(params.get(index++), true);
+        if (sql.contains(" < ?"))
+            range = range.headMap(params.get(index++), false);
+        return range;
+    }
+
+    private <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+
+        protected Object defaultValue(Method method) {
+            final Class<?> type = method.getReturnType();
+            if (type == boolean.class)
+                return false;
+            if (type == int.class)
+                return 0;
+            if (type == long.class)
+                return 0L;
+            return null;
+        }
+    }
+}
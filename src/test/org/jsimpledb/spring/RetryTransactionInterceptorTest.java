@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.spring;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jsimpledb.JTransaction;
+import org.jsimpledb.RetryExecutor;
+import org.jsimpledb.kv.RetryTransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RetryTransactionInterceptorTest extends SpringTest {
+
+    // Static because the bean methods run on the target object, not the proxy returned by getBean()
+    private static final List<JTransaction> TRANSACTIONS = new ArrayList<>();
+
+    private static int failures;
+
+    @Test
+    public void testRetry() {
+        final RetryTransactionInterceptorTest bean = this.context.getBean(RetryTransactionInterceptorTest.class);
+        final RetryExecutor retryExecutor = this.context.getBean(RetryExecutor.class);
+        retryExecutor.resetStatistics();
+        TRANSACTIONS.clear();
+
+        // Fail the first two attempts
+        RetryTransactionInterceptorTest.failures = 2;
+        bean.createPerson("Smith");
+
+        // The method ran three times, each time in a new transaction
+        Assert.assertEquals(TRANSACTIONS.size(), 3);
+        Assert.assertEquals(new HashSet<JTransaction>(TRANSACTIONS).size(), 3);
+        Assert.assertEquals(retryExecutor.getInvocations(), 1);
+        Assert.assertEquals(retryExecutor.getAttempts(), 3);
+        Assert.assertEquals(retryExecutor.getRetries(), 2);
+
+        // Only the successful attempt committed
+        Assert.assertEquals(bean.countPeople("Smith"), 1);
+    }
+
+    @Test
+    public void testGiveUp() {
+        final RetryTransactionInterceptorTest bean = this.context.getBean(RetryTransactionInterceptorTest.class);
+        final RetryExecutor retryExecutor = this.context.getBean(RetryExecutor.class);
+        retryExecutor.resetStatistics();
+        TRANSACTIONS.clear();
+
+        // Fail every attempt
+        RetryTransactionInterceptorTest.failures = Integer.MAX_VALUE;
+        try {
+            bean.createPerson("Jones");
+            assert false;
+        } catch (RetryTransactionException e) {
+            this.log.info("got expected " + e);
+        }
+
+        // The method ran the maximum number of times, each time in a new transaction
+        Assert.assertEquals(TRANSACTIONS.size(), retryExecutor.getMaxAttempts());
+        Assert.assertEquals(new HashSet<JTransaction>(TRANSACTIONS).size(), retryExecutor.getMaxAttempts());
+        Assert.assertEquals(retryExecutor.getFailures(), 1);
+
+        // Nothing committed
+        Assert.assertEquals(bean.countPeople("Jones"), 0);
+    }
+
+    @Test
+    public void testOtherThrowable() {
+        final RetryTransactionInterceptorTest bean = this.context.getBean(RetryTransactionInterceptorTest.class);
+        final RetryExecutor retryExecutor = this.context.getBean(RetryExecutor.class);
+        retryExecutor.resetStatistics();
+
+        // A checked throwable that is not an Exception is rethrown as is, without retrying
+        final CustomThrowable throwable = new CustomThrowable();
+        try {
+            bean.throwThrowable(throwable);
+            assert false;
+        } catch (Throwable t) {
+            Assert.assertSame(t, throwable);
+        }
+        Assert.assertEquals(retryExecutor.getAttempts(), 1);
+        Assert.assertEquals(retryExecutor.getRetries(), 0);
+    }
+
+// Bean methods
+
+    @Transactional
+    public void createPerson(String name) {
+        final JTransaction jtx = JTransaction.getCurrent();
+        TRANSACTIONS.add(jtx);
+        SimpleSpringTest.Person.create().setName(name);
+        if (TRANSACTIONS.size() <= RetryTransactionInterceptorTest.failures)
+            throw new RetryTransactionException(jtx.getTransaction().getKVTransaction(), "simulated conflict");
+    }
+
+    @Transactional(readOnly = true)
+    public int countPeople(String name) {
+        int count = 0;
+        for (SimpleSpringTest.Person person : JTransaction.getCurrent().getAll(SimpleSpringTest.Person.class)) {
+            if (name.equals(person.getName()))
+                count++;
+        }
+        return count;
+    }
+
+    @Transactional
+    public void throwThrowable(CustomThrowable throwable) throws CustomThrowable {
+        throw throwable;
+    }
+
+// CustomThrowable
+
+    @SuppressWarnings("serial")
+    public static class CustomThrowable extends Throwable {
+    }
+}
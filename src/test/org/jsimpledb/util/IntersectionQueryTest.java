@@ -0,0 +1,125 @@
+
+/*
+ * Copyright (C) 2014 Archie L. Cobbs. All rights reserved.
+ *
+ * $Id$
+ */
+
+package org.jsimpledb.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.jsimpledb.TestSupport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntersectionQueryTest extends TestSupport {
+
+    @Test
+    public void testPlan() {
+        final TreeSet<Integer> all = new TreeSet<>();
+        final TreeSet<Integer> evens = new TreeSet<>();
+        final TreeSet<Integer> few = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            all.add(i);
+            if (i % 2 == 0 && i < 400)
+                evens.add(i);
+        }
+        few.add(3);
+        few.add(200);
+        few.add(202);
+        few.add(800);
+
+        final IntersectionQuery<Integer> query = new IntersectionQuery<Integer>()
+          .add("all", all)
+          .add("evens", evens)
+          .add("few", few);
+        Assert.assertEquals(query.getResult(), buildSet(200, 202));
+        Assert.assertEquals(query.explain(),
+          "drive [few] (size 4), then probe [all] (size >= 100), then probe [evens] (size >= 100)");
+        Assert.assertEquals(query.getResult().descendingSet().first(), (Integer)202);
+
+        query.setSampleLimit(1000);
+        Assert.assertEquals(query.explain(),
+          "drive [few] (size 4), then probe [evens] (size 200), then probe [all] (size >= 201)");
+
+        query.add("none", new TreeSet<Integer>());
+        Assert.assertTrue(query.getResult().isEmpty());
+        Assert.assertTrue(query.explain().startsWith("drive [none] (size 0), then probe [few] (size 4)"));
+    }
+
+    @Test
+    public void testSamplingIteratorsClosed() {
+        final ArrayList<ClosingSet> sets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final ClosingSet set = new ClosingSet();
+            for (int j = 0; j < 50 * (i + 1); j++)
+                set.add(j);
+            sets.add(set);
+        }
+        final IntersectionQuery<Integer> query = new IntersectionQuery<Integer>()
+          .add("small", sets.get(0))
+          .add("medium", sets.get(1))
+          .add("large", sets.get(2))
+          .setSampleLimit(75);
+        Assert.assertEquals(query.explain(),
+          "drive [small] (size 50), then probe [medium] (size >= 75), then probe [large] (size >= 75)");
+        for (ClosingSet set : sets)
+            Assert.assertEquals(set.numOpen, 0);
+    }
+
+    @Test
+    public void testSingle() {
+        final TreeSet<Integer> set = new TreeSet<>(buildSet(1, 2, 3));
+        final IntersectionQuery<Integer> query = new IntersectionQuery<Integer>().add("set", set);
+        Assert.assertSame(query.getResult(), set);
+        Assert.assertEquals(query.explain(), "drive [set] (size >= 0)");
+    }
+
+// ClosingSet
+
+    @SuppressWarnings("serial")
+    private static class ClosingSet extends TreeSet<Integer> {
+
+        int numOpen;
+
+        @Override
+        public Iterator<Integer> iterator() {
+            final Iterator<Integer> iterator = super.iterator();
+            this.numOpen++;
+            return new ClosingIterator(iterator);
+        }
+
+        private class ClosingIterator implements Iterator<Integer>, Closeable {
+
+            private final Iterator<Integer> iterator;
+
+            ClosingIterator(Iterator<Integer> iterator) {
+                this.iterator = iterator;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.iterator.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return this.iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+                ClosingSet.this.numOpen--;
+            }
+        }
+    }
+}